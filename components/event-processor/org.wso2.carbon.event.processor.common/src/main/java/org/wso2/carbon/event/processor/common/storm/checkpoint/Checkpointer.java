@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.event.processor.common.storm.checkpoint;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Periodically stores snapshots of the state of a task, and acknowledges the tuples processed before a snapshot once
+ * it is stored. A snapshot is taken on the task thread so that it covers exactly the tuples processed so far, while
+ * it is stored by the writer so that storing does not block the processing of tuples. The tuples of a snapshot which
+ * could not be stored are acknowledged with the next one instead. Only the writer may call from another thread.
+ *
+ * @param <T> type of the tuples
+ */
+public class Checkpointer<T> {
+    private static final Logger log = Logger.getLogger(Checkpointer.class);
+
+    private final SnapshotStore snapshotStore;
+    private final String topologyName;
+    private final String key;
+    private final long interval;
+    private final Executor writer;
+    private final Task<T> task;
+    private final String logPrefix;
+    /**
+     * Tuples processed since the last snapshot
+     */
+    private List<T> unsavedTuples = new ArrayList<T>();
+    private final Queue<Checkpoint<T>> completedCheckpoints = new ConcurrentLinkedQueue<Checkpoint<T>>();
+    private boolean checkpointInProgress;
+    private long lastCheckpointTime;
+
+    /**
+     * @param interval  milliseconds between snapshots
+     * @param startTime time the interval of the first snapshot starts at
+     */
+    public Checkpointer(SnapshotStore snapshotStore, String topologyName, String key, long interval, Executor writer,
+                        Task<T> task, String logPrefix, long startTime) {
+        this.snapshotStore = snapshotStore;
+        this.topologyName = topologyName;
+        this.key = key;
+        this.interval = interval;
+        this.writer = writer;
+        this.task = task;
+        this.logPrefix = logPrefix;
+        this.lastCheckpointTime = startTime;
+    }
+
+    /**
+     * Adds a processed tuple, acknowledged once a snapshot covering it is stored
+     */
+    public void add(T tuple) {
+        unsavedTuples.add(tuple);
+    }
+
+    /**
+     * Acknowledges the tuples of the stored snapshots, and takes a snapshot if the checkpoint interval elapsed since
+     * the last one and no snapshot is being stored.
+     */
+    public void checkpoint(long currentTime) throws InterruptedException {
+        Checkpoint<T> completedCheckpoint;
+        while ((completedCheckpoint = completedCheckpoints.poll()) != null) {
+            checkpointInProgress = false;
+            if (completedCheckpoint.saved) {
+                for (T savedTuple : completedCheckpoint.tuples) {
+                    task.ack(savedTuple);
+                }
+            } else {
+                // The next snapshot covers them as well
+                unsavedTuples.addAll(0, completedCheckpoint.tuples);
+            }
+        }
+
+        if (checkpointInProgress || currentTime - lastCheckpointTime < interval) {
+            return;
+        }
+        final byte[] snapshot = task.snapshot();
+        final List<T> tuples = unsavedTuples;
+        unsavedTuples = new ArrayList<T>();
+        checkpointInProgress = true;
+        lastCheckpointTime = currentTime;
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean saved = false;
+                try {
+                    snapshotStore.save(topologyName, key, snapshot);
+                    saved = true;
+                    if (log.isDebugEnabled()) {
+                        log.debug(logPrefix + "Stored snapshot of " + snapshot.length + " bytes covering " +
+                                tuples.size() + " tuples");
+                    }
+                } catch (IOException e) {
+                    log.error(logPrefix + "Cannot store snapshot " + key, e);
+                } catch (RuntimeException e) {
+                    log.error(logPrefix + "Cannot store snapshot " + key, e);
+                }
+                completedCheckpoints.add(new Checkpoint<T>(tuples, saved));
+            }
+        });
+    }
+
+    /**
+     * Task whose state is checkpointed
+     */
+    public interface Task<T> {
+
+        /**
+         * @return snapshot of the state, covering all tuples added so far
+         */
+        byte[] snapshot() throws InterruptedException;
+
+        void ack(T tuple);
+    }
+
+    /**
+     * Tuples covered by a snapshot, and whether the snapshot was stored
+     */
+    private static class Checkpoint<T> {
+        private final List<T> tuples;
+        private final boolean saved;
+
+        private Checkpoint(List<T> tuples, boolean saved) {
+            this.tuples = tuples;
+            this.saved = saved;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.common.storm.checkpoint;
+
+import org.wso2.carbon.event.processor.common.util.DistributedProperties;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Keeps snapshots as files of a directory per topology within the checkpoint directory. Tasks only find their snapshot
+ * after moving to another host, and the Storm manager only deletes the snapshots of killed topologies, if the
+ * directory is on a file system shared by the Storm supervisors and managers. A snapshot is written to a temporary file
+ * which then replaces the previous one, so a crash while saving leaves the previous snapshot intact.
+ */
+public class FileSnapshotStore implements SnapshotStore {
+    private static final long serialVersionUID = 1L;
+
+    private final String directory;
+
+    public FileSnapshotStore() {
+        this(DistributedProperties.getString(DistributedProperties.CHECKPOINT_DIRECTORY,
+                DistributedProperties.DEFAULT_CHECKPOINT_DIRECTORY));
+    }
+
+    public FileSnapshotStore(String directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public void save(String topologyName, String key, byte[] snapshot) throws IOException {
+        File file = getFile(topologyName, key);
+        File directoryFile = file.getParentFile();
+        if (!directoryFile.isDirectory() && !directoryFile.mkdirs() && !directoryFile.isDirectory()) {
+            throw new IOException("Cannot create checkpoint directory " + directoryFile);
+        }
+        File tempFile = new File(directoryFile, file.getName() + ".tmp");
+        FileOutputStream outputStream = new FileOutputStream(tempFile);
+        try {
+            outputStream.write(snapshot);
+            outputStream.getFD().sync();
+        } finally {
+            outputStream.close();
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public byte[] load(String topologyName, String key) throws IOException {
+        File file = getFile(topologyName, key);
+        return file.isFile() ? Files.readAllBytes(file.toPath()) : null;
+    }
+
+    @Override
+    public void delete(String topologyName) throws IOException {
+        File topologyDirectory = getTopologyDirectory(topologyName);
+        File[] files = topologyDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            Files.deleteIfExists(file.toPath());
+        }
+        Files.deleteIfExists(topologyDirectory.toPath());
+    }
+
+    private File getTopologyDirectory(String topologyName) {
+        return new File(directory, toFileName(topologyName));
+    }
+
+    private File getFile(String topologyName, String key) {
+        return new File(getTopologyDirectory(topologyName), toFileName(key) + ".snapshot");
+    }
+
+    private static String toFileName(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.common.storm.checkpoint;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Stores the latest snapshot of the Siddhi runtime of each Siddhi bolt task, grouped by the topology of the tasks so
+ * that the snapshots of a topology can be deleted once it is killed. Stores are created when the topology is built and
+ * serialized with the bolts, so they should capture their configuration on construction. Implementations need a
+ * public no-argument constructor to be selected with the checkpoint store property.
+ */
+public interface SnapshotStore extends Serializable {
+
+    /**
+     * Replaces the snapshot stored under the key. Called from a background thread, one call at a time per key.
+     */
+    void save(String topologyName, String key, byte[] snapshot) throws IOException;
+
+    /**
+     * @return the snapshot stored under the key, or null if there is none
+     */
+    byte[] load(String topologyName, String key) throws IOException;
+
+    /**
+     * Deletes the snapshots of all tasks of the topology. Called by the Storm manager once the topology is killed.
+     */
+    void delete(String topologyName) throws IOException;
+}
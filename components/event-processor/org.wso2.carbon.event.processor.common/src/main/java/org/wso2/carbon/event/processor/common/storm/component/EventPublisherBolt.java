@@ -15,14 +15,16 @@
  */
 package org.wso2.carbon.event.processor.common.storm.component;
 
+import backtype.storm.metric.api.IMetric;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.BasicOutputCollector;
 import backtype.storm.topology.OutputFieldsDeclarer;
 import backtype.storm.topology.base.BaseBasicBolt;
 import backtype.storm.tuple.Tuple;
-import org.apache.commons.lang.ArrayUtils;
 import org.apache.log4j.Logger;
+import org.wso2.carbon.event.processor.common.storm.event.TupleCodec;
 import org.wso2.carbon.event.processor.common.util.AsyncEventPublisher;
+import org.wso2.carbon.event.processor.common.util.StreamChannels;
 import org.wso2.carbon.event.processor.manager.commons.utils.Utils;
 import org.wso2.carbon.event.processor.manager.core.config.DistributedConfiguration;
 import org.wso2.siddhi.core.ExecutionPlanRuntime;
@@ -38,6 +40,8 @@ import java.util.*;
  * Publish events processed by Siddhi engine to CEP publisher
  */
 public class EventPublisherBolt extends BaseBasicBolt {
+    private static final int METRICS_TIME_BUCKET_SIZE = 60;
+
     private transient Logger log = Logger.getLogger(EventPublisherBolt.class);
     /**
      * All stream definitions processed
@@ -49,6 +53,16 @@ public class EventPublisherBolt extends BaseBasicBolt {
      * Keep track of relevant data bridge stream id for a given Siddhi stream id
      */
     private transient Map<String, StreamDefinition> streamIdToDefinitionMap;
+    /**
+     * Whether the CEP publishers receive the events of all execution plans through a shared server, in which case
+     * events are sent on the channels of the streams. Taken from the query plan, as the CEP publishers take it from
+     * the same execution plan.
+     */
+    private boolean sharedPublisherServer;
+    /**
+     * Id to send the events of a stream with, which is the channel id when the CEP publisher server is shared
+     */
+    private transient Map<String, String> streamIdToSendIdMap;
 
     private transient AsyncEventPublisher asyncEventPublisher;
     private BasicOutputCollector collector;
@@ -66,9 +80,13 @@ public class EventPublisherBolt extends BaseBasicBolt {
 
     private int eventCount;
     private long batchStartTime;
+    private transient long reportedCircuitOpenCount;
+    private transient long reportedThrottledTime;
+    private transient long reportedDroppedEventCount;
 
     public EventPublisherBolt(DistributedConfiguration stormDeploymentConfig, List<String> inputStreamDefinitions,
-                              List<String> outputStreamDefinitions, String query, String executionPlanName, int tenantId) {
+                              List<String> outputStreamDefinitions, String query, String executionPlanName, int tenantId,
+                              boolean sharedPublisherServer) {
         this.stormDeploymentConfig = stormDeploymentConfig;
         this.inputStreamDefinitions = inputStreamDefinitions;
         this.outputStreamDefinitions = outputStreamDefinitions;
@@ -76,7 +94,7 @@ public class EventPublisherBolt extends BaseBasicBolt {
         this.executionPlanName = executionPlanName;
         this.tenantId = tenantId;
         this.logPrefix = "[" + tenantId + ":" + executionPlanName + ":" + "EventPublisherBolt]";
-
+        this.sharedPublisherServer = sharedPublisherServer;
     }
 
     @Override
@@ -91,13 +109,13 @@ public class EventPublisherBolt extends BaseBasicBolt {
             init();
         }
 
-        Object[] dataArray = tuple.getValues().toArray();
-        long timestamp = (Long) dataArray[dataArray.length - 1];
-        dataArray = ArrayUtils.remove(dataArray, dataArray.length - 1);
+        // Event data is handed over to the asynchronous publisher, hence copied to a new array.
+        Object[] dataArray = TupleCodec.getData(tuple);
+        long timestamp = TupleCodec.getTimestamp(tuple);
 
-        StreamDefinition streamDefinition = streamIdToDefinitionMap.get(tuple.getSourceStreamId());
-        if (streamDefinition != null) {
-            asyncEventPublisher.sendEvent(dataArray, timestamp, tuple.getSourceStreamId());
+        String sendId = streamIdToSendIdMap.get(tuple.getSourceStreamId());
+        if (sendId != null) {
+            asyncEventPublisher.sendEvent(dataArray, timestamp, sendId);
         } else {
             log.warn(logPrefix + "Tuple received for unknown stream " + tuple.getSourceStreamId() + ". Discarding " +
                     "Event: " + tuple.getSourceStreamId() + ":" + Arrays.deepToString(dataArray) + "@" + timestamp);
@@ -116,6 +134,63 @@ public class EventPublisherBolt extends BaseBasicBolt {
     public void prepare(Map stormConf, TopologyContext context) {
         super.prepare(stormConf, context);
         init();
+        registerMetrics(context);
+    }
+
+    /**
+     * Exposes the state of the connection to the CEP publisher: the circuit state, the number of times the circuit
+     * opened in the last bucket, the number of events waiting in the spill log, and the time in milliseconds senders
+     * were throttled and the number of events dropped by the overload policy in the last bucket.
+     */
+    private void registerMetrics(TopologyContext context) {
+        context.registerMetric("cep.publisher.circuit.state", new IMetric() {
+            @Override
+            public Object getValueAndReset() {
+                return (asyncEventPublisher != null) ? asyncEventPublisher.getCircuitState().name() : null;
+            }
+        }, METRICS_TIME_BUCKET_SIZE);
+        context.registerMetric("cep.publisher.circuit.opened", new IMetric() {
+            @Override
+            public Object getValueAndReset() {
+                if (asyncEventPublisher == null) {
+                    return 0L;
+                }
+                long openCount = asyncEventPublisher.getCircuitOpenCount();
+                long opened = openCount - reportedCircuitOpenCount;
+                reportedCircuitOpenCount = openCount;
+                return opened;
+            }
+        }, METRICS_TIME_BUCKET_SIZE);
+        context.registerMetric("cep.publisher.spilled.events", new IMetric() {
+            @Override
+            public Object getValueAndReset() {
+                return (asyncEventPublisher != null) ? asyncEventPublisher.getSpilledEventCount() : 0L;
+            }
+        }, METRICS_TIME_BUCKET_SIZE);
+        context.registerMetric("cep.publisher.throttled.time", new IMetric() {
+            @Override
+            public Object getValueAndReset() {
+                if (asyncEventPublisher == null) {
+                    return 0L;
+                }
+                long throttledTime = asyncEventPublisher.getThrottledTime();
+                long throttled = throttledTime - reportedThrottledTime;
+                reportedThrottledTime = throttledTime;
+                return throttled;
+            }
+        }, METRICS_TIME_BUCKET_SIZE);
+        context.registerMetric("cep.publisher.dropped.events", new IMetric() {
+            @Override
+            public Object getValueAndReset() {
+                if (asyncEventPublisher == null) {
+                    return 0L;
+                }
+                long droppedEventCount = asyncEventPublisher.getDroppedEventCount();
+                long dropped = droppedEventCount - reportedDroppedEventCount;
+                reportedDroppedEventCount = droppedEventCount;
+                return dropped;
+            }
+        }, METRICS_TIME_BUCKET_SIZE);
     }
 
     private void init() {
@@ -142,9 +217,8 @@ public class EventPublisherBolt extends BaseBasicBolt {
                         @Override
                         public void receive(Event[] events) {
                             for (Event event : events) {
-                                Object[] eventData = Arrays.copyOf(event.getData(), event.getData().length + 1);
-                                eventData[event.getData().length] = event.getTimestamp();
-                                collector.emit(outputSiddhiDefinition.getId(), Arrays.asList(eventData));
+                                collector.emit(outputSiddhiDefinition.getId(),
+                                        TupleCodec.toTupleValues(event.getTimestamp(), event.getData()));
                                 if (log.isDebugEnabled()) {
                                     if (++eventCount % 10000 == 0) {
                                         double timeSpentInSecs = (System.currentTimeMillis() - batchStartTime) / 1000.0D;
@@ -156,7 +230,7 @@ public class EventPublisherBolt extends BaseBasicBolt {
                                         batchStartTime = System.currentTimeMillis();
                                     }
                                     log.debug(logPrefix + "Emitted Event:" + outputSiddhiDefinition.getId() +
-                                            ":" + Arrays.deepToString(eventData) + "@" + event.getTimestamp());
+                                            ":" + Arrays.deepToString(event.getData()) + "@" + event.getTimestamp());
                                 }
                             }
                         }
@@ -172,9 +246,24 @@ public class EventPublisherBolt extends BaseBasicBolt {
                 streamIdToDefinitionMap.put(siddhiDefinition.getId(), siddhiDefinition);
             }
 
+            streamIdToSendIdMap = new HashMap<String, String>();
+            Set<StreamDefinition> sentDefinitions = new HashSet<StreamDefinition>();
+            for (StreamDefinition definition : streamIdToDefinitionMap.values()) {
+                if (sharedPublisherServer) {
+                    StreamDefinition channelDefinition = StreamChannels.toChannelDefinition(tenantId,
+                            executionPlanName, definition);
+                    streamIdToSendIdMap.put(definition.getId(), channelDefinition.getId());
+                    sentDefinitions.add(channelDefinition);
+                } else {
+                    streamIdToSendIdMap.put(definition.getId(), definition.getId());
+                    sentDefinitions.add(definition);
+                }
+            }
+
             asyncEventPublisher = new AsyncEventPublisher(AsyncEventPublisher.DestinationType.CEP_PUBLISHER,
-                    new HashSet<StreamDefinition>(streamIdToDefinitionMap.values()),
-                    stormDeploymentConfig.getManagers(), executionPlanName, tenantId, stormDeploymentConfig, null);
+                    sentDefinitions,
+                    stormDeploymentConfig.getManagers(), executionPlanName, tenantId, stormDeploymentConfig, null,
+                    true);
 
             asyncEventPublisher.initializeConnection(false);
         } catch (Throwable e) {
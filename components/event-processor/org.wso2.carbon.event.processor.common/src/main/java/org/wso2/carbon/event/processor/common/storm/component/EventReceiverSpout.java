@@ -15,23 +15,27 @@
  */
 package org.wso2.carbon.event.processor.common.storm.component;
 
+import backtype.storm.metric.api.IMetric;
 import backtype.storm.spout.SpoutOutputCollector;
 import backtype.storm.task.TopologyContext;
 import backtype.storm.topology.OutputFieldsDeclarer;
 import backtype.storm.topology.base.BaseRichSpout;
 import backtype.storm.tuple.Fields;
 import org.apache.log4j.Logger;
-import org.apache.thrift.protocol.TBinaryProtocol;
-import org.apache.thrift.protocol.TProtocol;
-import org.apache.thrift.transport.TSocket;
-import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.TException;
 import org.wso2.carbon.event.processor.common.storm.event.Event;
+import org.wso2.carbon.event.processor.common.storm.event.TupleCodec;
 import org.wso2.carbon.event.processor.common.storm.manager.service.StormManagerService;
+import org.wso2.carbon.event.processor.common.util.DistributedProperties;
+import org.wso2.carbon.event.processor.common.util.EndpointLoadSampler;
+import org.wso2.carbon.event.processor.common.util.EventRingBuffer;
+import org.wso2.carbon.event.processor.common.util.ManagerHeartbeatScheduler;
+import org.wso2.carbon.event.processor.common.util.PortAllocator;
+import org.wso2.carbon.event.processor.common.util.ReplayBuffer;
 import org.wso2.carbon.event.processor.common.util.ThroughputProbe;
 import org.wso2.carbon.event.processor.manager.commons.transport.server.StreamCallback;
 import org.wso2.carbon.event.processor.manager.commons.transport.server.TCPEventServer;
 import org.wso2.carbon.event.processor.manager.commons.transport.server.TCPEventServerConfig;
-import org.wso2.carbon.event.processor.manager.commons.utils.HostAndPort;
 import org.wso2.carbon.event.processor.manager.commons.utils.Utils;
 import org.wso2.carbon.event.processor.manager.core.config.DistributedConfiguration;
 import org.wso2.siddhi.query.api.definition.StreamDefinition;
@@ -41,14 +45,34 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Receive events from CEP receivers through thrift receiver and pass through
  * the events as tuples to the connected component(i.e. Siddhi Bolt).
+ * <p/>
+ * When the Siddhi bolts checkpoint their state, events are emitted with message IDs and kept in a bounded replay
+ * buffer until acknowledged, which happens once every bolt stored a snapshot covering them. Failed events, e.g. the
+ * ones processed by a crashed bolt after its last snapshot, are emitted again.
+ * <p/>
+ * Delivery is therefore at least once. A replayed event is emitted to all subscribers of its stream again, including
+ * the bolts which already processed it and stored it in their snapshots, and to the bolts and publishers downstream
+ * of them. Queries receive such events twice, and CEP receivers of the output streams may receive duplicate events.
  */
 public class EventReceiverSpout extends BaseRichSpout implements StreamCallback {
     private static transient Logger log = Logger.getLogger(EventReceiverSpout.class);
+
+    /**
+     * Ways of waiting in nextTuple when there are no events to emit
+     */
+    private enum IdleStrategy {NONE, YIELD, PARK}
+
+    private static final long THROTTLE_LOG_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+    private static final int METRICS_TIME_BUCKET_SIZE = 60;
+
     /**
      * Listening port of the thrift receiver
      */
@@ -68,14 +92,22 @@ public class EventReceiverSpout extends BaseRichSpout implements StreamCallback
     private List<String> incomingStreamIDs = new ArrayList<String>();
 
     /**
-     * Store received events until nextTuple is called. This list has to be synchronized since
-     * this is filled by the receiver thread of data bridge and consumed by the nextTuple which
-     * runs on the worker thread of spout.
+     * Store received events until nextTuple is called. This is filled by the receiver threads of
+     * the TCP event server and consumed by the nextTuple which runs on the worker thread of spout.
      */
-    private transient LinkedBlockingQueue<Event> storedEvents = null;
+    private transient EventRingBuffer<Event> storedEvents = null;
+    private transient int emitBatchSize;
+    private transient IdleStrategy idleStrategy;
+    private transient long idleParkTime;
 
     private SpoutOutputCollector spoutOutputCollector = null;
 
+    /**
+     * Maximum number of emitted events kept until acknowledged, 0 if events are not tracked
+     */
+    private final int replayBufferSize;
+    private transient ReplayBuffer<Event> replayBuffer;
+
     private String executionPlanName;
     private int tenantId = -1234;
     private String logPrefix;
@@ -83,6 +115,14 @@ public class EventReceiverSpout extends BaseRichSpout implements StreamCallback
 
     private transient ThroughputProbe inputThroughputProbe;
     private transient ThroughputProbe outputThroughputProbe;
+    private transient ScheduledFuture<?> heartbeat;
+    /**
+     * Time in nanoseconds the receiver threads were blocked on a full buffer. While blocked, the TCP connection is not
+     * read, which in turn throttles the sending CEP receivers.
+     */
+    private transient AtomicLong throttledTime;
+    private transient AtomicLong reportedThrottledTime;
+    private transient volatile long lastThrottleLogTime;
 
     /**
      * Receives events from the CEP Receiver through Thrift using data bridge and pass through the events
@@ -92,9 +132,11 @@ public class EventReceiverSpout extends BaseRichSpout implements StreamCallback
      * @param incomingStreamDefinitions - Incoming Siddhi stream definitions
      * @param executionPlanName
      * @param tenantId
+     * @param expectedInputRate         - Expected events per second of each spout task, 0 if unknown
      */
     public EventReceiverSpout(DistributedConfiguration stormDeploymentConfig, List<String> incomingStreamDefinitions,
-                              String executionPlanName, int tenantId, int heartbeatInterval) {
+                              String executionPlanName, int tenantId, int heartbeatInterval,
+                              double expectedInputRate) {
         this.incomingStreamDefinitions = new ArrayList<StreamDefinition>(incomingStreamDefinitions.size());
         this.stormDeploymentConfig = stormDeploymentConfig;
         this.executionPlanName = executionPlanName;
@@ -104,8 +146,23 @@ public class EventReceiverSpout extends BaseRichSpout implements StreamCallback
             this.incomingStreamDefinitions.add(SiddhiCompiler.parseStreamDefinition(definition));
         }
         this.logPrefix = "[" + tenantId + ":" + executionPlanName + ":" + "EventReceiverSpout] ";
+        long checkpointInterval = DistributedProperties.getLong(DistributedProperties.CHECKPOINT_INTERVAL,
+                DistributedProperties.DEFAULT_CHECKPOINT_INTERVAL);
+        this.replayBufferSize = (checkpointInterval > 0) ? getReplayBufferSize(expectedInputRate,
+                checkpointInterval) : 0;
 
+    }
 
+    /**
+     * Sizes the replay buffer to hold the events received at the expected rate until they are acknowledged, so that
+     * it does not throttle the spout. Bolts acknowledge events once a snapshot covering them is stored, which is
+     * taken up to a checkpoint interval after receiving them and acknowledged with the next tuple or tick tuple.
+     */
+    private static int getReplayBufferSize(double expectedInputRate, long checkpointInterval) {
+        long expectedPendingEvents = (long) Math.ceil(expectedInputRate * 2 * checkpointInterval / 1000);
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(expectedPendingEvents, Math.max(1,
+                DistributedProperties.getInt(DistributedProperties.REPLAY_BUFFER_SIZE,
+                        DistributedProperties.DEFAULT_REPLAY_BUFFER_SIZE))));
     }
 
     @Override
@@ -113,7 +170,7 @@ public class EventReceiverSpout extends BaseRichSpout implements StreamCallback
         // Declaring all incoming streams as output streams because this spouts role is to pass through all the incoming events as tuples.
         for (StreamDefinition siddhiStreamDefinition : incomingStreamDefinitions) {
             List<String> attributeList = new ArrayList<>(Arrays.asList(siddhiStreamDefinition.getAttributeNameArray()));
-            attributeList.add(0, "_timestamp");
+            attributeList.add(TupleCodec.TIMESTAMP_INDEX, TupleCodec.TIMESTAMP_FIELD_NAME);
             Fields fields = new Fields(attributeList);
             outputFieldsDeclarer.declareStream(siddhiStreamDefinition.getId(), fields);
             incomingStreamIDs.add(siddhiStreamDefinition.getId());
@@ -124,7 +181,40 @@ public class EventReceiverSpout extends BaseRichSpout implements StreamCallback
     @Override
     public void open(Map map, TopologyContext topologyContext, SpoutOutputCollector spoutOutputCollector) {
         this.spoutOutputCollector = spoutOutputCollector;
-        this.storedEvents = new LinkedBlockingQueue<Event>(stormDeploymentConfig.getStormSpoutBufferSize());
+        this.storedEvents = new EventRingBuffer<Event>(stormDeploymentConfig.getStormSpoutBufferSize());
+        if (replayBufferSize > 0) {
+            this.replayBuffer = new ReplayBuffer<Event>(replayBufferSize);
+        }
+        this.emitBatchSize = Math.max(1, DistributedProperties.getInt(DistributedProperties.SPOUT_EMIT_BATCH_SIZE,
+                DistributedProperties.DEFAULT_SPOUT_EMIT_BATCH_SIZE));
+        this.idleParkTime = DistributedProperties.getLong(DistributedProperties.SPOUT_IDLE_PARK_TIME,
+                DistributedProperties.DEFAULT_SPOUT_IDLE_PARK_TIME);
+        String idleStrategyName = DistributedProperties.getString(DistributedProperties.SPOUT_IDLE_STRATEGY,
+                DistributedProperties.DEFAULT_SPOUT_IDLE_STRATEGY);
+        try {
+            this.idleStrategy = IdleStrategy.valueOf(idleStrategyName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn(logPrefix + "Unknown idle strategy '" + idleStrategyName + "', using '" +
+                    DistributedProperties.DEFAULT_SPOUT_IDLE_STRATEGY + "'");
+            this.idleStrategy = IdleStrategy.valueOf(DistributedProperties.DEFAULT_SPOUT_IDLE_STRATEGY.toUpperCase());
+        }
+
+        throttledTime = new AtomicLong(0);
+        reportedThrottledTime = new AtomicLong(0);
+        lastThrottleLogTime = System.nanoTime() - THROTTLE_LOG_INTERVAL;
+        topologyContext.registerMetric("cep.receiver.throttled.ms", new IMetric() {
+            @Override
+            public Object getValueAndReset() {
+                long total = throttledTime.get();
+                return TimeUnit.NANOSECONDS.toMillis(total - reportedThrottledTime.getAndSet(total));
+            }
+        }, METRICS_TIME_BUCKET_SIZE);
+        topologyContext.registerMetric("cep.receiver.buffered.events", new IMetric() {
+            @Override
+            public Object getValueAndReset() {
+                return storedEvents.size();
+            }
+        }, METRICS_TIME_BUCKET_SIZE);
 
         inputThroughputProbe = new ThroughputProbe(logPrefix + "-IN", 10);
         outputThroughputProbe = new ThroughputProbe(logPrefix + " -OUT", 10);
@@ -134,33 +224,37 @@ public class EventReceiverSpout extends BaseRichSpout implements StreamCallback
 
         try {
             thisHostIp = Utils.findAddress("localhost");
-            listeningPort = findPort(thisHostIp);
-            TCPEventServerConfig configs = new TCPEventServerConfig(thisHostIp, listeningPort);
-            tcpEventServer = new TCPEventServer(configs, this, null);
-            for (StreamDefinition siddhiStreamDefinition : incomingStreamDefinitions) {
-                tcpEventServer.addStreamDefinition(siddhiStreamDefinition);
-            }
-            tcpEventServer.start();
+            tcpEventServer = startEventServer();
             log.info(logPrefix + "EventReceiverSpout starting to listen for events on port " + listeningPort);
-            Thread thread = new Thread(new Registrar());
-            thread.start();
+            heartbeat = ManagerHeartbeatScheduler.getInstance().schedule(new Registrar(),
+                    stormDeploymentConfig.getManagers(), heartbeatInterval);
         } catch (Throwable e) {
             log.error(logPrefix + "Error starting event listener for spout: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Emits up to a bounded batch of the received events per invocation, so the spout does not return to Storm for
+     * every single event.
+     */
     @Override
     public void nextTuple() {
-        Event event = storedEvents.poll();
-        if (event != null) {
+        int emitted = 0;
+        Event event;
+        while (emitted < emitBatchSize && (event = nextEvent()) != null) {
+            emitted++;
             final String siddhiStreamName = event.getStreamId();
             if (incomingStreamIDs.contains(siddhiStreamName)) {
-                Object[] eventData = Arrays.copyOf(event.getData(), event.getData().length + 1);
-                eventData[event.getData().length] = event.getTimestamp();
-                spoutOutputCollector.emit(siddhiStreamName, Arrays.asList(eventData));
+                if (replayBuffer != null) {
+                    spoutOutputCollector.emit(siddhiStreamName, TupleCodec.toTupleValues(event.getTimestamp(),
+                            event.getData()), replayBuffer.add(event));
+                } else {
+                    spoutOutputCollector.emit(siddhiStreamName, TupleCodec.toTupleValues(event.getTimestamp(),
+                            event.getData()));
+                }
 
                 if (log.isDebugEnabled()) {
-                    log.debug(logPrefix + "Emitted Event: " + siddhiStreamName + ":" + Arrays.deepToString(eventData) + "@" + event.getTimestamp());
+                    log.debug(logPrefix + "Emitted Event: " + siddhiStreamName + ":" + Arrays.deepToString(event.getData()) + "@" + event.getTimestamp());
                 }
                 outputThroughputProbe.update();
             } else {
@@ -168,113 +262,144 @@ public class EventReceiverSpout extends BaseRichSpout implements StreamCallback
             }
         }
 
+        if (emitted == 0) {
+            switch (idleStrategy) {
+                case YIELD:
+                    Thread.yield();
+                    break;
+                case PARK:
+                    LockSupport.parkNanos(idleParkTime);
+                    break;
+                default:
+                    // Storm's spout wait strategy applies when nothing is emitted
+                    break;
+            }
+        }
     }
 
-    private int findPort(String host) throws Exception {
-        for (int i = stormDeploymentConfig.getTransportMinPort(); i <= stormDeploymentConfig.getTransportMaxPort(); i++) {
-            if (!Utils.isPortUsed(i, host)) {
-                return i;
+    /**
+     * @return the next failed event to replay, else the next received event if the replay buffer has room for it
+     */
+    private Event nextEvent() {
+        if (replayBuffer == null) {
+            return storedEvents.poll();
+        }
+        Event event = replayBuffer.pollFailed();
+        if (event != null) {
+            if (log.isDebugEnabled()) {
+                log.debug(logPrefix + "Replaying Event: " + event.getStreamId() + ":" +
+                        Arrays.deepToString(event.getData()) + "@" + event.getTimestamp());
             }
+            return event;
         }
-        throw new Exception("Cannot find free port in range " + stormDeploymentConfig.getTransportMinPort() + "~" + stormDeploymentConfig.getTransportMaxPort());
+        // Received events wait in the ring buffer, throttling the CEP receivers, until events are acknowledged
+        return replayBuffer.isFull() ? null : storedEvents.poll();
     }
 
+    @Override
+    public void ack(Object messageId) {
+        if (replayBuffer != null) {
+            replayBuffer.ack(messageId);
+        }
+    }
+
+    @Override
+    public void fail(Object messageId) {
+        if (replayBuffer != null) {
+            replayBuffer.fail(messageId);
+        }
+    }
+
+    /**
+     * Starts the event server on a port allocated from the transport port range, moving on to another port when the
+     * server fails to start on the allocated one.
+     */
+    private TCPEventServer startEventServer() throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            listeningPort = PortAllocator.allocate(thisHostIp, stormDeploymentConfig.getTransportMinPort(),
+                    stormDeploymentConfig.getTransportMaxPort());
+            TCPEventServerConfig configs = new TCPEventServerConfig(thisHostIp, listeningPort);
+            TCPEventServer eventServer = new TCPEventServer(configs, this, null);
+            for (StreamDefinition siddhiStreamDefinition : incomingStreamDefinitions) {
+                eventServer.addStreamDefinition(siddhiStreamDefinition);
+            }
+            try {
+                eventServer.start();
+                return eventServer;
+            } catch (Exception e) {
+                PortAllocator.release(listeningPort);
+                if (attempt >= PortAllocator.BIND_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn(logPrefix + "Cannot listen on port " + listeningPort + ", trying another port: " +
+                        e.getMessage());
+            }
+        }
+    }
 
     @Override
     public void receive(String streamId, long timestamp, Object[] eventData, Map<String, String> arbitraryMapData) {
         if (log.isDebugEnabled()) {
             log.debug(logPrefix + "Received Event: " + streamId + ":" + Arrays.deepToString(eventData) + "@" + timestamp);
         }
-        try {
-            storedEvents.put(new Event(timestamp, eventData, streamId));
-            inputThroughputProbe.update();
-        } catch (InterruptedException e) {
-            //ignore
+        Event event = new Event(timestamp, eventData, streamId);
+        if (!storedEvents.offer(event)) {
+            long startTime = System.nanoTime();
+            try {
+                storedEvents.put(event);
+            } catch (InterruptedException e) {
+                //ignore
+                return;
+            } finally {
+                onThrottled(System.nanoTime() - startTime);
+            }
         }
+        inputThroughputProbe.update();
     }
 
+    private void onThrottled(long time) {
+        long total = throttledTime.addAndGet(time);
+        long now = System.nanoTime();
+        if (now - lastThrottleLogTime >= THROTTLE_LOG_INTERVAL) {
+            lastThrottleLogTime = now;
+            log.warn(logPrefix + "Event buffer is full, throttling CEP receivers. Throttled for " +
+                    TimeUnit.NANOSECONDS.toMillis(total) + "ms in total");
+        }
+    }
 
-    class Registrar implements Runnable {
-        private String managerHost;
-        private int managerPort;
+
+    @Override
+    public void close() {
+        if (heartbeat != null) {
+            heartbeat.cancel(false);
+        }
+        if (tcpEventServer != null) {
+            tcpEventServer.shutdown();
+            PortAllocator.release(listeningPort);
+        }
+        if (inputThroughputProbe != null) {
+            inputThroughputProbe.stopSampling();
+            outputThroughputProbe.stopSampling();
+        }
+    }
+
+    class Registrar implements ManagerHeartbeatScheduler.Registration {
+        private final EndpointLoadSampler loadSampler = new EndpointLoadSampler(inputThroughputProbe);
 
         @Override
-        public void run() {
-            log.info(logPrefix + "Registering Event Receiver Spout for " + thisHostIp + ":" + listeningPort);
-
-            // Infinitely call register. Each register call will act as a heartbeat
-            while (true) {
-                if (registerStormReceiverWithStormMangerService()) {
-                    while (true) {
-                        TTransport transport = null;
-                        try {
-                            transport = new TSocket(managerHost, managerPort);
-                            TProtocol protocol = new TBinaryProtocol(transport);
-                            transport.open();
-
-                            StormManagerService.Client client = new StormManagerService.Client(protocol);
-                            client.registerStormReceiver(tenantId, executionPlanName, thisHostIp, listeningPort);
-                            if (log.isDebugEnabled()) {
-                                log.debug(logPrefix + "Successfully registered Event Receiver Spout for " +
-                                        thisHostIp + ":" + listeningPort);
-                            }
-                            try {
-                                Thread.sleep(heartbeatInterval);
-                            } catch (InterruptedException e1) {
-                                continue;
-                            }
-                        } catch (Exception e) {
-                            log.error(logPrefix + "Error in registering Event Receiver Spout for " + thisHostIp + ":" +
-                                    listeningPort + " with manager " + managerHost + ":" + managerPort + ". Trying next " +
-                                    "manager after " + heartbeatInterval + "ms", e);
-                            break;
-                        } finally {
-                            if (transport != null) {
-                                transport.close();
-                            }
-                        }
-                    }
-                } else {
-                    log.error(logPrefix + "Error registering Event Receiver Spout with given set of manager nodes. " +
-                            "Retrying after " + heartbeatInterval + "ms");
-                }
-                try {
-                    Thread.sleep(heartbeatInterval);
-                } catch (InterruptedException e1) {
-                    continue;
-                }
-            }
+        public void register(StormManagerService.Client client) throws TException {
+            client.registerStormReceiver(tenantId, executionPlanName, thisHostIp, listeningPort, storedEvents.size(),
+                    loadSampler.sampleEventsPerSecond(), EndpointLoadSampler.getCpuLoad());
         }
 
-        private boolean registerStormReceiverWithStormMangerService() {
-            TTransport transport = null;
-            for (HostAndPort endpoint : stormDeploymentConfig.getManagers()) {
-                try {
-                    transport = new TSocket(endpoint.getHostName(), endpoint.getPort());
-                    TProtocol protocol = new TBinaryProtocol(transport);
-                    transport.open();
-
-                    StormManagerService.Client client = new StormManagerService.Client(protocol);
-                    client.registerStormReceiver(tenantId, executionPlanName, thisHostIp, listeningPort);
-
-                    log.info(logPrefix + "Successfully registered Event Receiver Spout for " + thisHostIp + ":" + listeningPort
-                            + " with manager service at " + endpoint.getHostName() + ":" + endpoint.getPort());
-
-                    managerHost = endpoint.getHostName();
-                    managerPort = endpoint.getPort();
-                    return true;
-                } catch (Exception e) {
-                    log.error(logPrefix + "Error in registering Event Receiver Spout for " + thisHostIp + ":" +
-                            listeningPort + " with manager " + endpoint.getHostName() + ":" + endpoint.getPort() +
-                            ", Trying next manager.", e);
-                    continue;
-                } finally {
-                    if (transport != null) {
-                        transport.close();
-                    }
-                }
-            }
-            return false;
+        @Override
+        public String getDescription() {
+            return "Event Receiver Spout for " + thisHostIp + ":" + listeningPort;
+        }
+
+        @Override
+        public String getLogPrefix() {
+            return logPrefix;
         }
     }
 }
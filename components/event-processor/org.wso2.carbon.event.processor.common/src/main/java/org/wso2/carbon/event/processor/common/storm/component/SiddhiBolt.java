@@ -15,14 +15,19 @@
  */
 package org.wso2.carbon.event.processor.common.storm.component;
 
+import backtype.storm.Config;
+import backtype.storm.Constants;
+import backtype.storm.task.OutputCollector;
 import backtype.storm.task.TopologyContext;
-import backtype.storm.topology.BasicOutputCollector;
 import backtype.storm.topology.OutputFieldsDeclarer;
-import backtype.storm.topology.base.BaseBasicBolt;
+import backtype.storm.topology.base.BaseRichBolt;
 import backtype.storm.tuple.Fields;
 import backtype.storm.tuple.Tuple;
-import org.apache.commons.lang.ArrayUtils;
 import org.apache.log4j.Logger;
+import org.wso2.carbon.event.processor.common.storm.checkpoint.Checkpointer;
+import org.wso2.carbon.event.processor.common.storm.checkpoint.SnapshotStore;
+import org.wso2.carbon.event.processor.common.storm.event.TupleCodec;
+import org.wso2.carbon.event.processor.common.util.DistributedProperties;
 import org.wso2.carbon.event.processor.common.util.ThroughputProbe;
 import org.wso2.carbon.event.processor.manager.commons.utils.Utils;
 import org.wso2.siddhi.core.ExecutionPlanRuntime;
@@ -34,16 +39,40 @@ import org.wso2.siddhi.query.api.definition.Attribute;
 import org.wso2.siddhi.query.api.definition.StreamDefinition;
 import org.wso2.siddhi.query.compiler.SiddhiCompiler;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
- * Bold which runs Siddhi engine
+ * Bold which runs Siddhi engine. Optionally accumulates consecutive incoming events of the same stream and sends them
+ * to Siddhi as a batch, which is flushed when full, when an event of another stream arrives, when its oldest event
+ * exceeds the batch latency or on a tick tuple. Hence Siddhi receives the events in their arrival order across
+ * streams, as joins, patterns and sequences require.
+ * <p/>
+ * With checkpointing, the bolt periodically takes a snapshot of the Siddhi runtime between tuples and stores it from a
+ * background thread, acknowledging the tuples processed before the snapshot once it is stored. Tuples emitted while
+ * processing input tuples are anchored to them, whereas those emitted by Siddhi's own threads, e.g. of time windows,
+ * are not anchored. A restarted task restores the latest snapshot in prepare, and the tuples
+ * processed after it time out and are replayed by the event receiver spouts.
  */
 
-public class SiddhiBolt extends BaseBasicBolt {
+public class SiddhiBolt extends BaseRichBolt {
+    private static final ExecutorService snapshotWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "SiddhiBoltSnapshotWriter");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     private final String name;
     private transient Logger log = Logger.getLogger(SiddhiBolt.class);
     private transient SiddhiManager siddhiManager;
@@ -61,10 +90,44 @@ public class SiddhiBolt extends BaseBasicBolt {
      */
     private String query;
 
-    private BasicOutputCollector collector;
+    private transient OutputCollector collector;
     private String logPrefix;
 
     private transient ExecutionPlanRuntime executionPlanRuntime;
+    /**
+     * Input handler and reusable events of each input stream
+     */
+    private transient Map<String, InputStreamBatch> inputStreamBatches;
+    /**
+     * The only batch holding events not yet sent to Siddhi, null if none
+     */
+    private transient InputStreamBatch pendingBatch;
+
+    private final int batchSize;
+    private final long batchMaxLatency;
+
+    private final long checkpointInterval;
+    /**
+     * Store of the snapshots, null if checkpointing is disabled
+     */
+    private final SnapshotStore snapshotStore;
+    private final String topologyName;
+    /**
+     * Bolt name and hash of its Siddhi queries and stream definitions, so that the snapshots of another version of
+     * the bolt are not restored
+     */
+    private final String snapshotKeyPrefix;
+    private transient String snapshotKey;
+    private transient Checkpointer<Tuple> checkpointer;
+    /**
+     * Tuples of the events being sent to Siddhi, which the emitted tuples are anchored to. Only used by the executor
+     * thread.
+     */
+    private transient List<Tuple> anchors;
+    /**
+     * Thread executing the tuples, the only one emitting anchored tuples
+     */
+    private transient volatile Thread executorThread;
 
     private transient ThroughputProbe inputThroughputProbe;
     private transient ThroughputProbe emitThroughputProbe;
@@ -75,17 +138,46 @@ public class SiddhiBolt extends BaseBasicBolt {
      * @param inputStreamDefinitions  - All stream and partition inputStreamDefinitions
      * @param query                   - Siddhi query
      * @param outputSiddhiDefinitions - The names of streams that will be output from this particular bolt
+     * @param topologyName            - Name of the Storm topology, under which the snapshots are stored
      */
     public SiddhiBolt(String name, List<String> inputStreamDefinitions, String query,
-                      List<String> outputSiddhiDefinitions, String executionPlanName, int tenantId) {
+                      List<String> outputSiddhiDefinitions, String executionPlanName, int tenantId,
+                      String topologyName) {
         this.inputStreamDefinitions = inputStreamDefinitions;
         this.query = query;
         this.outputStreamDefinitions = outputSiddhiDefinitions;
         this.name = name;
         this.logPrefix = "[" + tenantId + ":" + executionPlanName + ":" + name + "] ";
+        this.batchSize = Math.max(1, DistributedProperties.getInt(DistributedProperties.BOLT_BATCH_SIZE,
+                DistributedProperties.DEFAULT_BOLT_BATCH_SIZE));
+        this.batchMaxLatency = DistributedProperties.getLong(DistributedProperties.BOLT_BATCH_MAX_LATENCY,
+                DistributedProperties.DEFAULT_BOLT_BATCH_MAX_LATENCY);
+        this.checkpointInterval = DistributedProperties.getLong(DistributedProperties.CHECKPOINT_INTERVAL,
+                DistributedProperties.DEFAULT_CHECKPOINT_INTERVAL);
+        this.snapshotStore = createSnapshotStore();
+        this.topologyName = topologyName;
+        this.snapshotKeyPrefix = name + "-" + Integer.toHexString(Utils.constructQueryExpression(
+                inputStreamDefinitions, outputSiddhiDefinitions, query).hashCode());
         init();
     }
 
+    /**
+     * @return the snapshot store selected with the checkpoint store property, or null if checkpointing is disabled
+     */
+    public static SnapshotStore createSnapshotStore() {
+        if (DistributedProperties.getLong(DistributedProperties.CHECKPOINT_INTERVAL,
+                DistributedProperties.DEFAULT_CHECKPOINT_INTERVAL) <= 0) {
+            return null;
+        }
+        String storeClassName = DistributedProperties.getString(DistributedProperties.CHECKPOINT_STORE,
+                DistributedProperties.DEFAULT_CHECKPOINT_STORE);
+        try {
+            return (SnapshotStore) Class.forName(storeClassName).newInstance();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Cannot create checkpoint store " + storeClassName, e);
+        }
+    }
+
     /**
      * Bolt get saved and reloaded, this to redo the configurations.
      */
@@ -102,6 +194,7 @@ public class SiddhiBolt extends BaseBasicBolt {
         String fullQueryExpression = Utils.constructQueryExpression(inputStreamDefinitions, outputStreamDefinitions,
                 query);
         executionPlanRuntime = siddhiManager.createExecutionPlanRuntime(fullQueryExpression);
+        inputStreamBatches = new HashMap<String, InputStreamBatch>();
 
         for (String outputStreamDefinition : outputStreamDefinitions) {
             final StreamDefinition outputSiddhiDefinition = SiddhiCompiler.parseStreamDefinition(outputStreamDefinition);
@@ -113,13 +206,16 @@ public class SiddhiBolt extends BaseBasicBolt {
                 @Override
                 public void receive(Event[] events) {
                     for (Event event : events) {
-                        Object[] eventData = Arrays.copyOf(event.getData(), event.getData().length + 1);
-                        eventData[event.getData().length] = event.getTimestamp();
-                        collector.emit(outputSiddhiDefinition.getId(), Arrays.asList(eventData));
+                        List<Object> values = TupleCodec.toTupleValues(event.getTimestamp(), event.getData());
+                        if (Thread.currentThread() == executorThread && anchors != null) {
+                            collector.emit(outputSiddhiDefinition.getId(), anchors, values);
+                        } else {
+                            collector.emit(outputSiddhiDefinition.getId(), values);
+                        }
 
                         if (log.isDebugEnabled()) {
                             log.debug(logPrefix + "Emitted Event:" + outputSiddhiDefinition.getId() +
-                                    ":" + Arrays.deepToString(eventData) + "@" + event.getTimestamp());
+                                    ":" + Arrays.deepToString(event.getData()) + "@" + event.getTimestamp());
                         }
 
                         emitThroughputProbe.update();
@@ -131,39 +227,147 @@ public class SiddhiBolt extends BaseBasicBolt {
     }
 
     @Override
-    public void prepare(Map stormConf, TopologyContext context) {
-        super.prepare(stormConf, context);
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        this.collector = collector;
+        this.executorThread = Thread.currentThread();
+        if (siddhiManager == null) {
+            init();
+        }
+        if (snapshotStore != null) {
+            // Partitioned state only matches the task index for the same number of tasks
+            snapshotKey = snapshotKeyPrefix + "-" + context.getComponentTasks(context.getThisComponentId()).size() +
+                    "-" + context.getThisTaskIndex();
+            checkpointer = new Checkpointer<Tuple>(snapshotStore, topologyName, snapshotKey, checkpointInterval,
+                    snapshotWriter, new Checkpointer.Task<Tuple>() {
+                @Override
+                public byte[] snapshot() throws InterruptedException {
+                    flushAll();
+                    return executionPlanRuntime.snapshot();
+                }
+
+                @Override
+                public void ack(Tuple tuple) {
+                    SiddhiBolt.this.collector.ack(tuple);
+                }
+            }, logPrefix, System.currentTimeMillis());
+            restore();
+        }
+    }
+
+    private void restore() {
+        try {
+            byte[] snapshot = snapshotStore.load(topologyName, snapshotKey);
+            if (snapshot != null) {
+                executionPlanRuntime.restore(snapshot);
+                log.info(logPrefix + "Restored Siddhi runtime from snapshot " + snapshotKey);
+            }
+        } catch (IOException e) {
+            log.error(logPrefix + "Cannot load snapshot " + snapshotKey + ", starting with empty state", e);
+        } catch (RuntimeException e) {
+            log.error(logPrefix + "Cannot restore snapshot " + snapshotKey + ", starting with empty state", e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        int tickFrequency = Integer.MAX_VALUE;
+        if (batchSize > 1) {
+            // Tick tuples flush batches of streams which stopped receiving events. The latency is at least a second, as
+            // checked when submitting the topology, and the ticks are no further apart
+            tickFrequency = Math.max(1, (int) (batchMaxLatency / 1000));
+        }
+        if (snapshotStore != null) {
+            // and take the snapshots of bolts which stopped receiving events
+            tickFrequency = Math.min(tickFrequency, Math.max(1, (int) (checkpointInterval / 1000)));
+        }
+        if (tickFrequency != Integer.MAX_VALUE) {
+            Map<String, Object> conf = new HashMap<String, Object>();
+            conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, tickFrequency);
+            return conf;
+        }
+        return null;
     }
 
     @Override
-    public void execute(Tuple tuple, BasicOutputCollector collector) {
+    public void execute(Tuple tuple) {
         if (siddhiManager == null) {
             init();
         }
-        inputThroughputProbe.update();
 
         try {
-            this.collector = collector;
-            InputHandler inputHandler = executionPlanRuntime.getInputHandler(tuple.getSourceStreamId());
-            Object[] dataArray = tuple.getValues().toArray();
-            long timestamp = (Long) dataArray[dataArray.length - 1];
-            dataArray = ArrayUtils.remove(dataArray, dataArray.length - 1);
+            if (isTickTuple(tuple)) {
+                flushAll();
+                collector.ack(tuple);
+                if (snapshotStore != null) {
+                    checkpointer.checkpoint(System.currentTimeMillis());
+                }
+                return;
+            }
+            inputThroughputProbe.update();
+
+            String streamId = tuple.getSourceStreamId();
+            InputStreamBatch batch = inputStreamBatches.get(streamId);
+            if (batch == null) {
+                InputHandler inputHandler = executionPlanRuntime.getInputHandler(streamId);
+                if (inputHandler == null) {
+                    log.warn(logPrefix + "Event received for unknown stream " + streamId + ". Discarding" +
+                            " the Event: " + streamId + ":" + Arrays.deepToString(TupleCodec.getData(tuple)) + "@" +
+                            TupleCodec.getTimestamp(tuple));
+                    collector.ack(tuple);
+                    return;
+                }
+                batch = new InputStreamBatch(inputHandler, TupleCodec.getDataSize(tuple));
+                inputStreamBatches.put(streamId, batch);
+            }
+
+            if (pendingBatch != batch) {
+                if (pendingBatch != null) {
+                    pendingBatch.flush();
+                }
+                pendingBatch = batch;
+            }
+            Event event = batch.add(tuple);
+            event.setTimestamp(TupleCodec.getTimestamp(tuple));
+            TupleCodec.copyData(tuple, event.getData());
 
             if (log.isDebugEnabled()) {
-                log.debug(logPrefix + "Received Event: " + tuple.getSourceStreamId() + ":" + Arrays.deepToString(dataArray) + "@" + timestamp);
+                log.debug(logPrefix + "Received Event: " + streamId + ":" + Arrays.deepToString(event.getData()) + "@" + event.getTimestamp());
             }
 
-            if (inputHandler != null) {
-                inputHandler.send(timestamp, dataArray);
+            if (batch.isFull()) {
+                batch.flush();
+            }
+            if (batchSize > 1) {
+                flushExpired();
+            }
+            if (snapshotStore != null) {
+                checkpointer.add(tuple);
+                checkpointer.checkpoint(System.currentTimeMillis());
             } else {
-                log.warn(logPrefix + "Event received for unknown stream " + tuple.getSourceStreamId() + ". Discarding" +
-                        " the Event: " + tuple.getSourceStreamId() + ":" + Arrays.deepToString(dataArray) + "@" + timestamp);
+                collector.ack(tuple);
             }
         } catch (InterruptedException e) {
             log.error(e);
         }
     }
 
+    private boolean isTickTuple(Tuple tuple) {
+        return Constants.SYSTEM_COMPONENT_ID.equals(tuple.getSourceComponent()) &&
+                Constants.SYSTEM_TICK_STREAM_ID.equals(tuple.getSourceStreamId());
+    }
+
+    private void flushAll() throws InterruptedException {
+        if (pendingBatch != null) {
+            pendingBatch.flush();
+        }
+    }
+
+    private void flushExpired() throws InterruptedException {
+        if (pendingBatch != null && System.currentTimeMillis() - pendingBatch.firstEventTime >= batchMaxLatency) {
+            pendingBatch.flush();
+        }
+    }
+
     @Override
     public void declareOutputFields(OutputFieldsDeclarer declarer) {
         if (siddhiManager == null) {
@@ -177,7 +381,7 @@ public class SiddhiBolt extends BaseBasicBolt {
                 throw new RuntimeException(logPrefix + "Cannot find exported stream : " + siddhiOutputDefinition.getId());
             }
             List<String> list = new ArrayList<String>();
-            list.add(0,"_timestamp");
+            list.add(TupleCodec.TIMESTAMP_FIELD_NAME);
             for (Attribute attribute : siddhiOutputDefinition.getAttributeList()) {
                 list.add(attribute.getName());
             }
@@ -186,4 +390,69 @@ public class SiddhiBolt extends BaseBasicBolt {
             log.info(logPrefix + "Declaring output field for stream :" + siddhiOutputDefinition.getId());
         }
     }
+
+    /**
+     * Holds the input handler of a stream and a set of reusable events. Siddhi copies events on arrival, hence the
+     * same events are refilled for each batch.
+     */
+    private class InputStreamBatch {
+        private final InputHandler inputHandler;
+        private final Event[] events;
+        /**
+         * Tuples of the events, kept for anchoring only when checkpointing
+         */
+        private final Tuple[] tuples;
+        private int count = 0;
+        private long firstEventTime;
+
+        private InputStreamBatch(InputHandler inputHandler, int dataSize) {
+            this.inputHandler = inputHandler;
+            this.events = new Event[batchSize];
+            for (int i = 0; i < batchSize; i++) {
+                events[i] = new Event(dataSize);
+            }
+            this.tuples = snapshotStore != null ? new Tuple[batchSize] : null;
+        }
+
+        private Event add(Tuple tuple) {
+            if (count == 0) {
+                firstEventTime = System.currentTimeMillis();
+            }
+            if (tuples != null) {
+                tuples[count] = tuple;
+            }
+            return events[count++];
+        }
+
+        private boolean isFull() {
+            return count == events.length;
+        }
+
+        private void flush() throws InterruptedException {
+            if (count == 0) {
+                return;
+            }
+            if (tuples != null) {
+                // Copied, as the tuples are cleared for the next batch
+                anchors = count == 1 ? Collections.singletonList(tuples[0]) :
+                        Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(tuples, count)));
+            }
+            try {
+                if (count == 1) {
+                    inputHandler.send(events[0]);
+                } else if (count == events.length) {
+                    inputHandler.send(events);
+                } else {
+                    inputHandler.send(Arrays.copyOf(events, count));
+                }
+            } finally {
+                pendingBatch = null;
+                anchors = null;
+                if (tuples != null) {
+                    Arrays.fill(tuples, 0, count, null);
+                }
+                count = 0;
+            }
+        }
+    }
 }
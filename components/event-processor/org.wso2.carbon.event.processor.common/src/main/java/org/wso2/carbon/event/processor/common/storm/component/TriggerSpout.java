@@ -6,41 +6,87 @@ import backtype.storm.topology.OutputFieldsDeclarer;
 import backtype.storm.topology.base.BaseRichSpout;
 import backtype.storm.tuple.Fields;
 import org.apache.log4j.Logger;
-import org.wso2.siddhi.core.ExecutionPlanRuntime;
-import org.wso2.siddhi.core.SiddhiManager;
-import org.wso2.siddhi.core.event.Event;
-import org.wso2.siddhi.core.stream.output.StreamCallback;
+import org.quartz.CronExpression;
+import org.wso2.carbon.event.processor.common.storm.event.TupleCodec;
+import org.wso2.siddhi.query.api.definition.TriggerDefinition;
+import org.wso2.siddhi.query.compiler.SiddhiCompiler;
 
+import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Spout to hold a siddhi trigger. There will be one instance of this class per trigger.
- *
+ * <p/>
+ * Triggers fire the way Siddhi fires them: periodic triggers every period starting one period after the spout opens,
+ * 'start' triggers once when it opens, and other triggers at the times of their cron expression. The trigger
+ * definition is parsed when the topology is built, and the triggers of a worker are timed by a single shared thread,
+ * which only queues the trigger times. The events are emitted from nextTuple, as the output collector is not thread
+ * safe.
  */
 public class TriggerSpout extends BaseRichSpout {
     public static final String TRIGGER_TIME_FIELD_NAME = "triggered_time";
+    private static final String START_TRIGGER = "start";
+
+    private static final ScheduledExecutorService triggerScheduler =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "TriggerSpoutScheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
     String triggerId;
-    String triggerDefinition;
+    /**
+     * Period in milliseconds of a periodic trigger, null otherwise
+     */
+    private final Long atEvery;
+    /**
+     * 'start' or the cron expression of a trigger which is not periodic
+     */
+    private final String at;
     SpoutOutputCollector outputCollector;
-    private transient SiddhiManager siddhiManager;
-    private transient ExecutionPlanRuntime executionPlanRuntime;
+    private transient ConcurrentLinkedQueue<Long> dueTriggerTimes;
+    private transient volatile ScheduledFuture<?> scheduledTrigger;
+    private transient volatile boolean closed;
     private static transient Logger log = Logger.getLogger(TriggerSpout.class);
     String logPrefix;
 
     public  TriggerSpout(String triggerId, String triggerDefinition, String executionPlanName, int tenantId){
         this.triggerId  = triggerId;
-        this.triggerDefinition = triggerDefinition;
         this.logPrefix = "[" + tenantId + ":" + executionPlanName + ":" + triggerId + "] ";
+        TriggerDefinition definition = SiddhiCompiler.parse(triggerDefinition).getTriggerDefinitionMap().get(triggerId);
+        if (definition == null) {
+            throw new IllegalArgumentException(logPrefix + "Trigger definition of " + triggerId + " not found in " +
+                    triggerDefinition);
+        }
+        this.atEvery = definition.getAtEvery();
+        this.at = definition.getAt();
+        if (atEvery == null && !START_TRIGGER.equals(at)) {
+            try {
+                new CronExpression(at);
+            } catch (ParseException e) {
+                throw new IllegalArgumentException(logPrefix + "Invalid cron expression '" + at + "' of trigger " +
+                        triggerId, e);
+            }
+        }
     }
 
     @Override
     public void declareOutputFields(OutputFieldsDeclarer outputFieldsDeclarer) {
         List<String> list = new ArrayList<String>();
-        list.add(0,"_timestamp");
-        list.add(0, TRIGGER_TIME_FIELD_NAME);
+        list.add(TupleCodec.TIMESTAMP_FIELD_NAME);
+        list.add(TRIGGER_TIME_FIELD_NAME);
         Fields fields = new Fields(list);
 
         outputFieldsDeclarer.declareStream(triggerId, fields);
@@ -49,31 +95,62 @@ public class TriggerSpout extends BaseRichSpout {
     @Override
     public void open(Map map, TopologyContext topologyContext, final SpoutOutputCollector spoutOutputCollector) {
         this.outputCollector = spoutOutputCollector;
+        this.dueTriggerTimes = new ConcurrentLinkedQueue<Long>();
 
-        siddhiManager = new SiddhiManager();
-        String fullQueryExpression = triggerDefinition;
-        executionPlanRuntime = siddhiManager.createExecutionPlanRuntime(fullQueryExpression);
-
-        executionPlanRuntime.addCallback(triggerId, new StreamCallback() {
-
-                @Override
-                public void receive(Event[] events) {
-                    for (Event event : events) {
-                        Object[] eventData = Arrays.copyOf(event.getData(), event.getData().length + 1);
-                        eventData[event.getData().length] = event.getTimestamp();
-                        outputCollector.emit(triggerId, Arrays.asList(eventData));
+        Runnable fire = new Runnable() {
+            @Override
+            public void run() {
+                dueTriggerTimes.add(System.currentTimeMillis());
+            }
+        };
+        if (atEvery != null) {
+            scheduledTrigger = triggerScheduler.scheduleAtFixedRate(fire, atEvery, atEvery, TimeUnit.MILLISECONDS);
+        } else if (START_TRIGGER.equals(at)) {
+            fire.run();
+        } else {
+            try {
+                scheduleCronTrigger(new CronExpression(at));
+            } catch (ParseException e) {
+                // Validated when the spout was created
+                log.error(logPrefix + "Invalid cron expression '" + at + "'", e);
+            }
+        }
+    }
 
-                        if (log.isDebugEnabled()) {
-                            log.debug(logPrefix + "Trigger Event Emitted :" + Arrays.deepToString(eventData));
-                        }
-                    }
-                }
-            });
-        executionPlanRuntime.start();
+    /**
+     * Schedules the next firing of the cron trigger, which schedules the one after it when fired.
+     */
+    private void scheduleCronTrigger(final CronExpression cronExpression) {
+        Date nextTime = cronExpression.getNextValidTimeAfter(new Date());
+        if (nextTime == null || closed) {
+            return;
+        }
+        scheduledTrigger = triggerScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                dueTriggerTimes.add(System.currentTimeMillis());
+                scheduleCronTrigger(cronExpression);
+            }
+        }, nextTime.getTime() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void nextTuple() {
+        Long triggerTime;
+        while ((triggerTime = dueTriggerTimes.poll()) != null) {
+            outputCollector.emit(triggerId, TupleCodec.toTupleValues(triggerTime, new Object[]{triggerTime}));
 
+            if (log.isDebugEnabled()) {
+                log.debug(logPrefix + "Trigger Event Emitted :[" + triggerTime + "]@" + triggerTime);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (scheduledTrigger != null) {
+            scheduledTrigger.cancel(false);
+        }
     }
 }
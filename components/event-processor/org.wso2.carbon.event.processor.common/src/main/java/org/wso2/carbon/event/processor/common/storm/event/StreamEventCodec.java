@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.event.processor.common.storm.event;
+
+import org.wso2.siddhi.query.api.definition.Attribute;
+import org.wso2.siddhi.query.api.definition.StreamDefinition;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compact binary encoding of events driven by the Siddhi stream definitions.
+ * <ul>
+ * <li>Streams are referred by an integer index. The writer sends its stream table once with writeStreamTable() and
+ * the reader maps those indexes to its own definitions with readStreamTable(), which requires the attribute names and
+ * types of each stream to match.</li>
+ * <li>Attributes are written with their primitive encoding. Integers, longs, lengths and timestamps (as the delta
+ * from the previous event) are written as variable length integers and nulls as a bitmap.</li>
+ * <li>Optionally repeated strings are replaced by a reference to a dictionary built up on both sides.</li>
+ * </ul>
+ * An instance keeps state of one direction of one connection, hence it is not thread safe.
+ */
+public class StreamEventCodec {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAX_DICTIONARY_SIZE = 4096;
+
+    private final Map<String, Integer> streamIndexes = new HashMap<String, Integer>();
+    private final Map<String, StreamDefinition> localDefinitions = new HashMap<String, StreamDefinition>();
+    private StreamDefinition[] definitions;
+    private Attribute.Type[][] attributeTypes;
+    private final boolean dictionaryEncoding;
+
+    private final Map<String, Integer> encodeDictionary = new HashMap<String, Integer>();
+    private final List<String> decodeDictionary = new ArrayList<String>();
+    private long lastTimestamp = 0;
+
+    /**
+     * @param streamDefinitions  definitions of all streams sent or received through this codec
+     * @param dictionaryEncoding whether to replace repeated string values with dictionary references
+     */
+    public StreamEventCodec(Collection<StreamDefinition> streamDefinitions, boolean dictionaryEncoding) {
+        this.dictionaryEncoding = dictionaryEncoding;
+        // Sorting by id, so that both ends having the same definitions derive the same indexes
+        TreeMap<String, StreamDefinition> sortedDefinitions = new TreeMap<String, StreamDefinition>();
+        for (StreamDefinition definition : streamDefinitions) {
+            sortedDefinitions.put(definition.getId(), definition);
+        }
+        localDefinitions.putAll(sortedDefinitions);
+        setDefinitions(new ArrayList<StreamDefinition>(sortedDefinitions.values()));
+    }
+
+    private void setDefinitions(List<StreamDefinition> indexedDefinitions) {
+        definitions = indexedDefinitions.toArray(new StreamDefinition[indexedDefinitions.size()]);
+        attributeTypes = new Attribute.Type[definitions.length][];
+        streamIndexes.clear();
+        for (int i = 0; i < definitions.length; i++) {
+            streamIndexes.put(definitions[i].getId(), i);
+            List<Attribute> attributes = definitions[i].getAttributeList();
+            attributeTypes[i] = new Attribute.Type[attributes.size()];
+            for (int j = 0; j < attributes.size(); j++) {
+                attributeTypes[i][j] = attributes.get(j).getType();
+            }
+        }
+    }
+
+    /**
+     * Writes the stream id to index mapping used by this codec, along with the attributes of each stream. Must be sent
+     * once per connection before any event.
+     */
+    public void writeStreamTable(DataOutput out) throws IOException {
+        writeVarInt(out, definitions.length);
+        for (StreamDefinition definition : definitions) {
+            writeString(out, definition.getId());
+            List<Attribute> attributes = definition.getAttributeList();
+            writeVarInt(out, attributes.size());
+            for (Attribute attribute : attributes) {
+                writeString(out, attribute.getName());
+                writeString(out, attribute.getType().name());
+            }
+        }
+    }
+
+    /**
+     * Reads the stream table of the remote writer and adopts its indexes.
+     *
+     * @throws IOException if the writer refers to a stream unknown to this codec or with a different definition
+     */
+    public void readStreamTable(DataInput in) throws IOException {
+        int streamCount = readVarInt(in);
+        List<StreamDefinition> indexedDefinitions = new ArrayList<StreamDefinition>(streamCount);
+        for (int i = 0; i < streamCount; i++) {
+            String streamId = readString(in);
+            int attributeCount = readVarInt(in);
+            StreamDefinition definition = localDefinitions.get(streamId);
+            if (definition == null) {
+                throw new IOException("Unknown stream '" + streamId + "' in the stream table");
+            }
+            List<Attribute> attributes = definition.getAttributeList();
+            if (attributes.size() != attributeCount) {
+                throw new IOException("Stream '" + streamId + "' has " + attributeCount + " attributes at the " +
+                        "writer, but " + attributes.size() + " attributes locally");
+            }
+            for (Attribute attribute : attributes) {
+                String name = readString(in);
+                String type = readString(in);
+                if (!attribute.getName().equals(name) || !attribute.getType().name().equals(type)) {
+                    throw new IOException("Stream '" + streamId + "' has attribute " + name + " " + type + " at the " +
+                            "writer, but " + attribute.getName() + " " + attribute.getType() + " locally");
+                }
+            }
+            indexedDefinitions.add(definition);
+        }
+        setDefinitions(indexedDefinitions);
+        encodeDictionary.clear();
+        decodeDictionary.clear();
+        lastTimestamp = 0;
+    }
+
+    public void encode(String streamId, long timestamp, Object[] data, DataOutput out) throws IOException {
+        Integer streamIndex = streamIndexes.get(streamId);
+        if (streamIndex == null) {
+            throw new IOException("Stream '" + streamId + "' is not registered with the codec");
+        }
+        Attribute.Type[] types = attributeTypes[streamIndex];
+        if (data.length != types.length) {
+            throw new IOException("Stream '" + streamId + "' expects " + types.length + " attributes, but event has "
+                    + data.length);
+        }
+        writeVarInt(out, streamIndex);
+        writeVarLong(out, timestamp - lastTimestamp);
+        lastTimestamp = timestamp;
+
+        // Null bitmap
+        for (int i = 0; i < types.length; i += 8) {
+            int bits = 0;
+            for (int j = i; j < i + 8 && j < types.length; j++) {
+                if (data[j] == null) {
+                    bits |= 1 << (j - i);
+                }
+            }
+            out.writeByte(bits);
+        }
+
+        for (int i = 0; i < types.length; i++) {
+            Object value = data[i];
+            if (value == null) {
+                continue;
+            }
+            switch (types[i]) {
+                case INT:
+                    writeVarInt(out, ((Number) value).intValue());
+                    break;
+                case LONG:
+                    writeVarLong(out, ((Number) value).longValue());
+                    break;
+                case FLOAT:
+                    out.writeFloat(((Number) value).floatValue());
+                    break;
+                case DOUBLE:
+                    out.writeDouble(((Number) value).doubleValue());
+                    break;
+                case BOOL:
+                    out.writeBoolean((Boolean) value);
+                    break;
+                case STRING:
+                    writeStringValue(out, (String) value);
+                    break;
+                default:
+                    throw new IOException("Attribute type " + types[i] + " of stream '" + streamId + "' is not " +
+                            "supported by the codec");
+            }
+        }
+    }
+
+    public Event decode(DataInput in) throws IOException {
+        int streamIndex = readVarInt(in);
+        if (streamIndex < 0 || streamIndex >= definitions.length) {
+            throw new IOException("Invalid stream index " + streamIndex);
+        }
+        Attribute.Type[] types = attributeTypes[streamIndex];
+        long timestamp = lastTimestamp + readVarLong(in);
+        lastTimestamp = timestamp;
+
+        boolean[] nulls = new boolean[types.length];
+        for (int i = 0; i < types.length; i += 8) {
+            int bits = in.readUnsignedByte();
+            for (int j = i; j < i + 8 && j < types.length; j++) {
+                nulls[j] = (bits & (1 << (j - i))) != 0;
+            }
+        }
+
+        Object[] data = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            if (nulls[i]) {
+                continue;
+            }
+            switch (types[i]) {
+                case INT:
+                    data[i] = readVarInt(in);
+                    break;
+                case LONG:
+                    data[i] = readVarLong(in);
+                    break;
+                case FLOAT:
+                    data[i] = in.readFloat();
+                    break;
+                case DOUBLE:
+                    data[i] = in.readDouble();
+                    break;
+                case BOOL:
+                    data[i] = in.readBoolean();
+                    break;
+                case STRING:
+                    data[i] = readStringValue(in);
+                    break;
+                default:
+                    throw new IOException("Attribute type " + types[i] + " of stream '" +
+                            definitions[streamIndex].getId() + "' is not supported by the codec");
+            }
+        }
+        return new Event(timestamp, data, definitions[streamIndex].getId());
+    }
+
+    private void writeStringValue(DataOutput out, String value) throws IOException {
+        if (!dictionaryEncoding) {
+            writeString(out, value);
+            return;
+        }
+        // 0 is followed by a literal, any other value n refers to the (n-1)th dictionary entry
+        Integer code = encodeDictionary.get(value);
+        if (code != null) {
+            writeVarInt(out, code + 1);
+        } else {
+            writeVarInt(out, 0);
+            writeString(out, value);
+            if (encodeDictionary.size() < MAX_DICTIONARY_SIZE) {
+                encodeDictionary.put(value, encodeDictionary.size());
+            }
+        }
+    }
+
+    private String readStringValue(DataInput in) throws IOException {
+        if (!dictionaryEncoding) {
+            return readString(in);
+        }
+        int code = readVarInt(in);
+        if (code == 0) {
+            String value = readString(in);
+            if (decodeDictionary.size() < MAX_DICTIONARY_SIZE) {
+                decodeDictionary.add(value);
+            }
+            return value;
+        }
+        if (code > decodeDictionary.size()) {
+            throw new IOException("Invalid dictionary reference " + code);
+        }
+        return decodeDictionary.get(code - 1);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in);
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Writes a zig-zag encoded variable length integer, so that small negative values also take few bytes.
+     */
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        int encoded = (value << 1) ^ (value >> 31);
+        while ((encoded & ~0x7F) != 0) {
+            out.writeByte((encoded & 0x7F) | 0x80);
+            encoded >>>= 7;
+        }
+        out.writeByte(encoded);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int encoded = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            encoded |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (encoded >>> 1) ^ -(encoded & 1);
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        long encoded = (value << 1) ^ (value >> 63);
+        while ((encoded & ~0x7FL) != 0) {
+            out.writeByte((int) ((encoded & 0x7F) | 0x80));
+            encoded >>>= 7;
+        }
+        out.writeByte((int) encoded);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long encoded = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readUnsignedByte();
+            encoded |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (encoded >>> 1) ^ -(encoded & 1);
+            }
+        }
+        throw new IOException("Malformed variable length long");
+    }
+}
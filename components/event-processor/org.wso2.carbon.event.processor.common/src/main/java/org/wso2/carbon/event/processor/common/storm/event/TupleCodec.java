@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.event.processor.common.storm.event;
+
+import backtype.storm.tuple.Tuple;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Converts events to and from Storm tuple values without copying the event data. The event timestamp always travels
+ * as the first tuple value, matching the "_timestamp" field declared first by all components, followed by the event
+ * attributes.
+ */
+public final class TupleCodec {
+    public static final String TIMESTAMP_FIELD_NAME = "_timestamp";
+    public static final int TIMESTAMP_INDEX = 0;
+
+    private TupleCodec() {
+    }
+
+    /**
+     * Creates tuple values backed by the given event data. The data array must not be modified after emitting.
+     */
+    public static List<Object> toTupleValues(long timestamp, Object[] data) {
+        return new EventValues(timestamp, data);
+    }
+
+    public static long getTimestamp(Tuple tuple) {
+        return tuple.getLong(TIMESTAMP_INDEX);
+    }
+
+    public static int getDataSize(Tuple tuple) {
+        return tuple.size() - 1;
+    }
+
+    /**
+     * Copies the event attributes of the tuple into the given array, which can be reused between tuples.
+     */
+    public static void copyData(Tuple tuple, Object[] data) {
+        for (int i = 0; i < data.length; i++) {
+            data[i] = tuple.getValue(i + 1);
+        }
+    }
+
+    public static Object[] getData(Tuple tuple) {
+        Object[] data = new Object[getDataSize(tuple)];
+        copyData(tuple, data);
+        return data;
+    }
+
+    /**
+     * Read only list view of an event as tuple values.
+     */
+    private static class EventValues extends AbstractList<Object> implements RandomAccess {
+        private final long timestamp;
+        private final Object[] data;
+
+        private EventValues(long timestamp, Object[] data) {
+            this.timestamp = timestamp;
+            this.data = data;
+        }
+
+        @Override
+        public Object get(int index) {
+            if (index == TIMESTAMP_INDEX) {
+                return timestamp;
+            }
+            return data[index - 1];
+        }
+
+        @Override
+        public int size() {
+            return data.length + 1;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.common.storm.grouping;
+
+import backtype.storm.generated.GlobalStreamId;
+import backtype.storm.grouping.CustomStreamGrouping;
+import backtype.storm.task.WorkerTopologyContext;
+import backtype.storm.tuple.Fields;
+import org.apache.log4j.Logger;
+import org.wso2.carbon.event.processor.common.util.DistributedProperties;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Groups the tuples of a partitioned stream by the values of one or more partition attributes, placing the target
+ * tasks on a consistent hash ring with virtual nodes so that keys spread evenly and most keys keep their task when the
+ * parallelism changes. Keys carrying a large share of the tuples are detected and logged, and can optionally be split
+ * between two tasks, sending each tuple of a hot key to the one which got fewer tuples from this task so far.
+ */
+public class ConsistentHashGrouping implements CustomStreamGrouping {
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = Logger.getLogger(ConsistentHashGrouping.class);
+    private static final long SPLIT_SALT = 0x9E3779B97F4A7C15L;
+
+    private final String[] keyFields;
+    private final int virtualNodes;
+    private final int hotKeyPercent;
+    private final int hotKeyWindow;
+    private final boolean splitHotKeys;
+
+    private transient String logPrefix;
+    private transient int[] keyIndexes;
+    private transient long[] ringHashes;
+    private transient int[] ringTargets;
+    private transient List<Integer>[] targetLists;
+    private transient long[] sentCounts;
+    private transient HotKeyDetector hotKeyDetector;
+
+    /**
+     * Creates a grouping configured by the grouping properties of DistributedProperties, which are read when the
+     * topology is built.
+     */
+    public ConsistentHashGrouping(String... keyFields) {
+        this(keyFields,
+                DistributedProperties.getInt(DistributedProperties.GROUPING_VIRTUAL_NODES,
+                        DistributedProperties.DEFAULT_GROUPING_VIRTUAL_NODES),
+                DistributedProperties.getInt(DistributedProperties.HOT_KEY_PERCENT,
+                        DistributedProperties.DEFAULT_HOT_KEY_PERCENT),
+                DistributedProperties.getInt(DistributedProperties.HOT_KEY_WINDOW,
+                        DistributedProperties.DEFAULT_HOT_KEY_WINDOW),
+                DistributedProperties.getBoolean(DistributedProperties.HOT_KEY_SPLIT,
+                        DistributedProperties.DEFAULT_HOT_KEY_SPLIT));
+    }
+
+    public ConsistentHashGrouping(String[] keyFields, int virtualNodes, int hotKeyPercent, int hotKeyWindow,
+                                  boolean splitHotKeys) {
+        this.keyFields = keyFields;
+        this.virtualNodes = Math.max(1, virtualNodes);
+        this.hotKeyPercent = hotKeyPercent;
+        this.hotKeyWindow = hotKeyWindow;
+        this.splitHotKeys = splitHotKeys;
+    }
+
+    @Override
+    public void prepare(WorkerTopologyContext context, GlobalStreamId stream, List<Integer> targetTasks) {
+        logPrefix = "[" + stream.get_componentId() + ":" + stream.get_streamId() + "] ";
+        Fields outputFields = context.getComponentOutputFields(stream.get_componentId(), stream.get_streamId());
+        keyIndexes = new int[keyFields.length];
+        for (int i = 0; i < keyFields.length; i++) {
+            keyIndexes[i] = outputFields.fieldIndex(keyFields[i]);
+        }
+        buildRing(targetTasks);
+    }
+
+    /**
+     * Builds the ring of the target tasks, given the indexes of the key attributes in the tuple values.
+     */
+    public void prepare(List<Integer> targetTasks, int... keyIndexes) {
+        this.keyIndexes = keyIndexes;
+        if (logPrefix == null) {
+            logPrefix = "";
+        }
+        buildRing(targetTasks);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void buildRing(List<Integer> targetTasks) {
+        int ringSize = targetTasks.size() * virtualNodes;
+        long[][] ring = new long[ringSize][];
+        for (int target = 0; target < targetTasks.size(); target++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                long hash = mix(((long) targetTasks.get(target) << 32) | node);
+                ring[target * virtualNodes + node] = new long[]{hash, target};
+            }
+        }
+        Arrays.sort(ring, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+            }
+        });
+        ringHashes = new long[ringSize];
+        ringTargets = new int[ringSize];
+        for (int i = 0; i < ringSize; i++) {
+            ringHashes[i] = ring[i][0];
+            ringTargets[i] = (int) ring[i][1];
+        }
+
+        targetLists = new List[targetTasks.size()];
+        for (int target = 0; target < targetTasks.size(); target++) {
+            targetLists[target] = Collections.singletonList(targetTasks.get(target));
+        }
+        sentCounts = new long[targetTasks.size()];
+        hotKeyDetector = new HotKeyDetector(hotKeyPercent, hotKeyWindow);
+    }
+
+    @Override
+    public List<Integer> chooseTasks(int taskId, List<Object> values) {
+        Object key;
+        long hash;
+        if (keyIndexes.length == 1) {
+            key = values.get(keyIndexes[0]);
+            hash = mix(key == null ? 0 : key.hashCode());
+        } else {
+            Object[] keyValues = new Object[keyIndexes.length];
+            hash = 1;
+            for (int i = 0; i < keyIndexes.length; i++) {
+                keyValues[i] = values.get(keyIndexes[i]);
+                hash = mix(31 * hash + (keyValues[i] == null ? 0 : keyValues[i].hashCode()));
+            }
+            key = Arrays.asList(keyValues);
+        }
+
+        int target = lookup(hash);
+        if (splitHotKeys && hotKeyDetector.isHot(key)) {
+            int alternative = lookup(mix(hash ^ SPLIT_SALT));
+            if (sentCounts[alternative] < sentCounts[target]) {
+                target = alternative;
+            }
+        }
+        sentCounts[target]++;
+
+        Set<Object> becameHot = hotKeyDetector.offer(key);
+        if (becameHot != null && !becameHot.isEmpty()) {
+            log.warn(logPrefix + "Partition keys " + becameHot + " carry more than " + hotKeyPercent + "% of the " +
+                    "events" + (splitHotKeys ? ", splitting them between two tasks" : ""));
+        }
+        return targetLists[target];
+    }
+
+    /**
+     * @return index of the target task owning the hash on the ring
+     */
+    private int lookup(long hash) {
+        int index = Arrays.binarySearch(ringHashes, hash);
+        if (index < 0) {
+            index = -index - 1;
+            if (index == ringHashes.length) {
+                index = 0;
+            }
+        }
+        return ringTargets[index];
+    }
+
+    /**
+     * Finalization step of MurmurHash3, spreading the bits of hash codes which differ only slightly.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.common.storm.grouping;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the keys carrying more than a given share of the observed events, counting them with the Space-Saving
+ * algorithm in a fixed number of counters. Keys are evaluated over windows of observed events: the keys found hot in a
+ * window are reported by isHot during the next window, so a key stops being hot once its share drops.
+ */
+public class HotKeyDetector {
+    private final int hotKeyPercent;
+    private final int windowSize;
+    private final int capacity;
+    private final Map<Object, Counter> counters;
+    private volatile Set<Object> hotKeys = Collections.emptySet();
+    private int observed = 0;
+
+    /**
+     * @param hotKeyPercent minimum percentage of the events of a window a hot key carries
+     * @param windowSize    number of events after which hot keys are evaluated
+     */
+    public HotKeyDetector(int hotKeyPercent, int windowSize) {
+        this.hotKeyPercent = Math.min(100, Math.max(1, hotKeyPercent));
+        this.windowSize = Math.max(1, windowSize);
+        // Space-Saving keeps every key more frequent than 1/capacity of the events, with room to spare
+        this.capacity = 2 * (100 / this.hotKeyPercent + 1);
+        this.counters = new HashMap<Object, Counter>(capacity * 2);
+    }
+
+    /**
+     * Counts an event of the key.
+     *
+     * @return the keys which newly became hot if this event completed a window, null otherwise
+     */
+    public synchronized Set<Object> offer(Object key) {
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.count++;
+        } else if (counters.size() < capacity) {
+            counters.put(key, new Counter(1, 0));
+        } else {
+            // Replace the least frequent key, which the new key might have been counted as
+            Object minKey = null;
+            Counter minCounter = null;
+            for (Map.Entry<Object, Counter> entry : counters.entrySet()) {
+                if (minCounter == null || entry.getValue().count < minCounter.count) {
+                    minKey = entry.getKey();
+                    minCounter = entry.getValue();
+                }
+            }
+            counters.remove(minKey);
+            minCounter.error = minCounter.count;
+            minCounter.count++;
+            counters.put(key, minCounter);
+        }
+        if (++observed < windowSize) {
+            return null;
+        }
+        return evaluateWindow();
+    }
+
+    public boolean isHot(Object key) {
+        Set<Object> keys = hotKeys;
+        return !keys.isEmpty() && keys.contains(key);
+    }
+
+    public Set<Object> getHotKeys() {
+        return hotKeys;
+    }
+
+    private Set<Object> evaluateWindow() {
+        long threshold = (long) observed * hotKeyPercent / 100;
+        Set<Object> previousHotKeys = hotKeys;
+        Set<Object> newHotKeys = new HashSet<Object>();
+        Set<Object> becameHot = new HashSet<Object>();
+        for (Iterator<Map.Entry<Object, Counter>> iterator = counters.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<Object, Counter> entry = iterator.next();
+            // The guaranteed count excludes events of replaced keys
+            if (entry.getValue().count - entry.getValue().error >= threshold) {
+                newHotKeys.add(entry.getKey());
+                if (!previousHotKeys.contains(entry.getKey())) {
+                    becameHot.add(entry.getKey());
+                }
+            }
+            iterator.remove();
+        }
+        hotKeys = newHotKeys.isEmpty() ? Collections.<Object>emptySet() : newHotKeys;
+        observed = 0;
+        return becameHot;
+    }
+
+    private static class Counter {
+        private long count;
+        private long error;
+
+        private Counter(long count, long error) {
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
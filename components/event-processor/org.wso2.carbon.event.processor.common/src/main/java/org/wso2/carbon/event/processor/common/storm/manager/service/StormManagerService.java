@@ -36,9 +36,9 @@ public class StormManagerService {
 
   public interface Iface {
 
-    public void registerStormReceiver(int tenantId, String executionPlanName, String hostName, int port) throws org.wso2.carbon.event.processor.common.storm.manager.service.exception.NotStormCoordinatorException, org.apache.thrift.TException;
+    public void registerStormReceiver(int tenantId, String executionPlanName, String hostName, int port, long queueDepth, double eventsPerSecond, double cpuLoad) throws org.wso2.carbon.event.processor.common.storm.manager.service.exception.NotStormCoordinatorException, org.apache.thrift.TException;
 
-    public void registerCEPPublisher(int tenantId, String executionPlanName, String hostName, int port) throws org.wso2.carbon.event.processor.common.storm.manager.service.exception.NotStormCoordinatorException, org.apache.thrift.TException;
+    public void registerCEPPublisher(int tenantId, String executionPlanName, String hostName, int port, long queueDepth, double eventsPerSecond, double cpuLoad) throws org.wso2.carbon.event.processor.common.storm.manager.service.exception.NotStormCoordinatorException, org.apache.thrift.TException;
 
     public String getStormReceiver(int tenantId, String executionPlanName, String cepReceiverHostName) throws org.wso2.carbon.event.processor.common.storm.manager.service.exception.NotStormCoordinatorException, org.wso2.carbon.event.processor.common.storm.manager.service.exception.EndpointNotFoundException, org.apache.thrift.TException;
 
@@ -48,9 +48,9 @@ public class StormManagerService {
 
   public interface AsyncIface {
 
-    public void registerStormReceiver(int tenantId, String executionPlanName, String hostName, int port, org.apache.thrift.async.AsyncMethodCallback resultHandler) throws org.apache.thrift.TException;
+    public void registerStormReceiver(int tenantId, String executionPlanName, String hostName, int port, long queueDepth, double eventsPerSecond, double cpuLoad, org.apache.thrift.async.AsyncMethodCallback resultHandler) throws org.apache.thrift.TException;
 
-    public void registerCEPPublisher(int tenantId, String executionPlanName, String hostName, int port, org.apache.thrift.async.AsyncMethodCallback resultHandler) throws org.apache.thrift.TException;
+    public void registerCEPPublisher(int tenantId, String executionPlanName, String hostName, int port, long queueDepth, double eventsPerSecond, double cpuLoad, org.apache.thrift.async.AsyncMethodCallback resultHandler) throws org.apache.thrift.TException;
 
     public void getStormReceiver(int tenantId, String executionPlanName, String cepReceiverHostName, org.apache.thrift.async.AsyncMethodCallback resultHandler) throws org.apache.thrift.TException;
 
@@ -78,19 +78,22 @@ public class StormManagerService {
       super(iprot, oprot);
     }
 
-    public void registerStormReceiver(int tenantId, String executionPlanName, String hostName, int port) throws org.wso2.carbon.event.processor.common.storm.manager.service.exception.NotStormCoordinatorException, org.apache.thrift.TException
+    public void registerStormReceiver(int tenantId, String executionPlanName, String hostName, int port, long queueDepth, double eventsPerSecond, double cpuLoad) throws org.wso2.carbon.event.processor.common.storm.manager.service.exception.NotStormCoordinatorException, org.apache.thrift.TException
     {
-      send_registerStormReceiver(tenantId, executionPlanName, hostName, port);
+      send_registerStormReceiver(tenantId, executionPlanName, hostName, port, queueDepth, eventsPerSecond, cpuLoad);
       recv_registerStormReceiver();
     }
 
-    public void send_registerStormReceiver(int tenantId, String executionPlanName, String hostName, int port) throws org.apache.thrift.TException
+    public void send_registerStormReceiver(int tenantId, String executionPlanName, String hostName, int port, long queueDepth, double eventsPerSecond, double cpuLoad) throws org.apache.thrift.TException
     {
       registerStormReceiver_args args = new registerStormReceiver_args();
       args.setTenantId(tenantId);
       args.setExecutionPlanName(executionPlanName);
       args.setHostName(hostName);
       args.setPort(port);
+      args.setQueueDepth(queueDepth);
+      args.setEventsPerSecond(eventsPerSecond);
+      args.setCpuLoad(cpuLoad);
       sendBase("registerStormReceiver", args);
     }
 
@@ -104,19 +107,22 @@ public class StormManagerService {
       return;
     }
 
-    public void registerCEPPublisher(int tenantId, String executionPlanName, String hostName, int port) throws org.wso2.carbon.event.processor.common.storm.manager.service.exception.NotStormCoordinatorException, org.apache.thrift.TException
+    public void registerCEPPublisher(int tenantId, String executionPlanName, String hostName, int port, long queueDepth, double eventsPerSecond, double cpuLoad) throws org.wso2.carbon.event.processor.common.storm.manager.service.exception.NotStormCoordinatorException, org.apache.thrift.TException
     {
-      send_registerCEPPublisher(tenantId, executionPlanName, hostName, port);
+      send_registerCEPPublisher(tenantId, executionPlanName, hostName, port, queueDepth, eventsPerSecond, cpuLoad);
       recv_registerCEPPublisher();
     }
 
-    public void send_registerCEPPublisher(int tenantId, String executionPlanName, String hostName, int port) throws org.apache.thrift.TException
+    public void send_registerCEPPublisher(int tenantId, String executionPlanName, String hostName, int port, long queueDepth, double eventsPerSecond, double cpuLoad) throws org.apache.thrift.TException
     {
       registerCEPPublisher_args args = new registerCEPPublisher_args();
       args.setTenantId(tenantId);
       args.setExecutionPlanName(executionPlanName);
       args.setHostName(hostName);
       args.setPort(port);
+      args.setQueueDepth(queueDepth);
+      args.setEventsPerSecond(eventsPerSecond);
+      args.setCpuLoad(cpuLoad);
       sendBase("registerCEPPublisher", args);
     }
 
@@ -210,9 +216,9 @@ public class StormManagerService {
       super(protocolFactory, clientManager, transport);
     }
 
-    public void registerStormReceiver(int tenantId, String executionPlanName, String hostName, int port, org.apache.thrift.async.AsyncMethodCallback resultHandler) throws org.apache.thrift.TException {
+    public void registerStormReceiver(int tenantId, String executionPlanName, String hostName, int port, long queueDepth, double eventsPerSecond, double cpuLoad, org.apache.thrift.async.AsyncMethodCallback resultHandler) throws org.apache.thrift.TException {
       checkReady();
-      registerStormReceiver_call method_call = new registerStormReceiver_call(tenantId, executionPlanName, hostName, port, resultHandler, this, ___protocolFactory, ___transport);
+      registerStormReceiver_call method_call = new registerStormReceiver_call(tenantId, executionPlanName, hostName, port, queueDepth, eventsPerSecond, cpuLoad, resultHandler, this, ___protocolFactory, ___transport);
       this.___currentMethod = method_call;
       ___manager.call(method_call);
     }
@@ -222,12 +228,18 @@ public class StormManagerService {
       private String executionPlanName;
       private String hostName;
       private int port;
-      public registerStormReceiver_call(int tenantId, String executionPlanName, String hostName, int port, org.apache.thrift.async.AsyncMethodCallback resultHandler, org.apache.thrift.async.TAsyncClient client, org.apache.thrift.protocol.TProtocolFactory protocolFactory, org.apache.thrift.transport.TNonblockingTransport transport) throws org.apache.thrift.TException {
+      private long queueDepth;
+      private double eventsPerSecond;
+      private double cpuLoad;
+      public registerStormReceiver_call(int tenantId, String executionPlanName, String hostName, int port, long queueDepth, double eventsPerSecond, double cpuLoad, org.apache.thrift.async.AsyncMethodCallback resultHandler, org.apache.thrift.async.TAsyncClient client, org.apache.thrift.protocol.TProtocolFactory protocolFactory, org.apache.thrift.transport.TNonblockingTransport transport) throws org.apache.thrift.TException {
         super(client, protocolFactory, transport, resultHandler, false);
         this.tenantId = tenantId;
         this.executionPlanName = executionPlanName;
         this.hostName = hostName;
         this.port = port;
+        this.queueDepth = queueDepth;
+        this.eventsPerSecond = eventsPerSecond;
+        this.cpuLoad = cpuLoad;
       }
 
       public void write_args(org.apache.thrift.protocol.TProtocol prot) throws org.apache.thrift.TException {
@@ -237,6 +249,9 @@ public class StormManagerService {
         args.setExecutionPlanName(executionPlanName);
         args.setHostName(hostName);
         args.setPort(port);
+        args.setQueueDepth(queueDepth);
+        args.setEventsPerSecond(eventsPerSecond);
+        args.setCpuLoad(cpuLoad);
         args.write(prot);
         prot.writeMessageEnd();
       }
@@ -251,9 +266,9 @@ public class StormManagerService {
       }
     }
 
-    public void registerCEPPublisher(int tenantId, String executionPlanName, String hostName, int port, org.apache.thrift.async.AsyncMethodCallback resultHandler) throws org.apache.thrift.TException {
+    public void registerCEPPublisher(int tenantId, String executionPlanName, String hostName, int port, long queueDepth, double eventsPerSecond, double cpuLoad, org.apache.thrift.async.AsyncMethodCallback resultHandler) throws org.apache.thrift.TException {
       checkReady();
-      registerCEPPublisher_call method_call = new registerCEPPublisher_call(tenantId, executionPlanName, hostName, port, resultHandler, this, ___protocolFactory, ___transport);
+      registerCEPPublisher_call method_call = new registerCEPPublisher_call(tenantId, executionPlanName, hostName, port, queueDepth, eventsPerSecond, cpuLoad, resultHandler, this, ___protocolFactory, ___transport);
       this.___currentMethod = method_call;
       ___manager.call(method_call);
     }
@@ -263,12 +278,18 @@ public class StormManagerService {
       private String executionPlanName;
       private String hostName;
       private int port;
-      public registerCEPPublisher_call(int tenantId, String executionPlanName, String hostName, int port, org.apache.thrift.async.AsyncMethodCallback resultHandler, org.apache.thrift.async.TAsyncClient client, org.apache.thrift.protocol.TProtocolFactory protocolFactory, org.apache.thrift.transport.TNonblockingTransport transport) throws org.apache.thrift.TException {
+      private long queueDepth;
+      private double eventsPerSecond;
+      private double cpuLoad;
+      public registerCEPPublisher_call(int tenantId, String executionPlanName, String hostName, int port, long queueDepth, double eventsPerSecond, double cpuLoad, org.apache.thrift.async.AsyncMethodCallback resultHandler, org.apache.thrift.async.TAsyncClient client, org.apache.thrift.protocol.TProtocolFactory protocolFactory, org.apache.thrift.transport.TNonblockingTransport transport) throws org.apache.thrift.TException {
         super(client, protocolFactory, transport, resultHandler, false);
         this.tenantId = tenantId;
         this.executionPlanName = executionPlanName;
         this.hostName = hostName;
         this.port = port;
+        this.queueDepth = queueDepth;
+        this.eventsPerSecond = eventsPerSecond;
+        this.cpuLoad = cpuLoad;
       }
 
       public void write_args(org.apache.thrift.protocol.TProtocol prot) throws org.apache.thrift.TException {
@@ -278,6 +299,9 @@ public class StormManagerService {
         args.setExecutionPlanName(executionPlanName);
         args.setHostName(hostName);
         args.setPort(port);
+        args.setQueueDepth(queueDepth);
+        args.setEventsPerSecond(eventsPerSecond);
+        args.setCpuLoad(cpuLoad);
         args.write(prot);
         prot.writeMessageEnd();
       }
@@ -404,7 +428,7 @@ public class StormManagerService {
       public registerStormReceiver_result getResult(I iface, registerStormReceiver_args args) throws org.apache.thrift.TException {
         registerStormReceiver_result result = new registerStormReceiver_result();
         try {
-          iface.registerStormReceiver(args.tenantId, args.executionPlanName, args.hostName, args.port);
+          iface.registerStormReceiver(args.tenantId, args.executionPlanName, args.hostName, args.port, args.queueDepth, args.eventsPerSecond, args.cpuLoad);
         } catch (org.wso2.carbon.event.processor.common.storm.manager.service.exception.NotStormCoordinatorException nsme) {
           result.nsme = nsme;
         }
@@ -428,7 +452,7 @@ public class StormManagerService {
       public registerCEPPublisher_result getResult(I iface, registerCEPPublisher_args args) throws org.apache.thrift.TException {
         registerCEPPublisher_result result = new registerCEPPublisher_result();
         try {
-          iface.registerCEPPublisher(args.tenantId, args.executionPlanName, args.hostName, args.port);
+          iface.registerCEPPublisher(args.tenantId, args.executionPlanName, args.hostName, args.port, args.queueDepth, args.eventsPerSecond, args.cpuLoad);
         } catch (org.wso2.carbon.event.processor.common.storm.manager.service.exception.NotStormCoordinatorException nsme) {
           result.nsme = nsme;
         }
@@ -560,7 +584,7 @@ public class StormManagerService {
       }
 
       public void start(I iface, registerStormReceiver_args args, org.apache.thrift.async.AsyncMethodCallback<Void> resultHandler) throws TException {
-        iface.registerStormReceiver(args.tenantId, args.executionPlanName, args.hostName, args.port,resultHandler);
+        iface.registerStormReceiver(args.tenantId, args.executionPlanName, args.hostName, args.port, args.queueDepth, args.eventsPerSecond, args.cpuLoad,resultHandler);
       }
     }
 
@@ -616,7 +640,7 @@ public class StormManagerService {
       }
 
       public void start(I iface, registerCEPPublisher_args args, org.apache.thrift.async.AsyncMethodCallback<Void> resultHandler) throws TException {
-        iface.registerCEPPublisher(args.tenantId, args.executionPlanName, args.hostName, args.port,resultHandler);
+        iface.registerCEPPublisher(args.tenantId, args.executionPlanName, args.hostName, args.port, args.queueDepth, args.eventsPerSecond, args.cpuLoad,resultHandler);
       }
     }
 
@@ -753,6 +777,9 @@ public class StormManagerService {
     private static final org.apache.thrift.protocol.TField EXECUTION_PLAN_NAME_FIELD_DESC = new org.apache.thrift.protocol.TField("executionPlanName", org.apache.thrift.protocol.TType.STRING, (short)2);
     private static final org.apache.thrift.protocol.TField HOST_NAME_FIELD_DESC = new org.apache.thrift.protocol.TField("hostName", org.apache.thrift.protocol.TType.STRING, (short)3);
     private static final org.apache.thrift.protocol.TField PORT_FIELD_DESC = new org.apache.thrift.protocol.TField("port", org.apache.thrift.protocol.TType.I32, (short)4);
+    private static final org.apache.thrift.protocol.TField QUEUE_DEPTH_FIELD_DESC = new org.apache.thrift.protocol.TField("queueDepth", org.apache.thrift.protocol.TType.I64, (short)5);
+    private static final org.apache.thrift.protocol.TField EVENTS_PER_SECOND_FIELD_DESC = new org.apache.thrift.protocol.TField("eventsPerSecond", org.apache.thrift.protocol.TType.DOUBLE, (short)6);
+    private static final org.apache.thrift.protocol.TField CPU_LOAD_FIELD_DESC = new org.apache.thrift.protocol.TField("cpuLoad", org.apache.thrift.protocol.TType.DOUBLE, (short)7);
 
     private static final Map<Class<? extends IScheme>, SchemeFactory> schemes = new HashMap<Class<? extends IScheme>, SchemeFactory>();
     static {
@@ -764,13 +791,19 @@ public class StormManagerService {
     public String executionPlanName; // required
     public String hostName; // required
     public int port; // required
+    public long queueDepth; // required
+    public double eventsPerSecond; // required
+    public double cpuLoad; // required
 
     /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
     public enum _Fields implements org.apache.thrift.TFieldIdEnum {
       TENANT_ID((short)1, "tenantId"),
       EXECUTION_PLAN_NAME((short)2, "executionPlanName"),
       HOST_NAME((short)3, "hostName"),
-      PORT((short)4, "port");
+      PORT((short)4, "port"),
+      QUEUE_DEPTH((short)5, "queueDepth"),
+      EVENTS_PER_SECOND((short)6, "eventsPerSecond"),
+      CPU_LOAD((short)7, "cpuLoad");
 
       private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
 
@@ -793,6 +826,12 @@ public class StormManagerService {
             return HOST_NAME;
           case 4: // PORT
             return PORT;
+          case 5: // QUEUE_DEPTH
+            return QUEUE_DEPTH;
+          case 6: // EVENTS_PER_SECOND
+            return EVENTS_PER_SECOND;
+          case 7: // CPU_LOAD
+            return CPU_LOAD;
           default:
             return null;
         }
@@ -835,6 +874,9 @@ public class StormManagerService {
     // isset id assignments
     private static final int __TENANTID_ISSET_ID = 0;
     private static final int __PORT_ISSET_ID = 1;
+    private static final int __QUEUEDEPTH_ISSET_ID = 2;
+    private static final int __EVENTSPERSECOND_ISSET_ID = 3;
+    private static final int __CPULOAD_ISSET_ID = 4;
     private byte __isset_bitfield = 0;
     public static final Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
     static {
@@ -847,6 +889,12 @@ public class StormManagerService {
           new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING)));
       tmpMap.put(_Fields.PORT, new org.apache.thrift.meta_data.FieldMetaData("port", org.apache.thrift.TFieldRequirementType.DEFAULT, 
           new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
+      tmpMap.put(_Fields.QUEUE_DEPTH, new org.apache.thrift.meta_data.FieldMetaData("queueDepth", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+          new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I64)));
+      tmpMap.put(_Fields.EVENTS_PER_SECOND, new org.apache.thrift.meta_data.FieldMetaData("eventsPerSecond", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+          new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.DOUBLE)));
+      tmpMap.put(_Fields.CPU_LOAD, new org.apache.thrift.meta_data.FieldMetaData("cpuLoad", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+          new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.DOUBLE)));
       metaDataMap = Collections.unmodifiableMap(tmpMap);
       org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(registerStormReceiver_args.class, metaDataMap);
     }
@@ -858,7 +906,10 @@ public class StormManagerService {
       int tenantId,
       String executionPlanName,
       String hostName,
-      int port)
+      int port,
+      long queueDepth,
+      double eventsPerSecond,
+      double cpuLoad)
     {
       this();
       this.tenantId = tenantId;
@@ -867,6 +918,12 @@ public class StormManagerService {
       this.hostName = hostName;
       this.port = port;
       setPortIsSet(true);
+      this.queueDepth = queueDepth;
+      setQueueDepthIsSet(true);
+      this.eventsPerSecond = eventsPerSecond;
+      setEventsPerSecondIsSet(true);
+      this.cpuLoad = cpuLoad;
+      setCpuLoadIsSet(true);
     }
 
     /**
@@ -882,6 +939,9 @@ public class StormManagerService {
         this.hostName = other.hostName;
       }
       this.port = other.port;
+      this.queueDepth = other.queueDepth;
+      this.eventsPerSecond = other.eventsPerSecond;
+      this.cpuLoad = other.cpuLoad;
     }
 
     public registerStormReceiver_args deepCopy() {
@@ -896,6 +956,12 @@ public class StormManagerService {
       this.hostName = null;
       setPortIsSet(false);
       this.port = 0;
+      setQueueDepthIsSet(false);
+      this.queueDepth = 0;
+      setEventsPerSecondIsSet(false);
+      this.eventsPerSecond = 0.0;
+      setCpuLoadIsSet(false);
+      this.cpuLoad = 0.0;
     }
 
     public int getTenantId() {
@@ -992,6 +1058,75 @@ public class StormManagerService {
       __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __PORT_ISSET_ID, value);
     }
 
+    public long getQueueDepth() {
+      return this.queueDepth;
+    }
+
+    public registerStormReceiver_args setQueueDepth(long queueDepth) {
+      this.queueDepth = queueDepth;
+      setQueueDepthIsSet(true);
+      return this;
+    }
+
+    public void unsetQueueDepth() {
+      __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __QUEUEDEPTH_ISSET_ID);
+    }
+
+    /** Returns true if field queueDepth is set (has been assigned a value) and false otherwise */
+    public boolean isSetQueueDepth() {
+      return EncodingUtils.testBit(__isset_bitfield, __QUEUEDEPTH_ISSET_ID);
+    }
+
+    public void setQueueDepthIsSet(boolean value) {
+      __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __QUEUEDEPTH_ISSET_ID, value);
+    }
+
+    public double getEventsPerSecond() {
+      return this.eventsPerSecond;
+    }
+
+    public registerStormReceiver_args setEventsPerSecond(double eventsPerSecond) {
+      this.eventsPerSecond = eventsPerSecond;
+      setEventsPerSecondIsSet(true);
+      return this;
+    }
+
+    public void unsetEventsPerSecond() {
+      __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __EVENTSPERSECOND_ISSET_ID);
+    }
+
+    /** Returns true if field eventsPerSecond is set (has been assigned a value) and false otherwise */
+    public boolean isSetEventsPerSecond() {
+      return EncodingUtils.testBit(__isset_bitfield, __EVENTSPERSECOND_ISSET_ID);
+    }
+
+    public void setEventsPerSecondIsSet(boolean value) {
+      __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __EVENTSPERSECOND_ISSET_ID, value);
+    }
+
+    public double getCpuLoad() {
+      return this.cpuLoad;
+    }
+
+    public registerStormReceiver_args setCpuLoad(double cpuLoad) {
+      this.cpuLoad = cpuLoad;
+      setCpuLoadIsSet(true);
+      return this;
+    }
+
+    public void unsetCpuLoad() {
+      __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __CPULOAD_ISSET_ID);
+    }
+
+    /** Returns true if field cpuLoad is set (has been assigned a value) and false otherwise */
+    public boolean isSetCpuLoad() {
+      return EncodingUtils.testBit(__isset_bitfield, __CPULOAD_ISSET_ID);
+    }
+
+    public void setCpuLoadIsSet(boolean value) {
+      __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __CPULOAD_ISSET_ID, value);
+    }
+
     public void setFieldValue(_Fields field, Object value) {
       switch (field) {
       case TENANT_ID:
@@ -1026,6 +1161,30 @@ public class StormManagerService {
         }
         break;
 
+      case QUEUE_DEPTH:
+        if (value == null) {
+          unsetQueueDepth();
+        } else {
+          setQueueDepth((Long)value);
+        }
+        break;
+
+      case EVENTS_PER_SECOND:
+        if (value == null) {
+          unsetEventsPerSecond();
+        } else {
+          setEventsPerSecond((Double)value);
+        }
+        break;
+
+      case CPU_LOAD:
+        if (value == null) {
+          unsetCpuLoad();
+        } else {
+          setCpuLoad((Double)value);
+        }
+        break;
+
       }
     }
 
@@ -1043,6 +1202,15 @@ public class StormManagerService {
       case PORT:
         return Integer.valueOf(getPort());
 
+      case QUEUE_DEPTH:
+        return Long.valueOf(getQueueDepth());
+
+      case EVENTS_PER_SECOND:
+        return Double.valueOf(getEventsPerSecond());
+
+      case CPU_LOAD:
+        return Double.valueOf(getCpuLoad());
+
       }
       throw new IllegalStateException();
     }
@@ -1062,6 +1230,12 @@ public class StormManagerService {
         return isSetHostName();
       case PORT:
         return isSetPort();
+      case QUEUE_DEPTH:
+        return isSetQueueDepth();
+      case EVENTS_PER_SECOND:
+        return isSetEventsPerSecond();
+      case CPU_LOAD:
+        return isSetCpuLoad();
       }
       throw new IllegalStateException();
     }
@@ -1115,6 +1289,33 @@ public class StormManagerService {
           return false;
       }
 
+      boolean this_present_queueDepth = true;
+      boolean that_present_queueDepth = true;
+      if (this_present_queueDepth || that_present_queueDepth) {
+        if (!(this_present_queueDepth && that_present_queueDepth))
+          return false;
+        if (this.queueDepth != that.queueDepth)
+          return false;
+      }
+
+      boolean this_present_eventsPerSecond = true;
+      boolean that_present_eventsPerSecond = true;
+      if (this_present_eventsPerSecond || that_present_eventsPerSecond) {
+        if (!(this_present_eventsPerSecond && that_present_eventsPerSecond))
+          return false;
+        if (this.eventsPerSecond != that.eventsPerSecond)
+          return false;
+      }
+
+      boolean this_present_cpuLoad = true;
+      boolean that_present_cpuLoad = true;
+      if (this_present_cpuLoad || that_present_cpuLoad) {
+        if (!(this_present_cpuLoad && that_present_cpuLoad))
+          return false;
+        if (this.cpuLoad != that.cpuLoad)
+          return false;
+      }
+
       return true;
     }
 
@@ -1171,6 +1372,36 @@ public class StormManagerService {
           return lastComparison;
         }
       }
+      lastComparison = Boolean.valueOf(isSetQueueDepth()).compareTo(other.isSetQueueDepth());
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+      if (isSetQueueDepth()) {
+        lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.queueDepth, other.queueDepth);
+        if (lastComparison != 0) {
+          return lastComparison;
+        }
+      }
+      lastComparison = Boolean.valueOf(isSetEventsPerSecond()).compareTo(other.isSetEventsPerSecond());
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+      if (isSetEventsPerSecond()) {
+        lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.eventsPerSecond, other.eventsPerSecond);
+        if (lastComparison != 0) {
+          return lastComparison;
+        }
+      }
+      lastComparison = Boolean.valueOf(isSetCpuLoad()).compareTo(other.isSetCpuLoad());
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+      if (isSetCpuLoad()) {
+        lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.cpuLoad, other.cpuLoad);
+        if (lastComparison != 0) {
+          return lastComparison;
+        }
+      }
       return 0;
     }
 
@@ -1214,6 +1445,18 @@ public class StormManagerService {
       sb.append("port:");
       sb.append(this.port);
       first = false;
+      if (!first) sb.append(", ");
+      sb.append("queueDepth:");
+      sb.append(this.queueDepth);
+      first = false;
+      if (!first) sb.append(", ");
+      sb.append("eventsPerSecond:");
+      sb.append(this.eventsPerSecond);
+      first = false;
+      if (!first) sb.append(", ");
+      sb.append("cpuLoad:");
+      sb.append(this.cpuLoad);
+      first = false;
       sb.append(")");
       return sb.toString();
     }
@@ -1291,6 +1534,30 @@ public class StormManagerService {
                 org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
               }
               break;
+            case 5: // QUEUE_DEPTH
+              if (schemeField.type == org.apache.thrift.protocol.TType.I64) {
+                struct.queueDepth = iprot.readI64();
+                struct.setQueueDepthIsSet(true);
+              } else { 
+                org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+              }
+              break;
+            case 6: // EVENTS_PER_SECOND
+              if (schemeField.type == org.apache.thrift.protocol.TType.DOUBLE) {
+                struct.eventsPerSecond = iprot.readDouble();
+                struct.setEventsPerSecondIsSet(true);
+              } else { 
+                org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+              }
+              break;
+            case 7: // CPU_LOAD
+              if (schemeField.type == org.apache.thrift.protocol.TType.DOUBLE) {
+                struct.cpuLoad = iprot.readDouble();
+                struct.setCpuLoadIsSet(true);
+              } else { 
+                org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+              }
+              break;
             default:
               org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
           }
@@ -1322,6 +1589,15 @@ public class StormManagerService {
         oprot.writeFieldBegin(PORT_FIELD_DESC);
         oprot.writeI32(struct.port);
         oprot.writeFieldEnd();
+        oprot.writeFieldBegin(QUEUE_DEPTH_FIELD_DESC);
+        oprot.writeI64(struct.queueDepth);
+        oprot.writeFieldEnd();
+        oprot.writeFieldBegin(EVENTS_PER_SECOND_FIELD_DESC);
+        oprot.writeDouble(struct.eventsPerSecond);
+        oprot.writeFieldEnd();
+        oprot.writeFieldBegin(CPU_LOAD_FIELD_DESC);
+        oprot.writeDouble(struct.cpuLoad);
+        oprot.writeFieldEnd();
         oprot.writeFieldStop();
         oprot.writeStructEnd();
       }
@@ -1352,7 +1628,16 @@ public class StormManagerService {
         if (struct.isSetPort()) {
           optionals.set(3);
         }
-        oprot.writeBitSet(optionals, 4);
+        if (struct.isSetQueueDepth()) {
+          optionals.set(4);
+        }
+        if (struct.isSetEventsPerSecond()) {
+          optionals.set(5);
+        }
+        if (struct.isSetCpuLoad()) {
+          optionals.set(6);
+        }
+        oprot.writeBitSet(optionals, 7);
         if (struct.isSetTenantId()) {
           oprot.writeI32(struct.tenantId);
         }
@@ -1365,12 +1650,21 @@ public class StormManagerService {
         if (struct.isSetPort()) {
           oprot.writeI32(struct.port);
         }
+        if (struct.isSetQueueDepth()) {
+          oprot.writeI64(struct.queueDepth);
+        }
+        if (struct.isSetEventsPerSecond()) {
+          oprot.writeDouble(struct.eventsPerSecond);
+        }
+        if (struct.isSetCpuLoad()) {
+          oprot.writeDouble(struct.cpuLoad);
+        }
       }
 
       @Override
       public void read(org.apache.thrift.protocol.TProtocol prot, registerStormReceiver_args struct) throws org.apache.thrift.TException {
         TTupleProtocol iprot = (TTupleProtocol) prot;
-        BitSet incoming = iprot.readBitSet(4);
+        BitSet incoming = iprot.readBitSet(7);
         if (incoming.get(0)) {
           struct.tenantId = iprot.readI32();
           struct.setTenantIdIsSet(true);
@@ -1387,6 +1681,18 @@ public class StormManagerService {
           struct.port = iprot.readI32();
           struct.setPortIsSet(true);
         }
+        if (incoming.get(4)) {
+          struct.queueDepth = iprot.readI64();
+          struct.setQueueDepthIsSet(true);
+        }
+        if (incoming.get(5)) {
+          struct.eventsPerSecond = iprot.readDouble();
+          struct.setEventsPerSecondIsSet(true);
+        }
+        if (incoming.get(6)) {
+          struct.cpuLoad = iprot.readDouble();
+          struct.setCpuLoadIsSet(true);
+        }
       }
     }
 
@@ -1755,6 +2061,9 @@ public class StormManagerService {
     private static final org.apache.thrift.protocol.TField EXECUTION_PLAN_NAME_FIELD_DESC = new org.apache.thrift.protocol.TField("executionPlanName", org.apache.thrift.protocol.TType.STRING, (short)2);
     private static final org.apache.thrift.protocol.TField HOST_NAME_FIELD_DESC = new org.apache.thrift.protocol.TField("hostName", org.apache.thrift.protocol.TType.STRING, (short)3);
     private static final org.apache.thrift.protocol.TField PORT_FIELD_DESC = new org.apache.thrift.protocol.TField("port", org.apache.thrift.protocol.TType.I32, (short)4);
+    private static final org.apache.thrift.protocol.TField QUEUE_DEPTH_FIELD_DESC = new org.apache.thrift.protocol.TField("queueDepth", org.apache.thrift.protocol.TType.I64, (short)5);
+    private static final org.apache.thrift.protocol.TField EVENTS_PER_SECOND_FIELD_DESC = new org.apache.thrift.protocol.TField("eventsPerSecond", org.apache.thrift.protocol.TType.DOUBLE, (short)6);
+    private static final org.apache.thrift.protocol.TField CPU_LOAD_FIELD_DESC = new org.apache.thrift.protocol.TField("cpuLoad", org.apache.thrift.protocol.TType.DOUBLE, (short)7);
 
     private static final Map<Class<? extends IScheme>, SchemeFactory> schemes = new HashMap<Class<? extends IScheme>, SchemeFactory>();
     static {
@@ -1766,13 +2075,19 @@ public class StormManagerService {
     public String executionPlanName; // required
     public String hostName; // required
     public int port; // required
+    public long queueDepth; // required
+    public double eventsPerSecond; // required
+    public double cpuLoad; // required
 
     /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
     public enum _Fields implements org.apache.thrift.TFieldIdEnum {
       TENANT_ID((short)1, "tenantId"),
       EXECUTION_PLAN_NAME((short)2, "executionPlanName"),
       HOST_NAME((short)3, "hostName"),
-      PORT((short)4, "port");
+      PORT((short)4, "port"),
+      QUEUE_DEPTH((short)5, "queueDepth"),
+      EVENTS_PER_SECOND((short)6, "eventsPerSecond"),
+      CPU_LOAD((short)7, "cpuLoad");
 
       private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
 
@@ -1795,6 +2110,12 @@ public class StormManagerService {
             return HOST_NAME;
           case 4: // PORT
             return PORT;
+          case 5: // QUEUE_DEPTH
+            return QUEUE_DEPTH;
+          case 6: // EVENTS_PER_SECOND
+            return EVENTS_PER_SECOND;
+          case 7: // CPU_LOAD
+            return CPU_LOAD;
           default:
             return null;
         }
@@ -1837,6 +2158,9 @@ public class StormManagerService {
     // isset id assignments
     private static final int __TENANTID_ISSET_ID = 0;
     private static final int __PORT_ISSET_ID = 1;
+    private static final int __QUEUEDEPTH_ISSET_ID = 2;
+    private static final int __EVENTSPERSECOND_ISSET_ID = 3;
+    private static final int __CPULOAD_ISSET_ID = 4;
     private byte __isset_bitfield = 0;
     public static final Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
     static {
@@ -1849,6 +2173,12 @@ public class StormManagerService {
           new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING)));
       tmpMap.put(_Fields.PORT, new org.apache.thrift.meta_data.FieldMetaData("port", org.apache.thrift.TFieldRequirementType.DEFAULT, 
           new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
+      tmpMap.put(_Fields.QUEUE_DEPTH, new org.apache.thrift.meta_data.FieldMetaData("queueDepth", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+          new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I64)));
+      tmpMap.put(_Fields.EVENTS_PER_SECOND, new org.apache.thrift.meta_data.FieldMetaData("eventsPerSecond", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+          new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.DOUBLE)));
+      tmpMap.put(_Fields.CPU_LOAD, new org.apache.thrift.meta_data.FieldMetaData("cpuLoad", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+          new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.DOUBLE)));
       metaDataMap = Collections.unmodifiableMap(tmpMap);
       org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(registerCEPPublisher_args.class, metaDataMap);
     }
@@ -1860,7 +2190,10 @@ public class StormManagerService {
       int tenantId,
       String executionPlanName,
       String hostName,
-      int port)
+      int port,
+      long queueDepth,
+      double eventsPerSecond,
+      double cpuLoad)
     {
       this();
       this.tenantId = tenantId;
@@ -1869,6 +2202,12 @@ public class StormManagerService {
       this.hostName = hostName;
       this.port = port;
       setPortIsSet(true);
+      this.queueDepth = queueDepth;
+      setQueueDepthIsSet(true);
+      this.eventsPerSecond = eventsPerSecond;
+      setEventsPerSecondIsSet(true);
+      this.cpuLoad = cpuLoad;
+      setCpuLoadIsSet(true);
     }
 
     /**
@@ -1884,6 +2223,9 @@ public class StormManagerService {
         this.hostName = other.hostName;
       }
       this.port = other.port;
+      this.queueDepth = other.queueDepth;
+      this.eventsPerSecond = other.eventsPerSecond;
+      this.cpuLoad = other.cpuLoad;
     }
 
     public registerCEPPublisher_args deepCopy() {
@@ -1898,6 +2240,12 @@ public class StormManagerService {
       this.hostName = null;
       setPortIsSet(false);
       this.port = 0;
+      setQueueDepthIsSet(false);
+      this.queueDepth = 0;
+      setEventsPerSecondIsSet(false);
+      this.eventsPerSecond = 0.0;
+      setCpuLoadIsSet(false);
+      this.cpuLoad = 0.0;
     }
 
     public int getTenantId() {
@@ -1994,6 +2342,75 @@ public class StormManagerService {
       __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __PORT_ISSET_ID, value);
     }
 
+    public long getQueueDepth() {
+      return this.queueDepth;
+    }
+
+    public registerCEPPublisher_args setQueueDepth(long queueDepth) {
+      this.queueDepth = queueDepth;
+      setQueueDepthIsSet(true);
+      return this;
+    }
+
+    public void unsetQueueDepth() {
+      __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __QUEUEDEPTH_ISSET_ID);
+    }
+
+    /** Returns true if field queueDepth is set (has been assigned a value) and false otherwise */
+    public boolean isSetQueueDepth() {
+      return EncodingUtils.testBit(__isset_bitfield, __QUEUEDEPTH_ISSET_ID);
+    }
+
+    public void setQueueDepthIsSet(boolean value) {
+      __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __QUEUEDEPTH_ISSET_ID, value);
+    }
+
+    public double getEventsPerSecond() {
+      return this.eventsPerSecond;
+    }
+
+    public registerCEPPublisher_args setEventsPerSecond(double eventsPerSecond) {
+      this.eventsPerSecond = eventsPerSecond;
+      setEventsPerSecondIsSet(true);
+      return this;
+    }
+
+    public void unsetEventsPerSecond() {
+      __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __EVENTSPERSECOND_ISSET_ID);
+    }
+
+    /** Returns true if field eventsPerSecond is set (has been assigned a value) and false otherwise */
+    public boolean isSetEventsPerSecond() {
+      return EncodingUtils.testBit(__isset_bitfield, __EVENTSPERSECOND_ISSET_ID);
+    }
+
+    public void setEventsPerSecondIsSet(boolean value) {
+      __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __EVENTSPERSECOND_ISSET_ID, value);
+    }
+
+    public double getCpuLoad() {
+      return this.cpuLoad;
+    }
+
+    public registerCEPPublisher_args setCpuLoad(double cpuLoad) {
+      this.cpuLoad = cpuLoad;
+      setCpuLoadIsSet(true);
+      return this;
+    }
+
+    public void unsetCpuLoad() {
+      __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __CPULOAD_ISSET_ID);
+    }
+
+    /** Returns true if field cpuLoad is set (has been assigned a value) and false otherwise */
+    public boolean isSetCpuLoad() {
+      return EncodingUtils.testBit(__isset_bitfield, __CPULOAD_ISSET_ID);
+    }
+
+    public void setCpuLoadIsSet(boolean value) {
+      __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __CPULOAD_ISSET_ID, value);
+    }
+
     public void setFieldValue(_Fields field, Object value) {
       switch (field) {
       case TENANT_ID:
@@ -2028,6 +2445,30 @@ public class StormManagerService {
         }
         break;
 
+      case QUEUE_DEPTH:
+        if (value == null) {
+          unsetQueueDepth();
+        } else {
+          setQueueDepth((Long)value);
+        }
+        break;
+
+      case EVENTS_PER_SECOND:
+        if (value == null) {
+          unsetEventsPerSecond();
+        } else {
+          setEventsPerSecond((Double)value);
+        }
+        break;
+
+      case CPU_LOAD:
+        if (value == null) {
+          unsetCpuLoad();
+        } else {
+          setCpuLoad((Double)value);
+        }
+        break;
+
       }
     }
 
@@ -2045,6 +2486,15 @@ public class StormManagerService {
       case PORT:
         return Integer.valueOf(getPort());
 
+      case QUEUE_DEPTH:
+        return Long.valueOf(getQueueDepth());
+
+      case EVENTS_PER_SECOND:
+        return Double.valueOf(getEventsPerSecond());
+
+      case CPU_LOAD:
+        return Double.valueOf(getCpuLoad());
+
       }
       throw new IllegalStateException();
     }
@@ -2064,6 +2514,12 @@ public class StormManagerService {
         return isSetHostName();
       case PORT:
         return isSetPort();
+      case QUEUE_DEPTH:
+        return isSetQueueDepth();
+      case EVENTS_PER_SECOND:
+        return isSetEventsPerSecond();
+      case CPU_LOAD:
+        return isSetCpuLoad();
       }
       throw new IllegalStateException();
     }
@@ -2117,6 +2573,33 @@ public class StormManagerService {
           return false;
       }
 
+      boolean this_present_queueDepth = true;
+      boolean that_present_queueDepth = true;
+      if (this_present_queueDepth || that_present_queueDepth) {
+        if (!(this_present_queueDepth && that_present_queueDepth))
+          return false;
+        if (this.queueDepth != that.queueDepth)
+          return false;
+      }
+
+      boolean this_present_eventsPerSecond = true;
+      boolean that_present_eventsPerSecond = true;
+      if (this_present_eventsPerSecond || that_present_eventsPerSecond) {
+        if (!(this_present_eventsPerSecond && that_present_eventsPerSecond))
+          return false;
+        if (this.eventsPerSecond != that.eventsPerSecond)
+          return false;
+      }
+
+      boolean this_present_cpuLoad = true;
+      boolean that_present_cpuLoad = true;
+      if (this_present_cpuLoad || that_present_cpuLoad) {
+        if (!(this_present_cpuLoad && that_present_cpuLoad))
+          return false;
+        if (this.cpuLoad != that.cpuLoad)
+          return false;
+      }
+
       return true;
     }
 
@@ -2173,6 +2656,36 @@ public class StormManagerService {
           return lastComparison;
         }
       }
+      lastComparison = Boolean.valueOf(isSetQueueDepth()).compareTo(other.isSetQueueDepth());
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+      if (isSetQueueDepth()) {
+        lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.queueDepth, other.queueDepth);
+        if (lastComparison != 0) {
+          return lastComparison;
+        }
+      }
+      lastComparison = Boolean.valueOf(isSetEventsPerSecond()).compareTo(other.isSetEventsPerSecond());
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+      if (isSetEventsPerSecond()) {
+        lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.eventsPerSecond, other.eventsPerSecond);
+        if (lastComparison != 0) {
+          return lastComparison;
+        }
+      }
+      lastComparison = Boolean.valueOf(isSetCpuLoad()).compareTo(other.isSetCpuLoad());
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+      if (isSetCpuLoad()) {
+        lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.cpuLoad, other.cpuLoad);
+        if (lastComparison != 0) {
+          return lastComparison;
+        }
+      }
       return 0;
     }
 
@@ -2216,6 +2729,18 @@ public class StormManagerService {
       sb.append("port:");
       sb.append(this.port);
       first = false;
+      if (!first) sb.append(", ");
+      sb.append("queueDepth:");
+      sb.append(this.queueDepth);
+      first = false;
+      if (!first) sb.append(", ");
+      sb.append("eventsPerSecond:");
+      sb.append(this.eventsPerSecond);
+      first = false;
+      if (!first) sb.append(", ");
+      sb.append("cpuLoad:");
+      sb.append(this.cpuLoad);
+      first = false;
       sb.append(")");
       return sb.toString();
     }
@@ -2293,6 +2818,30 @@ public class StormManagerService {
                 org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
               }
               break;
+            case 5: // QUEUE_DEPTH
+              if (schemeField.type == org.apache.thrift.protocol.TType.I64) {
+                struct.queueDepth = iprot.readI64();
+                struct.setQueueDepthIsSet(true);
+              } else { 
+                org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+              }
+              break;
+            case 6: // EVENTS_PER_SECOND
+              if (schemeField.type == org.apache.thrift.protocol.TType.DOUBLE) {
+                struct.eventsPerSecond = iprot.readDouble();
+                struct.setEventsPerSecondIsSet(true);
+              } else { 
+                org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+              }
+              break;
+            case 7: // CPU_LOAD
+              if (schemeField.type == org.apache.thrift.protocol.TType.DOUBLE) {
+                struct.cpuLoad = iprot.readDouble();
+                struct.setCpuLoadIsSet(true);
+              } else { 
+                org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+              }
+              break;
             default:
               org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
           }
@@ -2324,6 +2873,15 @@ public class StormManagerService {
         oprot.writeFieldBegin(PORT_FIELD_DESC);
         oprot.writeI32(struct.port);
         oprot.writeFieldEnd();
+        oprot.writeFieldBegin(QUEUE_DEPTH_FIELD_DESC);
+        oprot.writeI64(struct.queueDepth);
+        oprot.writeFieldEnd();
+        oprot.writeFieldBegin(EVENTS_PER_SECOND_FIELD_DESC);
+        oprot.writeDouble(struct.eventsPerSecond);
+        oprot.writeFieldEnd();
+        oprot.writeFieldBegin(CPU_LOAD_FIELD_DESC);
+        oprot.writeDouble(struct.cpuLoad);
+        oprot.writeFieldEnd();
         oprot.writeFieldStop();
         oprot.writeStructEnd();
       }
@@ -2354,7 +2912,16 @@ public class StormManagerService {
         if (struct.isSetPort()) {
           optionals.set(3);
         }
-        oprot.writeBitSet(optionals, 4);
+        if (struct.isSetQueueDepth()) {
+          optionals.set(4);
+        }
+        if (struct.isSetEventsPerSecond()) {
+          optionals.set(5);
+        }
+        if (struct.isSetCpuLoad()) {
+          optionals.set(6);
+        }
+        oprot.writeBitSet(optionals, 7);
         if (struct.isSetTenantId()) {
           oprot.writeI32(struct.tenantId);
         }
@@ -2367,12 +2934,21 @@ public class StormManagerService {
         if (struct.isSetPort()) {
           oprot.writeI32(struct.port);
         }
+        if (struct.isSetQueueDepth()) {
+          oprot.writeI64(struct.queueDepth);
+        }
+        if (struct.isSetEventsPerSecond()) {
+          oprot.writeDouble(struct.eventsPerSecond);
+        }
+        if (struct.isSetCpuLoad()) {
+          oprot.writeDouble(struct.cpuLoad);
+        }
       }
 
       @Override
       public void read(org.apache.thrift.protocol.TProtocol prot, registerCEPPublisher_args struct) throws org.apache.thrift.TException {
         TTupleProtocol iprot = (TTupleProtocol) prot;
-        BitSet incoming = iprot.readBitSet(4);
+        BitSet incoming = iprot.readBitSet(7);
         if (incoming.get(0)) {
           struct.tenantId = iprot.readI32();
           struct.setTenantIdIsSet(true);
@@ -2389,6 +2965,18 @@ public class StormManagerService {
           struct.port = iprot.readI32();
           struct.setPortIsSet(true);
         }
+        if (incoming.get(4)) {
+          struct.queueDepth = iprot.readI64();
+          struct.setQueueDepthIsSet(true);
+        }
+        if (incoming.get(5)) {
+          struct.eventsPerSecond = iprot.readDouble();
+          struct.setEventsPerSecondIsSet(true);
+        }
+        if (incoming.get(6)) {
+          struct.cpuLoad = iprot.readDouble();
+          struct.setCpuLoadIsSet(true);
+        }
       }
     }
 
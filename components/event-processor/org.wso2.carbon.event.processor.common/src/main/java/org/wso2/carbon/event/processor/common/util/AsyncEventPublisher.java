@@ -16,17 +16,20 @@
 
 package org.wso2.carbon.event.processor.common.util;
 
-import com.lmax.disruptor.EventFactory;
-import com.lmax.disruptor.EventHandler;
-import com.lmax.disruptor.RingBuffer;
-import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceReportingEventHandler;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.TimeoutBlockingWaitStrategy;
+import com.lmax.disruptor.TimeoutHandler;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import com.lmax.disruptor.dsl.ProducerType;
 import org.apache.log4j.Logger;
 import org.apache.thrift.TException;
-import org.apache.thrift.protocol.TBinaryProtocol;
-import org.apache.thrift.protocol.TProtocol;
-import org.apache.thrift.transport.TSocket;
-import org.apache.thrift.transport.TTransport;
 import org.apache.thrift.transport.TTransportException;
+import org.wso2.carbon.event.processor.common.storm.event.Event;
 import org.wso2.carbon.event.processor.common.storm.manager.service.StormManagerService;
 import org.wso2.carbon.event.processor.common.storm.manager.service.exception.EndpointNotFoundException;
 import org.wso2.carbon.event.processor.common.storm.manager.service.exception.NotStormCoordinatorException;
@@ -38,21 +41,69 @@ import org.wso2.carbon.event.processor.manager.commons.utils.Utils;
 import org.wso2.carbon.event.processor.manager.core.config.DistributedConfiguration;
 import org.wso2.siddhi.query.api.definition.StreamDefinition;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.SocketException;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.Executors;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Sending events asynchronously from "CEP Receiver" -> "Storm Receiver" and
  * "Storm Publisher" -> "CEP Publisher" using TCPEventPublisher. This will
  * discover and connect to the endpoint(i.e. Storm Receiver/CEP Publisher) to
  * send events by talking to "Storm Management" service using EndpointConnectionCreator.
+ * <p/>
+ * When DistributedProperties#TRANSPORT_BATCH_SIZE is greater than 1, events are drained from the buffer in batches
+ * and the connection is flushed once per batch instead of once per event. A batch is flushed when it is full or
+ * when its oldest event has waited DistributedProperties#TRANSPORT_BATCH_MAX_LATENCY microseconds.
+ * The wait strategy and producer type of the outbound buffer are set through DistributedProperties#BUFFER_WAIT_STRATEGY
+ * and DistributedProperties#BUFFER_PRODUCER_TYPE. The single producer type requires sendEvent to be called from
+ * exactly one thread, hence it is only used by publishers created with a single sender.
+ * <p/>
+ * The free capacity of the outbound buffer is the credit of the senders. When it runs out, which happens when the
+ * remote end stops reading, sendEvent applies the DistributedProperties#OVERLOAD_POLICY and accounts the time spent
+ * throttled and the events dropped.
+ * <p/>
+ * When a connection fails, a single connector thread reconnects with jittered exponential back off, while the
+ * consumer waits for it without polling. After DistributedProperties#CIRCUIT_BREAKER_THRESHOLD consecutive failed
+ * attempts the connection circuit opens, and publishers with the "drop_oldest" or "sample" overload policy stop
+ * waiting and drop the events instead. The state of the circuit is available through getCircuitState().
+ * <p/>
+ * With the "spill" overload policy, events consumed while the connection is down are written to a SpillLog instead
+ * of blocking the consumer until the connection is back. Once reconnected, the spilled events are replayed in order
+ * before any newer event is sent. Only the senders add to the outbound buffer, so the connector merely flags that a
+ * replay is pending, and an idle consumer picks it up on the timeout of its wait strategy, which is always the
+ * blocking one with the "spill" overload policy.
  */
-public class AsyncEventPublisher implements EventHandler<AsynchronousEventBuffer.DataHolder>, ConnectionFailureHandler {
+public class AsyncEventPublisher implements SequenceReportingEventHandler<AsynchronousEventBuffer.DataHolder>,
+        TimeoutHandler, ConnectionFailureHandler {
     public enum DestinationType {STORM_RECEIVER, CEP_PUBLISHER}
 
+    /**
+     * Ways of handling events sent while the outbound event buffer is full
+     */
+    public enum OverloadPolicy {BLOCK, DROP_OLDEST, SAMPLE, SPILL}
+
+    private static final long OVERLOAD_LOG_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+    /**
+     * Number of attempts to reconnect to the endpoint of a failed connection before asking the Storm manager
+     * service for an endpoint
+     */
+    private static final int LAST_ENDPOINT_ATTEMPTS = 3;
+    private static final long CONNECTION_WAIT_INTERVAL = 1000;
+    /**
+     * Milliseconds an idle consumer waits for events before checking for spilled events to replay
+     */
+    private static final long REPLAY_CHECK_INTERVAL = 100;
+    /**
+     * Maximum time a sender with the "drop_oldest" overload policy waits for the consumer to skip the event it marked
+     */
+    private static final long DROP_OLDEST_WAIT = TimeUnit.MILLISECONDS.toNanos(10);
+
     private transient Logger log = Logger.getLogger(AsyncEventPublisher.class);
     private String logPrefix;
 
@@ -70,21 +121,66 @@ public class AsyncEventPublisher implements EventHandler<AsynchronousEventBuffer
 
     private ConnectionCallback connectionCallback;
 
-    private TCPEventPublisher tcpEventPublisher = null;
+    private volatile TCPEventPublisher tcpEventPublisher = null;
     private EndpointConnectionCreator endpointConnectionCreator;
 
-    private boolean shutdown = false;
+    private volatile boolean shutdown = false;
+    /**
+     * Guards the connection state. Notified when connected, when the circuit opens and on shutdown.
+     */
+    private final Object connectionLock = new Object();
+    /**
+     * Whether a connector is running, so that at most one connects at a time
+     */
+    private final AtomicBoolean connecting = new AtomicBoolean(false);
+    private final CircuitBreaker circuitBreaker;
+    private final ReconnectBackoff reconnectBackoff;
 
     private ThroughputProbe inputThroughputProbe;
     private ThroughputProbe publishThroughputProbe;
 
+    private final int batchSize;
+    private final long batchMaxLatencyNanos;
+    /**
+     * Whether a partially filled batch has to be flushed at the end of a disruptor batch, since the wait strategy
+     * does not notify timeouts
+     */
+    private final boolean flushOnEndOfBatch;
+    private final OverloadPolicy overloadPolicy;
+    private final int sampleRate;
+    private final AtomicLong sampleCounter = new AtomicLong(0);
+    private final AtomicLong throttledTime = new AtomicLong(0);
+    private final AtomicLong droppedEventCount = new AtomicLong(0);
+    private volatile long lastOverloadLogTime = System.nanoTime() - OVERLOAD_LOG_INTERVAL;
+    /**
+     * Holds the events consumed while the connection is down, with the "spill" overload policy. Only accessed by the
+     * consumer thread, except for reading its size.
+     */
+    private SpillLog spillLog;
+    /**
+     * Set by the connector once reconnected while events are spilled, so that an idle consumer replays them without
+     * waiting for the next event
+     */
+    private volatile boolean replayPending = false;
+    private String[] batchStreamIds;
+    private long[] batchTimestamps;
+    private Object[][] batchData;
+    private int batchCount = 0;
+    private long batchStartTime;
+    /**
+     * Progress of the consumer, reported after each event so that senders waiting for room carry on without waiting
+     * for the end of the disruptor batch
+     */
+    private Sequence sequenceCallback;
+
     /**
      * @param connectionCallback is a callback, invoked on connect() and disconnect() methods of TCPEventPublisher. Set to null if the callback is not needed.
+     * @param singleSender       whether sendEvent is only ever called from one and the same thread
      */
     public AsyncEventPublisher(DestinationType destinationType, Set<StreamDefinition> streams,
                                List<HostAndPort> managerServiceEndpoints,
                                String executionPlanName, int tenantId, DistributedConfiguration stormDeploymentConfig,
-                               ConnectionCallback connectionCallback) {
+                               ConnectionCallback connectionCallback, boolean singleSender) {
         this.destinationType = destinationType;
         this.streams = streams;
         this.executionPlanName = executionPlanName;
@@ -99,9 +195,117 @@ public class AsyncEventPublisher implements EventHandler<AsynchronousEventBuffer
 
         int bufferSize = (publisherTypeString.equals("CEPReceiver")) ?
                 stormDeploymentConfig.getCepReceiverOutputQueueSize() : stormDeploymentConfig.getStormPublisherOutputQueueSize();
-        eventSendBuffer = new AsynchronousEventBuffer<Object[]>(bufferSize, this);
-
+        this.batchSize = Math.max(1, DistributedProperties.getInt(DistributedProperties.TRANSPORT_BATCH_SIZE,
+                DistributedProperties.DEFAULT_TRANSPORT_BATCH_SIZE));
+        long batchMaxLatency = DistributedProperties.getLong(DistributedProperties.TRANSPORT_BATCH_MAX_LATENCY,
+                DistributedProperties.DEFAULT_TRANSPORT_BATCH_MAX_LATENCY);
+        this.batchMaxLatencyNanos = TimeUnit.MICROSECONDS.toNanos(batchMaxLatency);
+
+        batchStreamIds = new String[batchSize];
+        batchTimestamps = new long[batchSize];
+        batchData = new Object[batchSize][];
         this.logPrefix = "[" + tenantId + ":" + executionPlanName + ":" + publisherTypeString + "] ";
+        this.overloadPolicy = createOverloadPolicy();
+        WaitStrategy waitStrategy = createWaitStrategy(batchMaxLatency);
+        this.flushOnEndOfBatch = !(waitStrategy instanceof TimeoutBlockingWaitStrategy);
+        eventSendBuffer = new AsynchronousEventBuffer<Object[]>(bufferSize, this, waitStrategy,
+                createProducerType(singleSender));
+
+        this.sampleRate = Math.max(1, DistributedProperties.getInt(DistributedProperties.OVERLOAD_SAMPLE_RATE,
+                DistributedProperties.DEFAULT_OVERLOAD_SAMPLE_RATE));
+        if (overloadPolicy == OverloadPolicy.SPILL) {
+            this.spillLog = createSpillLog();
+        }
+        this.circuitBreaker = new CircuitBreaker(DistributedProperties.getInt(
+                DistributedProperties.CIRCUIT_BREAKER_THRESHOLD, DistributedProperties.DEFAULT_CIRCUIT_BREAKER_THRESHOLD));
+        this.reconnectBackoff = new ReconnectBackoff(stormDeploymentConfig.getTransportReconnectInterval(),
+                DistributedProperties.getLong(DistributedProperties.RECONNECT_MAX_INTERVAL,
+                        DistributedProperties.DEFAULT_RECONNECT_MAX_INTERVAL));
+    }
+
+    private WaitStrategy createWaitStrategy(long batchMaxLatency) {
+        String waitStrategy = DistributedProperties.getString(DistributedProperties.BUFFER_WAIT_STRATEGY,
+                DistributedProperties.DEFAULT_BUFFER_WAIT_STRATEGY).toLowerCase();
+        if (overloadPolicy == OverloadPolicy.SPILL) {
+            // Timeouts are used to replay spilled events when no more events arrive, besides flushing batches.
+            if (!"blocking".equals(waitStrategy)) {
+                log.warn(logPrefix + "Wait strategy '" + waitStrategy + "' is not supported with spill overload " +
+                        "policy, using blocking wait strategy");
+            }
+            long timeout = (batchSize > 1) ? batchMaxLatency : TimeUnit.MILLISECONDS.toMicros(REPLAY_CHECK_INTERVAL);
+            return new TimeoutBlockingWaitStrategy(timeout, TimeUnit.MICROSECONDS);
+        }
+        if ("sleeping".equals(waitStrategy)) {
+            return new SleepingWaitStrategy();
+        } else if ("yielding".equals(waitStrategy)) {
+            return new YieldingWaitStrategy();
+        } else if ("busyspin".equals(waitStrategy)) {
+            return new BusySpinWaitStrategy();
+        } else if (!"blocking".equals(waitStrategy)) {
+            log.warn("Unknown wait strategy '" + waitStrategy + "' for the event buffer, using blocking wait strategy");
+        }
+        if (batchSize > 1) {
+            // Timeouts are used to flush partially filled batches when no more events arrive.
+            return new TimeoutBlockingWaitStrategy(batchMaxLatency, TimeUnit.MICROSECONDS);
+        }
+        return new BlockingWaitStrategy();
+    }
+
+    private ProducerType createProducerType(boolean singleSender) {
+        String producerType = DistributedProperties.getString(DistributedProperties.BUFFER_PRODUCER_TYPE,
+                DistributedProperties.DEFAULT_BUFFER_PRODUCER_TYPE);
+        if ("single".equalsIgnoreCase(producerType)) {
+            if (singleSender) {
+                return ProducerType.SINGLE;
+            }
+            // Concurrent producers would corrupt the sequences of a single producer buffer
+            log.warn(logPrefix + "Single producer type is not supported for the event buffer of a publisher shared " +
+                    "by several threads, using multi producer type");
+        } else if (!"multi".equalsIgnoreCase(producerType)) {
+            log.warn("Unknown producer type '" + producerType + "' for the event buffer, using multi producer type");
+        }
+        return ProducerType.MULTI;
+    }
+
+    private OverloadPolicy createOverloadPolicy() {
+        String overloadPolicy = DistributedProperties.getString(DistributedProperties.OVERLOAD_POLICY,
+                DistributedProperties.DEFAULT_OVERLOAD_POLICY);
+        try {
+            return OverloadPolicy.valueOf(overloadPolicy.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn(logPrefix + "Unknown overload policy '" + overloadPolicy + "', using block overload policy");
+            return OverloadPolicy.BLOCK;
+        }
+    }
+
+    /**
+     * @return spill log in a directory of its own, or null if it cannot be created, in which case the consumer blocks
+     * while the connection is down
+     */
+    private SpillLog createSpillLog() {
+        String spillDirectory = DistributedProperties.getString(DistributedProperties.SPILL_DIRECTORY,
+                DistributedProperties.DEFAULT_SPILL_DIRECTORY);
+        int segmentSize = DistributedProperties.getInt(DistributedProperties.SPILL_SEGMENT_SIZE,
+                DistributedProperties.DEFAULT_SPILL_SEGMENT_SIZE);
+        int maxSegments = DistributedProperties.getInt(DistributedProperties.SPILL_MAX_SEGMENTS,
+                DistributedProperties.DEFAULT_SPILL_MAX_SEGMENTS);
+        String fullPolicy = DistributedProperties.getString(DistributedProperties.SPILL_FULL_POLICY,
+                DistributedProperties.DEFAULT_SPILL_FULL_POLICY);
+        boolean dropOldest = !"drop_newest".equalsIgnoreCase(fullPolicy);
+        if (dropOldest && !"drop_oldest".equalsIgnoreCase(fullPolicy)) {
+            log.warn(logPrefix + "Unknown spill full policy '" + fullPolicy + "', using drop_oldest spill full policy");
+        }
+
+        // Several publishers of the same execution plan may run in the same host, even in different JVMs
+        File directory = new File(spillDirectory, tenantId + "_" + executionPlanName + "_" + publisherTypeString +
+                "_" + UUID.randomUUID());
+        try {
+            return new SpillLog(directory, streams, segmentSize, maxSegments, dropOldest);
+        } catch (IOException e) {
+            log.error(logPrefix + "Cannot create spill log at " + directory.getAbsolutePath() + ". Events will not " +
+                    "be spilled while the connection to " + destinationTypeString + " is down", e);
+            return null;
+        }
     }
 
     /**
@@ -114,23 +318,37 @@ public class AsyncEventPublisher implements EventHandler<AsynchronousEventBuffer
         try {
             this.thisHostIp = Utils.findAddress("localhost");
 
-            if (sync) {
-                endpointConnectionCreator.establishConnection();
-            } else {
-                Thread thread = new Thread(endpointConnectionCreator);
-                thread.start();
-            }
-            inputThroughputProbe = new ThroughputProbe(logPrefix + "-In", 10);
-            publishThroughputProbe = new ThroughputProbe(logPrefix + " -Publish", 10);
+            if (inputThroughputProbe == null) {
+                inputThroughputProbe = new ThroughputProbe(logPrefix + "-In", 10);
+                publishThroughputProbe = new ThroughputProbe(logPrefix + " -Publish", 10);
 
-            inputThroughputProbe.startSampling();
-            publishThroughputProbe.startSampling();
+                inputThroughputProbe.startSampling();
+                publishThroughputProbe.startSampling();
+            }
 
+            if (!sync) {
+                startConnector(null);
+            } else if (connecting.compareAndSet(false, true)) {
+                endpointConnectionCreator.establishConnection(null);
+            }
         } catch (SocketException e) {
             log.error(logPrefix + "Error while trying to obtain this host IP address", e);
         }
     }
 
+    /**
+     * Adds a stream to be sent through this publisher, also to the current connection if connected. The set of streams
+     * given to the constructor must allow concurrent modification when this is used.
+     */
+    public void addStreamDefinition(StreamDefinition streamDefinition) {
+        synchronized (connectionLock) {
+            streams.add(streamDefinition);
+            if (tcpEventPublisher != null) {
+                tcpEventPublisher.addStreamDefinition(streamDefinition);
+            }
+        }
+    }
+
     /**
      * Add event to the outbound event buffer and this call will return. Event will be sent asynchronously by disruptor consumer thread
      * via AsyncEventPublisher#onEvent.
@@ -139,14 +357,73 @@ public class AsyncEventPublisher implements EventHandler<AsynchronousEventBuffer
      * @param streamId
      */
     public void sendEvent(Object[] eventData, long timestamp, String streamId) {
-        eventSendBuffer.addEvent(eventData, timestamp, streamId);
         inputThroughputProbe.update();
+        switch (overloadPolicy) {
+            case SAMPLE:
+                if (eventSendBuffer.remainingCapacity() * 2 < eventSendBuffer.getBufferSize() &&
+                        sampleCounter.getAndIncrement() % sampleRate != 0) {
+                    onEventDropped(1);
+                } else if (!eventSendBuffer.tryAddEvent(eventData, timestamp, streamId)) {
+                    onEventDropped(1);
+                }
+                break;
+            case DROP_OLDEST:
+                // An overflowing event takes the room of the oldest queued event, which the consumer skips. The
+                // incoming event is only dropped when the consumer is stuck.
+                if (!eventSendBuffer.addEventDroppingOldest(eventData, timestamp, streamId, DROP_OLDEST_WAIT)) {
+                    onEventDropped(1);
+                }
+                break;
+            default:
+                if (!eventSendBuffer.tryAddEvent(eventData, timestamp, streamId)) {
+                    long startTime = System.nanoTime();
+                    eventSendBuffer.addEvent(eventData, timestamp, streamId);
+                    throttledTime.addAndGet(System.nanoTime() - startTime);
+                    logOverload();
+                }
+        }
+    }
+
+    private void onEventDropped(int count) {
+        droppedEventCount.addAndGet(count);
+        logOverload();
+    }
+
+    private void logOverload() {
+        long now = System.nanoTime();
+        if (now - lastOverloadLogTime >= OVERLOAD_LOG_INTERVAL) {
+            lastOverloadLogTime = now;
+            log.warn(logPrefix + "Outbound event buffer to " + destinationTypeString + " is full. Throttled for " +
+                    TimeUnit.NANOSECONDS.toMillis(throttledTime.get()) + "ms and dropped " + droppedEventCount.get() +
+                    " events in total with " + overloadPolicy.name().toLowerCase() + " overload policy");
+        }
+    }
+
+    /**
+     * @return total time in milliseconds senders were blocked because the outbound event buffer was full
+     */
+    public long getThrottledTime() {
+        return TimeUnit.NANOSECONDS.toMillis(throttledTime.get());
+    }
+
+    /**
+     * @return number of events waiting in the spill log to be replayed
+     */
+    public long getSpilledEventCount() {
+        return (spillLog != null) ? spillLog.size() : 0;
+    }
+
+    /**
+     * @return total number of events dropped by the overload policy
+     */
+    public long getDroppedEventCount() {
+        return droppedEventCount.get();
     }
 
     /**
      * Callback from disruptor for the consumer to consume data. This is where events are actually dispatched to the remote end.
-     * If an exception occurs when trying send data it will keep trying to send for ever until succeeds. Returns only
-     * after sending the event.
+     * Returns only after sending the event, or after adding it to the current batch when batching is enabled. While
+     * the connection is down, it waits for the connection unless the events can be spilled or dropped.
      *
      * @param dataHolder
      * @param sequence
@@ -154,79 +431,305 @@ public class AsyncEventPublisher implements EventHandler<AsynchronousEventBuffer
      */
     @Override
     public void onEvent(AsynchronousEventBuffer.DataHolder dataHolder, long sequence, boolean endOfBatch) {
-        while (tcpEventPublisher == null) {
-            log.info(logPrefix + "Can't send event. TCP event publisher not initialized. Waiting " + stormDeploymentConfig.getTransportReconnectInterval() + "s");
-            try {
-                synchronized (this) {
-                    if (shutdown) {
-                        log.info(logPrefix + "Aborting retry to send events. AsyncEventPublisher has shutdown.");
-                        return;
+        if (eventSendBuffer.isDiscarded(sequence)) {
+            // Marked by a sender with the "drop_oldest" overload policy, which took its room
+            onEventDropped(1);
+        } else {
+            if (batchSize == 1 && batchCount == 1) {
+                // Without batching an event is held until the next one, so that only the last event of the
+                // disruptor batch flushes the connection, even if that one is discarded
+                publishBatch(false);
+            }
+            // Data holder is reused by the ring buffer once the sequence is reported, hence keeping the references
+            // separately.
+            if (batchCount == 0) {
+                batchStartTime = System.nanoTime();
+            }
+            batchStreamIds[batchCount] = dataHolder.getStreamId();
+            batchTimestamps[batchCount] = dataHolder.getTimestamp();
+            batchData[batchCount] = (Object[]) dataHolder.getData();
+            batchCount++;
+        }
+        sequenceCallback.set(sequence);
+
+        if (batchSize > 1 && batchCount == batchSize) {
+            publishBatch(true);
+        } else if (endOfBatch && batchCount > 0 && (batchSize == 1 || flushOnEndOfBatch ||
+                System.nanoTime() - batchStartTime >= batchMaxLatencyNanos)) {
+            publishBatch(true);
+        }
+    }
+
+    @Override
+    public void setSequenceCallback(Sequence sequenceCallback) {
+        this.sequenceCallback = sequenceCallback;
+    }
+
+    /**
+     * Callback from disruptor when no events arrived within the batch latency, or within the replay check interval
+     * with the "spill" overload policy. Flushes the partially filled batch, replaying the spilled events before it
+     * when reconnected. Nothing is replayed if the connection failed again, as the next connector flags it again.
+     *
+     * @param sequence
+     */
+    @Override
+    public void onTimeout(long sequence) {
+        if (replayPending) {
+            replayPending = false;
+            TCPEventPublisher publisher = tcpEventPublisher;
+            if (publisher != null && batchCount == 0) {
+                replaySpilledEvents(publisher, true);
+            }
+        }
+        if (batchCount > 0) {
+            publishBatch(true);
+        }
+    }
+
+    /**
+     * Writes all the events of the current batch to the connection, so the whole batch goes out with a single write.
+     * When sending fails the connection is re-established in the background, and the complete batch is sent again
+     * once connected. While the connection is down the batch is spilled, dropped when the circuit is open and the
+     * overload policy drops events, or else held until the connection is back.
+     *
+     * @param flush whether to flush the connection after the last event of the batch
+     */
+    private void publishBatch(boolean flush) {
+        while (true) {
+            TCPEventPublisher publisher = tcpEventPublisher;
+            if (publisher == null) {
+                if (spillLog != null || (dropsEvents() && circuitBreaker.isOpen())) {
+                    for (int i = 0; i < batchCount; i++) {
+                        spillOrDrop(batchStreamIds[i], batchTimestamps[i], batchData[i]);
                     }
+                    break;
                 }
-                Thread.sleep(stormDeploymentConfig.getTransportReconnectInterval());
-            } catch (InterruptedException e) {
+                if (!awaitConnection()) {
+                    break;
+                }
+                continue;
+            }
+            if (spillLog != null && !replaySpilledEvents(publisher, false)) {
+                continue;
+            }
+
+            try {
+                int lastIndex = batchCount - 1;
+                for (int i = 0; i < batchCount; i++) {
+                    publisher.sendEvent(batchStreamIds[i], batchTimestamps[i], batchData[i], flush && i == lastIndex);
+                    publishThroughputProbe.update();
+                }
+                break;
+            } catch (IOException e) {
+                log.error(logPrefix + "Error while trying to send " + batchCount + " event(s) to " +
+                        destinationTypeString + " at " + publisher.getHostUrl(), e);
+                onSendFailure(publisher);
             }
         }
+        clearBatch();
+    }
 
-        // TODO : comment on message lost of the last batch
+    private void clearBatch() {
+        for (int i = 0; i < batchCount; i++) {
+            batchStreamIds[i] = null;
+            batchData[i] = null;
+        }
+        batchCount = 0;
+    }
+
+    /**
+     * @return whether the overload policy prefers dropping events over waiting for the connection
+     */
+    private boolean dropsEvents() {
+        return overloadPolicy == OverloadPolicy.DROP_OLDEST || overloadPolicy == OverloadPolicy.SAMPLE;
+    }
+
+    private void spillOrDrop(String streamId, long timestamp, Object[] data) {
+        if (spillLog == null) {
+            onEventDropped(1);
+            return;
+        }
+        if (spillLog.isEmpty()) {
+            log.warn(logPrefix + "Connection to " + destinationTypeString + " is not available. Spilling events to " +
+                    spillLog.getDirectory().getAbsolutePath());
+        }
         try {
-            tcpEventPublisher.sendEvent(dataHolder.getStreamId(), dataHolder.getTimestamp(), (Object[]) dataHolder.getData(), endOfBatch);
-            publishThroughputProbe.update();
+            if (!spillLog.append(streamId, timestamp, data)) {
+                onEventDropped(1);
+            }
         } catch (IOException e) {
-            log.error(logPrefix + "Error while trying to send event to " + destinationTypeString + " at " + tcpEventPublisher.getHostUrl(), e);
-            reconnect();
-            onEvent(dataHolder, sequence, endOfBatch);
+            log.error(logPrefix + "Cannot spill event of stream '" + streamId + "'. Dropping it.", e);
+            onEventDropped(1);
         }
     }
 
     /**
-     * First tires to reconnect to the already obtained end point. If failed re-initialize the connection.
+     * Sends all spilled events in order. An event is removed from the spill log only after it was written to the
+     * connection, hence events of a failed replay are sent again after reconnecting.
+     *
+     * @param flush whether to flush the connection after the last spilled event
+     * @return true if the spill log is empty
      */
-    private void reconnect() {
-        String destinationHostPort = tcpEventPublisher.getHostUrl();
-        resetTCPEventPublisher();
-        // Retrying to connect to the existing endpoint.
-        tcpEventPublisher = endpointConnectionCreator.connectToEndpoint(destinationHostPort, 3);
-        // Initialize connection from the beginning if can't connect to the existing endpoint
-        if (tcpEventPublisher == null) {
-            log.error(logPrefix + "Failed to connect to existing " + destinationTypeString + " at " + destinationHostPort + ". Reinitializing connection process");
-            initializeConnection(true);
+    private boolean replaySpilledEvents(TCPEventPublisher publisher, boolean flush) {
+        if (spillLog.isEmpty()) {
+            return true;
+        }
+
+        long replayedCount = 0;
+        while (true) {
+            Event event;
+            try {
+                event = spillLog.peek();
+            } catch (IOException e) {
+                log.error(logPrefix + "Cannot read spilled events. Dropped " + spillLog.clear() + " spilled events.", e);
+                return true;
+            }
+            if (event == null) {
+                break;
+            }
+            try {
+                publisher.sendEvent(event.getStreamId(), event.getTimestamp(), event.getData(),
+                        flush && spillLog.size() == 1);
+            } catch (IOException e) {
+                log.error(logPrefix + "Error while replaying spilled events to " + destinationTypeString + " at " +
+                        publisher.getHostUrl() + ". " + spillLog.size() + " events remain spilled.", e);
+                onSendFailure(publisher);
+                return false;
+            }
+            spillLog.remove();
+            publishThroughputProbe.update();
+            replayedCount++;
         }
+        log.info(logPrefix + "Replayed " + replayedCount + " spilled events to " + destinationTypeString + " at " +
+                publisher.getHostUrl());
+        return true;
     }
 
-    private void resetTCPEventPublisher() {
-        if (tcpEventPublisher != null) {
-            tcpEventPublisher.terminate();
+    /**
+     * Blocks until connected. The connector notifies when the connection is established or the circuit opens.
+     *
+     * @return false if the publisher got shutdown while waiting
+     */
+    private boolean awaitConnection() {
+        boolean logged = false;
+        synchronized (connectionLock) {
+            while (tcpEventPublisher == null) {
+                if (shutdown) {
+                    log.info(logPrefix + "Aborting retry to send events. AsyncEventPublisher has shutdown.");
+                    return false;
+                }
+                if (dropsEvents() && circuitBreaker.isOpen()) {
+                    return true;
+                }
+                if (!logged) {
+                    log.info(logPrefix + "Can't send event. Waiting for the connection to " + destinationTypeString);
+                    logged = true;
+                }
+                try {
+                    connectionLock.wait(CONNECTION_WAIT_INTERVAL);
+                } catch (InterruptedException e) {
+                    // Waiting until connected or shutdown
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drops the failed connection and reconnects in the background, unless another thread already did so.
+     */
+    private void onSendFailure(TCPEventPublisher publisher) {
+        synchronized (connectionLock) {
+            if (tcpEventPublisher != publisher) {
+                return;
+            }
             tcpEventPublisher = null;
         }
+        publisher.terminate();
+        startConnector(publisher.getHostUrl());
+    }
+
+    /**
+     * Starts connecting on a new thread, unless a connector is already running.
+     *
+     * @param lastEndpoint endpoint to try first, or null to ask the Storm manager service for an endpoint
+     */
+    private void startConnector(final String lastEndpoint) {
+        if (shutdown || !connecting.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                endpointConnectionCreator.establishConnection(lastEndpoint);
+            }
+        }, "AsyncEventPublisherConnector");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return state of the circuit of the connection to the remote endpoint
+     */
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    /**
+     * @return number of times the circuit of the connection to the remote endpoint opened
+     */
+    public long getCircuitOpenCount() {
+        return circuitBreaker.getOpenCount();
     }
 
     @Override
     protected void finalize() {
-        if (tcpEventPublisher != null) {
-            tcpEventPublisher.shutdown();
+        TCPEventPublisher publisher;
+        synchronized (connectionLock) {
+            publisher = tcpEventPublisher;
             tcpEventPublisher = null;
         }
+        if (publisher != null) {
+            publisher.shutdown();
+        }
     }
 
     public void shutdown() {
-        synchronized (this) {
+        synchronized (connectionLock) {
             shutdown = true;
+            // Wakes up the consumer and the connector
+            connectionLock.notifyAll();
         }
         eventSendBuffer.terminate();
         finalize();
+        if (inputThroughputProbe != null) {
+            inputThroughputProbe.stopSampling();
+            publishThroughputProbe.stopSampling();
+        }
+        if (spillLog != null) {
+            long spilledCount = spillLog.size();
+            if (spilledCount > 0) {
+                log.warn(logPrefix + "Discarding " + spilledCount + " spilled events not sent to " +
+                        destinationTypeString + " before shutdown");
+            }
+            spillLog.close();
+        }
     }
 
     @Override
     public void onConnectionFail(Exception e) {
+        TCPEventPublisher publisher = tcpEventPublisher;
+        if (publisher == null) {
+            return;
+        }
         if (log.isDebugEnabled()) {
-            log.debug("Pinging failed to " + tcpEventPublisher.getHostUrl() + ". Trying to re-connect.");
+            log.debug("Pinging failed to " + publisher.getHostUrl() + ". Trying to re-connect.");
         }
 
         if (!shutdown) {
-            reconnect();
+            onSendFailure(publisher);
         } else {
-            log.info("Not trying to reconnect to " + tcpEventPublisher.getHostUrl() + " because event publisher is shutdown");
+            log.info("Not trying to reconnect to " + publisher.getHostUrl() + " because event publisher is shutdown");
         }
     }
 
@@ -234,235 +737,161 @@ public class AsyncEventPublisher implements EventHandler<AsynchronousEventBuffer
      * Creates connection to remote endpoint. First, talk to manager service to retrieve endpoint for given execution plan and tenant.
      * And then creates a connection to connect to remote endpoint.
      */
-    class EndpointConnectionCreator implements Runnable {
+    class EndpointConnectionCreator {
         /**
-         * Get the IP and the port of CEP Publisher/ Storm Receive by talking to Storm manager service.
-         * Returns only after retrieving information from manager service. In case of a failure keep trying
-         * to connect to manager service.
+         * Get the IP and the port of CEP Publisher/ Storm Receive by talking to Storm manager service. Asks each
+         * manager once, healthy managers first.
          *
-         * @return endpoint Host and port in <ip>:<port> format
+         * @return endpoint Host and port in <ip>:<port> format, or null if no manager returned an endpoint
          */
         public String getEndpointFromManagerService() {
-            String endpointHostPort = null;
-            do {
-                for (HostAndPort endpoint : managerServiceEndpoints) {
-                    TTransport transport = null;
-                    try {
-                        transport = new TSocket(endpoint.getHostName(), endpoint.getPort());
-                        TProtocol protocol = new TBinaryProtocol(transport);
-                        transport.open();
-                        StormManagerService.Client client = new StormManagerService.Client(protocol);
-
-                        if (destinationType == DestinationType.CEP_PUBLISHER) {
-                            endpointHostPort = client.getCEPPublisher(tenantId, executionPlanName, thisHostIp);
-                        } else {
-                            endpointHostPort = client.getStormReceiver(tenantId, executionPlanName, thisHostIp);
-                        }
-                        log.info(logPrefix + "Retrieved " + destinationTypeString + " at " + endpointHostPort + " " +
-                                "from storm manager service at " + endpoint.getHostName() + ":" + endpoint.getPort());
-                        break;
-                    } catch (NotStormCoordinatorException e) {
-                        log.info(logPrefix + "Cannot retrieve " + destinationType.name() +
-                                " endpoint information from storm manager service at " +
-                                endpoint.getHostName() + ":" + endpoint.getPort() + " as it's not a Storm coordinator, Trying next Storm manager.");
-
-                    } catch (EndpointNotFoundException e) {
-                        log.info(logPrefix + destinationType.name() +
-                                " endpoint information not available on storm manager service at " +
-                                endpoint.getHostName() + ":" + endpoint.getPort() + ". Trying next Storm manager.");
-                    } catch (TTransportException e) {
-                        log.info(logPrefix + "Cannot retrieve " + destinationType.name() +
-                                " endpoint information from storm manager service at " +
-                                endpoint.getHostName() + ":" + endpoint.getPort() + " as it's not reachable, " + e.getMessage() + ". Trying next Storm manager.");
-
-                    } catch (TException e) {
-                        log.info(logPrefix + "Cannot retrieve " + destinationType.name() +
-                                " endpoint information from storm manager service at " +
-                                endpoint.getHostName() + ":" + endpoint.getPort() + " as it's not reachable, " + e.getMessage() + ". Trying next Storm manager.");
-
-                    }  finally {
-                        if (transport != null) {
-                            transport.close();
-                        }
-                    }
-                }
+            for (HostAndPort endpoint : ManagerServiceClientPool.getInstance().orderByHealth(managerServiceEndpoints)) {
+                try {
+                    String endpointHostPort = ManagerServiceClientPool.getInstance().execute(endpoint,
+                            new ManagerServiceClientPool.ManagerServiceCall<String>() {
+                                @Override
+                                public String call(StormManagerService.Client client) throws TException {
+                                    if (destinationType == DestinationType.CEP_PUBLISHER) {
+                                        return client.getCEPPublisher(tenantId, executionPlanName, thisHostIp);
+                                    } else {
+                                        return client.getStormReceiver(tenantId, executionPlanName, thisHostIp);
+                                    }
+                                }
+                            });
+                    log.info(logPrefix + "Retrieved " + destinationTypeString + " at " + endpointHostPort + " " +
+                            "from storm manager service at " + endpoint.getHostName() + ":" + endpoint.getPort());
+                    return endpointHostPort;
+                } catch (NotStormCoordinatorException e) {
+                    log.info(logPrefix + "Cannot retrieve " + destinationType.name() +
+                            " endpoint information from storm manager service at " +
+                            endpoint.getHostName() + ":" + endpoint.getPort() + " as it's not a Storm coordinator, Trying next Storm manager.");
+
+                } catch (EndpointNotFoundException e) {
+                    log.info(logPrefix + destinationType.name() +
+                            " endpoint information not available on storm manager service at " +
+                            endpoint.getHostName() + ":" + endpoint.getPort() + ". Trying next Storm manager.");
+                } catch (TTransportException e) {
+                    log.info(logPrefix + "Cannot retrieve " + destinationType.name() +
+                            " endpoint information from storm manager service at " +
+                            endpoint.getHostName() + ":" + endpoint.getPort() + " as it's not reachable, " + e.getMessage() + ". Trying next Storm manager.");
+
+                } catch (TException e) {
+                    log.info(logPrefix + "Cannot retrieve " + destinationType.name() +
+                            " endpoint information from storm manager service at " +
+                            endpoint.getHostName() + ":" + endpoint.getPort() + " as it's not reachable, " + e.getMessage() + ". Trying next Storm manager.");
 
-                synchronized (AsyncEventPublisher.this) {
-                    if (shutdown) {
-                        log.info(logPrefix + "Stopping attempting to connect to Storm manager service. Async event publisher is shutdown");
-                        return null;
-                    }
                 }
+            }
+            log.info(logPrefix + "Failed to retrieve " + destinationType.name() + " from given set of Storm Managers");
+            return null;
+        }
 
-                if (endpointHostPort == null) {
-                    try {
-                        log.info(logPrefix + "Failed to retrieve " + destinationType.name() + " from given " +
-                                "set of Storm Managers. Retrying to retrieve endpoint from manager " +
-                                "service in " + stormDeploymentConfig.getManagementReconnectInterval()
-                                + " ms to get a " + destinationTypeString);
-                        Thread.sleep(stormDeploymentConfig.getManagementReconnectInterval());
-                    } catch (InterruptedException e1) {
-                        Thread.currentThread().interrupt();
-                    }
+        /**
+         * Connect to a given endpoint (i.e. CEP publisher or storm receiver).
+         *
+         * @param endpoint Destination Ip and port in <ip>:<port> format
+         * @return Returns TCPEvent publisher to talk to endpoint or null if the connection failed
+         */
+        public TCPEventPublisher connectToEndpoint(String endpoint) {
+            try {
+                TCPEventPublisher tcpEventPublisher = new TCPEventPublisher(endpoint,
+                        stormDeploymentConfig.constructTransportPublisherConfig(), true, connectionCallback);
+                StringBuilder streamsIDs = new StringBuilder();
+                for (StreamDefinition siddhiStreamDefinition : streams) {
+                    tcpEventPublisher.addStreamDefinition(siddhiStreamDefinition);
+                    streamsIDs.append(siddhiStreamDefinition.getId() + ",");
                 }
-
-            } while (endpointHostPort == null);
-
-            return endpointHostPort;
+                tcpEventPublisher.registerConnectionFailureHandler(AsyncEventPublisher.this);
+                log.info(logPrefix + "Connected to " + destinationTypeString + " at " + endpoint + " for the Stream(s) " + streamsIDs.toString());
+                return tcpEventPublisher;
+            } catch (IOException e) {
+                log.info(logPrefix + "Cannot connect to " + destinationTypeString + " at " + endpoint + ", " + e.getMessage());
+                if (log.isDebugEnabled()) {
+                    log.debug(logPrefix + "Cannot connect to " + destinationTypeString + " at " + endpoint, e);
+                }
+                return null;
+            }
         }
 
         /**
-         * Connect to a given endpoint (i.e. CEP publisher or storm receiver). In case of failure retry to connect. Returns only
-         * after connecting to the endpoint or after reaching maximum attempts.
+         * Connects to the remote endpoint, retrying with jittered exponential back off until connected or shutdown.
+         * The last endpoint is tried first for a few attempts, after which the Storm manager service is asked for an
+         * endpoint on each attempt. Must only run on the thread which set the connecting flag.
          *
-         * @param endpoint      Destination Ip and port in <ip>:<port> format
-         * @param retryAttempts maximum number of retry attempts. 0 means retry for ever.
-         * @return Returns TCPEvent publisher to talk to endpoint or null if reaches maximum number of attempts without succeeding
+         * @param lastEndpoint endpoint in <ip>:<port> format to try first, or null
          */
-        public TCPEventPublisher connectToEndpoint(String endpoint, int retryAttempts) {
-            TCPEventPublisher tcpEventPublisher = null;
-            int attemptCount = 0;
-            do {
-                synchronized (AsyncEventPublisher.this) {
-                    if (shutdown) {
-                        log.info(logPrefix + "Stopping attempting to connect to endpoint " + endpoint + ". Async event publisher is shutdown");
-                        return null;
+        public void establishConnection(String lastEndpoint) {
+            if (lastEndpoint == null) {
+                log.info(logPrefix + "Requesting a " + destinationTypeString + " for " + thisHostIp);
+            }
+            int lastEndpointAttempts = (lastEndpoint != null) ? LAST_ENDPOINT_ATTEMPTS : 0;
+            try {
+                while (!shutdown) {
+                    circuitBreaker.onAttempt();
+                    String endpoint;
+                    if (lastEndpointAttempts > 0) {
+                        lastEndpointAttempts--;
+                        endpoint = lastEndpoint;
+                        if (lastEndpointAttempts == 0) {
+                            log.info(logPrefix + "Last attempt to connect to existing " + destinationTypeString +
+                                    " at " + lastEndpoint + " before requesting a new one from manager service");
+                        }
+                    } else {
+                        endpoint = getEndpointFromManagerService();
                     }
-                }
 
-                try {
-                    tcpEventPublisher = new TCPEventPublisher(endpoint, stormDeploymentConfig.constructTransportPublisherConfig(), true, connectionCallback);
-                    StringBuilder streamsIDs = new StringBuilder();
-                    for (StreamDefinition siddhiStreamDefinition : streams) {
-                        tcpEventPublisher.addStreamDefinition(siddhiStreamDefinition);
-                        streamsIDs.append(siddhiStreamDefinition.getId() + ",");
-                    }
-                    tcpEventPublisher.registerConnectionFailureHandler(AsyncEventPublisher.this);
-                    log.info(logPrefix + "Connected to " + destinationTypeString + " at " + endpoint + " for the Stream(s) " + streamsIDs.toString());
-                } catch (IOException e) {
-                    log.info(logPrefix + "Cannot connect to " + destinationTypeString + " at " + endpoint + ", " + e.getMessage());
-                    if (log.isDebugEnabled()) {
-                        log.debug(logPrefix + "Cannot connect to " + destinationTypeString + " at " + endpoint, e);
+                    TCPEventPublisher publisher = (endpoint != null) ? connectToEndpoint(endpoint) : null;
+                    if (publisher != null) {
+                        circuitBreaker.onSuccess();
+                        reconnectBackoff.reset();
+                        onConnected(publisher);
+                        return;
                     }
-                }
 
-                if (tcpEventPublisher == null) {
-                    ++attemptCount;
-                    if (retryAttempts > 0 && (attemptCount > retryAttempts)) {
-                        return null;
+                    if (circuitBreaker.onFailure()) {
+                        log.warn(logPrefix + "Connection circuit to " + destinationTypeString + " opened after " +
+                                circuitBreaker.getConsecutiveFailures() + " failed attempts" +
+                                (dropsEvents() ? ". Dropping events until connected." : "."));
                     }
-
-                    try {
-                        log.info(logPrefix + "Retrying(" + attemptCount + ") to connect to " + destinationTypeString + " at " + endpoint + " in "
-                                + stormDeploymentConfig.getTransportReconnectInterval() + "ms");
-                        Thread.sleep(stormDeploymentConfig.getTransportReconnectInterval());
-                    } catch (InterruptedException e1) {
-                        Thread.currentThread().interrupt();
+                    long delay = reconnectBackoff.nextDelay();
+                    log.info(logPrefix + "Retrying to connect to " + destinationTypeString + " in " + delay + "ms");
+                    synchronized (connectionLock) {
+                        // Consumer re-evaluates whether to wait, as the circuit might have opened
+                        connectionLock.notifyAll();
+                        if (!shutdown) {
+                            connectionLock.wait(delay);
+                        }
                     }
                 }
-            } while (tcpEventPublisher == null);
-
-            return tcpEventPublisher;
+                log.info(logPrefix + "Stopping attempting to connect to " + destinationTypeString + ". Async event " +
+                        "publisher is shutdown");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn(logPrefix + "Interrupted while connecting to " + destinationTypeString);
+            }
+            connecting.set(false);
         }
 
-        /**
-         * First connect to the manager service and retrieve endpoint ip and port. Then connect to the endpoint.
-         * Returns only after completing these tasks. Keeps trying forever until succeeds.
-         */
-        public void establishConnection() {
-            log.info(logPrefix + "Requesting a " + destinationTypeString + " for " + thisHostIp);
-
-            do {
-                String endpointHostPort = getEndpointFromManagerService();
-                if (endpointHostPort != null) {
-                    tcpEventPublisher = connectToEndpoint(endpointHostPort, 3);
+        private void onConnected(TCPEventPublisher publisher) {
+            synchronized (connectionLock) {
+                // Cleared while holding the lock, so that a failure of the new connection starts a new connector
+                connecting.set(false);
+                if (shutdown) {
+                    publisher.shutdown();
+                    return;
                 }
-            } while (tcpEventPublisher == null);
-        }
-
-        @Override
-        public void run() {
-            establishConnection();
-        }
-    }
-}
-
-/**
- * Store events in a disruptor
- *
- * @param <Type> Type of data to be stored in buffer.
- */
-class AsynchronousEventBuffer<Type> {
-    private Disruptor<DataHolder> disruptor;
-    private RingBuffer<DataHolder> ringBuffer;
-
-    /**
-     * Creates a AsynchronousEventBuffer instance
-     *
-     * @param bufferSize     size of the buffer
-     * @param publishHandler Instance of publish handler which is responsible for consuming events in the buffer
-     */
-    public AsynchronousEventBuffer(int bufferSize, EventHandler publishHandler) {
-        this.disruptor = new Disruptor<DataHolder>(new EventFactory<DataHolder>() {
-            @Override
-            public DataHolder newInstance() {
-                return new DataHolder();
+                // Streams might have been added while connecting
+                for (StreamDefinition streamDefinition : streams) {
+                    publisher.addStreamDefinition(streamDefinition);
+                }
+                tcpEventPublisher = publisher;
+                connectionLock.notifyAll();
+            }
+            // Spilled events are otherwise only replayed with the next event. Adding to the outbound buffer from here
+            // would make the connector another producer of it.
+            if (spillLog != null && !spillLog.isEmpty()) {
+                replayPending = true;
             }
-        }, bufferSize, Executors.newSingleThreadExecutor());
-
-        this.ringBuffer = disruptor.getRingBuffer();
-
-        this.disruptor.handleEventsWith(publishHandler);
-
-        disruptor.start();
-    }
-
-    public void addEvent(Type data, long timestamp, String streamId) {
-        long sequenceNo = ringBuffer.next();
-        try {
-            DataHolder existingHolder = ringBuffer.get(sequenceNo);
-            existingHolder.setData(data);
-            existingHolder.setTimestamp(timestamp);
-            existingHolder.setStreamId(streamId);
-        } finally {
-            ringBuffer.publish(sequenceNo);
-        }
-    }
-
-    public void terminate() {
-        disruptor.halt();
-    }
-
-    class DataHolder {
-        Type data;
-        String streamId;
-        private long timestamp;
-
-        public void setData(Type data) {
-            this.data = data;
-        }
-
-        public Type getData() {
-            return data;
-        }
-
-        public void setStreamId(String streamId) {
-            this.streamId = streamId;
-        }
-
-        public String getStreamId() {
-            return streamId;
-        }
-
-        public long getTimestamp() {
-            return timestamp;
-        }
-
-        public void setTimestamp(long timestamp) {
-            this.timestamp = timestamp;
         }
-
     }
 }
-
-
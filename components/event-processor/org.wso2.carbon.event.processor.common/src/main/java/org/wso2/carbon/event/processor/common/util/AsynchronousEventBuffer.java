@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.common.util;
+
+import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Store events in a disruptor
+ * <p/>
+ * Events added with addEventDroppingOldest make room for themselves by marking the oldest queued events, which the
+ * consumer has to skip after checking isDiscarded. Room is only made as the consumer reports the sequence of each
+ * event it consumed or skipped, hence the consumer must be a SequenceReportingEventHandler doing so.
+ *
+ * @param <Type> Type of data to be stored in buffer.
+ */
+public class AsynchronousEventBuffer<Type> {
+    private Disruptor<DataHolder> disruptor;
+    private RingBuffer<DataHolder> ringBuffer;
+    /**
+     * Queued events up to this sequence are discarded by the consumer instead of being consumed
+     */
+    private final AtomicLong discardUpToSequence = new AtomicLong(-1);
+    /**
+     * Number of senders waiting for the consumer to get past the events they marked
+     */
+    private final AtomicInteger overflowingSenders = new AtomicInteger(0);
+    /**
+     * Sequence the consumer was at when a sender last waited for room in vain
+     */
+    private volatile long stalledConsumerSequence = Long.MIN_VALUE;
+
+    /**
+     * Creates a AsynchronousEventBuffer instance
+     *
+     * @param bufferSize     size of the buffer
+     * @param publishHandler Instance of publish handler which is responsible for consuming events in the buffer
+     * @param waitStrategy   strategy used by the consumer to wait for events
+     * @param producerType   whether events are added from a single thread or from multiple threads
+     */
+    public AsynchronousEventBuffer(int bufferSize, EventHandler publishHandler, WaitStrategy waitStrategy,
+                                   ProducerType producerType) {
+        this.disruptor = new Disruptor<DataHolder>(new EventFactory<DataHolder>() {
+            @Override
+            public DataHolder newInstance() {
+                return new DataHolder();
+            }
+        }, bufferSize, Executors.newSingleThreadExecutor(), producerType, waitStrategy);
+
+        this.ringBuffer = disruptor.getRingBuffer();
+
+        this.disruptor.handleEventsWith(publishHandler);
+
+        disruptor.start();
+    }
+
+    /**
+     * Adds the event only if there is free capacity in the buffer.
+     *
+     * @return false if the buffer is full
+     */
+    public boolean tryAddEvent(Type data, long timestamp, String streamId) {
+        long sequenceNo;
+        try {
+            sequenceNo = ringBuffer.tryNext();
+        } catch (InsufficientCapacityException e) {
+            return false;
+        }
+        try {
+            DataHolder existingHolder = ringBuffer.get(sequenceNo);
+            existingHolder.setData(data);
+            existingHolder.setTimestamp(timestamp);
+            existingHolder.setStreamId(streamId);
+        } finally {
+            ringBuffer.publish(sequenceNo);
+        }
+        return true;
+    }
+
+    /**
+     * Adds the event, making room for it when the buffer is full by marking the oldest queued event to be discarded.
+     * The event the consumer might be working on is never marked, and each sender waiting for room marks an event
+     * of its own. The sender waits for the consumer to get past the marked event for at most the given time, and does
+     * not wait again until the consumer made progress, as it is stuck, e.g. waiting for a connection.
+     *
+     * @param timeoutNanos maximum time to wait for room
+     * @return false if there was no room within the given time, in which case the event is not added
+     */
+    public boolean addEventDroppingOldest(Type data, long timestamp, String streamId, long timeoutNanos) {
+        if (tryAddEvent(data, timestamp, streamId)) {
+            return true;
+        }
+        long consumerSequence = ringBuffer.getMinimumGatingSequence();
+        if (consumerSequence == stalledConsumerSequence) {
+            return false;
+        }
+        int waitingSenders = overflowingSenders.incrementAndGet();
+        try {
+            // The consumer reported the events up to consumerSequence and might be working on the next one
+            long target = Math.min(consumerSequence + 1 + waitingSenders, ringBuffer.getCursor());
+            long current;
+            do {
+                current = discardUpToSequence.get();
+            } while (target > current && !discardUpToSequence.compareAndSet(current, target));
+
+            long deadline = System.nanoTime() + timeoutNanos;
+            while (!tryAddEvent(data, timestamp, streamId)) {
+                if (System.nanoTime() - deadline >= 0) {
+                    stalledConsumerSequence = ringBuffer.getMinimumGatingSequence();
+                    return false;
+                }
+                LockSupport.parkNanos(1);
+            }
+            return true;
+        } finally {
+            overflowingSenders.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return whether the consumer has to skip the event of the given sequence, as it was marked to make room
+     */
+    public boolean isDiscarded(long sequence) {
+        return sequence <= discardUpToSequence.get();
+    }
+
+    public long remainingCapacity() {
+        return ringBuffer.remainingCapacity();
+    }
+
+    public int getBufferSize() {
+        return ringBuffer.getBufferSize();
+    }
+
+    public void addEvent(Type data, long timestamp, String streamId) {
+        long sequenceNo = ringBuffer.next();
+        try {
+            DataHolder existingHolder = ringBuffer.get(sequenceNo);
+            existingHolder.setData(data);
+            existingHolder.setTimestamp(timestamp);
+            existingHolder.setStreamId(streamId);
+        } finally {
+            ringBuffer.publish(sequenceNo);
+        }
+    }
+
+    public void terminate() {
+        disruptor.halt();
+    }
+
+    public class DataHolder {
+        Type data;
+        String streamId;
+        private long timestamp;
+
+        public void setData(Type data) {
+            this.data = data;
+        }
+
+        public Type getData() {
+            return data;
+        }
+
+        public void setStreamId(String streamId) {
+            this.streamId = streamId;
+        }
+
+        public String getStreamId() {
+            return streamId;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public void setTimestamp(long timestamp) {
+            this.timestamp = timestamp;
+        }
+
+    }
+}
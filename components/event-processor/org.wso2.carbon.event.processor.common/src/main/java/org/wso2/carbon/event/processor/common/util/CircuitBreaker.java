@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.common.util;
+
+/**
+ * Tracks consecutive failures of connecting to a remote endpoint. The circuit opens after a number of consecutive
+ * failures, telling callers to stop waiting for the endpoint. While open, each new attempt moves it to half open, and
+ * the circuit closes again on the first successful attempt.
+ */
+public class CircuitBreaker {
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final int failureThreshold;
+    private volatile State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private volatile long openCount = 0;
+
+    /**
+     * @param failureThreshold number of consecutive failures which opens the circuit
+     */
+    public CircuitBreaker(int failureThreshold) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+    }
+
+    /**
+     * Marks the start of an attempt, which is a trial attempt when the circuit is open.
+     */
+    public synchronized void onAttempt() {
+        if (state == State.OPEN) {
+            state = State.HALF_OPEN;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    /**
+     * @return true if this failure opened the circuit
+     */
+    public synchronized boolean onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        } else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openCount++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true unless the last attempt succeeded or too few attempts failed since then
+     */
+    public boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return number of times the circuit opened
+     */
+    public long getOpenCount() {
+        return openCount;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+}
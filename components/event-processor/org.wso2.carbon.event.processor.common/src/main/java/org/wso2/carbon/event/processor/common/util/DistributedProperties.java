@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.common.util;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+
+/**
+ * Tuning properties of the distributed mode which are not part of DistributedConfiguration. Values are read from
+ * system properties, so they can be given as -D options to the CEP server and through "worker.childopts" of
+ * storm.yaml to the Storm workers.
+ */
+public final class DistributedProperties {
+    private static Logger log = Logger.getLogger(DistributedProperties.class);
+
+    /**
+     * Maximum number of events written to a connection before the socket is flushed. 1 disables batching.
+     */
+    public static final String TRANSPORT_BATCH_SIZE = "cep.distributed.transport.batch.size";
+    /**
+     * Maximum time in microseconds an event is held in a batch before the batch is flushed.
+     */
+    public static final String TRANSPORT_BATCH_MAX_LATENCY = "cep.distributed.transport.batch.max.latency";
+    /**
+     * Maximum number of tuples emitted by EventReceiverSpout in a single nextTuple call.
+     */
+    public static final String SPOUT_EMIT_BATCH_SIZE = "cep.distributed.spout.emit.batch.size";
+    /**
+     * How EventReceiverSpout waits when there are no events to emit: "none" (leave it to Storm's spout wait
+     * strategy), "yield" or "park".
+     */
+    public static final String SPOUT_IDLE_STRATEGY = "cep.distributed.spout.idle.strategy";
+    /**
+     * Time in nanoseconds EventReceiverSpout parks for when idle with the "park" strategy.
+     */
+    public static final String SPOUT_IDLE_PARK_TIME = "cep.distributed.spout.idle.park.time";
+    /**
+     * Maximum number of consecutive events of an input stream SiddhiBolt accumulates before sending them to Siddhi at
+     * once. 1 disables batching. Read on the manager when the topology is built.
+     */
+    public static final String BOLT_BATCH_SIZE = "cep.distributed.bolt.batch.size";
+    /**
+     * Maximum time in milliseconds an event is held in a SiddhiBolt batch. Batches of streams which stopped receiving
+     * events are flushed by tick tuples, whose frequency is in whole seconds, hence topologies batching with a latency
+     * below 1000 are rejected. Read on the manager when the topology is built.
+     */
+    public static final String BOLT_BATCH_MAX_LATENCY = "cep.distributed.bolt.batch.max.latency";
+    /**
+     * Wait strategy of the outbound event buffer consumer: "blocking", "sleeping", "yielding" or "busyspin". Always
+     * "blocking" with the "spill" overload policy, whose consumer replays spilled events on wait timeouts.
+     */
+    public static final String BUFFER_WAIT_STRATEGY = "cep.distributed.buffer.wait.strategy";
+    /**
+     * Producer type of the outbound event buffer: "multi" or "single". A single producer buffer requires exactly one
+     * thread to send the events of the publisher, hence "single" only applies to the event publisher bolts. The CEP
+     * receivers of an execution plan share a publisher among the threads dispatching its imported streams, and keep
+     * using "multi".
+     */
+    public static final String BUFFER_PRODUCER_TYPE = "cep.distributed.buffer.producer.type";
+    /**
+     * Socket timeout in milliseconds of the pooled connections to the Storm manager service.
+     */
+    public static final String MANAGER_CLIENT_TIMEOUT = "cep.distributed.manager.client.timeout";
+    /**
+     * Whether the Storm manager service uses framed transport with a non-blocking server. Must have the same value on
+     * the managers, the CEP workers and the Storm workers. Disabled by default, as it changes the wire format and
+     * nodes not upgraded yet use unframed transport; enable it on every node once all of them are upgraded.
+     */
+    public static final String MANAGER_FRAMED_TRANSPORT = "cep.distributed.manager.framed.transport";
+    /**
+     * Number of selector threads of the non-blocking Storm manager server.
+     */
+    public static final String MANAGER_SELECTOR_THREADS = "cep.distributed.manager.selector.threads";
+    /**
+     * Number of threads processing the requests of the non-blocking Storm manager server.
+     */
+    public static final String MANAGER_WORKER_THREADS = "cep.distributed.manager.worker.threads";
+    /**
+     * What sending an event does when the outbound event buffer has no free capacity: "block" until there is,
+     * "drop_oldest" to discard the oldest queued event for each event that did not fit and queue the new one in its
+     * place, so that fresher events go out once the link recovers, or "sample" to forward only a share of the events
+     * while the buffer is more than half full. With "drop_oldest", a sender waits up to 10ms for the consumer to skip
+     * the discarded event, and drops the new event instead when the consumer is stuck waiting for the connection.
+     * "spill" blocks like "block" while the link is slow, but writes events to a disk backed spill log while the link
+     * is down, so that the buffer keeps draining during reconnects.
+     */
+    public static final String OVERLOAD_POLICY = "cep.distributed.overload.policy";
+    /**
+     * With the "sample" overload policy, one out of this many events is kept while the buffer is more than half full.
+     */
+    public static final String OVERLOAD_SAMPLE_RATE = "cep.distributed.overload.sample.rate";
+    /**
+     * Directory in which the spill logs of the "spill" overload policy are created.
+     */
+    public static final String SPILL_DIRECTORY = "cep.distributed.spill.directory";
+    /**
+     * Size in bytes of a memory mapped spill log segment.
+     */
+    public static final String SPILL_SEGMENT_SIZE = "cep.distributed.spill.segment.size";
+    /**
+     * Maximum number of segments of a spill log, bounding its disk usage.
+     */
+    public static final String SPILL_MAX_SEGMENTS = "cep.distributed.spill.max.segments";
+    /**
+     * Handling of events when the spill log is full: "drop_oldest" deletes the oldest segment and "drop_newest"
+     * drops the new events.
+     */
+    public static final String SPILL_FULL_POLICY = "cep.distributed.spill.full.policy";
+    /**
+     * Maximum delay in milliseconds between attempts to reconnect to a Storm receiver or CEP publisher. Delays start
+     * from the transport reconnect interval of the distributed configuration and double with each failed attempt.
+     */
+    public static final String RECONNECT_MAX_INTERVAL = "cep.distributed.reconnect.max.interval";
+    /**
+     * Number of consecutive failed reconnection attempts after which the connection circuit opens. While it is open,
+     * publishers with the "drop_oldest" or "sample" overload policy drop events instead of waiting for the connection.
+     */
+    public static final String CIRCUIT_BREAKER_THRESHOLD = "cep.distributed.circuit.breaker.threshold";
+    /**
+     * Grouping of partitioned streams: "consistent_hash" for ConsistentHashGrouping or "fields" for Storm's fields
+     * grouping. Read on the manager when the topology is built, as are the other grouping properties.
+     */
+    public static final String PARTITION_GROUPING = "cep.distributed.partition.grouping";
+    /**
+     * Number of virtual nodes each target task has on the consistent hash ring.
+     */
+    public static final String GROUPING_VIRTUAL_NODES = "cep.distributed.grouping.virtual.nodes";
+    /**
+     * Minimum percentage of the events a sending task emits on a partitioned stream for a partition key to be hot.
+     */
+    public static final String HOT_KEY_PERCENT = "cep.distributed.grouping.hot.key.percent";
+    /**
+     * Number of events over which the share of partition keys is measured.
+     */
+    public static final String HOT_KEY_WINDOW = "cep.distributed.grouping.hot.key.window";
+    /**
+     * Whether hot partition keys are split between two tasks. Each task then only sees part of the events of a hot
+     * key, so this must only be enabled when the partitioned queries produce partial results which a later query
+     * combines, such as partial aggregates summed up by a query outside the partition.
+     */
+    public static final String HOT_KEY_SPLIT = "cep.distributed.grouping.hot.key.split";
+    /**
+     * Whether streams which are not partitioned are consumed through local or shuffle grouping, preferring tasks in
+     * the worker of the emitting task, instead of shuffle grouping. Read on the manager when the topology is built.
+     */
+    public static final String LOCAL_OR_SHUFFLE_GROUPING = "cep.distributed.grouping.local.or.shuffle";
+    /**
+     * Whether chains of stateless query groups with the same parallelism are fused into a single bolt. Read on the
+     * manager when the query plan is built.
+     */
+    public static final String OPERATOR_FUSION = "cep.distributed.operator.fusion";
+    /**
+     * Cost units a single task is assumed to process per second when recommending parallelism for execution plans
+     * declaring their expected input rate. Read on the manager when the query plan is built.
+     */
+    public static final String COST_TASK_CAPACITY = "cep.distributed.cost.task.capacity";
+    /**
+     * Upper bound of the parallelism recommended for a single component of the query plan.
+     */
+    public static final String COST_MAX_PARALLELISM = "cep.distributed.cost.max.parallelism";
+    /**
+     * Number of topologies the manager submits to Storm concurrently. Further submissions wait in a queue.
+     */
+    public static final String SUBMISSION_THREADS = "cep.distributed.submission.threads";
+    /**
+     * Milliseconds the manager waits before killing the topology of a removed execution plan. When the plan is
+     * deployed again within this time, e.g. because it was edited, the running topology is updated in place if
+     * possible instead of being killed and submitted again.
+     */
+    public static final String KILL_GRACE_PERIOD = "cep.distributed.kill.grace.period";
+    /**
+     * Milliseconds between snapshots of the Siddhi runtime of each Siddhi bolt task, 0 disabling checkpointing. With
+     * checkpointing, bolts acknowledge tuples once a snapshot covering them is stored, and the event receiver spouts
+     * replay the tuples which were not acknowledged, hence topologies whose interval is not below half the Storm
+     * message timeout are rejected. Replayed events reach all bolts of their streams again, so events are processed
+     * at least once. Read when the topology is built.
+     */
+    public static final String CHECKPOINT_INTERVAL = "cep.distributed.checkpoint.interval";
+    /**
+     * Class name of the SnapshotStore keeping the snapshots of the Siddhi bolts.
+     */
+    public static final String CHECKPOINT_STORE = "cep.distributed.checkpoint.store";
+    /**
+     * Directory of the snapshots kept by the file snapshot store. Should be shared by all Storm supervisors for tasks
+     * to recover on another host, and by the Storm managers which delete the snapshots of killed topologies.
+     */
+    public static final String CHECKPOINT_DIRECTORY = "cep.distributed.checkpoint.directory";
+    /**
+     * Maximum number of events an event receiver spout keeps for replay until they are acknowledged, when
+     * checkpointing is enabled. The spout stops emitting new events while it is full, which caps its throughput at
+     * about half the size per checkpoint interval. Raised to fit two checkpoint intervals of events at the input rate
+     * of the execution plan when it declares one.
+     */
+    public static final String REPLAY_BUFFER_SIZE = "cep.distributed.replay.buffer.size";
+
+    public static final int DEFAULT_TRANSPORT_BATCH_SIZE = 1;
+    public static final long DEFAULT_TRANSPORT_BATCH_MAX_LATENCY = 1000;
+    public static final int DEFAULT_SPOUT_EMIT_BATCH_SIZE = 64;
+    public static final String DEFAULT_SPOUT_IDLE_STRATEGY = "none";
+    public static final long DEFAULT_SPOUT_IDLE_PARK_TIME = 50000;
+    public static final int DEFAULT_BOLT_BATCH_SIZE = 1;
+    public static final long DEFAULT_BOLT_BATCH_MAX_LATENCY = 1000;
+    public static final String DEFAULT_BUFFER_WAIT_STRATEGY = "blocking";
+    public static final String DEFAULT_BUFFER_PRODUCER_TYPE = "multi";
+    public static final int DEFAULT_MANAGER_CLIENT_TIMEOUT = 10000;
+    public static final boolean DEFAULT_MANAGER_FRAMED_TRANSPORT = false;
+    public static final int DEFAULT_MANAGER_SELECTOR_THREADS = 2;
+    public static final int DEFAULT_MANAGER_WORKER_THREADS = 8;
+    public static final String DEFAULT_OVERLOAD_POLICY = "block";
+    public static final int DEFAULT_OVERLOAD_SAMPLE_RATE = 10;
+    public static final String DEFAULT_SPILL_DIRECTORY = System.getProperty("java.io.tmpdir") + File.separator +
+            "cep-spill";
+    public static final int DEFAULT_SPILL_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_SPILL_MAX_SEGMENTS = 16;
+    public static final String DEFAULT_SPILL_FULL_POLICY = "drop_oldest";
+    public static final long DEFAULT_RECONNECT_MAX_INTERVAL = 30000;
+    public static final int DEFAULT_CIRCUIT_BREAKER_THRESHOLD = 5;
+    public static final String DEFAULT_PARTITION_GROUPING = "consistent_hash";
+    public static final int DEFAULT_GROUPING_VIRTUAL_NODES = 64;
+    public static final int DEFAULT_HOT_KEY_PERCENT = 10;
+    public static final int DEFAULT_HOT_KEY_WINDOW = 10000;
+    public static final boolean DEFAULT_HOT_KEY_SPLIT = false;
+    public static final boolean DEFAULT_LOCAL_OR_SHUFFLE_GROUPING = true;
+    public static final boolean DEFAULT_OPERATOR_FUSION = true;
+    public static final long DEFAULT_COST_TASK_CAPACITY = 100000;
+    public static final int DEFAULT_COST_MAX_PARALLELISM = 32;
+    public static final int DEFAULT_SUBMISSION_THREADS = 8;
+    public static final long DEFAULT_KILL_GRACE_PERIOD = 10000;
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 0;
+    public static final String DEFAULT_CHECKPOINT_STORE =
+            "org.wso2.carbon.event.processor.common.storm.checkpoint.FileSnapshotStore";
+    public static final String DEFAULT_CHECKPOINT_DIRECTORY = System.getProperty("java.io.tmpdir") + File.separator +
+            "cep-checkpoints";
+    public static final int DEFAULT_REPLAY_BUFFER_SIZE = 10000;
+
+    private DistributedProperties() {
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = System.getProperty(key);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value '" + value + "' for " + key + ", using default value " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = System.getProperty(key);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value '" + value + "' for " + key + ", using default value " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        return (value != null) ? value.trim() : defaultValue;
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = System.getProperty(key);
+        return (value != null) ? Boolean.parseBoolean(value.trim()) : defaultValue;
+    }
+}
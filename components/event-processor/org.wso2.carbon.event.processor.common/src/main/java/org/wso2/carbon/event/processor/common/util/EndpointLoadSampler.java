@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.common.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * Samples the load of an endpoint (Storm receiver or CEP publisher) to be reported to the Storm manager service with
+ * each heartbeat.
+ */
+public class EndpointLoadSampler {
+    private final ThroughputProbe throughputProbe;
+    private long lastEventCount;
+    private long lastSampleTime;
+
+    /**
+     * @param throughputProbe probe updated for each event received by the endpoint
+     */
+    public EndpointLoadSampler(ThroughputProbe throughputProbe) {
+        this.throughputProbe = throughputProbe;
+        this.lastEventCount = throughputProbe.getTotalEventCount();
+        this.lastSampleTime = System.nanoTime();
+    }
+
+    /**
+     * @return events per second received by the endpoint since the previous call
+     */
+    public synchronized double sampleEventsPerSecond() {
+        long eventCount = throughputProbe.getTotalEventCount();
+        long now = System.nanoTime();
+        long elapsed = now - lastSampleTime;
+        double eventsPerSecond = (elapsed > 0) ? (eventCount - lastEventCount) * 1e9 / elapsed : 0;
+        lastEventCount = eventCount;
+        lastSampleTime = now;
+        return Math.max(0, eventsPerSecond);
+    }
+
+    /**
+     * @return system load average per available processor, or a negative value if it is not available on this
+     * platform
+     */
+    public static double getCpuLoad() {
+        OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+        double loadAverage = operatingSystem.getSystemLoadAverage();
+        if (loadAverage < 0) {
+            return -1;
+        }
+        return loadAverage / operatingSystem.getAvailableProcessors();
+    }
+}
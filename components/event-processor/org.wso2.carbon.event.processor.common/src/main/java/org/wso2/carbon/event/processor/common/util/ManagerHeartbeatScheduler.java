@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.common.util;
+
+import org.apache.log4j.Logger;
+import org.apache.thrift.TException;
+import org.wso2.carbon.event.processor.common.storm.manager.service.StormManagerService;
+import org.wso2.carbon.event.processor.manager.commons.utils.HostAndPort;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends the registrations of all the endpoints (Storm receivers and CEP publishers) of this JVM to the Storm manager
+ * service over the pooled manager connections. Each registration call acts as a heartbeat.
+ * <p/>
+ * A single thread only times the heartbeats. The calls are made from a thread per manager, serializing the
+ * heartbeats sent to the same manager over its pooled connection, while registrations without a manager, which
+ * search for one, use a small shared pool. Hence a manager that does not respond delays only the heartbeats sent to
+ * it, instead of the heartbeats of every endpoint of the JVM.
+ * <p/>
+ * The heartbeats are still one call per endpoint rather than one batched call. The load fields added to the
+ * registration calls are skipped by older managers, but a new batched call would fail on them as an unknown method
+ * during a rolling upgrade, and the calls to a manager already share one kept-alive connection.
+ */
+public class ManagerHeartbeatScheduler {
+    private static Logger log = Logger.getLogger(ManagerHeartbeatScheduler.class);
+
+    private static final ManagerHeartbeatScheduler instance = new ManagerHeartbeatScheduler();
+
+    private static final int MANAGER_SEARCH_THREADS = 4;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "StormManagerHeartbeat");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final ExecutorService managerSearchExecutor = createExecutor(MANAGER_SEARCH_THREADS,
+            "StormManagerHeartbeat-Search");
+    /**
+     * Executor of the heartbeats sent to each manager, by host:port
+     */
+    private final ConcurrentMap<String, ExecutorService> managerExecutors = new ConcurrentHashMap<String, ExecutorService>();
+
+    public static ManagerHeartbeatScheduler getInstance() {
+        return instance;
+    }
+
+    /**
+     * Registration of an endpoint with the Storm manager service
+     */
+    public interface Registration {
+        void register(StormManagerService.Client client) throws TException;
+
+        /**
+         * @return description of the registered endpoint used in logs, e.g. "Event Receiver Spout for host:port"
+         */
+        String getDescription();
+
+        String getLogPrefix();
+    }
+
+    /**
+     * Starts sending the registration every heartbeatInterval milliseconds. The registration sticks to the first
+     * manager which accepts it and moves to the next manager when that fails.
+     *
+     * @return future to cancel the heartbeats with
+     */
+    public ScheduledFuture<?> schedule(Registration registration, List<HostAndPort> managers, int heartbeatInterval) {
+        log.info(registration.getLogPrefix() + "Registering " + registration.getDescription());
+        final Heartbeat heartbeat = new Heartbeat(registration, managers, heartbeatInterval);
+        return scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                // Skipped while the previous heartbeat of the registration is still being sent
+                if (heartbeat.inProgress.compareAndSet(false, true)) {
+                    try {
+                        getExecutor(heartbeat.currentManager).execute(heartbeat);
+                    } catch (RuntimeException e) {
+                        heartbeat.inProgress.set(false);
+                        log.error(registration.getLogPrefix() + "Cannot send heartbeat of " +
+                                registration.getDescription(), e);
+                    }
+                }
+            }
+        }, 0, heartbeatInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private ExecutorService getExecutor(HostAndPort manager) {
+        if (manager == null) {
+            return managerSearchExecutor;
+        }
+        String key = manager.getHostName() + ":" + manager.getPort();
+        ExecutorService executor = managerExecutors.get(key);
+        if (executor == null) {
+            executor = createExecutor(1, "StormManagerHeartbeat-" + key);
+            ExecutorService existing = managerExecutors.putIfAbsent(key, executor);
+            if (existing != null) {
+                executor.shutdown();
+                executor = existing;
+            }
+        }
+        return executor;
+    }
+
+    private static ExecutorService createExecutor(int threads, final String threadName) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private class Heartbeat implements Runnable {
+        private final Registration registration;
+        private final List<HostAndPort> managers;
+        private final int heartbeatInterval;
+        private final ManagerServiceClientPool.ManagerServiceCall<Void> registerCall;
+        private final AtomicBoolean inProgress = new AtomicBoolean();
+        private volatile HostAndPort currentManager;
+
+        private Heartbeat(final Registration registration, List<HostAndPort> managers, int heartbeatInterval) {
+            this.registration = registration;
+            this.managers = managers;
+            this.heartbeatInterval = heartbeatInterval;
+            this.registerCall = new ManagerServiceClientPool.ManagerServiceCall<Void>() {
+                @Override
+                public Void call(StormManagerService.Client client) throws TException {
+                    registration.register(client);
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public void run() {
+            boolean searchScheduled = false;
+            // Exceptions must not escape, as they would stop further heartbeats
+            try {
+                HostAndPort manager = currentManager;
+                if (manager == null) {
+                    searchManager();
+                } else if (!register(manager)) {
+                    // Searching from the thread of the failed manager would delay its other heartbeats further
+                    managerSearchExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                searchManager();
+                            } catch (Throwable t) {
+                                log.error(registration.getLogPrefix() + "Unexpected error in registering " +
+                                        registration.getDescription(), t);
+                            } finally {
+                                inProgress.set(false);
+                            }
+                        }
+                    });
+                    searchScheduled = true;
+                }
+            } catch (Throwable t) {
+                log.error(registration.getLogPrefix() + "Unexpected error in registering " +
+                        registration.getDescription(), t);
+            } finally {
+                if (!searchScheduled) {
+                    inProgress.set(false);
+                }
+            }
+        }
+
+        private boolean register(HostAndPort manager) {
+            try {
+                ManagerServiceClientPool.getInstance().execute(manager, registerCall);
+                if (log.isDebugEnabled()) {
+                    log.debug(registration.getLogPrefix() + "Successfully registered " +
+                            registration.getDescription());
+                }
+                return true;
+            } catch (Exception e) {
+                log.error(registration.getLogPrefix() + "Error in registering " + registration.getDescription()
+                        + " with manager " + manager.getHostName() + ":" + manager.getPort() +
+                        ". Trying next manager.", e);
+                currentManager = null;
+                return false;
+            }
+        }
+
+        private void searchManager() {
+            ManagerServiceClientPool pool = ManagerServiceClientPool.getInstance();
+            for (HostAndPort manager : pool.orderByHealth(managers)) {
+                try {
+                    pool.execute(manager, registerCall);
+                    log.info(registration.getLogPrefix() + "Successfully registered " +
+                            registration.getDescription() + " with manager service at " + manager.getHostName() +
+                            ":" + manager.getPort());
+                    currentManager = manager;
+                    return;
+                } catch (Exception e) {
+                    log.error(registration.getLogPrefix() + "Error in registering " +
+                            registration.getDescription() + " with manager " + manager.getHostName() + ":" +
+                            manager.getPort() + ", Trying next manager.", e);
+                }
+            }
+            log.error(registration.getLogPrefix() + "Error registering " + registration.getDescription() +
+                    " with given set of manager nodes. Retrying after " + heartbeatInterval + "ms");
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.common.util;
+
+import org.apache.log4j.Logger;
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+import org.wso2.carbon.event.processor.common.storm.manager.service.StormManagerService;
+import org.wso2.carbon.event.processor.manager.commons.utils.HostAndPort;
+
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps open connections to the Storm manager services, shared by all the publishers, receivers and registrars of
+ * this JVM, instead of opening a new connection per call. Connections are kept alive and reused. A manager which
+ * fails is marked unhealthy and skipped for a back off period that grows with consecutive failures.
+ */
+public class ManagerServiceClientPool {
+    private static Logger log = Logger.getLogger(ManagerServiceClientPool.class);
+
+    private static final int MAX_IDLE_CONNECTIONS_PER_MANAGER = 4;
+    private static final long MIN_UNHEALTHY_PERIOD = 1000;
+    private static final long MAX_UNHEALTHY_PERIOD = 30000;
+
+    private static final ManagerServiceClientPool instance = new ManagerServiceClientPool();
+
+    private final ConcurrentMap<String, ManagerEntry> managers = new ConcurrentHashMap<String, ManagerEntry>();
+    private final int timeout = DistributedProperties.getInt(DistributedProperties.MANAGER_CLIENT_TIMEOUT,
+            DistributedProperties.DEFAULT_MANAGER_CLIENT_TIMEOUT);
+    private final boolean framed = DistributedProperties.getBoolean(DistributedProperties.MANAGER_FRAMED_TRANSPORT,
+            DistributedProperties.DEFAULT_MANAGER_FRAMED_TRANSPORT);
+
+    public static ManagerServiceClientPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * A call to the Storm manager service
+     *
+     * @param <T> Type of the result of the call
+     */
+    public interface ManagerServiceCall<T> {
+        T call(StormManagerService.Client client) throws TException;
+    }
+
+    /**
+     * Runs the call on a pooled connection to the given manager. A stale pooled connection is replaced and the call
+     * retried once. Exceptions declared by the service (e.g. NotStormCoordinatorException) are passed through without
+     * affecting the health of the manager.
+     */
+    public <T> T execute(HostAndPort manager, ManagerServiceCall<T> call) throws TException {
+        ManagerEntry entry = getEntry(manager);
+        boolean retried = false;
+        while (true) {
+            PooledConnection connection = entry.idleConnections.poll();
+            boolean pooled = connection != null;
+            if (connection == null) {
+                try {
+                    connection = new PooledConnection(manager, timeout, framed);
+                } catch (TTransportException e) {
+                    entry.markFailure();
+                    throw e;
+                }
+            } else {
+                entry.idleCount.decrementAndGet();
+            }
+
+            try {
+                T result = call.call(connection.client);
+                entry.markSuccess();
+                entry.release(connection);
+                return result;
+            } catch (TTransportException e) {
+                connection.close();
+                if (pooled && !retried) {
+                    // Pooled connection might have been closed by the manager while idle
+                    retried = true;
+                    continue;
+                }
+                entry.markFailure();
+                throw e;
+            } catch (TApplicationException e) {
+                connection.close();
+                entry.markFailure();
+                throw e;
+            } catch (TException e) {
+                // Exception declared by the service. The connection is still usable.
+                entry.markSuccess();
+                entry.release(connection);
+                throw e;
+            } catch (RuntimeException e) {
+                connection.close();
+                entry.markFailure();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @return false if the manager recently failed and is still within its back off period
+     */
+    public boolean isHealthy(HostAndPort manager) {
+        ManagerEntry entry = managers.get(getKey(manager));
+        return entry == null || System.currentTimeMillis() >= entry.unhealthyUntil;
+    }
+
+    /**
+     * @return the given managers with the healthy ones first, keeping their configured order otherwise
+     */
+    public List<HostAndPort> orderByHealth(List<HostAndPort> managers) {
+        List<HostAndPort> ordered = new ArrayList<HostAndPort>(managers.size());
+        List<HostAndPort> unhealthy = new ArrayList<HostAndPort>();
+        for (HostAndPort manager : managers) {
+            if (isHealthy(manager)) {
+                ordered.add(manager);
+            } else {
+                unhealthy.add(manager);
+            }
+        }
+        ordered.addAll(unhealthy);
+        return ordered;
+    }
+
+    private ManagerEntry getEntry(HostAndPort manager) {
+        String key = getKey(manager);
+        ManagerEntry entry = managers.get(key);
+        if (entry == null) {
+            ManagerEntry newEntry = new ManagerEntry(key);
+            entry = managers.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+        return entry;
+    }
+
+    private static String getKey(HostAndPort manager) {
+        return manager.getHostName() + ":" + manager.getPort();
+    }
+
+    private static class ManagerEntry {
+        private final String key;
+        private final ConcurrentLinkedQueue<PooledConnection> idleConnections = new ConcurrentLinkedQueue<PooledConnection>();
+        private final AtomicInteger idleCount = new AtomicInteger(0);
+        private final AtomicInteger consecutiveFailures = new AtomicInteger(0);
+        private volatile long unhealthyUntil = 0;
+
+        private ManagerEntry(String key) {
+            this.key = key;
+        }
+
+        private void release(PooledConnection connection) {
+            if (idleCount.incrementAndGet() <= MAX_IDLE_CONNECTIONS_PER_MANAGER) {
+                idleConnections.offer(connection);
+            } else {
+                idleCount.decrementAndGet();
+                connection.close();
+            }
+        }
+
+        private void markSuccess() {
+            if (consecutiveFailures.getAndSet(0) > 0) {
+                log.info("Storm manager service at " + key + " is reachable again");
+            }
+            unhealthyUntil = 0;
+        }
+
+        private void markFailure() {
+            int failures = consecutiveFailures.incrementAndGet();
+            long period = Math.min(MAX_UNHEALTHY_PERIOD, MIN_UNHEALTHY_PERIOD << Math.min(failures - 1, 10));
+            unhealthyUntil = System.currentTimeMillis() + period;
+            // Connections of an unhealthy manager are not reused
+            PooledConnection connection;
+            while ((connection = idleConnections.poll()) != null) {
+                idleCount.decrementAndGet();
+                connection.close();
+            }
+        }
+    }
+
+    private static class PooledConnection {
+        private final TTransport transport;
+        private final StormManagerService.Client client;
+
+        private PooledConnection(HostAndPort manager, int timeout, boolean framed) throws TTransportException {
+            TSocket socket = new TSocket(manager.getHostName(), manager.getPort(), timeout);
+            // Non-blocking manager server only accepts framed messages
+            TTransport transport = framed ? new TFramedTransport(socket) : socket;
+            transport.open();
+            try {
+                socket.getSocket().setKeepAlive(true);
+                socket.getSocket().setTcpNoDelay(true);
+            } catch (SocketException e) {
+                log.debug("Cannot set socket options for connection to " + getKey(manager), e);
+            }
+            this.transport = transport;
+            this.client = new StormManagerService.Client(new TBinaryProtocol(transport));
+        }
+
+        private void close() {
+            transport.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.common.util;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.BitSet;
+
+/**
+ * Allocates ports of the transport port range to the event servers of this JVM. Allocated ports are tracked in a
+ * bitmap, so servers starting concurrently never get the same port, and the search resumes after the last allocated
+ * port instead of probing the range from its start. A port is checked by binding to it locally rather than by
+ * connecting to it.
+ * <p/>
+ * Allocation is only coordinated within this JVM. Other processes sharing the host and the port range, such as other
+ * Storm workers, can still take an allocated port before the server binds it. Event servers bind their port on their
+ * own thread and expose neither the result of the bind nor their listening socket, so such a lost port cannot be
+ * detected here; only failures reported by start() make a server move on to another port.
+ */
+public final class PortAllocator {
+    /**
+     * Number of ports a server tries before giving up when it fails to start on an allocated port.
+     */
+    public static final int BIND_ATTEMPTS = 3;
+
+    private static final BitSet allocatedPorts = new BitSet();
+    private static int nextOffset = 0;
+
+    private PortAllocator() {
+    }
+
+    /**
+     * @return a port of the range which is not allocated and could be bound to on the host
+     * @throws IOException if all ports of the range are in use
+     */
+    public static synchronized int allocate(String host, int minPort, int maxPort) throws IOException {
+        int range = maxPort - minPort + 1;
+        for (int i = 0; i < range; i++) {
+            int offset = (nextOffset + i) % range;
+            int port = minPort + offset;
+            if (!allocatedPorts.get(port) && isBindable(host, port)) {
+                allocatedPorts.set(port);
+                nextOffset = (offset + 1) % range;
+                return port;
+            }
+        }
+        throw new IOException("Cannot find free port in range " + minPort + "~" + maxPort);
+    }
+
+    /**
+     * Returns a port allocated before, once its server is shut down or failed to start.
+     */
+    public static synchronized void release(int port) {
+        allocatedPorts.clear(port);
+    }
+
+    private static boolean isBindable(String host, int port) {
+        ServerSocket serverSocket = null;
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(host, port));
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            if (serverSocket != null) {
+                try {
+                    serverSocket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
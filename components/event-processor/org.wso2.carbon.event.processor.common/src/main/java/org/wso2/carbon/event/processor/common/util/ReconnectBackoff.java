@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.common.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential back off with jitter between reconnection attempts. The delay doubles with each attempt up to the
+ * maximum, and a random half of it is taken off, so that publishers which lost their connection at the same time do
+ * not retry in lock step.
+ */
+public class ReconnectBackoff {
+    private final long initialDelay;
+    private final long maxDelay;
+    private int attempt = 0;
+
+    /**
+     * @param initialDelay delay in milliseconds before the first retry
+     * @param maxDelay     maximum delay in milliseconds
+     */
+    public ReconnectBackoff(long initialDelay, long maxDelay) {
+        this.initialDelay = Math.max(1, initialDelay);
+        this.maxDelay = Math.max(this.initialDelay, maxDelay);
+    }
+
+    /**
+     * @return delay in milliseconds before the next attempt
+     */
+    public synchronized long nextDelay() {
+        long ceiling = Math.min(maxDelay, initialDelay << Math.min(attempt, 20));
+        attempt++;
+        long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+    }
+
+    /**
+     * Starts over from the initial delay, after a successful attempt.
+     */
+    public synchronized void reset() {
+        attempt = 0;
+    }
+}
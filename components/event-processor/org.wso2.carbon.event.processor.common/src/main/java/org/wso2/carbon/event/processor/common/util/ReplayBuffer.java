@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.event.processor.common.util;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bounded buffer of the events emitted by a spout until they are acknowledged. Failed events are replayed in the
+ * order they failed in, under a new message ID, so that a late acknowledgement or failure of the previous emission
+ * is ignored. Only used from the spout thread.
+ *
+ * @param <T> Type of the events
+ */
+public class ReplayBuffer<T> {
+    private final int capacity;
+    private final Map<Long, T> pendingEvents = new HashMap<Long, T>();
+    private final ArrayDeque<Long> failedMessageIds = new ArrayDeque<Long>();
+    private long nextMessageId;
+
+    public ReplayBuffer(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Keeps an event being emitted until it is acknowledged.
+     *
+     * @return the message ID to emit the event with
+     */
+    public Long add(T event) {
+        Long messageId = nextMessageId++;
+        pendingEvents.put(messageId, event);
+        return messageId;
+    }
+
+    /**
+     * @return true if no more events should be emitted until pending ones are acknowledged
+     */
+    public boolean isFull() {
+        return pendingEvents.size() >= capacity;
+    }
+
+    public void ack(Object messageId) {
+        pendingEvents.remove(messageId);
+    }
+
+    public void fail(Object messageId) {
+        if (pendingEvents.containsKey(messageId)) {
+            failedMessageIds.add((Long) messageId);
+        }
+    }
+
+    /**
+     * Removes the event which failed first, to be emitted again.
+     *
+     * @return the event, or null if no event failed
+     */
+    public T pollFailed() {
+        Long messageId;
+        while ((messageId = failedMessageIds.poll()) != null) {
+            T event = pendingEvents.remove(messageId);
+            if (event != null) {
+                return event;
+            }
+        }
+        return null;
+    }
+}
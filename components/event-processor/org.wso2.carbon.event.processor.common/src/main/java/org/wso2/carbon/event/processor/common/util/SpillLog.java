@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.common.util;
+
+import org.apache.log4j.Logger;
+import org.wso2.carbon.event.processor.common.storm.event.Event;
+import org.wso2.carbon.event.processor.common.storm.event.StreamEventCodec;
+import org.wso2.siddhi.query.api.definition.StreamDefinition;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Append only log of events kept in memory mapped segment files, used to hold events while the connection to the
+ * remote endpoint is down. Events are read back in the order they were appended.
+ * <p/>
+ * Disk usage is bounded by the segment size and the maximum number of segments. Segment files are created on demand
+ * up to that number and reused once read, rather than deleted, as the space of a deleted file is only released once
+ * its mapping gets garbage collected. When all segments are full, either the oldest segment or the new event is
+ * dropped. Each segment is encoded with its own StreamEventCodec, so a
+ * segment can be dropped without affecting the decoding of the others. The log is not meant to survive restarts and
+ * its files are deleted on close.
+ * <p/>
+ * Not thread safe. Appending and reading must happen on the same thread, while size() and getDroppedCount() can be
+ * read from any thread.
+ */
+public class SpillLog {
+    private static Logger log = Logger.getLogger(SpillLog.class);
+
+    private static final int END_OF_SEGMENT = -1;
+
+    private final File directory;
+    private final Collection<StreamDefinition> streamDefinitions;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final boolean dropOldest;
+
+    private final ArrayDeque<Segment> segments = new ArrayDeque<Segment>();
+    private final ArrayDeque<SegmentFile> freeFiles = new ArrayDeque<SegmentFile>();
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream recordOutput = new DataOutputStream(recordBytes);
+    private int nextSegmentId = 0;
+    private volatile long size = 0;
+    private volatile long droppedCount = 0;
+    private Event peekedEvent;
+    private int peekedNextPosition;
+
+    /**
+     * @param directory         directory to create the segment files in, which must not be used by any other log
+     * @param streamDefinitions definitions of all streams of the events appended, to which streams may be added later
+     * @param segmentSize       size of a segment file in bytes
+     * @param maxSegments       maximum number of segment files
+     * @param dropOldest        whether to drop the oldest segment instead of the new event when all segments are full
+     */
+    public SpillLog(File directory, Collection<StreamDefinition> streamDefinitions, int segmentSize, int maxSegments,
+                    boolean dropOldest) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create spill directory " + directory.getAbsolutePath());
+        }
+        this.directory = directory;
+        this.streamDefinitions = streamDefinitions;
+        this.segmentSize = segmentSize;
+        this.maxSegments = Math.max(2, maxSegments);
+        this.dropOldest = dropOldest;
+    }
+
+    /**
+     * @return false if the event was dropped because the log is full or the event is larger than a segment
+     */
+    public boolean append(String streamId, long timestamp, Object[] data) throws IOException {
+        Segment segment = segments.peekLast();
+        if (segment != null && !segment.sealed && segment.streamCount != streamDefinitions.size()) {
+            // Streams were added, which only the codec of a new segment knows
+            segment.seal();
+        }
+        if (segment == null || segment.sealed) {
+            segment = nextSegment();
+            if (segment == null) {
+                droppedCount++;
+                return false;
+            }
+        }
+        recordBytes.reset();
+        segment.writeCodec.encode(streamId, timestamp, data, recordOutput);
+        int recordSize = 4 + recordBytes.size();
+        if (recordSize + 4 > segmentSize) {
+            // The codec state now includes the dropped event, so the segment cannot take further events
+            segment.seal();
+            log.warn("Dropping event of stream '" + streamId + "' with " + recordSize + " bytes, which is larger " +
+                    "than the spill segment size " + segmentSize);
+            droppedCount++;
+            return false;
+        }
+
+        if (segment.writePosition + recordSize + 4 > segmentSize) {
+            segment.seal();
+            segment = nextSegment();
+            if (segment == null) {
+                droppedCount++;
+                return false;
+            }
+            // Encoding has to be repeated with the codec of the new segment
+            recordBytes.reset();
+            segment.writeCodec.encode(streamId, timestamp, data, recordOutput);
+        }
+
+        segment.buffer.position(segment.writePosition);
+        segment.buffer.putInt(recordBytes.size());
+        segment.buffer.put(recordBytes.toByteArray());
+        segment.writePosition = segment.buffer.position();
+        segment.recordCount++;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return the oldest event in the log without removing it, or null if the log is empty
+     */
+    public Event peek() throws IOException {
+        if (peekedEvent != null) {
+            return peekedEvent;
+        }
+        while (true) {
+            Segment segment = segments.peekFirst();
+            if (segment == null) {
+                return null;
+            }
+            if (segment.readPosition < segment.writePosition) {
+                int length = segment.buffer.getInt(segment.readPosition);
+                byte[] bytes = new byte[length];
+                segment.buffer.position(segment.readPosition + 4);
+                segment.buffer.get(bytes);
+                peekedEvent = segment.readCodec.decode(new DataInputStream(new ByteArrayInputStream(bytes)));
+                peekedNextPosition = segment.readPosition + 4 + length;
+                return peekedEvent;
+            }
+            if (!segment.sealed) {
+                return null;
+            }
+            segments.pollFirst();
+            segment.release();
+        }
+    }
+
+    /**
+     * Removes the oldest event, which has to be peeked before.
+     */
+    public void remove() {
+        if (peekedEvent == null) {
+            throw new IllegalStateException("No event peeked to remove");
+        }
+        Segment segment = segments.peekFirst();
+        segment.readPosition = peekedNextPosition;
+        segment.readCount++;
+        peekedEvent = null;
+        size--;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return number of events in the log
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return total number of events dropped because the log was full
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Drops all events in the log. Their segment files are kept for reuse.
+     *
+     * @return number of events dropped
+     */
+    public long clear() {
+        long dropped = size;
+        Segment segment;
+        while ((segment = segments.pollFirst()) != null) {
+            segment.release();
+        }
+        droppedCount += dropped;
+        size = 0;
+        peekedEvent = null;
+        return dropped;
+    }
+
+    /**
+     * Deletes all segment files and the directory of the log. Events still in the log are lost.
+     */
+    public void close() {
+        clear();
+        SegmentFile segmentFile;
+        while ((segmentFile = freeFiles.pollFirst()) != null) {
+            if (!segmentFile.file.delete()) {
+                log.warn("Cannot delete spill segment " + segmentFile.file.getAbsolutePath());
+            }
+        }
+        if (!directory.delete()) {
+            log.warn("Cannot delete spill directory " + directory.getAbsolutePath());
+        }
+    }
+
+    /**
+     * @return a new segment, or null if all segments are full and the new event has to be dropped
+     */
+    private Segment nextSegment() throws IOException {
+        if (segments.size() >= maxSegments) {
+            if (!dropOldest) {
+                return null;
+            }
+            dropOldestSegment();
+        }
+        SegmentFile segmentFile = freeFiles.pollFirst();
+        if (segmentFile == null) {
+            // Less than maxSegments files exist, as all files not in use are free
+            segmentFile = new SegmentFile(new File(directory, "spill-" + (nextSegmentId++) + ".log"));
+        }
+        Segment segment = new Segment(segmentFile);
+        segments.addLast(segment);
+        return segment;
+    }
+
+    private void dropOldestSegment() {
+        Segment oldest = segments.pollFirst();
+        long dropped = oldest.recordCount - oldest.readCount;
+        droppedCount += dropped;
+        size -= dropped;
+        peekedEvent = null;
+        oldest.release();
+        log.warn("Spill log at " + directory.getAbsolutePath() + " is full. Dropped " + dropped + " oldest events");
+    }
+
+    /**
+     * A segment file of the log, mapped once and reused by later segments.
+     */
+    private class SegmentFile {
+        private final File file;
+        private final MappedByteBuffer buffer;
+
+        private SegmentFile(File file) throws IOException {
+            this.file = file;
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                randomAccessFile.setLength(segmentSize);
+                buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            } finally {
+                // Mapping stays valid after closing the file
+                randomAccessFile.close();
+            }
+        }
+    }
+
+    private class Segment {
+        private final SegmentFile segmentFile;
+        private final MappedByteBuffer buffer;
+        private final int streamCount;
+        private final StreamEventCodec writeCodec;
+        private final StreamEventCodec readCodec;
+        private int writePosition = 0;
+        private int readPosition = 0;
+        private long recordCount = 0;
+        private long readCount = 0;
+        private boolean sealed = false;
+
+        private Segment(SegmentFile segmentFile) {
+            this.segmentFile = segmentFile;
+            // Records of a previous segment in the file are never read, as reading stops at the write position
+            this.buffer = segmentFile.buffer;
+            // Both codecs have to know the same streams
+            List<StreamDefinition> definitions = new ArrayList<StreamDefinition>(streamDefinitions);
+            this.streamCount = definitions.size();
+            this.writeCodec = new StreamEventCodec(definitions, true);
+            this.readCodec = new StreamEventCodec(definitions, true);
+        }
+
+        private void seal() {
+            buffer.putInt(writePosition, END_OF_SEGMENT);
+            sealed = true;
+        }
+
+        private void release() {
+            freeFiles.addLast(segmentFile);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.common.util;
+
+import org.wso2.siddhi.query.api.definition.Attribute;
+import org.wso2.siddhi.query.api.definition.StreamDefinition;
+
+/**
+ * Channels identify a stream of an execution plan of a tenant on connections shared by several execution plans. A
+ * channel is sent as a stream, whose id is the channel id and whose attributes are those of the original stream.
+ */
+public final class StreamChannels {
+    private static final String SEPARATOR = "/";
+
+    private StreamChannels() {
+    }
+
+    public static String getChannelId(int tenantId, String executionPlanName, String streamId) {
+        return tenantId + SEPARATOR + executionPlanName + SEPARATOR + streamId;
+    }
+
+    /**
+     * @return prefix of the ids of all channels of the execution plan
+     */
+    public static String getChannelIdPrefix(int tenantId, String executionPlanName) {
+        return tenantId + SEPARATOR + executionPlanName + SEPARATOR;
+    }
+
+    /**
+     * @return definition of the channel carrying the given stream
+     */
+    public static StreamDefinition toChannelDefinition(int tenantId, String executionPlanName,
+                                                       StreamDefinition streamDefinition) {
+        StreamDefinition channelDefinition = StreamDefinition.id(getChannelId(tenantId, executionPlanName,
+                streamDefinition.getId()));
+        for (Attribute attribute : streamDefinition.getAttributeList()) {
+            channelDefinition.attribute(attribute.getName(), attribute.getType());
+        }
+        return channelDefinition;
+    }
+}
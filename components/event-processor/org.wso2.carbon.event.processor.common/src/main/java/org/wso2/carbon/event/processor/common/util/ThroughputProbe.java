@@ -33,10 +33,19 @@ public class ThroughputProbe extends TimerTask {
      */
     public void startSampling(){
         count = 0l;
-        timer = new Timer();
+        timer = new Timer(true);
         timer.schedule(this, samplingRateInSeconds * 1000, samplingRateInSeconds * 1000);
     }
 
+    /**
+     * Stops the probe and its timer thread. A stopped probe cannot be started again.
+     */
+    public void stopSampling(){
+        if (timer != null){
+            timer.cancel();
+        }
+    }
+
     /**
      * This must be called when a message received.
      */
@@ -45,6 +54,13 @@ public class ThroughputProbe extends TimerTask {
         totalEventCount++;
     }
 
+    /**
+     * @return number of events received since the probe was created
+     */
+    public long getTotalEventCount(){
+        return totalEventCount;
+    }
+
     /**
      * The action to be performed by this timer task.
      */
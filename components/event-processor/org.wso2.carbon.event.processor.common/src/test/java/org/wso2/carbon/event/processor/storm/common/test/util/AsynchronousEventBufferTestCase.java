@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.storm.common.test.util;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceReportingEventHandler;
+import com.lmax.disruptor.dsl.ProducerType;
+import junit.framework.Assert;
+import org.junit.Test;
+import org.wso2.carbon.event.processor.common.util.AsynchronousEventBuffer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class AsynchronousEventBufferTestCase {
+    private static final int BUFFER_SIZE = 4;
+    private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+
+    @Test
+    public void testNewestEventsSurviveOverflow() throws InterruptedException {
+        final TestConsumer consumer = new TestConsumer();
+        final AsynchronousEventBuffer<Integer> buffer = new AsynchronousEventBuffer<Integer>(BUFFER_SIZE, consumer,
+                new BlockingWaitStrategy(), ProducerType.MULTI);
+        consumer.buffer = buffer;
+
+        // The consumer holds on to event 0 while events 1 to 3 fill the buffer
+        for (int i = 0; i < BUFFER_SIZE; i++) {
+            Assert.assertTrue(buffer.tryAddEvent(i, i, "stream"));
+        }
+        Assert.assertTrue(consumer.started.tryAcquire(10, TimeUnit.SECONDS));
+        Assert.assertFalse(buffer.tryAddEvent(BUFFER_SIZE, BUFFER_SIZE, "stream"));
+
+        final boolean[] added = new boolean[1];
+        Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                added[0] = buffer.addEventDroppingOldest(BUFFER_SIZE, BUFFER_SIZE, "stream", TIMEOUT);
+            }
+        });
+        sender.start();
+        // Event 0 is being consumed, so event 1 is the oldest one to make room with
+        long deadline = System.nanoTime() + TIMEOUT;
+        while (!buffer.isDiscarded(1) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertTrue(buffer.isDiscarded(1));
+        Assert.assertFalse(buffer.isDiscarded(2));
+
+        consumer.permits.release(Integer.MAX_VALUE / 2);
+        sender.join(TimeUnit.NANOSECONDS.toMillis(TIMEOUT));
+        Assert.assertTrue(added[0]);
+        deadline = System.nanoTime() + TIMEOUT;
+        while (!consumer.consumed.contains(BUFFER_SIZE) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        buffer.terminate();
+
+        // Only the oldest queued event made room, the newer ones all got through in order
+        Assert.assertEquals(Arrays.asList(0, 2, 3, 4), consumer.consumed);
+        Assert.assertEquals(Arrays.asList(1), consumer.discarded);
+    }
+
+    @Test
+    public void testStuckConsumer() throws InterruptedException {
+        TestConsumer consumer = new TestConsumer();
+        AsynchronousEventBuffer<Integer> buffer = new AsynchronousEventBuffer<Integer>(BUFFER_SIZE, consumer,
+                new BlockingWaitStrategy(), ProducerType.SINGLE);
+        consumer.buffer = buffer;
+        for (int i = 0; i < BUFFER_SIZE; i++) {
+            Assert.assertTrue(buffer.tryAddEvent(i, i, "stream"));
+        }
+        Assert.assertTrue(consumer.started.tryAcquire(10, TimeUnit.SECONDS));
+
+        // The first overflowing event waits for the stuck consumer in vain, the next one does not wait
+        Assert.assertFalse(buffer.addEventDroppingOldest(4, 4, "stream", TimeUnit.MILLISECONDS.toNanos(10)));
+        long startTime = System.nanoTime();
+        Assert.assertFalse(buffer.addEventDroppingOldest(5, 5, "stream", TIMEOUT));
+        Assert.assertTrue(System.nanoTime() - startTime < TIMEOUT);
+
+        // A single queued event was given up for the events which did not fit
+        consumer.permits.release(Integer.MAX_VALUE / 2);
+        long deadline = System.nanoTime() + TIMEOUT;
+        while (!consumer.consumed.contains(3) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertTrue(buffer.addEventDroppingOldest(6, 6, "stream", TIMEOUT));
+        deadline = System.nanoTime() + TIMEOUT;
+        while (!consumer.consumed.contains(6) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        buffer.terminate();
+        Assert.assertEquals(Arrays.asList(0, 2, 3, 6), consumer.consumed);
+        Assert.assertEquals(Arrays.asList(1), consumer.discarded);
+    }
+
+    /**
+     * Consumes an event per permit, reporting its progress after each event
+     */
+    private static class TestConsumer
+            implements SequenceReportingEventHandler<AsynchronousEventBuffer<Integer>.DataHolder> {
+        private final Semaphore started = new Semaphore(0);
+        private final Semaphore permits = new Semaphore(0);
+        private final List<Integer> consumed = new CopyOnWriteArrayList<Integer>();
+        private final List<Integer> discarded = new CopyOnWriteArrayList<Integer>();
+        private volatile AsynchronousEventBuffer<Integer> buffer;
+        private Sequence sequenceCallback;
+
+        @Override
+        public void onEvent(AsynchronousEventBuffer<Integer>.DataHolder dataHolder, long sequence, boolean endOfBatch)
+                throws InterruptedException {
+            if (buffer.isDiscarded(sequence)) {
+                discarded.add(dataHolder.getData());
+            } else {
+                started.release();
+                permits.acquire();
+                consumed.add(dataHolder.getData());
+            }
+            sequenceCallback.set(sequence);
+        }
+
+        @Override
+        public void setSequenceCallback(Sequence sequenceCallback) {
+            this.sequenceCallback = sequenceCallback;
+        }
+    }
+}
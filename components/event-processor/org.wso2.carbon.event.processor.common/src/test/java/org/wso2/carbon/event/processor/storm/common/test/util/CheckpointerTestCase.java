@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.storm.common.test.util;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.wso2.carbon.event.processor.common.storm.checkpoint.Checkpointer;
+import org.wso2.carbon.event.processor.common.storm.checkpoint.SnapshotStore;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+public class CheckpointerTestCase {
+    private static final long INTERVAL = 1000;
+
+    @Test
+    public void testAckAfterSave() throws InterruptedException {
+        TestStore store = new TestStore();
+        TestWriter writer = new TestWriter();
+        TestTask task = new TestTask();
+        Checkpointer<String> checkpointer = new Checkpointer<String>(store, "ExecutionPlan[-1234]", "key", INTERVAL,
+                writer, task, "", 0);
+
+        checkpointer.add("t1");
+        checkpointer.checkpoint(INTERVAL - 1);
+        Assert.assertEquals(0, task.snapshots);
+
+        checkpointer.add("t2");
+        checkpointer.checkpoint(INTERVAL);
+        Assert.assertEquals(1, task.snapshots);
+        checkpointer.add("t3");
+        // Not acknowledged before the snapshot is stored, and no other snapshot is taken meanwhile
+        checkpointer.checkpoint(3 * INTERVAL);
+        Assert.assertTrue(task.acked.isEmpty());
+        Assert.assertEquals(1, task.snapshots);
+
+        writer.runAll();
+        Assert.assertEquals(1, store.saved);
+        Assert.assertTrue(task.acked.isEmpty());
+        checkpointer.checkpoint(3 * INTERVAL);
+        Assert.assertEquals(Arrays.asList("t1", "t2"), task.acked);
+        Assert.assertEquals(2, task.snapshots);
+
+        writer.runAll();
+        checkpointer.checkpoint(3 * INTERVAL);
+        Assert.assertEquals(Arrays.asList("t1", "t2", "t3"), task.acked);
+    }
+
+    @Test
+    public void testRetryAfterFailedSave() throws InterruptedException {
+        TestStore store = new TestStore();
+        store.failures = 1;
+        TestWriter writer = new TestWriter();
+        TestTask task = new TestTask();
+        Checkpointer<String> checkpointer = new Checkpointer<String>(store, "ExecutionPlan[-1234]", "key", INTERVAL,
+                writer, task, "", 0);
+
+        checkpointer.add("t1");
+        checkpointer.add("t2");
+        checkpointer.checkpoint(INTERVAL);
+        writer.runAll();
+        Assert.assertEquals(0, store.saved);
+
+        // The tuples of the failed snapshot are covered by the next one, which is taken after the interval
+        checkpointer.add("t3");
+        checkpointer.checkpoint(INTERVAL + 1);
+        Assert.assertTrue(task.acked.isEmpty());
+        Assert.assertEquals(1, task.snapshots);
+        checkpointer.checkpoint(2 * INTERVAL);
+        Assert.assertEquals(2, task.snapshots);
+        writer.runAll();
+        Assert.assertEquals(1, store.saved);
+        checkpointer.checkpoint(2 * INTERVAL);
+        Assert.assertEquals(Arrays.asList("t1", "t2", "t3"), task.acked);
+    }
+
+    private static class TestTask implements Checkpointer.Task<String> {
+        private final List<String> acked = new ArrayList<String>();
+        private int snapshots;
+
+        @Override
+        public byte[] snapshot() {
+            return new byte[]{(byte) ++snapshots};
+        }
+
+        @Override
+        public void ack(String tuple) {
+            acked.add(tuple);
+        }
+    }
+
+    /**
+     * Stores snapshots when the test runs it
+     */
+    private static class TestWriter implements Executor {
+        private final Queue<Runnable> tasks = new ArrayDeque<Runnable>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        private void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private static class TestStore implements SnapshotStore {
+        private int failures;
+        private int saved;
+
+        @Override
+        public void save(String topologyName, String key, byte[] snapshot) throws IOException {
+            if (failures > 0) {
+                failures--;
+                throw new IOException("Test failure");
+            }
+            saved++;
+        }
+
+        @Override
+        public byte[] load(String topologyName, String key) {
+            return null;
+        }
+
+        @Override
+        public void delete(String topologyName) {
+        }
+    }
+}
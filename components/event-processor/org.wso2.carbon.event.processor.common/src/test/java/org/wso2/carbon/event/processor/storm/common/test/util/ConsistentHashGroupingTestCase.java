@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.storm.common.test.util;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.wso2.carbon.event.processor.common.storm.grouping.ConsistentHashGrouping;
+import org.wso2.carbon.event.processor.common.storm.grouping.HotKeyDetector;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ConsistentHashGroupingTestCase {
+    private static final List<Integer> FOUR_TASKS = Arrays.asList(10, 11, 12, 13);
+    private static final List<Integer> FIVE_TASKS = Arrays.asList(10, 11, 12, 13, 14);
+
+    private ConsistentHashGrouping createGrouping(List<Integer> targetTasks, boolean splitHotKeys, int... keyIndexes) {
+        ConsistentHashGrouping grouping = new ConsistentHashGrouping(new String[keyIndexes.length], 64, 10, 1000,
+                splitHotKeys);
+        grouping.prepare(targetTasks, keyIndexes);
+        return grouping;
+    }
+
+    private List<Object> tuple(Object... values) {
+        return Arrays.asList(values);
+    }
+
+    @Test
+    public void testKeysStickToTasksAndSpreadEvenly() {
+        ConsistentHashGrouping grouping = createGrouping(FOUR_TASKS, false, 1);
+        Map<Integer, Integer> keysPerTask = new HashMap<Integer, Integer>();
+        for (int i = 0; i < 4000; i++) {
+            List<Integer> tasks = grouping.chooseTasks(1, tuple(1000L, "symbol" + i, 55.6f));
+            Assert.assertEquals(1, tasks.size());
+            Assert.assertEquals(tasks, grouping.chooseTasks(1, tuple(2000L, "symbol" + i, 10.2f)));
+            Integer count = keysPerTask.get(tasks.get(0));
+            keysPerTask.put(tasks.get(0), count == null ? 1 : count + 1);
+        }
+        Assert.assertEquals(4, keysPerTask.size());
+        for (int count : keysPerTask.values()) {
+            Assert.assertTrue("Uneven spread " + keysPerTask, count > 600 && count < 1400);
+        }
+    }
+
+    @Test
+    public void testFewKeysMoveWhenTaskAdded() {
+        ConsistentHashGrouping fourTaskGrouping = createGrouping(FOUR_TASKS, false, 1);
+        ConsistentHashGrouping fiveTaskGrouping = createGrouping(FIVE_TASKS, false, 1);
+        int moved = 0;
+        for (int i = 0; i < 4000; i++) {
+            int before = fourTaskGrouping.chooseTasks(1, tuple(1000L, "symbol" + i)).get(0);
+            int after = fiveTaskGrouping.chooseTasks(1, tuple(1000L, "symbol" + i)).get(0);
+            if (before != after) {
+                Assert.assertEquals(14, after);
+                moved++;
+            }
+        }
+        // About one fifth of the keys move to the new task, where hash modulo grouping would move most
+        Assert.assertTrue("Moved " + moved, moved > 400 && moved < 1400);
+    }
+
+    @Test
+    public void testMultiAttributeKeys() {
+        ConsistentHashGrouping grouping = createGrouping(FOUR_TASKS, false, 1, 2);
+        Set<Integer> tasks = new HashSet<Integer>();
+        for (int i = 0; i < 100; i++) {
+            int task = grouping.chooseTasks(1, tuple(1000L, "WSO2", "region" + i)).get(0);
+            Assert.assertEquals(task, (int) grouping.chooseTasks(1, tuple(2000L, "WSO2", "region" + i)).get(0));
+            tasks.add(task);
+        }
+        // Events of the same symbol are spread by the second key attribute
+        Assert.assertTrue(tasks.size() > 1);
+    }
+
+    @Test
+    public void testHotKeySplitBetweenTwoTasks() {
+        ConsistentHashGrouping grouping = createGrouping(FOUR_TASKS, true, 1);
+        Set<Integer> hotKeyTasks = new HashSet<Integer>();
+        for (int i = 0; i < 4000; i++) {
+            String symbol = (i % 2 == 0) ? "HOT" : "symbol" + i;
+            int task = grouping.chooseTasks(1, tuple(1000L, symbol)).get(0);
+            if (i >= 1000 && symbol.equals("HOT")) {
+                hotKeyTasks.add(task);
+            }
+        }
+        Assert.assertEquals(2, hotKeyTasks.size());
+        ConsistentHashGrouping unsplitGrouping = createGrouping(FOUR_TASKS, false, 1);
+        Assert.assertTrue(hotKeyTasks.contains(unsplitGrouping.chooseTasks(1, tuple(1000L, "HOT")).get(0)));
+    }
+
+    @Test
+    public void testHotKeyDetection() {
+        HotKeyDetector detector = new HotKeyDetector(10, 1000);
+        Set<Object> becameHot = null;
+        for (int i = 0; i < 1000; i++) {
+            becameHot = detector.offer(i % 5 == 0 ? "HOT" : "key" + i);
+            if (i < 999) {
+                Assert.assertNull(becameHot);
+            }
+        }
+        Assert.assertEquals(new HashSet<Object>(Arrays.asList("HOT")), becameHot);
+        Assert.assertTrue(detector.isHot("HOT"));
+        Assert.assertFalse(detector.isHot("key1"));
+
+        for (int i = 0; i < 1000; i++) {
+            detector.offer("key" + i);
+        }
+        Assert.assertFalse(detector.isHot("HOT"));
+    }
+}
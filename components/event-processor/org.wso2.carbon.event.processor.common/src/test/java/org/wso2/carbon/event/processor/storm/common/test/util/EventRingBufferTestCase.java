@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.storm.common.test.util;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.wso2.carbon.event.processor.common.util.EventRingBuffer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class EventRingBufferTestCase {
+
+    @Test
+    public void testOfferAndPollInOrder() {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<Integer>(3);
+        Assert.assertEquals(4, buffer.capacity());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(buffer.offer(i));
+        }
+        Assert.assertFalse(buffer.offer(4));
+        Assert.assertEquals(4, buffer.size());
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(Integer.valueOf(i), buffer.poll());
+        }
+        Assert.assertNull(buffer.poll());
+        Assert.assertTrue(buffer.offer(5));
+        Assert.assertEquals(Integer.valueOf(5), buffer.poll());
+    }
+
+    @Test
+    public void testMultipleProducers() throws InterruptedException {
+        final int producers = 4;
+        final int eventsPerProducer = 10000;
+        final EventRingBuffer<Integer> buffer = new EventRingBuffer<Integer>(64);
+        ExecutorService threadPool = Executors.newFixedThreadPool(producers);
+        for (int p = 0; p < producers; p++) {
+            threadPool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < eventsPerProducer; i++) {
+                        try {
+                            buffer.put(1);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            });
+        }
+
+        int received = 0;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (received < producers * eventsPerProducer && System.currentTimeMillis() < deadline) {
+            if (buffer.poll() != null) {
+                received++;
+            }
+        }
+        threadPool.shutdown();
+        threadPool.awaitTermination(5, TimeUnit.SECONDS);
+        Assert.assertEquals(producers * eventsPerProducer, received);
+        Assert.assertNull(buffer.poll());
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.storm.common.test.util;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.wso2.carbon.event.processor.common.storm.checkpoint.FileSnapshotStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.UUID;
+
+public class FileSnapshotStoreTestCase {
+
+    private static final String TOPOLOGY_NAME = "ExecutionPlan[-1234]";
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "checkpoint-test-" + UUID.randomUUID());
+        FileSnapshotStore store = new FileSnapshotStore(directory.getPath());
+        String key = "SiddhiBolt[filter]-1f2e3d-2-0";
+        Assert.assertNull(store.load(TOPOLOGY_NAME, key));
+
+        store.save(TOPOLOGY_NAME, key, new byte[]{1, 2, 3});
+        Assert.assertTrue(Arrays.equals(new byte[]{1, 2, 3}, store.load(TOPOLOGY_NAME, key)));
+
+        // The latest snapshot replaces the previous one without leaving temporary files behind
+        store.save(TOPOLOGY_NAME, key, new byte[]{4, 5});
+        Assert.assertTrue(Arrays.equals(new byte[]{4, 5}, store.load(TOPOLOGY_NAME, key)));
+        Assert.assertEquals(1, directory.listFiles()[0].listFiles().length);
+        Assert.assertNull(store.load(TOPOLOGY_NAME, key.replace("-0", "-1")));
+    }
+
+    @Test
+    public void testDelete() throws IOException {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "checkpoint-test-" + UUID.randomUUID());
+        FileSnapshotStore store = new FileSnapshotStore(directory.getPath());
+        String otherTopologyName = "ExecutionPlan2[-1234]";
+        store.save(TOPOLOGY_NAME, "SiddhiBolt[filter]-1f2e3d-2-0", new byte[]{1});
+        store.save(TOPOLOGY_NAME, "SiddhiBolt[filter]-1f2e3d-2-1", new byte[]{2});
+        store.save(otherTopologyName, "SiddhiBolt[filter]-1f2e3d-2-0", new byte[]{3});
+
+        store.delete(TOPOLOGY_NAME);
+        Assert.assertNull(store.load(TOPOLOGY_NAME, "SiddhiBolt[filter]-1f2e3d-2-0"));
+        Assert.assertNull(store.load(TOPOLOGY_NAME, "SiddhiBolt[filter]-1f2e3d-2-1"));
+        Assert.assertTrue(Arrays.equals(new byte[]{3}, store.load(otherTopologyName, "SiddhiBolt[filter]-1f2e3d-2-0")));
+        Assert.assertEquals(1, directory.listFiles().length);
+
+        // Deleting the snapshots of a topology without any is a no-op
+        store.delete(TOPOLOGY_NAME);
+    }
+}
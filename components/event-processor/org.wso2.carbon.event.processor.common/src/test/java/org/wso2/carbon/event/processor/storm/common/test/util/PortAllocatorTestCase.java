@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.storm.common.test.util;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.wso2.carbon.event.processor.common.util.PortAllocator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+
+public class PortAllocatorTestCase {
+    private static final String HOST = "localhost";
+
+    @Test
+    public void testAllocatedPortsAreDistinct() throws IOException {
+        int first = PortAllocator.allocate(HOST, 17611, 17612);
+        int second = PortAllocator.allocate(HOST, 17611, 17612);
+        try {
+            Assert.assertTrue(first != second);
+            try {
+                PortAllocator.allocate(HOST, 17611, 17612);
+                Assert.fail("Allocated a port of a fully allocated range");
+            } catch (IOException expected) {
+                // All ports of the range are allocated
+            }
+        } finally {
+            PortAllocator.release(first);
+            PortAllocator.release(second);
+        }
+    }
+
+    @Test
+    public void testSkipsBoundAndReleasesPorts() throws IOException {
+        ServerSocket serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(HOST, 17621));
+        try {
+            int port = PortAllocator.allocate(HOST, 17621, 17622);
+            Assert.assertEquals(17622, port);
+            PortAllocator.release(port);
+            Assert.assertEquals(17622, PortAllocator.allocate(HOST, 17621, 17622));
+            PortAllocator.release(17622);
+        } finally {
+            serverSocket.close();
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.storm.common.test.util;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.wso2.carbon.event.processor.common.util.ReplayBuffer;
+
+public class ReplayBufferTestCase {
+
+    @Test
+    public void testAckAndFail() {
+        ReplayBuffer<String> buffer = new ReplayBuffer<String>(3);
+        Long first = buffer.add("e1");
+        Long second = buffer.add("e2");
+        Long third = buffer.add("e3");
+        Assert.assertTrue(buffer.isFull());
+
+        buffer.ack(second);
+        Assert.assertFalse(buffer.isFull());
+        // Failures of acknowledged or unknown messages are ignored
+        buffer.fail(second);
+        buffer.fail(42L);
+        Assert.assertNull(buffer.pollFailed());
+
+        // Failed events are replayed in the order they failed in, once each
+        buffer.fail(third);
+        buffer.fail(first);
+        buffer.fail(third);
+        Assert.assertEquals("e3", buffer.pollFailed());
+        Assert.assertEquals("e1", buffer.pollFailed());
+        Assert.assertNull(buffer.pollFailed());
+    }
+
+    @Test
+    public void testReplayUnderNewMessageId() {
+        ReplayBuffer<String> buffer = new ReplayBuffer<String>(2);
+        Long messageId = buffer.add("e1");
+        buffer.fail(messageId);
+        String event = buffer.pollFailed();
+        Assert.assertEquals("e1", event);
+        Assert.assertFalse(buffer.isFull());
+
+        Long replayedMessageId = buffer.add(event);
+        Assert.assertFalse(messageId.equals(replayedMessageId));
+        // A late failure of the previous emission does not replay the event again
+        buffer.fail(messageId);
+        Assert.assertNull(buffer.pollFailed());
+
+        buffer.add("e2");
+        Assert.assertTrue(buffer.isFull());
+        buffer.ack(replayedMessageId);
+        Assert.assertFalse(buffer.isFull());
+    }
+}
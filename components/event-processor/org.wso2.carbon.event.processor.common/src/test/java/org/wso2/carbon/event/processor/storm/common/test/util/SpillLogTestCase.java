@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.storm.common.test.util;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.wso2.carbon.event.processor.common.storm.event.Event;
+import org.wso2.carbon.event.processor.common.util.SpillLog;
+import org.wso2.siddhi.query.api.definition.Attribute;
+import org.wso2.siddhi.query.api.definition.StreamDefinition;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.UUID;
+
+public class SpillLogTestCase {
+    private StreamDefinition stockStream = StreamDefinition.id("StockStream")
+            .attribute("symbol", Attribute.Type.STRING)
+            .attribute("price", Attribute.Type.FLOAT)
+            .attribute("volume", Attribute.Type.LONG);
+
+    private File createDirectory() {
+        return new File(System.getProperty("java.io.tmpdir"), "spill-test-" + UUID.randomUUID());
+    }
+
+    @Test
+    public void testReplayInOrderAcrossSegments() throws IOException {
+        File directory = createDirectory();
+        SpillLog spillLog = new SpillLog(directory, Arrays.asList(stockStream), 256, 100, true);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(spillLog.append("StockStream", 1000L + i, new Object[]{"WSO2", 55.6f, (long) i}));
+        }
+        Assert.assertEquals(100, spillLog.size());
+        Assert.assertTrue(directory.listFiles().length > 1);
+
+        for (int i = 0; i < 100; i++) {
+            Event event = spillLog.peek();
+            Assert.assertEquals("StockStream", event.getStreamId());
+            Assert.assertEquals(1000L + i, event.getTimestamp());
+            Assert.assertEquals((long) i, event.getData()[2]);
+            // Peeking again returns the same event until it is removed
+            Assert.assertSame(event, spillLog.peek());
+            spillLog.remove();
+        }
+        Assert.assertTrue(spillLog.isEmpty());
+        Assert.assertNull(spillLog.peek());
+
+        // Appending after draining continues in a fresh segment
+        spillLog.append("StockStream", 5000L, new Object[]{"IBM", 1.0f, 1L});
+        Assert.assertEquals("IBM", spillLog.peek().getData()[0]);
+
+        spillLog.close();
+        Assert.assertFalse(directory.exists());
+    }
+
+    @Test
+    public void testDropOldestWhenFull() throws IOException {
+        File directory = createDirectory();
+        SpillLog spillLog = new SpillLog(directory, Arrays.asList(stockStream), 128, 2, true);
+        for (int i = 0; i < 100; i++) {
+            spillLog.append("StockStream", i, new Object[]{"WSO2", 55.6f, (long) i});
+        }
+        Assert.assertEquals(2, directory.listFiles().length);
+        Assert.assertEquals(100, spillLog.size() + spillLog.getDroppedCount());
+
+        // Remaining events are the newest ones, still in order
+        long expected = 100 - spillLog.size();
+        Event event;
+        while ((event = spillLog.peek()) != null) {
+            Assert.assertEquals(expected++, event.getData()[2]);
+            spillLog.remove();
+        }
+        Assert.assertEquals(100, expected);
+        spillLog.close();
+    }
+
+    @Test
+    public void testSegmentFilesReused() throws IOException {
+        File directory = createDirectory();
+        SpillLog spillLog = new SpillLog(directory, Arrays.asList(stockStream), 128, 3, true);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 20; i++) {
+                spillLog.append("StockStream", i, new Object[]{"WSO2", 55.6f, (long) (round * 20 + i)});
+            }
+            Assert.assertTrue(directory.listFiles().length <= 3);
+            long expected = round * 20 + 20 - spillLog.size();
+            Event event;
+            while ((event = spillLog.peek()) != null) {
+                Assert.assertEquals(expected++, event.getData()[2]);
+                spillLog.remove();
+            }
+            Assert.assertEquals(round * 20 + 20, expected);
+        }
+        Assert.assertEquals(3, directory.listFiles().length);
+        spillLog.close();
+        Assert.assertFalse(directory.exists());
+    }
+
+    @Test
+    public void testDropNewestWhenFull() throws IOException {
+        File directory = createDirectory();
+        SpillLog spillLog = new SpillLog(directory, Arrays.asList(stockStream), 128, 2, false);
+        int appended = 0;
+        for (int i = 0; i < 100; i++) {
+            if (spillLog.append("StockStream", i, new Object[]{"WSO2", 55.6f, (long) i})) {
+                appended++;
+            }
+        }
+        Assert.assertEquals(appended, spillLog.size());
+        Assert.assertEquals(100 - appended, spillLog.getDroppedCount());
+
+        // Remaining events are the oldest ones
+        for (int i = 0; i < appended; i++) {
+            Assert.assertEquals((long) i, spillLog.peek().getData()[2]);
+            spillLog.remove();
+        }
+        spillLog.close();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.storm.common.test.util;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.wso2.carbon.event.processor.common.storm.event.Event;
+import org.wso2.carbon.event.processor.common.storm.event.StreamEventCodec;
+import org.wso2.siddhi.query.api.definition.Attribute;
+import org.wso2.siddhi.query.api.definition.StreamDefinition;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+public class StreamEventCodecTestCase {
+    private StreamDefinition stockStream = StreamDefinition.id("StockStream")
+            .attribute("symbol", Attribute.Type.STRING)
+            .attribute("price", Attribute.Type.FLOAT)
+            .attribute("volume", Attribute.Type.LONG)
+            .attribute("count", Attribute.Type.INT)
+            .attribute("avg", Attribute.Type.DOUBLE)
+            .attribute("valid", Attribute.Type.BOOL);
+    private StreamDefinition alertStream = StreamDefinition.id("AlertStream")
+            .attribute("message", Attribute.Type.STRING);
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<StreamDefinition> writerDefinitions = Arrays.asList(stockStream, alertStream);
+        // Reader knows the same streams in a different order
+        List<StreamDefinition> readerDefinitions = Arrays.asList(alertStream, stockStream);
+        StreamEventCodec writer = new StreamEventCodec(writerDefinitions, true);
+        StreamEventCodec reader = new StreamEventCodec(readerDefinitions, true);
+
+        Object[][] events = new Object[][]{
+                {"WSO2", 55.6f, 100L, 10, 23.5, true},
+                {"WSO2", -1.5f, -100000000000L, -7, null, false},
+                {null, 0f, 0L, Integer.MAX_VALUE, Double.MAX_VALUE, null}
+        };
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writer.writeStreamTable(out);
+        for (int i = 0; i < events.length; i++) {
+            writer.encode("StockStream", 1000L + i, events[i], out);
+        }
+        writer.encode("AlertStream", 999L, new Object[]{"WSO2"}, out);
+        out.flush();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        reader.readStreamTable(in);
+        for (int i = 0; i < events.length; i++) {
+            Event event = reader.decode(in);
+            Assert.assertEquals("StockStream", event.getStreamId());
+            Assert.assertEquals(1000L + i, event.getTimestamp());
+            Assert.assertTrue(Arrays.deepEquals(events[i], event.getData()));
+        }
+        Event alert = reader.decode(in);
+        Assert.assertEquals("AlertStream", alert.getStreamId());
+        Assert.assertEquals(999L, alert.getTimestamp());
+        Assert.assertEquals("WSO2", alert.getData()[0]);
+        Assert.assertEquals(0, in.available());
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownStreamInTable() throws IOException {
+        StreamEventCodec writer = new StreamEventCodec(Arrays.asList(stockStream, alertStream), false);
+        StreamEventCodec reader = new StreamEventCodec(Arrays.asList(stockStream), false);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.writeStreamTable(new DataOutputStream(bytes));
+        reader.readStreamTable(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    public void testMismatchingAttributesInTable() throws IOException {
+        StreamEventCodec writer = new StreamEventCodec(Arrays.asList(alertStream), false);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.writeStreamTable(new DataOutputStream(bytes));
+
+        // Same number of attributes, but of another type or name
+        StreamDefinition[] mismatchingStreams = new StreamDefinition[]{
+                StreamDefinition.id("AlertStream").attribute("message", Attribute.Type.INT),
+                StreamDefinition.id("AlertStream").attribute("text", Attribute.Type.STRING)
+        };
+        for (StreamDefinition mismatchingStream : mismatchingStreams) {
+            StreamEventCodec reader = new StreamEventCodec(Arrays.asList(mismatchingStream), false);
+            try {
+                reader.readStreamTable(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+                Assert.fail("Accepted stream table with mismatching attributes");
+            } catch (IOException expected) {
+                // The definitions of the writer and the reader differ
+            }
+        }
+    }
+}
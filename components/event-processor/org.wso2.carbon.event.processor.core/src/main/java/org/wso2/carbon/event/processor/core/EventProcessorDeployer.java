@@ -28,6 +28,8 @@ import org.wso2.carbon.event.processor.core.exception.ExecutionPlanConfiguration
 import org.wso2.carbon.event.processor.core.exception.ExecutionPlanDependencyValidationException;
 import org.wso2.carbon.event.processor.core.internal.CarbonEventProcessorService;
 import org.wso2.carbon.event.processor.core.internal.ds.EventProcessorValueHolder;
+import org.wso2.carbon.event.processor.core.internal.util.EventProcessorConstants;
+import org.wso2.carbon.event.processor.core.internal.util.StripedLock;
 import org.wso2.carbon.event.processor.core.internal.util.helper.EventProcessorHelper;
 
 import java.io.BufferedReader;
@@ -38,6 +40,7 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Deploy query plans as axis2 service
@@ -46,6 +49,8 @@ import java.util.concurrent.ConcurrentHashMap;
 public class EventProcessorDeployer extends AbstractDeployer implements EventProcessingDeployer {
 
     private static Log log = LogFactory.getLog(org.wso2.carbon.event.processor.core.EventProcessorDeployer.class);
+    // serializes the deployment of the same execution plan file of a tenant
+    private static final StripedLock deploymentLocks = new StripedLock(EventProcessorConstants.EXECUTION_PLAN_LOCK_STRIPES);
     private ConfigurationContext configurationContext;
     private Set<String> deployedExecutionPlanFilePaths = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     private Set<String> unDeployedExecutionPlanFilePaths = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
@@ -105,7 +110,54 @@ public class EventProcessorDeployer extends AbstractDeployer implements EventPro
 
     }
 
-    public synchronized void processDeploy(DeploymentFileData deploymentFileData)
+    public void processDeploy(DeploymentFileData deploymentFileData)
+            throws ExecutionPlanConfigurationException {
+        Lock lock = getDeploymentLock(deploymentFileData.getFile().getName());
+        lock.lock();
+        try {
+            deployExecutionPlanFile(deploymentFileData);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void processUndeploy(String filePath) {
+        Lock lock = getDeploymentLock(new File(filePath).getName());
+        lock.lock();
+        try {
+            undeployExecutionPlanFile(filePath);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Undeploys and deploys the given execution plan file again, without letting another deployment of the file
+     * run in between.
+     */
+    public void processRedeploy(String filePath) throws ExecutionPlanConfigurationException {
+        Lock lock = getDeploymentLock(new File(filePath).getName());
+        lock.lock();
+        try {
+            undeployExecutionPlanFile(filePath);
+            deployExecutionPlanFile(new DeploymentFileData(new File(filePath)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return whether the current thread is deploying or undeploying an execution plan file
+     */
+    public static boolean isDeploymentInProgress() {
+        return deploymentLocks.isHeldByCurrentThread();
+    }
+
+    private static Lock getDeploymentLock(String fileName) {
+        return deploymentLocks.get(PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId(), fileName);
+    }
+
+    private void deployExecutionPlanFile(DeploymentFileData deploymentFileData)
             throws ExecutionPlanConfigurationException {
         // can't be null at this point
         CarbonEventProcessorService carbonEventProcessorService = EventProcessorValueHolder.getEventProcessorService();
@@ -160,7 +212,7 @@ public class EventProcessorDeployer extends AbstractDeployer implements EventPro
 
     }
 
-    public synchronized void processUndeploy(String filePath) {
+    private void undeployExecutionPlanFile(String filePath) {
 
         String fileName = new File(filePath).getName();
         log.info("Execution Plan was undeployed successfully : " + fileName);
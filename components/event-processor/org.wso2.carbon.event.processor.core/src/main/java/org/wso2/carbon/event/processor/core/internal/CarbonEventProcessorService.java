@@ -22,6 +22,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.databridge.commons.StreamDefinition;
+import org.wso2.carbon.event.processor.core.EventProcessorDeployer;
 import org.wso2.carbon.event.processor.core.EventProcessorService;
 import org.wso2.carbon.event.processor.core.ExecutionPlan;
 import org.wso2.carbon.event.processor.core.ExecutionPlanConfiguration;
@@ -40,9 +41,11 @@ import org.wso2.carbon.event.processor.core.internal.storm.StormTopologyManager;
 import org.wso2.carbon.event.processor.core.internal.storm.status.monitor.StormStatusMapListener;
 import org.wso2.carbon.event.processor.core.internal.storm.status.monitor.StormStatusMonitor;
 import org.wso2.carbon.event.processor.core.internal.storm.status.monitor.exception.DeploymentStatusMonitorException;
+import org.wso2.carbon.event.processor.core.internal.storm.util.StormQueryPlanBuilder;
 import org.wso2.carbon.event.processor.core.internal.util.EventProcessorConfigurationFilesystemInvoker;
 import org.wso2.carbon.event.processor.core.internal.util.EventProcessorConstants;
 import org.wso2.carbon.event.processor.core.internal.util.EventProcessorUtil;
+import org.wso2.carbon.event.processor.core.internal.util.StripedLock;
 import org.wso2.carbon.event.processor.core.internal.util.helper.EventProcessorHelper;
 import org.wso2.carbon.event.processor.core.util.DistributedModeConstants;
 import org.wso2.carbon.event.processor.core.util.ExecutionPlanStatusHolder;
@@ -69,14 +72,23 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 
 public class CarbonEventProcessorService implements EventProcessorService {
     private static final Log log = LogFactory.getLog(CarbonEventProcessorService.class);
     // deployed query plans
-    private Map<Integer, ConcurrentHashMap<String, ExecutionPlan>> tenantSpecificExecutionPlans;
-    // not distinguishing between deployed vs failed here.
-    private Map<Integer, List<ExecutionPlanConfigurationFile>> tenantSpecificExecutionPlanFiles;
+    private ConcurrentHashMap<Integer, ConcurrentHashMap<String, ExecutionPlan>> tenantSpecificExecutionPlans;
+    private ConcurrentHashMap<Integer, ExecutionPlanRegistry> tenantSpecificExecutionPlanRegistries;
+    // serializes the deployment of execution plans with the same name
+    private final StripedLock executionPlanLocks = new StripedLock(EventProcessorConstants.EXECUTION_PLAN_LOCK_STRIPES);
+    private final ThreadPoolExecutor redeployExecutor;
     private ManagementModeInfo managementInfo;
 
 //    private List<String> importDefinitions;              //old code block kept for reference
@@ -84,7 +96,20 @@ public class CarbonEventProcessorService implements EventProcessorService {
 
     public CarbonEventProcessorService() {
         tenantSpecificExecutionPlans = new ConcurrentHashMap<Integer, ConcurrentHashMap<String, ExecutionPlan>>();
-        tenantSpecificExecutionPlanFiles = new ConcurrentHashMap<Integer, List<ExecutionPlanConfigurationFile>>();
+        tenantSpecificExecutionPlanRegistries = new ConcurrentHashMap<Integer, ExecutionPlanRegistry>();
+        int redeployThreads = Runtime.getRuntime().availableProcessors();
+        redeployExecutor = new ThreadPoolExecutor(redeployThreads, redeployThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "EventProcessor-Redeployer-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        redeployExecutor.allowCoreThreadTimeOut(true);
     }
 
 
@@ -103,24 +128,16 @@ public class CarbonEventProcessorService implements EventProcessorService {
 
             String repoPath = EventProcessorUtil.getAxisConfiguration().getRepository().getPath();
             File directory = new File(repoPath);
-            if (!directory.exists()) {
-                synchronized (repoPath.intern()) {
-                    if (!directory.mkdir()) {
-                        throw new ExecutionPlanConfigurationException("Cannot create directory to add tenant specific " +
-                                "execution plan : " + executionPlanName);
-                    }
-                }
+            if (!directory.mkdir() && !directory.isDirectory()) {
+                throw new ExecutionPlanConfigurationException("Cannot create directory to add tenant specific " +
+                        "execution plan : " + executionPlanName);
             }
 
             String eventProcessorConfigPath = directory.getAbsolutePath() + File.separator + EventProcessorConstants.EP_ELE_DIRECTORY;
             directory = new File(eventProcessorConfigPath);
-            if (!directory.exists()) {
-                synchronized (eventProcessorConfigPath.intern()) {
-                    if (!directory.mkdir()) {
-                        throw new ExecutionPlanConfigurationException("Cannot create directory " +
-                                EventProcessorConstants.EP_ELE_DIRECTORY + " to add tenant specific  execution plan :" + executionPlanName);
-                    }
-                }
+            if (!directory.mkdir() && !directory.isDirectory()) {
+                throw new ExecutionPlanConfigurationException("Cannot create directory " +
+                        EventProcessorConstants.EP_ELE_DIRECTORY + " to add tenant specific  execution plan :" + executionPlanName);
             }
 
             validateToRemoveInactiveExecutionPlanConfiguration(executionPlanName);
@@ -193,16 +210,28 @@ public class CarbonEventProcessorService implements EventProcessorService {
     public void addExecutionPlan(String executionPlan, boolean isEditable) throws ExecutionPlanConfigurationException {
 
         int tenantId = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId();
+        org.wso2.siddhi.query.api.ExecutionPlan parsedExecutionPlan = SiddhiCompiler.parse(executionPlan);
+        String executionPlanName = AnnotationHelper.getAnnotationElement(EventProcessorConstants.ANNOTATION_NAME_NAME, null, parsedExecutionPlan.getAnnotations()).getValue();   //Element is not null since the plan is a valid one.
+
+        Lock lock = executionPlanLocks.get(tenantId, executionPlanName);
+        lock.lock();
+        try {
+            addExecutionPlan(executionPlan, parsedExecutionPlan, executionPlanName, isEditable, tenantId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void addExecutionPlan(String executionPlan, org.wso2.siddhi.query.api.ExecutionPlan parsedExecutionPlan,
+                                  String executionPlanName, boolean isEditable, int tenantId)
+            throws ExecutionPlanConfigurationException {
 
         SiddhiManager siddhiManager = EventProcessorValueHolder.getSiddhiManager();
         EventProcessorHelper.loadDataSourceConfiguration(siddhiManager);
         ExecutionPlanRuntime executionPlanRuntime = null;
-        org.wso2.siddhi.query.api.ExecutionPlan parsedExecutionPlan = SiddhiCompiler.parse(executionPlan);
 
         ExecutionPlanConfiguration executionPlanConfiguration = new ExecutionPlanConfiguration();
         executionPlanConfiguration.setExecutionPlan(executionPlan);
-
-        String executionPlanName = AnnotationHelper.getAnnotationElement(EventProcessorConstants.ANNOTATION_NAME_NAME, null, parsedExecutionPlan.getAnnotations()).getValue();   //Element is not null since the plan is a valid one.
         executionPlanConfiguration.setName(executionPlanName);
 
         Element executionPlanDescriptionElement = AnnotationHelper.getAnnotationElement(EventProcessorConstants.ANNOTATION_NAME_DESCRIPTION, null, parsedExecutionPlan.getAnnotations());
@@ -230,11 +259,8 @@ public class CarbonEventProcessorService implements EventProcessorService {
         }
         executionPlanConfiguration.setEditable(isEditable);
 
-        ConcurrentHashMap<String, ExecutionPlan> tenantExecutionPlans = tenantSpecificExecutionPlans.get(tenantId);
-        if (tenantExecutionPlans == null) {
-            tenantExecutionPlans = new ConcurrentHashMap<String, ExecutionPlan>();
-            tenantSpecificExecutionPlans.put(tenantId, tenantExecutionPlans);
-        } else if (tenantExecutionPlans.get(executionPlanName) != null) {
+        ConcurrentHashMap<String, ExecutionPlan> tenantExecutionPlans = getTenantExecutionPlans(tenantId);
+        if (tenantExecutionPlans.get(executionPlanName) != null) {
             // if an execution plan with the same name already exists, we are not going to override it with this plan.
             throw new ExecutionPlanConfigurationException("Execution plan with the same name already exists. Please remove it and retry.");
         }
@@ -347,6 +373,7 @@ public class CarbonEventProcessorService implements EventProcessorService {
         ExecutionPlan processorExecutionPlan = new ExecutionPlan(executionPlanName, executionPlanRuntime,
                 executionPlanConfiguration);
         tenantExecutionPlans.put(executionPlanName, processorExecutionPlan);
+        getExecutionPlanRegistry(tenantId).addActiveExecutionPlan(executionPlanConfiguration);
 
         boolean isDistributedEnabledAndIsWorker = (managementInfo.getMode() == Mode.Distributed && stormDeploymentConfiguration != null
                 && stormDeploymentConfiguration.isWorkerNode());
@@ -371,7 +398,8 @@ public class CarbonEventProcessorService implements EventProcessorService {
         SiddhiStormOutputEventListener stormOutputListener = null;
         if (managementInfo.getMode() == Mode.Distributed && managementInfo.getDistributedConfiguration().isWorkerNode()) {
             stormOutputListener = new SiddhiStormOutputEventListener(executionPlanConfiguration, tenantId,
-                    stormDeploymentConfiguration, stormStatusMonitor);
+                    stormDeploymentConfiguration, stormStatusMonitor,
+                    StormQueryPlanBuilder.isSharedPublisherServer(parsedExecutionPlan.getAnnotations()));
             processorExecutionPlan.addStormOutputListener(stormOutputListener);
         }
 
@@ -522,7 +550,7 @@ public class CarbonEventProcessorService implements EventProcessorService {
     }
 
     public void notifyServiceAvailability(String serviceId) {
-        for (Integer tenantId : tenantSpecificExecutionPlanFiles.keySet()) {
+        for (Integer tenantId : tenantSpecificExecutionPlanRegistries.keySet()) {
             try {
                 PrivilegedCarbonContext.startTenantFlow();
                 PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(tenantId);
@@ -539,11 +567,12 @@ public class CarbonEventProcessorService implements EventProcessorService {
     private void removeExecutionPlanConfiguration(String name) {
         int tenantId = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId();
         Map<String, ExecutionPlan> executionPlanMap = tenantSpecificExecutionPlans.get(tenantId);
-        if (executionPlanMap != null && executionPlanMap.containsKey(name)) {
-            ExecutionPlan executionPlan = executionPlanMap.remove(name);
+        ExecutionPlan executionPlan = executionPlanMap != null ? executionPlanMap.remove(name) : null;
+        if (executionPlan != null) {
             executionPlan.shutdown();
 
             ExecutionPlanConfiguration executionPlanConfiguration = executionPlan.getExecutionPlanConfiguration();
+            getExecutionPlanRegistry(tenantId).removeActiveExecutionPlan(executionPlanConfiguration);
 
             DistributedConfiguration stormDeploymentConfig = EventProcessorValueHolder.getStormDeploymentConfiguration();
             if (managementInfo.getMode() == Mode.Distributed && stormDeploymentConfig != null && stormDeploymentConfig.isManagerNode() &&
@@ -591,12 +620,7 @@ public class CarbonEventProcessorService implements EventProcessorService {
 
     public void addExecutionPlanConfigurationFile(ExecutionPlanConfigurationFile configurationFile) {
         int tenantId = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId();
-        List<ExecutionPlanConfigurationFile> executionPlanConfigurationFiles = tenantSpecificExecutionPlanFiles.get(tenantId);
-        if (executionPlanConfigurationFiles == null) {
-            executionPlanConfigurationFiles = new CopyOnWriteArrayList<>();
-            tenantSpecificExecutionPlanFiles.put(tenantId, executionPlanConfigurationFiles);
-        }
-        executionPlanConfigurationFiles.add(configurationFile);
+        getExecutionPlanRegistry(tenantId).addConfigurationFile(configurationFile);
     }
 
     /**
@@ -605,15 +629,13 @@ public class CarbonEventProcessorService implements EventProcessorService {
      * @param fileName the filename of the {@link ExecutionPlanConfigurationFile} to be removed
      */
     public void removeExecutionPlanConfigurationFile(String fileName) {
-        List<ExecutionPlanConfigurationFile> executionPlanConfigurationFiles = tenantSpecificExecutionPlanFiles
+        ExecutionPlanRegistry executionPlanRegistry = tenantSpecificExecutionPlanRegistries
                 .get(PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId());
-        for (ExecutionPlanConfigurationFile configurationFile : executionPlanConfigurationFiles) {
-            if (new File(configurationFile.getFileName()).getName().equals(fileName)) {
-                if (configurationFile.getStatus().equals(ExecutionPlanConfigurationFile.Status.DEPLOYED)) {
-                    removeExecutionPlanConfiguration(configurationFile.getExecutionPlanName());
-                }
-                executionPlanConfigurationFiles.remove(configurationFile);
-                return;
+        if (executionPlanRegistry != null) {
+            ExecutionPlanConfigurationFile configurationFile = executionPlanRegistry.removeConfigurationFile(fileName);
+            if (configurationFile != null
+                    && configurationFile.getStatus().equals(ExecutionPlanConfigurationFile.Status.DEPLOYED)) {
+                removeExecutionPlanConfiguration(configurationFile.getExecutionPlanName());
             }
         }
     }
@@ -648,17 +670,14 @@ public class CarbonEventProcessorService implements EventProcessorService {
     @Override
     public Map<String, ExecutionPlanConfiguration> getAllExportedStreamSpecificActiveExecutionConfigurations(String streamId) {
         Map<String, ExecutionPlanConfiguration> configurationMap = new HashMap<String, ExecutionPlanConfiguration>();
-        Map<String, ExecutionPlan> executionPlanMap = tenantSpecificExecutionPlans
-                .get(PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId());
-        if (executionPlanMap != null) {
-            for (Map.Entry<String, ExecutionPlan> entry : executionPlanMap.entrySet()) {
-
-                List<StreamConfiguration> streamConfigurationList = entry.getValue().getExecutionPlanConfiguration().getExportedStreams();
-                for (StreamConfiguration streamConfiguration : streamConfigurationList) {
-                    String streamNameWithVersion = streamConfiguration.getName() + ":" + streamConfiguration.getVersion();
-                    if (streamNameWithVersion.equals(streamId)) {
-                        configurationMap.put(entry.getKey(), entry.getValue().getExecutionPlanConfiguration());
-                    }
+        int tenantId = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId();
+        Map<String, ExecutionPlan> executionPlanMap = tenantSpecificExecutionPlans.get(tenantId);
+        ExecutionPlanRegistry executionPlanRegistry = tenantSpecificExecutionPlanRegistries.get(tenantId);
+        if (executionPlanMap != null && executionPlanRegistry != null) {
+            for (String executionPlanName : executionPlanRegistry.getExportingExecutionPlans(streamId)) {
+                ExecutionPlan executionPlan = executionPlanMap.get(executionPlanName);
+                if (executionPlan != null) {
+                    configurationMap.put(executionPlanName, executionPlan.getExecutionPlanConfiguration());
                 }
             }
         }
@@ -668,18 +687,14 @@ public class CarbonEventProcessorService implements EventProcessorService {
     @Override
     public Map<String, ExecutionPlanConfiguration> getAllImportedStreamSpecificActiveExecutionConfigurations(String streamId) {
         Map<String, ExecutionPlanConfiguration> configurationMap = new HashMap<String, ExecutionPlanConfiguration>();
-        Map<String, ExecutionPlan> executionPlanMap = tenantSpecificExecutionPlans
-                .get(PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId());
-        if (executionPlanMap != null) {
-            for (Map.Entry<String, ExecutionPlan> entry : executionPlanMap.entrySet()) {
-
-                List<StreamConfiguration> streamConfigurationList = entry.getValue().getExecutionPlanConfiguration()
-                        .getImportedStreams();
-                for (StreamConfiguration streamConfiguration : streamConfigurationList) {
-                    String streamNameWithVersion = streamConfiguration.getName() + ":" + streamConfiguration.getVersion();
-                    if (streamNameWithVersion.equals(streamId)) {
-                        configurationMap.put(entry.getKey(), entry.getValue().getExecutionPlanConfiguration());
-                    }
+        int tenantId = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId();
+        Map<String, ExecutionPlan> executionPlanMap = tenantSpecificExecutionPlans.get(tenantId);
+        ExecutionPlanRegistry executionPlanRegistry = tenantSpecificExecutionPlanRegistries.get(tenantId);
+        if (executionPlanMap != null && executionPlanRegistry != null) {
+            for (String executionPlanName : executionPlanRegistry.getImportingExecutionPlans(streamId)) {
+                ExecutionPlan executionPlan = executionPlanMap.get(executionPlanName);
+                if (executionPlan != null) {
+                    configurationMap.put(executionPlanName, executionPlan.getExecutionPlanConfiguration());
                 }
             }
         }
@@ -710,12 +725,12 @@ public class CarbonEventProcessorService implements EventProcessorService {
 
     @Override
     public List<ExecutionPlanConfigurationFile> getAllInactiveExecutionPlanConfiguration() {
-        List<ExecutionPlanConfigurationFile> executionPlanConfigurationFiles = this.tenantSpecificExecutionPlanFiles
+        ExecutionPlanRegistry executionPlanRegistry = this.tenantSpecificExecutionPlanRegistries
                 .get(PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId());
 
         List<ExecutionPlanConfigurationFile> files = new ArrayList<ExecutionPlanConfigurationFile>();
-        if (executionPlanConfigurationFiles != null) {
-            for (ExecutionPlanConfigurationFile configFile : executionPlanConfigurationFiles) {
+        if (executionPlanRegistry != null) {
+            for (ExecutionPlanConfigurationFile configFile : executionPlanRegistry.getConfigurationFiles()) {
                 if (configFile.getStatus() == ExecutionPlanConfigurationFile.Status.ERROR || configFile.getStatus()
                         == ExecutionPlanConfigurationFile.Status.WAITING_FOR_DEPENDENCY || configFile.getStatus() ==
                         ExecutionPlanConfigurationFile.Status.WAITING_FOR_OSGI_SERVICE) {
@@ -774,80 +789,90 @@ public class CarbonEventProcessorService implements EventProcessorService {
             ExecutionPlanConfigurationFile.Status status, String resolvedDependencyId)
             throws ExecutionPlanConfigurationException {
 
-        List<ExecutionPlanConfigurationFile> reloadFileList = new ArrayList<ExecutionPlanConfigurationFile>();
-        if (tenantSpecificExecutionPlanFiles != null && tenantSpecificExecutionPlanFiles.size() > 0) {
-            List<ExecutionPlanConfigurationFile> executionPlanConfigurationFiles = tenantSpecificExecutionPlanFiles
-                    .get(PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId());
-
-            if (executionPlanConfigurationFiles != null) {
-                for (ExecutionPlanConfigurationFile executionPlanConfigurationFile : executionPlanConfigurationFiles) {
-                    if ((executionPlanConfigurationFile.getStatus().equals(status)) && resolvedDependencyId
-                            .equalsIgnoreCase(executionPlanConfigurationFile.getDependency())) {
-                        reloadFileList.add(executionPlanConfigurationFile);
-                    }
-                }
-            }
-        }
-        for (ExecutionPlanConfigurationFile executionPlanConfigurationFile : reloadFileList) {
-            try {
-                EventProcessorConfigurationFilesystemInvoker.reload(executionPlanConfigurationFile.getFilePath());
-            } catch (ExecutionPlanConfigurationException e) {
-                log.error("Exception occurred while trying to deploy the Execution Plan configuration file : " + new
-                        File(executionPlanConfigurationFile.getFileName()).getName() + "," + e.getMessage(), e);
-            }
+        ExecutionPlanRegistry executionPlanRegistry = tenantSpecificExecutionPlanRegistries
+                .get(PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId());
+        if (executionPlanRegistry != null) {
+            redeployExecutionPlanConfigurationFiles(executionPlanRegistry.getWaitingConfigurationFiles(status,
+                    resolvedDependencyId));
         }
-
     }
 
     public void deactivateActiveExecutionPlanConfigurations(String streamId) {
-
-        List<String> toDeactivateExecutionPlan = new ArrayList<String>();
-        Map<String, ExecutionPlan> executionPlanMap = tenantSpecificExecutionPlans
+        ExecutionPlanRegistry executionPlanRegistry = tenantSpecificExecutionPlanRegistries
                 .get(PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId());
-        if (executionPlanMap != null) {
-            for (ExecutionPlan executionPlan : executionPlanMap.values()) {
-                boolean done = false;
-                for (EventProducer eventProducer : executionPlan.getEventProducers()) {
-                    if (eventProducer.getStreamId().equals(streamId)) {
-                        toDeactivateExecutionPlan.add(executionPlan.getName());
-                        done = true;
-                        break;
-                    }
-                }
+        if (executionPlanRegistry != null) {
+            Set<String> toDeactivateExecutionPlan = executionPlanRegistry.getImportingExecutionPlans(streamId);
+            toDeactivateExecutionPlan.addAll(executionPlanRegistry.getExportingExecutionPlans(streamId));
 
-                if (!done) {
-                    for (SiddhiEventConsumer eventConsumer : executionPlan.getSiddhiEventConsumers()) {
-                        if (eventConsumer.getStreamId().equals(streamId)) {
-                            toDeactivateExecutionPlan.add(executionPlan.getName());
-                            break;
-                        }
-                    }
+            List<ExecutionPlanConfigurationFile> reloadFileList = new ArrayList<ExecutionPlanConfigurationFile>();
+            for (String name : toDeactivateExecutionPlan) {
+                ExecutionPlanConfigurationFile executionPlanConfigurationFile =
+                        executionPlanRegistry.getDeployedConfigurationFile(name);
+                if (executionPlanConfigurationFile != null) {
+                    reloadFileList.add(executionPlanConfigurationFile);
                 }
             }
+            redeployExecutionPlanConfigurationFiles(reloadFileList);
         }
-        if (toDeactivateExecutionPlan.size() > 0) {
-            for (String name : toDeactivateExecutionPlan) {
-                ExecutionPlanConfigurationFile executionPlanConfigurationFile = getExecutionPlanConfigurationFileByPlanName(name);
-                try {
-                    EventProcessorConfigurationFilesystemInvoker.reload(executionPlanConfigurationFile.getFilePath());
-                } catch (Exception e) {
-                    log.error("Exception occurred while trying to deploy the Execution Plan configuration file : " +
-                            new File(executionPlanConfigurationFile.getFileName()).getName());
+    }
+
+    /**
+     * Redeploys the given configuration files, in parallel across execution plans unless this thread is already
+     * deploying, as the redeployment would then wait for the locks held by this thread.
+     */
+    private void redeployExecutionPlanConfigurationFiles(List<ExecutionPlanConfigurationFile> reloadFileList) {
+        if (reloadFileList.size() < 2 || executionPlanLocks.isHeldByCurrentThread()
+                || EventProcessorDeployer.isDeploymentInProgress()) {
+            for (ExecutionPlanConfigurationFile executionPlanConfigurationFile : reloadFileList) {
+                redeployExecutionPlanConfigurationFile(executionPlanConfigurationFile);
+            }
+            return;
+        }
+
+        final int tenantId = PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId();
+        List<Future<?>> redeployments = new ArrayList<Future<?>>(reloadFileList.size());
+        for (final ExecutionPlanConfigurationFile executionPlanConfigurationFile : reloadFileList) {
+            redeployments.add(redeployExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        PrivilegedCarbonContext.startTenantFlow();
+                        PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantId(tenantId, true);
+                        redeployExecutionPlanConfigurationFile(executionPlanConfigurationFile);
+                    } finally {
+                        PrivilegedCarbonContext.endTenantFlow();
+                    }
                 }
+            }));
+        }
+        for (Future<?> redeployment : redeployments) {
+            try {
+                redeployment.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Interrupted while waiting for execution plans to be redeployed", e);
+                return;
+            } catch (ExecutionException e) {
+                log.error("Error while redeploying execution plans", e.getCause());
             }
         }
     }
 
+    private void redeployExecutionPlanConfigurationFile(ExecutionPlanConfigurationFile executionPlanConfigurationFile) {
+        try {
+            EventProcessorConfigurationFilesystemInvoker.reload(executionPlanConfigurationFile.getFilePath());
+        } catch (Exception e) {
+            log.error("Exception occurred while trying to deploy the Execution Plan configuration file : " + new
+                    File(executionPlanConfigurationFile.getFileName()).getName() + "," + e.getMessage(), e);
+        }
+    }
+
     // gets file by name.
     private ExecutionPlanConfigurationFile getExecutionPlanConfigurationFileByPlanName(String name) {
-        List<ExecutionPlanConfigurationFile> executionPlanConfigurationFiles = tenantSpecificExecutionPlanFiles
+        ExecutionPlanRegistry executionPlanRegistry = tenantSpecificExecutionPlanRegistries
                 .get(PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId());
-        if (executionPlanConfigurationFiles != null) {
-            for (ExecutionPlanConfigurationFile file : executionPlanConfigurationFiles) {
-                if (name.equals(file.getExecutionPlanName()) && file.getStatus().equals(ExecutionPlanConfigurationFile.Status.DEPLOYED)) {
-                    return file;
-                }
-            }
+        if (executionPlanRegistry != null) {
+            return executionPlanRegistry.getDeployedConfigurationFile(name);
         }
         return null;
     }
@@ -855,50 +880,53 @@ public class CarbonEventProcessorService implements EventProcessorService {
     private void validateToRemoveInactiveExecutionPlanConfiguration(String executionPlanName)
             throws ExecutionPlanConfigurationException {
         String fileName = executionPlanName + EventProcessorConstants.EP_CONFIG_FILE_EXTENSION_WITH_DOT;
-        List<ExecutionPlanConfigurationFile> executionPlanConfigurationFiles = tenantSpecificExecutionPlanFiles
+        ExecutionPlanRegistry executionPlanRegistry = tenantSpecificExecutionPlanRegistries
                 .get(PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId());
-        if (executionPlanConfigurationFiles != null) {
-            for (ExecutionPlanConfigurationFile executionPlanConfigurationFile : executionPlanConfigurationFiles) {
-                if ((executionPlanConfigurationFile.getFileName().equals(fileName))) {
-                    if (!(executionPlanConfigurationFile.getStatus().equals(ExecutionPlanConfigurationFile.Status.DEPLOYED))) {
-                        EventProcessorConfigurationFilesystemInvoker.delete(fileName);
-                        break;
-                    }
-                }
+        if (executionPlanRegistry != null) {
+            ExecutionPlanConfigurationFile executionPlanConfigurationFile = executionPlanRegistry.getConfigurationFile(fileName);
+            if (executionPlanConfigurationFile != null
+                    && !(executionPlanConfigurationFile.getStatus().equals(ExecutionPlanConfigurationFile.Status.DEPLOYED))) {
+                EventProcessorConfigurationFilesystemInvoker.delete(fileName);
             }
         }
     }
 
     private boolean isExecutionPlanAlreadyExist(String executionPlanName)
             throws ExecutionPlanConfigurationException {
-
-        Map<String, ExecutionPlanConfiguration> executionPlanConfigurationMap;
-        executionPlanConfigurationMap = getAllActiveExecutionConfigurations();
-        if (executionPlanConfigurationMap != null) {
-            for (String existingExecutionPlanName : executionPlanConfigurationMap.keySet()) {
-                if (executionPlanName.equalsIgnoreCase(existingExecutionPlanName)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        ExecutionPlanRegistry executionPlanRegistry = tenantSpecificExecutionPlanRegistries
+                .get(PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId());
+        return executionPlanRegistry != null && executionPlanRegistry.isActiveExecutionPlan(executionPlanName);
     }
 
     public boolean isExecutionPlanFileAlreadyExist(String executionPlanFileName)
             throws ExecutionPlanConfigurationException {
+        ExecutionPlanRegistry executionPlanRegistry = tenantSpecificExecutionPlanRegistries
+                .get(PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId());
+        return executionPlanRegistry != null && executionPlanRegistry.getConfigurationFile(executionPlanFileName) != null;
+    }
 
-        if (tenantSpecificExecutionPlanFiles.size() > 0) {
-            List<ExecutionPlanConfigurationFile> executionPlanConfigurationFileList = tenantSpecificExecutionPlanFiles
-                    .get(PrivilegedCarbonContext.getThreadLocalCarbonContext().getTenantId());
-            if (executionPlanConfigurationFileList != null) {
-                for (ExecutionPlanConfigurationFile executionPlanConfigurationFile : executionPlanConfigurationFileList) {
-                    if ((executionPlanConfigurationFile.getFileName().equals(executionPlanFileName))) {
-                        return true;
-                    }
-                }
+    private ConcurrentHashMap<String, ExecutionPlan> getTenantExecutionPlans(int tenantId) {
+        ConcurrentHashMap<String, ExecutionPlan> tenantExecutionPlans = tenantSpecificExecutionPlans.get(tenantId);
+        if (tenantExecutionPlans == null) {
+            tenantExecutionPlans = new ConcurrentHashMap<String, ExecutionPlan>();
+            ConcurrentHashMap<String, ExecutionPlan> existing = tenantSpecificExecutionPlans.putIfAbsent(tenantId, tenantExecutionPlans);
+            if (existing != null) {
+                tenantExecutionPlans = existing;
+            }
+        }
+        return tenantExecutionPlans;
+    }
+
+    private ExecutionPlanRegistry getExecutionPlanRegistry(int tenantId) {
+        ExecutionPlanRegistry executionPlanRegistry = tenantSpecificExecutionPlanRegistries.get(tenantId);
+        if (executionPlanRegistry == null) {
+            executionPlanRegistry = new ExecutionPlanRegistry();
+            ExecutionPlanRegistry existing = tenantSpecificExecutionPlanRegistries.putIfAbsent(tenantId, executionPlanRegistry);
+            if (existing != null) {
+                executionPlanRegistry = existing;
             }
         }
-        return false;
+        return executionPlanRegistry;
     }
 
     public Map<Integer, ConcurrentHashMap<String, ExecutionPlan>> getTenantSpecificExecutionPlans() {
@@ -916,6 +944,7 @@ public class CarbonEventProcessorService implements EventProcessorService {
                 }
             }
         }
+        redeployExecutor.shutdownNow();
         log.info("Successfully shutdown ExecutionPlans");
     }
 
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.event.processor.core.internal;
+
+import org.wso2.carbon.event.processor.core.ExecutionPlanConfiguration;
+import org.wso2.carbon.event.processor.core.ExecutionPlanConfigurationFile;
+import org.wso2.carbon.event.processor.core.StreamConfiguration;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Execution plan configuration files and active execution plans of a tenant, indexed by file name, execution plan
+ * name, dependency and imported or exported stream id, so that none of the lookups scan all the plans of the tenant.
+ */
+public class ExecutionPlanRegistry {
+
+    // configuration files by file name, not distinguishing between deployed vs failed here.
+    private final ConcurrentMap<String, ExecutionPlanConfigurationFile> configurationFiles =
+            new ConcurrentHashMap<String, ExecutionPlanConfigurationFile>();
+    private final ConcurrentMap<String, ExecutionPlanConfigurationFile> deployedConfigurationFiles =
+            new ConcurrentHashMap<String, ExecutionPlanConfigurationFile>();
+    // inactive configuration files by the lower case id of the dependency they wait for
+    private final ConcurrentMap<String, Set<ExecutionPlanConfigurationFile>> waitingConfigurationFiles =
+            new ConcurrentHashMap<String, Set<ExecutionPlanConfigurationFile>>();
+    // active execution plan names by their lower case names
+    private final ConcurrentMap<String, String> activeExecutionPlanNames = new ConcurrentHashMap<String, String>();
+    private final ConcurrentMap<String, Set<String>> importingExecutionPlans = new ConcurrentHashMap<String, Set<String>>();
+    private final ConcurrentMap<String, Set<String>> exportingExecutionPlans = new ConcurrentHashMap<String, Set<String>>();
+
+    public void addConfigurationFile(ExecutionPlanConfigurationFile configurationFile) {
+        configurationFiles.put(getKey(configurationFile.getFileName()), configurationFile);
+        if (configurationFile.getStatus() == ExecutionPlanConfigurationFile.Status.DEPLOYED) {
+            deployedConfigurationFiles.put(configurationFile.getExecutionPlanName(), configurationFile);
+        } else if (configurationFile.getDependency() != null) {
+            getIndexEntry(waitingConfigurationFiles, configurationFile.getDependency().toLowerCase())
+                    .add(configurationFile);
+        }
+    }
+
+    /**
+     * @return the removed configuration file, or null if there was no configuration file with the given name
+     */
+    public ExecutionPlanConfigurationFile removeConfigurationFile(String fileName) {
+        ExecutionPlanConfigurationFile configurationFile = configurationFiles.remove(getKey(fileName));
+        if (configurationFile != null) {
+            if (configurationFile.getStatus() == ExecutionPlanConfigurationFile.Status.DEPLOYED) {
+                deployedConfigurationFiles.remove(configurationFile.getExecutionPlanName(), configurationFile);
+            } else if (configurationFile.getDependency() != null) {
+                Set<ExecutionPlanConfigurationFile> waiting =
+                        waitingConfigurationFiles.get(configurationFile.getDependency().toLowerCase());
+                if (waiting != null) {
+                    waiting.remove(configurationFile);
+                }
+            }
+        }
+        return configurationFile;
+    }
+
+    public ExecutionPlanConfigurationFile getConfigurationFile(String fileName) {
+        return configurationFiles.get(getKey(fileName));
+    }
+
+    public ExecutionPlanConfigurationFile getDeployedConfigurationFile(String executionPlanName) {
+        return deployedConfigurationFiles.get(executionPlanName);
+    }
+
+    public Collection<ExecutionPlanConfigurationFile> getConfigurationFiles() {
+        return Collections.unmodifiableCollection(configurationFiles.values());
+    }
+
+    /**
+     * @param dependencyId the id of the dependency, matched ignoring case
+     */
+    public List<ExecutionPlanConfigurationFile> getWaitingConfigurationFiles(ExecutionPlanConfigurationFile.Status status,
+                                                                             String dependencyId) {
+        List<ExecutionPlanConfigurationFile> files = new ArrayList<ExecutionPlanConfigurationFile>();
+        Set<ExecutionPlanConfigurationFile> waiting = waitingConfigurationFiles.get(dependencyId.toLowerCase());
+        if (waiting != null) {
+            for (ExecutionPlanConfigurationFile configurationFile : waiting) {
+                if (configurationFile.getStatus() == status) {
+                    files.add(configurationFile);
+                }
+            }
+        }
+        return files;
+    }
+
+    public void addActiveExecutionPlan(ExecutionPlanConfiguration executionPlanConfiguration) {
+        String name = executionPlanConfiguration.getName();
+        for (StreamConfiguration streamConfiguration : executionPlanConfiguration.getImportedStreams()) {
+            getIndexEntry(importingExecutionPlans, streamConfiguration.getStreamId()).add(name);
+        }
+        for (StreamConfiguration streamConfiguration : executionPlanConfiguration.getExportedStreams()) {
+            getIndexEntry(exportingExecutionPlans, streamConfiguration.getStreamId()).add(name);
+        }
+        activeExecutionPlanNames.put(name.toLowerCase(), name);
+    }
+
+    public void removeActiveExecutionPlan(ExecutionPlanConfiguration executionPlanConfiguration) {
+        String name = executionPlanConfiguration.getName();
+        activeExecutionPlanNames.remove(name.toLowerCase(), name);
+        for (StreamConfiguration streamConfiguration : executionPlanConfiguration.getImportedStreams()) {
+            Set<String> executionPlans = importingExecutionPlans.get(streamConfiguration.getStreamId());
+            if (executionPlans != null) {
+                executionPlans.remove(name);
+            }
+        }
+        for (StreamConfiguration streamConfiguration : executionPlanConfiguration.getExportedStreams()) {
+            Set<String> executionPlans = exportingExecutionPlans.get(streamConfiguration.getStreamId());
+            if (executionPlans != null) {
+                executionPlans.remove(name);
+            }
+        }
+    }
+
+    /**
+     * @param executionPlanName the name of the execution plan, matched ignoring case
+     */
+    public boolean isActiveExecutionPlan(String executionPlanName) {
+        return activeExecutionPlanNames.containsKey(executionPlanName.toLowerCase());
+    }
+
+    public Set<String> getImportingExecutionPlans(String streamId) {
+        return copyOf(importingExecutionPlans.get(streamId));
+    }
+
+    public Set<String> getExportingExecutionPlans(String streamId) {
+        return copyOf(exportingExecutionPlans.get(streamId));
+    }
+
+    private static String getKey(String fileName) {
+        return new File(fileName).getName();
+    }
+
+    // Entries are not removed once empty, as a concurrent add could go to a removed entry; their number is bounded
+    // by the number of streams and dependencies of the tenant.
+    private static <T> Set<T> getIndexEntry(ConcurrentMap<String, Set<T>> index, String key) {
+        Set<T> entry = index.get(key);
+        if (entry == null) {
+            entry = Collections.newSetFromMap(new ConcurrentHashMap<T, Boolean>());
+            Set<T> existing = index.putIfAbsent(key, entry);
+            if (existing != null) {
+                entry = existing;
+            }
+        }
+        return entry;
+    }
+
+    private static Set<String> copyOf(Set<String> executionPlans) {
+        if (executionPlans == null) {
+            return Collections.emptySet();
+        }
+        return new HashSet<String>(executionPlans);
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.core.internal.storm;
+
+import org.apache.log4j.Logger;
+import org.wso2.carbon.event.processor.common.util.PortAllocator;
+import org.wso2.carbon.event.processor.common.util.StreamChannels;
+import org.wso2.carbon.event.processor.manager.commons.transport.server.ConnectionCallback;
+import org.wso2.carbon.event.processor.manager.commons.transport.server.StreamCallback;
+import org.wso2.carbon.event.processor.manager.commons.transport.server.TCPEventServer;
+import org.wso2.carbon.event.processor.manager.commons.transport.server.TCPEventServerConfig;
+import org.wso2.carbon.event.processor.manager.core.config.DistributedConfiguration;
+import org.wso2.siddhi.query.api.definition.StreamDefinition;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Single server of this CEP node receiving the events of all execution plans from the event publisher bolts, used by
+ * execution plans annotated with @Plan:dist(sharedPublisherServer='true'). Bolts send each stream on its channel (see
+ * StreamChannels), by which events are demultiplexed to the SiddhiStormOutputEventListener of their execution plan.
+ * <p/>
+ * A connection is attributed to an execution plan when the first event of one of the channels of the plan arrives on
+ * it, and the connection callback of the plan is notified of the connection then. The server serves each connection
+ * on a thread of its own and notifies the disconnection on that thread, which is how the disconnection is attributed
+ * to the plans of the connection.
+ */
+public class SharedStormEventServer implements StreamCallback, ConnectionCallback {
+    private static final Logger log = Logger.getLogger(SharedStormEventServer.class);
+
+    private static SharedStormEventServer instance;
+
+    private final ConcurrentMap<String, Channel> channels = new ConcurrentHashMap<String, Channel>();
+    private final String host;
+    private final int port;
+    private final TCPEventServer tcpEventServer;
+    /**
+     * Connection callbacks of the execution plans whose events arrived on the connection served by the thread
+     */
+    private final ThreadLocal<Set<ConnectionCallback>> connectedPlans = new ThreadLocal<Set<ConnectionCallback>>() {
+        @Override
+        protected Set<ConnectionCallback> initialValue() {
+            return Collections.newSetFromMap(new IdentityHashMap<ConnectionCallback, Boolean>());
+        }
+    };
+
+    private SharedStormEventServer(String host, DistributedConfiguration stormDeploymentConfig) throws Exception {
+        this.host = host;
+        int allocatedPort;
+        TCPEventServer eventServer;
+        for (int attempt = 1; ; attempt++) {
+            allocatedPort = PortAllocator.allocate(host, stormDeploymentConfig.getTransportMinPort(),
+                    stormDeploymentConfig.getTransportMaxPort());
+            eventServer = new TCPEventServer(new TCPEventServerConfig(host, allocatedPort), this, this);
+            try {
+                eventServer.start();
+                break;
+            } catch (Exception e) {
+                PortAllocator.release(allocatedPort);
+                if (attempt >= PortAllocator.BIND_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("Cannot listen on port " + allocatedPort + ", trying another port: " + e.getMessage());
+            }
+        }
+        this.port = allocatedPort;
+        this.tcpEventServer = eventServer;
+        log.info("Shared storm event server started listening for events of all execution plans on " + host + ":" +
+                port);
+    }
+
+    /**
+     * @return the server of this node, started on the first call
+     */
+    public static synchronized SharedStormEventServer getInstance(String host,
+                                                                  DistributedConfiguration stormDeploymentConfig)
+            throws Exception {
+        if (instance == null) {
+            instance = new SharedStormEventServer(host, stormDeploymentConfig);
+        }
+        return instance;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Forwards the events of the given stream of the execution plan to the callback, and notifies the connection
+     * callback of the execution plan of the connections bringing events of the stream.
+     *
+     * @param connectionCallback connection callback of the execution plan, may be null
+     */
+    public void registerStream(int tenantId, String executionPlanName, StreamDefinition streamDefinition,
+                               StreamCallback callback, ConnectionCallback connectionCallback) {
+        StreamDefinition channelDefinition = StreamChannels.toChannelDefinition(tenantId, executionPlanName,
+                streamDefinition);
+        channels.put(channelDefinition.getId(), new Channel(streamDefinition.getId(), callback, connectionCallback));
+        tcpEventServer.addStreamDefinition(channelDefinition);
+    }
+
+    /**
+     * Stops forwarding the events of the streams of the execution plan registered with the given callback. Channels
+     * taken over by a later deployment of the execution plan, with another callback, are kept.
+     */
+    public void unregisterExecutionPlan(int tenantId, String executionPlanName, StreamCallback callback) {
+        String prefix = StreamChannels.getChannelIdPrefix(tenantId, executionPlanName);
+        for (Map.Entry<String, Channel> entry : channels.entrySet()) {
+            if (entry.getKey().startsWith(prefix) && entry.getValue().callback == callback) {
+                channels.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void receive(String streamId, long timestamp, Object[] eventData, Map<String, String> arbitraryMapData) {
+        Channel channel = channels.get(streamId);
+        if (channel != null) {
+            if (channel.connectionCallback != null && connectedPlans.get().add(channel.connectionCallback)) {
+                channel.connectionCallback.onPublisherBoltConnect();
+            }
+            channel.callback.receive(channel.streamId, timestamp, eventData, arbitraryMapData);
+        } else {
+            log.warn("Cannot find execution plan for channel " + streamId + ". Discarding Event:" + streamId + ":" +
+                    Arrays.deepToString(eventData) + "@" + timestamp);
+        }
+    }
+
+    @Override
+    public void onCepReceiverConnect() {
+    }
+
+    @Override
+    public void onCepReceiverDisconnect() {
+    }
+
+    @Override
+    public void onPublisherBoltConnect() {
+        // Attributed to execution plans as their events arrive on the connection. The thread may have served a
+        // previous connection.
+        connectedPlans.remove();
+    }
+
+    @Override
+    public void onPublisherBoltDisconnect() {
+        for (ConnectionCallback connectionCallback : connectedPlans.get()) {
+            connectionCallback.onPublisherBoltDisconnect();
+        }
+        connectedPlans.remove();
+    }
+
+    private static class Channel {
+        private final String streamId;
+        private final StreamCallback callback;
+        private final ConnectionCallback connectionCallback;
+
+        private Channel(String streamId, StreamCallback callback, ConnectionCallback connectionCallback) {
+            this.streamId = streamId;
+            this.callback = callback;
+            this.connectionCallback = connectionCallback;
+        }
+    }
+}
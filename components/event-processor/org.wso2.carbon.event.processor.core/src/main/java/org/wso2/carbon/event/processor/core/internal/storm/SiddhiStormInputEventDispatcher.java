@@ -18,7 +18,6 @@ package org.wso2.carbon.event.processor.core.internal.storm;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.databridge.commons.StreamDefinition;
-import org.wso2.carbon.event.processor.common.util.AsyncEventPublisher;
 import org.wso2.carbon.event.processor.core.ExecutionPlanConfiguration;
 import org.wso2.carbon.event.processor.core.internal.listener.AbstractSiddhiInputEventDispatcher;
 import org.wso2.carbon.event.processor.core.internal.util.EventProcessorUtil;
@@ -26,14 +25,10 @@ import org.wso2.carbon.event.processor.manager.commons.transport.server.Connecti
 import org.wso2.carbon.event.processor.manager.core.config.DistributedConfiguration;
 import org.wso2.siddhi.core.event.Event;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 /**
  * Publishes events of a stream to the event receiver spout running on Storm. There will be SiddhiStormInputEventDispatcher
- * instance for each imported stream of execution plan
+ * instance for each imported stream of execution plan, all of them sending through the StormReceiverConnection of the
+ * execution plan.
  */
 public class SiddhiStormInputEventDispatcher extends AbstractSiddhiInputEventDispatcher{
     private static final Log log = LogFactory.getLog(SiddhiStormInputEventDispatcher.class);
@@ -42,8 +37,7 @@ public class SiddhiStormInputEventDispatcher extends AbstractSiddhiInputEventDis
 
     private org.wso2.siddhi.query.api.definition.StreamDefinition siddhiStreamDefinition;
     private String logPrefix;
-    private ExecutorService executorService = Executors.newSingleThreadExecutor();
-    private AsyncEventPublisher asyncEventPublisher;
+    private StormReceiverConnection stormReceiverConnection;
     private final ConnectionCallback connectionCallback;
 
     public SiddhiStormInputEventDispatcher(StreamDefinition streamDefinition, String siddhiStreamId,
@@ -61,18 +55,10 @@ public class SiddhiStormInputEventDispatcher extends AbstractSiddhiInputEventDis
 
         try {
             this.siddhiStreamDefinition = EventProcessorUtil.convertToSiddhiStreamDefinition(streamDefinition, siddhiStreamName);
-            Set<org.wso2.siddhi.query.api.definition.StreamDefinition> streamDefinitions = new HashSet<>();
-            streamDefinitions.add(siddhiStreamDefinition);
-
-            asyncEventPublisher = new AsyncEventPublisher(AsyncEventPublisher.DestinationType.STORM_RECEIVER,
-                                                          streamDefinitions,
-                                                          stormDeploymentConfig.getManagers(),
-                                                          executionPlanConfiguration.getName(),
-                                                          tenantId,
-                                                          stormDeploymentConfig,
-                                                          this.connectionCallback);
-
-            asyncEventPublisher.initializeConnection(false);
+            stormReceiverConnection = StormReceiverConnection.acquire(executionPlanConfiguration, tenantId,
+                                                                      stormDeploymentConfig,
+                                                                      this.connectionCallback,
+                                                                      siddhiStreamDefinition);
         } catch (Exception e) {
             log.error(logPrefix + "Failed to start event listener", e);
         }
@@ -80,12 +66,13 @@ public class SiddhiStormInputEventDispatcher extends AbstractSiddhiInputEventDis
 
     @Override
     public void sendEvent(Event event) throws InterruptedException {
-        asyncEventPublisher.sendEvent(event.getData(),event.getTimestamp(), this.siddhiStreamDefinition.getId());
+        stormReceiverConnection.sendEvent(event.getData(), event.getTimestamp(), this.siddhiStreamDefinition.getId());
     }
 
     @Override
     public void shutdown() {
-        asyncEventPublisher.shutdown();
-        executorService.shutdown();
+        if (stormReceiverConnection != null) {
+            stormReceiverConnection.release();
+        }
     }
 }
@@ -16,12 +16,12 @@
 package org.wso2.carbon.event.processor.core.internal.storm;
 
 import org.apache.log4j.Logger;
-import org.apache.thrift.protocol.TBinaryProtocol;
-import org.apache.thrift.protocol.TProtocol;
-import org.apache.thrift.transport.TSocket;
-import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.TException;
 import org.wso2.carbon.databridge.commons.thrift.utils.HostAddressFinder;
 import org.wso2.carbon.event.processor.common.storm.manager.service.StormManagerService;
+import org.wso2.carbon.event.processor.common.util.EndpointLoadSampler;
+import org.wso2.carbon.event.processor.common.util.ManagerHeartbeatScheduler;
+import org.wso2.carbon.event.processor.common.util.PortAllocator;
 import org.wso2.carbon.event.processor.common.util.ThroughputProbe;
 import org.wso2.carbon.event.processor.core.ExecutionPlanConfiguration;
 import org.wso2.carbon.event.processor.core.internal.listener.SiddhiOutputStreamListener;
@@ -29,8 +29,6 @@ import org.wso2.carbon.event.processor.manager.commons.transport.server.Connecti
 import org.wso2.carbon.event.processor.manager.commons.transport.server.StreamCallback;
 import org.wso2.carbon.event.processor.manager.commons.transport.server.TCPEventServer;
 import org.wso2.carbon.event.processor.manager.commons.transport.server.TCPEventServerConfig;
-import org.wso2.carbon.event.processor.manager.commons.utils.HostAndPort;
-import org.wso2.carbon.event.processor.manager.commons.utils.Utils;
 import org.wso2.carbon.event.processor.manager.core.config.DistributedConfiguration;
 import org.wso2.siddhi.core.event.Event;
 import org.wso2.siddhi.query.api.definition.StreamDefinition;
@@ -38,14 +36,17 @@ import org.wso2.siddhi.query.api.definition.StreamDefinition;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
 
 /**
  * Receives events from the Event publisher bolt running on storm. There will be one SiddhiStormOutputEventListener instance
  * per execution plan per tenant (all exported streams of execution plan are handled form a single SiddhiStormOutputEventListener). When events are
  * received from storm, the event  will be directed to the relevant output stream listener depending on the stream to forward
  * the event to the relevant output adaptor for the stream.
+ * <p/>
+ * When the execution plan is annotated with @Plan:dist(sharedPublisherServer='true'), events are received through the
+ * SharedStormEventServer of this node instead of a server of this execution plan. The manager builds the event
+ * publisher bolts from the same annotation, so that both ends agree on whether the server is shared.
  */
 public class SiddhiStormOutputEventListener implements StreamCallback {
     private static final Logger log = Logger.getLogger(SiddhiStormOutputEventListener.class);
@@ -56,20 +57,24 @@ public class SiddhiStormOutputEventListener implements StreamCallback {
     private String thisHostIp;
     private HashMap<String, SiddhiOutputStreamListener> streamNameToOutputStreamListenerMap = new HashMap<>();
     private TCPEventServer tcpEventServer;
+    private SharedStormEventServer sharedEventServer;
     private String logPrefix = "";
-    private ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private ScheduledFuture<?> heartbeat;
     private int heartbeatInterval;
     private ThroughputProbe inputThroughputProbe;
 
     private final ConnectionCallback connectionCallback;
+    private final boolean sharedPublisherServer;
 
     public SiddhiStormOutputEventListener(ExecutionPlanConfiguration executionPlanConfiguration, int tenantId,
-                                          DistributedConfiguration stormDeploymentConfig, ConnectionCallback connectionCallback) {
+                                          DistributedConfiguration stormDeploymentConfig, ConnectionCallback connectionCallback,
+                                          boolean sharedPublisherServer) {
         this.executionPlanConfiguration = executionPlanConfiguration;
         this.tenantId = tenantId;
         this.stormDeploymentConfig = stormDeploymentConfig;
         this.heartbeatInterval = stormDeploymentConfig.getManagementHeartbeatInterval();
         this.connectionCallback = connectionCallback;
+        this.sharedPublisherServer = sharedPublisherServer;
         init();
     }
 
@@ -80,11 +85,14 @@ public class SiddhiStormOutputEventListener implements StreamCallback {
         inputThroughputProbe.startSampling();
         try {
             thisHostIp = HostAddressFinder.findAddress("localhost");
-            listeningPort = findPort(thisHostIp);
-            TCPEventServerConfig configs = new TCPEventServerConfig(thisHostIp, listeningPort);
-            tcpEventServer = new TCPEventServer(configs, this, connectionCallback);
-            tcpEventServer.start();
-            executorService.execute(new Registrar());
+            if (sharedPublisherServer) {
+                sharedEventServer = SharedStormEventServer.getInstance(thisHostIp, stormDeploymentConfig);
+                listeningPort = sharedEventServer.getPort();
+            } else {
+                tcpEventServer = startEventServer();
+            }
+            heartbeat = ManagerHeartbeatScheduler.getInstance().schedule(new Registrar(),
+                    stormDeploymentConfig.getManagers(), heartbeatInterval);
         } catch (Exception e) {
             log.error(logPrefix + "Failed to start event listener", e);
         }
@@ -94,7 +102,12 @@ public class SiddhiStormOutputEventListener implements StreamCallback {
     public void registerOutputStreamListener(StreamDefinition siddhiStreamDefinition, SiddhiOutputStreamListener outputStreamListener) {
         log.info(logPrefix + "Registering output stream listener for Siddhi stream : " + siddhiStreamDefinition.getId());
         streamNameToOutputStreamListenerMap.put(siddhiStreamDefinition.getId(), outputStreamListener);
-        tcpEventServer.addStreamDefinition(siddhiStreamDefinition);
+        if (sharedEventServer != null) {
+            sharedEventServer.registerStream(tenantId, executionPlanConfiguration.getName(), siddhiStreamDefinition,
+                    this, connectionCallback);
+        } else {
+            tcpEventServer.addStreamDefinition(siddhiStreamDefinition);
+        }
     }
 
     @Override
@@ -110,103 +123,62 @@ public class SiddhiStormOutputEventListener implements StreamCallback {
         }
     }
 
-    private int findPort(String host) throws Exception {
-        for (int i = stormDeploymentConfig.getTransportMinPort(); i <= stormDeploymentConfig.getTransportMaxPort(); i++) {
-            if (!Utils.isPortUsed(i, host)) {
-                return i;
+    /**
+     * Starts the event server on a port allocated from the transport port range, moving on to another port when the
+     * server fails to start on the allocated one.
+     */
+    private TCPEventServer startEventServer() throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            listeningPort = PortAllocator.allocate(thisHostIp, stormDeploymentConfig.getTransportMinPort(),
+                    stormDeploymentConfig.getTransportMaxPort());
+            TCPEventServerConfig configs = new TCPEventServerConfig(thisHostIp, listeningPort);
+            TCPEventServer eventServer = new TCPEventServer(configs, this, connectionCallback);
+            try {
+                eventServer.start();
+                return eventServer;
+            } catch (Exception e) {
+                PortAllocator.release(listeningPort);
+                if (attempt >= PortAllocator.BIND_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn(logPrefix + "Cannot listen on port " + listeningPort + ", trying another port: " +
+                        e.getMessage());
             }
         }
-        throw new Exception("Cannot find free port in range " + stormDeploymentConfig.getTransportMinPort() + "~" + stormDeploymentConfig.getTransportMaxPort());
     }
 
     public void shutdown() {
-        executorService.shutdown();
-        tcpEventServer.shutdown();
+        if (heartbeat != null) {
+            heartbeat.cancel(false);
+        }
+        if (sharedEventServer != null) {
+            sharedEventServer.unregisterExecutionPlan(tenantId, executionPlanConfiguration.getName(), this);
+        } else if (tcpEventServer != null) {
+            tcpEventServer.shutdown();
+            PortAllocator.release(listeningPort);
+        }
+        inputThroughputProbe.stopSampling();
     }
 
 
-    class Registrar implements Runnable {
-        private String managerHost;
-        private int managerPort;
+    class Registrar implements ManagerHeartbeatScheduler.Registration {
+        private final EndpointLoadSampler loadSampler = new EndpointLoadSampler(inputThroughputProbe);
 
         @Override
-        public void run() {
-            log.info(logPrefix + "Registering CEP publisher for " + thisHostIp + ":" + listeningPort);
-
-            // Infinitely call register. Each register call will act as a heartbeat
-            while (true) {
-                if (registerCEPPublisherWithStormMangerService()) {
-                    while (true) {
-                        TTransport transport = null;
-                        try {
-                            transport = new TSocket(managerHost, managerPort);
-                            TProtocol protocol = new TBinaryProtocol(transport);
-                            transport.open();
-
-                            StormManagerService.Client client = new StormManagerService.Client(protocol);
-                            client.registerCEPPublisher(tenantId, executionPlanConfiguration.getName(), thisHostIp,
-                                    listeningPort);
-                            if (log.isDebugEnabled()) {
-                                log.debug(logPrefix + "Successfully registered CEP publisher for " + thisHostIp + ":" +
-                                        listeningPort);
-                            }
-                            try {
-                                Thread.sleep(heartbeatInterval);
-                            } catch (InterruptedException e1) {
-                                Thread.currentThread().interrupt();
-                            }
-                        } catch (Exception e) {
-                            log.error(logPrefix + "Error in registering CEP publisher for " + thisHostIp + ":" +
-                                    listeningPort + " with manager " + managerHost + ":" + managerPort + ". Trying " +
-                                    "next manager after " + heartbeatInterval + "ms", e);
-                            break;
-                        } finally {
-                            if (transport != null) {
-                                transport.close();
-                            }
-                        }
-                    }
-                } else {
-                    log.error(logPrefix + "Error registering CEP publisher with current manager. Retrying " +
-                            "after " + heartbeatInterval + "ms");
-                }
-                try {
-                    Thread.sleep(heartbeatInterval);
-                } catch (InterruptedException e1) {
-                    Thread.currentThread().interrupt();
-                }
-            }
+        public void register(StormManagerService.Client client) throws TException {
+            // Events are handed over to the output stream listeners synchronously, so nothing is queued here
+            client.registerCEPPublisher(tenantId, executionPlanConfiguration.getName(), thisHostIp, listeningPort, 0,
+                    loadSampler.sampleEventsPerSecond(), EndpointLoadSampler.getCpuLoad());
+        }
 
+        @Override
+        public String getDescription() {
+            return "CEP Publisher for " + thisHostIp + ":" + listeningPort;
         }
 
-        private boolean registerCEPPublisherWithStormMangerService() {
-            TTransport transport = null;
-            for (HostAndPort endpoint : stormDeploymentConfig.getManagers()) {
-                try {
-                    transport = new TSocket(endpoint.getHostName(), endpoint.getPort());
-                    TProtocol protocol = new TBinaryProtocol(transport);
-                    transport.open();
-
-                    StormManagerService.Client client = new StormManagerService.Client(protocol);
-                    client.registerCEPPublisher(tenantId, executionPlanConfiguration.getName(), thisHostIp,
-                            listeningPort);
-                    log.info(logPrefix + "Successfully registered CEP publisher for " + thisHostIp + ":" +
-                            listeningPort + "  with manager service at" + endpoint.getHostName() + ":" + endpoint.getPort());
-                    managerHost = endpoint.getHostName();
-                    managerPort = endpoint.getPort();
-                    return true;
-                } catch (Exception e) {
-                    log.error(logPrefix + "Error in registering CEP publisher for " + thisHostIp + ":" +
-                            listeningPort + " with manager " + endpoint.getHostName() + ":" + endpoint.getPort() + "." +
-                            " Trying next manager", e);
-                    continue;
-                } finally {
-                    if (transport != null) {
-                        transport.close();
-                    }
-                }
-            }
-            return false;
+        @Override
+        public String getLogPrefix() {
+            return logPrefix;
         }
     }
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.core.internal.storm;
+
+import org.wso2.carbon.event.processor.common.util.AsyncEventPublisher;
+import org.wso2.carbon.event.processor.core.ExecutionPlanConfiguration;
+import org.wso2.carbon.event.processor.manager.commons.transport.server.ConnectionCallback;
+import org.wso2.carbon.event.processor.manager.core.config.DistributedConfiguration;
+import org.wso2.siddhi.query.api.definition.StreamDefinition;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Connection to the event receiver spouts of an execution plan, shared by the SiddhiStormInputEventDispatchers of all
+ * imported streams of the execution plan. All the streams are sent through a single AsyncEventPublisher, hence a
+ * single TCP connection and consumer thread per execution plan. As the execution plan status expects a connection per
+ * imported stream, connects and disconnects are reported to the connection callback once per stream.
+ * <p/>
+ * A connection belongs to a single deployment of the execution plan, identified by its ExecutionPlanConfiguration
+ * instance, so that a redeployed execution plan never sends through the connection and callback of the previous
+ * deployment while that one is still shutting down.
+ */
+public class StormReceiverConnection implements ConnectionCallback {
+    private static final Map<String, StormReceiverConnection> connections = new HashMap<>();
+
+    private final String key;
+    private final ExecutionPlanConfiguration deployment;
+    private final AsyncEventPublisher asyncEventPublisher;
+    private final ConnectionCallback connectionCallback;
+    private int streamCount = 0;
+    private boolean connected = false;
+
+    private StormReceiverConnection(String key, ExecutionPlanConfiguration deployment, int tenantId,
+                                    DistributedConfiguration stormDeploymentConfig,
+                                    ConnectionCallback connectionCallback) {
+        this.key = key;
+        this.deployment = deployment;
+        this.connectionCallback = connectionCallback;
+        // Streams are added while the publisher might be connecting
+        Set<StreamDefinition> streamDefinitions =
+                Collections.newSetFromMap(new ConcurrentHashMap<StreamDefinition, Boolean>());
+        this.asyncEventPublisher = new AsyncEventPublisher(AsyncEventPublisher.DestinationType.STORM_RECEIVER,
+                streamDefinitions, stormDeploymentConfig.getManagers(), deployment.getName(), tenantId,
+                stormDeploymentConfig, this, false);
+    }
+
+    /**
+     * Adds the stream to the connection of the deployment of the execution plan, connecting when the first stream is
+     * added. A connection left by a previous deployment is replaced, and closed once its own streams are released.
+     *
+     * @param executionPlanConfiguration configuration of the deployment, the same instance for all its streams
+     * @param connectionCallback         callback of the deployment, the same for all its streams
+     */
+    public static synchronized StormReceiverConnection acquire(ExecutionPlanConfiguration executionPlanConfiguration,
+                                                               int tenantId,
+                                                               DistributedConfiguration stormDeploymentConfig,
+                                                               ConnectionCallback connectionCallback,
+                                                               StreamDefinition siddhiStreamDefinition) {
+        String key = tenantId + ":" + executionPlanConfiguration.getName();
+        StormReceiverConnection connection = connections.get(key);
+        if (connection == null || connection.deployment != executionPlanConfiguration) {
+            connection = new StormReceiverConnection(key, executionPlanConfiguration, tenantId,
+                    stormDeploymentConfig, connectionCallback);
+            connections.put(key, connection);
+            connection.addStream(siddhiStreamDefinition);
+            connection.asyncEventPublisher.initializeConnection(false);
+        } else {
+            connection.addStream(siddhiStreamDefinition);
+        }
+        return connection;
+    }
+
+    /**
+     * Releases a stream acquired before, closing the connection when no stream uses it any longer.
+     */
+    public void release() {
+        boolean last;
+        synchronized (StormReceiverConnection.class) {
+            synchronized (this) {
+                streamCount--;
+                if (connected && connectionCallback != null) {
+                    connectionCallback.onCepReceiverDisconnect();
+                }
+                last = streamCount == 0;
+            }
+            // The connection might have been replaced by the one of a later deployment
+            if (last && connections.get(key) == this) {
+                connections.remove(key);
+            }
+        }
+        if (last) {
+            asyncEventPublisher.shutdown();
+        }
+    }
+
+    public void sendEvent(Object[] eventData, long timestamp, String streamId) {
+        asyncEventPublisher.sendEvent(eventData, timestamp, streamId);
+    }
+
+    private synchronized void addStream(StreamDefinition siddhiStreamDefinition) {
+        asyncEventPublisher.addStreamDefinition(siddhiStreamDefinition);
+        streamCount++;
+        if (connected && connectionCallback != null) {
+            connectionCallback.onCepReceiverConnect();
+        }
+    }
+
+    @Override
+    public synchronized void onCepReceiverConnect() {
+        connected = true;
+        if (connectionCallback != null) {
+            for (int i = 0; i < streamCount; i++) {
+                connectionCallback.onCepReceiverConnect();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onCepReceiverDisconnect() {
+        if (!connected) {
+            return;
+        }
+        connected = false;
+        if (connectionCallback != null) {
+            for (int i = 0; i < streamCount; i++) {
+                connectionCallback.onCepReceiverDisconnect();
+            }
+        }
+    }
+
+    @Override
+    public void onPublisherBoltConnect() {
+        if (connectionCallback != null) {
+            connectionCallback.onPublisherBoltConnect();
+        }
+    }
+
+    @Override
+    public void onPublisherBoltDisconnect() {
+        if (connectionCallback != null) {
+            connectionCallback.onPublisherBoltDisconnect();
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.wso2.carbon.event.processor.core.internal.storm;
 
+import backtype.storm.Config;
 import backtype.storm.StormSubmitter;
 import backtype.storm.generated.*;
 import backtype.storm.topology.TopologyBuilder;
@@ -25,8 +26,12 @@ import com.hazelcast.core.IMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.thrift7.TException;
+import org.apache.thrift7.transport.TTransportException;
 import org.json.simple.JSONValue;
 import org.w3c.dom.Document;
+import org.wso2.carbon.event.processor.common.storm.checkpoint.SnapshotStore;
+import org.wso2.carbon.event.processor.common.storm.component.SiddhiBolt;
+import org.wso2.carbon.event.processor.common.util.DistributedProperties;
 import org.wso2.carbon.event.processor.core.ExecutionPlanConfiguration;
 import org.wso2.carbon.event.processor.core.exception.ExecutionPlanConfigurationException;
 import org.wso2.carbon.event.processor.core.exception.ServerUnavailableException;
@@ -37,6 +42,7 @@ import org.wso2.carbon.event.processor.core.internal.storm.util.StormQueryPlanBu
 import org.wso2.carbon.event.processor.core.internal.storm.util.StormTopologyConstructor;
 import org.wso2.carbon.event.processor.core.util.DistributedModeConstants;
 import org.wso2.carbon.event.processor.core.util.ExecutionPlanStatusHolder;
+import org.wso2.carbon.event.processor.core.util.TopologyStateUpdateProcessor;
 import org.wso2.carbon.event.processor.manager.core.config.DistributedConfiguration;
 import org.wso2.carbon.utils.CarbonUtils;
 import org.yaml.snakeyaml.Yaml;
@@ -49,10 +55,17 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.*;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -61,12 +74,31 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class StormTopologyManager {
 
+    private static final long INITIAL_POLL_INTERVAL = 250;
+    private static final long MAX_POLL_INTERVAL = 5000;
+    private static final int REBALANCE_WAIT_SECS = 10;
+    private static final int DEFAULT_MESSAGE_TIMEOUT_SECS = 30;
+
     private Map stormConfig;
     private String jarLocation;
     private static final Log log = LogFactory.getLog(StormTopologyManager.class);
     private final ConcurrentHashMap<String, TopologySubmitter> toDeployTopologies = new ConcurrentHashMap();
     private TopologyManagerThreadFactory topologyManagerThreadFactory = new TopologyManagerThreadFactory("Storm Deployment");
-    private final int lockTimeout;
+    private final ThreadPoolExecutor submissionExecutor;
+    private final ScheduledExecutorService killExecutor;
+    private final ConcurrentHashMap<String, TopologyKiller> pendingKills = new ConcurrentHashMap<String, TopologyKiller>();
+    /**
+     * Topologies being killed, guarded by toDeployTopologies. Submissions of these topologies wait for the kill.
+     */
+    private final Set<String> killsInProgress = new HashSet<String>();
+    private final long killGracePeriod;
+    /**
+     * Store of the snapshots of the Siddhi bolts, null if checkpointing is disabled
+     */
+    private SnapshotStore snapshotStore;
+    private final TopologyJarCache jarCache;
+    private final Object nimbusLock = new Object();
+    private NimbusClient nimbusClient;
 
     public StormTopologyManager() {
         String stormConfigDirPath = CarbonUtils.getCarbonConfigDirPath() + File.separator + "cep" + File.separator + "storm";
@@ -85,15 +117,28 @@ public class StormTopologyManager {
         }
 
         DistributedConfiguration stormDeploymentConfiguration = EventProcessorValueHolder.getStormDeploymentConfiguration();
-        lockTimeout = stormDeploymentConfiguration.getStatusLockTimeout();
 
         jarLocation = stormConfigDirPath + File.separator + EventProcessorValueHolder.getStormDeploymentConfiguration().getJar();
+        jarCache = new TopologyJarCache(stormConfig, jarLocation);
+
+        int submissionThreads = Math.max(1, DistributedProperties.getInt(DistributedProperties.SUBMISSION_THREADS,
+                DistributedProperties.DEFAULT_SUBMISSION_THREADS));
+        submissionExecutor = new ThreadPoolExecutor(submissionThreads, submissionThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), topologyManagerThreadFactory);
+        submissionExecutor.allowCoreThreadTimeOut(true);
+        killExecutor = Executors.newSingleThreadScheduledExecutor(new TopologyManagerThreadFactory("Storm Undeployment"));
+        killGracePeriod = DistributedProperties.getLong(DistributedProperties.KILL_GRACE_PERIOD,
+                DistributedProperties.DEFAULT_KILL_GRACE_PERIOD);
+        try {
+            snapshotStore = SiddhiBolt.createSnapshotStore();
+        } catch (IllegalArgumentException e) {
+            log.error("Snapshots of killed storm topologies will not be deleted", e);
+        }
     }
 
     public List<TopologySummary> getTopologies() throws StormDeploymentException {
         try {
-            Nimbus.Client client = NimbusClient.getConfiguredClient(stormConfig).getClient();
-            return client.getClusterInfo().get_topologies();
+            return getTopologySummaries();
         } catch (TException e) {
             throw new StormDeploymentException("Cannot get topologies from storm cluster", e);
         }
@@ -105,6 +150,23 @@ public class StormTopologyManager {
         String executionPlanName = configuration.getName();
         TopologyBuilder builder;
         String topologyName = getTopologyName(executionPlanName, tenantId);
+        long checkpointInterval = DistributedProperties.getLong(DistributedProperties.CHECKPOINT_INTERVAL,
+                DistributedProperties.DEFAULT_CHECKPOINT_INTERVAL);
+        if (checkpointInterval > 0 && checkpointInterval * 2 >= getMessageTimeout()) {
+            // Tuples are acknowledged up to two checkpoint intervals after being emitted, else they time out and
+            // are replayed over and over
+            throw new StormDeploymentException("Checkpoint interval of " + checkpointInterval + " ms must be below " +
+                    "half the storm message timeout of " + getMessageTimeout() + " ms. Execution plan: " +
+                    executionPlanName + " Tenant: " + tenantId);
+        }
+        long boltBatchMaxLatency = DistributedProperties.getLong(DistributedProperties.BOLT_BATCH_MAX_LATENCY,
+                DistributedProperties.DEFAULT_BOLT_BATCH_MAX_LATENCY);
+        if (DistributedProperties.getInt(DistributedProperties.BOLT_BATCH_SIZE,
+                DistributedProperties.DEFAULT_BOLT_BATCH_SIZE) > 1 && boltBatchMaxLatency < 1000) {
+            // Batches of idle streams are flushed by tick tuples, which are at least a second apart
+            throw new StormDeploymentException("Bolt batch max latency of " + boltBatchMaxLatency + " ms must be " +
+                    "at least 1000 ms when batching. Execution plan: " + executionPlanName + " Tenant: " + tenantId);
+        }
 
         try {
             Document document = StormQueryPlanBuilder.constructStormQueryPlanXML(configuration, importStreams, exportStreams);
@@ -114,7 +176,7 @@ public class StormTopologyManager {
                         "\n" + stormQueryPlan);
             }
             builder = StormTopologyConstructor.constructTopologyBuilder(stormQueryPlan, executionPlanName, tenantId,
-                    EventProcessorValueHolder.getStormDeploymentConfiguration());
+                    EventProcessorValueHolder.getStormDeploymentConfiguration(), getWorkerCount());
         } catch (XMLStreamException e) {
             throw new StormDeploymentException("Invalid Config for Execution Plan " + executionPlanName + " for tenant " + tenantId, e);
         } catch (TransformerException e) {
@@ -126,23 +188,143 @@ public class StormTopologyManager {
         }
 
         TopologySubmitter topologySubmitter = new TopologySubmitter(executionPlanName, builder.createTopology(), tenantId, resubmitRetryInterval);
+        TopologySubmitter replacedSubmitter;
+        TopologyKiller cancelledKiller;
         synchronized (toDeployTopologies) {
-            toDeployTopologies.put(topologyName, topologySubmitter);
+            replacedSubmitter = toDeployTopologies.put(topologyName, topologySubmitter);
+            cancelledKiller = pendingKills.remove(topologyName);
+        }
+        removePersistedKill(topologyName, null);
+        if (replacedSubmitter != null) {
+            replacedSubmitter.cancel();
+        }
+        if (cancelledKiller != null) {
+            log.info("Execution plan '" + executionPlanName + "' of tenant '" + tenantId + "' deployed again, " +
+                    "updating running storm topology '" + topologyName + "' instead of killing it");
         }
 
-        Thread deploymentThread = topologyManagerThreadFactory.newThread(topologySubmitter);
-        deploymentThread.start();
-
+        submissionExecutor.execute(topologySubmitter);
     }
 
+    /**
+     * Kills the topology of the execution plan after the kill grace period, unless the execution plan is deployed
+     * again before that, in which case the running topology is updated in place if possible. The pending kill is
+     * kept in the shared pending kill map, so that it is carried out by the next Storm coordinator if this one
+     * goes down before.
+     */
     public void killTopology(String executionPlanName, int tenantId) throws StormDeploymentException {
+        String topologyName = getTopologyName(executionPlanName, tenantId);
+        TopologySubmitter topologySubmitter;
+        synchronized (toDeployTopologies) {
+            topologySubmitter = toDeployTopologies.remove(topologyName);
+        }
+        if (topologySubmitter != null) {
+            topologySubmitter.cancel();
+        }
+        if (killGracePeriod <= 0) {
+            log.info("Killing storm topology '" + executionPlanName + "' of tenant '" + tenantId + "'");
+            killTopologyNow(topologyName);
+            scheduleSnapshotDeletion(topologyName);
+            return;
+        }
+        long deadline = System.currentTimeMillis() + killGracePeriod;
+        TopologyKiller topologyKiller = new TopologyKiller(topologyName, deadline,
+                persistPendingKill(topologyName, deadline));
+        synchronized (toDeployTopologies) {
+            pendingKills.put(topologyName, topologyKiller);
+        }
+        log.info("Killing storm topology '" + executionPlanName + "' of tenant '" + tenantId + "' in " +
+                killGracePeriod + " ms unless the execution plan is deployed again");
+        killExecutor.schedule(topologyKiller, killGracePeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Schedules the kills left pending by the previous Storm coordinator. Called when this node becomes the Storm
+     * coordinator.
+     */
+    public void recoverPendingKills() {
+        IMap<String, Long> pendingKillMap = getPendingKillMap();
+        if (pendingKillMap == null) {
+            return;
+        }
+        Set<Map.Entry<String, Long>> entries;
         try {
+            entries = pendingKillMap.entrySet();
+        } catch (RuntimeException e) {
+            log.error("Cannot read the pending kills of storm topologies from hazelcast", e);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Long> entry : entries) {
+            String topologyName = entry.getKey();
+            TopologyKiller topologyKiller = new TopologyKiller(topologyName, entry.getValue(), true);
             synchronized (toDeployTopologies) {
-                toDeployTopologies.remove(getTopologyName(executionPlanName, tenantId));
+                if (toDeployTopologies.containsKey(topologyName) || pendingKills.containsKey(topologyName)) {
+                    continue;
+                }
+                pendingKills.put(topologyName, topologyKiller);
             }
-            log.info("Killing storm topology '" + executionPlanName + "' of tenant '" + tenantId + "'");
-            Nimbus.Client client = NimbusClient.getConfiguredClient(stormConfig).getClient();
-            client.killTopologyWithOpts(getTopologyName(executionPlanName, tenantId), new KillOptions()); //provide topology name
+            long delay = Math.max(0, entry.getValue() - now);
+            log.info("Killing storm topology '" + topologyName + "' left pending by the previous storm coordinator in " +
+                    delay + " ms unless the execution plan is deployed again");
+            killExecutor.schedule(topologyKiller, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the shared map of pending kills, or null if the hazelcast instance is not available
+     */
+    private IMap<String, Long> getPendingKillMap() {
+        HazelcastInstance hazelcastInstance = EventProcessorValueHolder.getHazelcastInstance();
+        if (hazelcastInstance == null || !hazelcastInstance.getLifecycleService().isRunning()) {
+            return null;
+        }
+        try {
+            return hazelcastInstance.getMap(DistributedModeConstants.STORM_PENDING_KILL_MAP);
+        } catch (RuntimeException e) {
+            log.error("Cannot access the pending kills of storm topologies in hazelcast", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the pending kill got stored in the shared pending kill map
+     */
+    private boolean persistPendingKill(String topologyName, long deadline) {
+        IMap<String, Long> pendingKillMap = getPendingKillMap();
+        if (pendingKillMap != null) {
+            try {
+                pendingKillMap.put(topologyName, deadline);
+                return true;
+            } catch (RuntimeException e) {
+                log.error("Cannot store the pending kill of storm topology '" + topologyName + "' in hazelcast", e);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param deadline deadline of the kill to remove, or null to remove any pending kill of the topology
+     */
+    private void removePersistedKill(String topologyName, Long deadline) {
+        IMap<String, Long> pendingKillMap = getPendingKillMap();
+        if (pendingKillMap != null) {
+            try {
+                if (deadline == null) {
+                    pendingKillMap.remove(topologyName);
+                } else {
+                    pendingKillMap.remove(topologyName, deadline);
+                }
+            } catch (RuntimeException e) {
+                log.error("Cannot remove the pending kill of storm topology '" + topologyName + "' from hazelcast",
+                        e);
+            }
+        }
+    }
+
+    private void killTopologyNow(String topologyName) throws StormDeploymentException {
+        try {
+            killTopologyInStorm(topologyName, new KillOptions());
         } catch (NotAliveException e) {
             // do nothing
         } catch (TException e) {
@@ -150,6 +332,38 @@ public class StormTopologyManager {
         }
     }
 
+    /**
+     * Deletes the snapshots of the Siddhi bolts of a killed topology once Storm removed it, which happens after the
+     * message timeout, as its tasks keep storing snapshots until then.
+     */
+    private void scheduleSnapshotDeletion(String topologyName) {
+        if (snapshotStore != null) {
+            killExecutor.schedule(new SnapshotDeleter(topologyName), getMessageTimeout() + MAX_POLL_INTERVAL,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Deletes the snapshots of the Siddhi bolts of the topology, so that they are not restored by another
+     * deployment of its execution plan. Only called while no topology of the name is running.
+     *
+     * @return whether the snapshots got deleted
+     */
+    private boolean deleteSnapshots(String topologyName) {
+        if (snapshotStore == null) {
+            return false;
+        }
+        try {
+            snapshotStore.delete(topologyName);
+            return true;
+        } catch (IOException e) {
+            log.error("Cannot delete the snapshots of storm topology '" + topologyName + "'", e);
+        } catch (RuntimeException e) {
+            log.error("Cannot delete the snapshots of storm topology '" + topologyName + "'", e);
+        }
+        return false;
+    }
+
     private String getStringQueryPlan(Document document) throws TransformerException {
         Transformer transformer = TransformerFactory.newInstance().newTransformer();
         transformer.setOutputProperty(OutputKeys.INDENT, "yes");
@@ -160,6 +374,147 @@ public class StormTopologyManager {
         return sw.toString();   //returning the xmlString
     }
 
+    private int getWorkerCount() {
+        Object workers = (stormConfig != null) ? stormConfig.get(Config.TOPOLOGY_WORKERS) : null;
+        return (workers instanceof Number) ? ((Number) workers).intValue() : 1;
+    }
+
+    /**
+     * @return the message timeout of the topologies in milliseconds, which Storm also waits for between deactivating
+     * and killing a topology
+     */
+    private long getMessageTimeout() {
+        Object messageTimeout = (stormConfig != null) ? stormConfig.get(Config.TOPOLOGY_MESSAGE_TIMEOUT_SECS) : null;
+        return ((messageTimeout instanceof Number) ? ((Number) messageTimeout).longValue() :
+                DEFAULT_MESSAGE_TIMEOUT_SECS) * 1000;
+    }
+
+    /**
+     * Nimbus calls of all submissions share one connection. Thrift clients are not thread safe, hence calls are
+     * serialized, and the connection is dropped when a call fails so that the next call reconnects.
+     */
+    private Nimbus.Client getNimbusClient() {
+        if (nimbusClient == null) {
+            nimbusClient = NimbusClient.getConfiguredClient(stormConfig);
+        }
+        return nimbusClient.getClient();
+    }
+
+    private void closeNimbusClient() {
+        if (nimbusClient != null) {
+            nimbusClient.close();
+            nimbusClient = null;
+        }
+    }
+
+    private List<TopologySummary> getTopologySummaries() throws TException {
+        synchronized (nimbusLock) {
+            try {
+                return getNimbusClient().getClusterInfo().get_topologies();
+            } catch (TTransportException e) {
+                closeNimbusClient();
+                throw e;
+            } catch (RuntimeException e) {
+                closeNimbusClient();
+                throw e;
+            }
+        }
+    }
+
+    private TopologySummary getTopologySummary(String topologyName) throws TException {
+        for (TopologySummary topologySummary : getTopologySummaries()) {
+            if (topologySummary.get_name().equals(topologyName)) {
+                return topologySummary;
+            }
+        }
+        return null;
+    }
+
+    private void submitTopologyToStorm(String topologyName, String uploadedJarLocation, String jsonConf,
+                                       StormTopology topology) throws TException {
+        synchronized (nimbusLock) {
+            try {
+                getNimbusClient().submitTopology(topologyName, uploadedJarLocation, jsonConf, topology);
+            } catch (TTransportException e) {
+                closeNimbusClient();
+                throw e;
+            } catch (RuntimeException e) {
+                closeNimbusClient();
+                throw e;
+            }
+        }
+    }
+
+    private void killTopologyInStorm(String topologyName, KillOptions options) throws TException {
+        synchronized (nimbusLock) {
+            try {
+                getNimbusClient().killTopologyWithOpts(topologyName, options);
+            } catch (TTransportException e) {
+                closeNimbusClient();
+                throw e;
+            } catch (RuntimeException e) {
+                closeNimbusClient();
+                throw e;
+            }
+        }
+    }
+
+    private StormTopology getDeployedTopology(String topologyId) throws TException {
+        synchronized (nimbusLock) {
+            try {
+                return getNimbusClient().getUserTopology(topologyId);
+            } catch (TTransportException e) {
+                closeNimbusClient();
+                throw e;
+            } catch (RuntimeException e) {
+                closeNimbusClient();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @return number of executors running each component of the topology, excluding the Storm system components
+     */
+    private Map<String, Integer> getExecutorCounts(String topologyId) throws TException {
+        List<ExecutorSummary> executors;
+        synchronized (nimbusLock) {
+            try {
+                executors = getNimbusClient().getTopologyInfo(topologyId).get_executors();
+            } catch (TTransportException e) {
+                closeNimbusClient();
+                throw e;
+            } catch (RuntimeException e) {
+                closeNimbusClient();
+                throw e;
+            }
+        }
+        Map<String, Integer> executorCounts = new HashMap<String, Integer>();
+        for (ExecutorSummary executor : executors) {
+            String componentId = executor.get_component_id();
+            // Storm names its own components, e.g. the ackers, with a "__" prefix
+            if (!componentId.startsWith("__")) {
+                Integer count = executorCounts.get(componentId);
+                executorCounts.put(componentId, count == null ? 1 : count + 1);
+            }
+        }
+        return executorCounts;
+    }
+
+    private void rebalanceTopologyInStorm(String topologyName, RebalanceOptions options) throws TException {
+        synchronized (nimbusLock) {
+            try {
+                getNimbusClient().rebalance(topologyName, options);
+            } catch (TTransportException e) {
+                closeNimbusClient();
+                throw e;
+            } catch (RuntimeException e) {
+                closeNimbusClient();
+                throw e;
+            }
+        }
+    }
+
     public static String getTopologyName(String executionPlanName, int tenantId) {
         return (executionPlanName + "[" + tenantId + "]");
     }
@@ -168,6 +523,7 @@ public class StormTopologyManager {
         private final String topologyName;
         StormTopology topology;
         int retryInterval;
+        private volatile boolean cancelled = false;
 
         public TopologySubmitter(String executionPlanName, StormTopology topology,
                                  int tenantId, int resubmitRetryInterval) {
@@ -180,20 +536,27 @@ public class StormTopologyManager {
         public void run() {
             String jobPrefix = "TopologySubmitterJob:" + Thread.currentThread().getId() + ", ";
             log.info(jobPrefix + "Job started to submit storm topology '" + topologyName + "'.");
+            boolean updateChecked = false;
+            awaitKill();
             while (true) {
                 if (!isToBeDeployed()) {
                     log.info(jobPrefix + "Aborting Storm deployment of '" + topologyName + "', as current job is outdated.");
                     return;
                 }
                 try {
-                    if (isTopologyExist()) {
+                    TopologySummary existingTopology = getExistingTopology();
+                    if (existingTopology != null && !updateChecked) {
+                        if (updateTopology(jobPrefix, existingTopology)) {
+                            return;
+                        }
+                        updateChecked = true;
+                    } else if (existingTopology != null) {
                         updateExecutionPlanStatusInStorm(topologyName, DistributedModeConstants.TopologyState.CLEANING);
                         log.info(jobPrefix + "Killing already existing storm topology '" + topologyName + "' to re-submit");
                         KillOptions options = new KillOptions();
                         options.set_wait_secs(10);
                         try {
-                            Nimbus.Client client = NimbusClient.getConfiguredClient(stormConfig).getClient();
-                            client.killTopologyWithOpts(topologyName, options);
+                            killTopologyInStorm(topologyName, options);
                             waitForTopologyToBeRemoved(jobPrefix);
                         } catch (NotAliveException e) {
                             log.info(jobPrefix + "Topology '" + topologyName + "' is not alive to kill");
@@ -208,28 +571,36 @@ public class StormTopologyManager {
                         }
                     } else {
                         updateExecutionPlanStatusInStorm(topologyName, DistributedModeConstants.TopologyState.DEPLOYING);
+                        String uploadedJarLocation = null;
                         try {
                             String jsonConf = JSONValue.toJSONString(stormConfig);
-                            synchronized (toDeployTopologies) {
+                            uploadedJarLocation = jarCache.getUploadedJarLocation();
+                            // Holding the submitter lock lets a cancelling thread wait for this submission to finish
+                            synchronized (this) {
                                 if (isToBeDeployed()) {
-                                    String uploadedJarLocation = StormSubmitter.submitJar(stormConfig, jarLocation);
-                                    Nimbus.Client client = NimbusClient.getConfiguredClient(stormConfig).getClient();
-                                    client.submitTopology(topologyName, uploadedJarLocation, jsonConf, topology);
-                                    toDeployTopologies.remove(topologyName);
+                                    // No topology of the name is running, so the snapshots are from a killed one
+                                    deleteSnapshots(topologyName);
+                                    submitTopologyToStorm(topologyName, uploadedJarLocation, jsonConf, topology);
+                                    synchronized (toDeployTopologies) {
+                                        toDeployTopologies.remove(topologyName, this);
+                                    }
                                     log.info(jobPrefix + "Successfully submitted storm topology '" + topologyName + "'");
-                                    waitForTopologyToBeActive(client, jobPrefix, topologyName);
-                                    return;
                                 } else {
                                     log.info(jobPrefix + "Aborting Storm deployment of '" + topologyName + "', as current job is outdated.");
                                     return;
                                 }
                             }
+                            waitForTopologyToBeActive(jobPrefix);
+                            return;
                         } catch (InvalidTopologyException e) {
                             log.error(jobPrefix + "Cannot deploy, Invalid Storm topology '" + topologyName + "' found.", e);
                             return;
                         } catch (AlreadyAliveException e) {
                             log.warn(jobPrefix + "Topology '" + topologyName + "' already existing. Trying to kill and re-submit", e);
                         } catch (TException e) {
+                            if (uploadedJarLocation != null) {
+                                jarCache.invalidate(uploadedJarLocation);
+                            }
                             log.error(jobPrefix + "Error connecting to storm when trying to submit topology '" + topologyName + "'", e);
                             log.info(jobPrefix + "Retrying to submit topology '" + topologyName + "' in " + retryInterval + " ms");
                             try {
@@ -237,6 +608,11 @@ public class StormTopologyManager {
                             } catch (InterruptedException e1) {
                                 //ignore
                             }
+                        } catch (IOException e) {
+                            log.error(jobPrefix + "Cannot read topology jar " + jarLocation + " to submit topology '" +
+                                    topologyName + "'", e);
+                            updateExecutionPlanStatusInStorm(topologyName, DistributedModeConstants.TopologyState.UNKNOWN);
+                            return;
                         }
                     }
                 } catch (ServerUnavailableException e) {
@@ -251,23 +627,99 @@ public class StormTopologyManager {
             }
         }
 
+        /**
+         * Stops this submitter from submitting, waiting for a submission in progress to finish.
+         */
+        synchronized void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Waits for a kill of the previous deployment of the topology which is in progress, so that the kill does
+         * not hit the topology submitted by this submitter.
+         */
+        private void awaitKill() {
+            synchronized (toDeployTopologies) {
+                while (killsInProgress.contains(topologyName) && !cancelled) {
+                    try {
+                        toDeployTopologies.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
         private boolean isToBeDeployed() {
             synchronized (toDeployTopologies) {
                 TopologySubmitter existingTopologySubmitter = toDeployTopologies.get(topologyName);
-                return existingTopologySubmitter != null && existingTopologySubmitter.equals(this);
+                return !cancelled && existingTopologySubmitter != null && existingTopologySubmitter.equals(this);
             }
         }
 
-        private boolean isTopologyExist() throws ServerUnavailableException {
+        /**
+         * Applies this version of the topology to the running topology if it only differs in the parallelism of its
+         * components, by rebalancing it, so that the topology keeps running with its connections to the CEP workers.
+         *
+         * @return false if the running topology has to be killed and this version submitted instead
+         */
+        private boolean updateTopology(String jobPrefix, TopologySummary existingTopology)
+                throws ServerUnavailableException {
+            if (!existingTopology.get_status().equals(TopologyInitialStatus.ACTIVE.toString())) {
+                return false;
+            }
             try {
-                Nimbus.Client client = NimbusClient.getConfiguredClient(stormConfig).getClient();
-                List<TopologySummary> topologies = client.getClusterInfo().get_topologies();
-                for (TopologySummary topologySummary : topologies) {
-                    if (topologySummary.get_name().equals(topologyName)) {
+                TopologyDiff topologyDiff = new TopologyDiff(getDeployedTopology(existingTopology.get_id()), topology);
+                if (!topologyDiff.isRebalanceable()) {
+                    log.info(jobPrefix + "Storm topology '" + topologyName + "' cannot be updated in place, " +
+                            (topologyDiff.getChangedComponents().isEmpty() ? "as its parallelism exceeds the number " +
+                                    "of tasks of the running topology" : "as components " +
+                                    topologyDiff.getChangedComponents() + " changed"));
+                    return false;
+                }
+                Map<String, Integer> executorCounts = getExecutorCounts(existingTopology.get_id());
+                RebalanceOptions options = new RebalanceOptions();
+                for (Map.Entry<String, Integer> entry : topologyDiff.getParallelism().entrySet()) {
+                    if (!entry.getValue().equals(executorCounts.get(entry.getKey()))) {
+                        options.put_to_num_executors(entry.getKey(), entry.getValue());
+                    }
+                }
+                synchronized (this) {
+                    if (!isToBeDeployed()) {
+                        log.info(jobPrefix + "Aborting Storm deployment of '" + topologyName + "', as current job is outdated.");
                         return true;
                     }
+                    if (options.is_set_num_executors()) {
+                        updateExecutionPlanStatusInStorm(topologyName, DistributedModeConstants.TopologyState.DEPLOYING);
+                        options.set_wait_secs(REBALANCE_WAIT_SECS);
+                        rebalanceTopologyInStorm(topologyName, options);
+                        log.info(jobPrefix + "Rebalancing storm topology '" + topologyName + "' to executors " +
+                                options.get_num_executors());
+                    } else {
+                        log.info(jobPrefix + "Storm topology '" + topologyName + "' is unchanged, keeping it running");
+                    }
+                    synchronized (toDeployTopologies) {
+                        toDeployTopologies.remove(topologyName, this);
+                    }
                 }
+                waitForTopologyToBeActive(jobPrefix);
+                return true;
+            } catch (NotAliveException e) {
+                return false;
+            } catch (InvalidTopologyException e) {
+                log.warn(jobPrefix + "Cannot rebalance storm topology '" + topologyName + "', re-submitting it", e);
                 return false;
+            } catch (TException e) {
+                throw new ServerUnavailableException("Error connecting to storm when trying to update topology '" + topologyName + "'", e);
+            } catch (RuntimeException e) {
+                throw new ServerUnavailableException("Runtime Exception connecting to storm when trying to update topology '" + topologyName + "'", e);
+            }
+        }
+
+        private TopologySummary getExistingTopology() throws ServerUnavailableException {
+            try {
+                return getTopologySummary(topologyName);
             } catch (TException e) {
                 throw new ServerUnavailableException("Error connecting to storm when trying to check whether topology '" + topologyName + "' exist", e);
             } catch (RuntimeException e) {
@@ -275,88 +727,68 @@ public class StormTopologyManager {
             }
         }
 
-        private void waitForTopologyToBeActive(Nimbus.Client client, String jobPrefix, String topologyName) throws TException {
-            TopologySummary thisTopologySummary = null;
-            while(thisTopologySummary == null){
-                List<TopologySummary> topologySummaryList = client.getClusterInfo().get_topologies();
-                for (TopologySummary  topologySummary: topologySummaryList) {
-                    if(topologySummary.get_name().equals(topologyName)){
-                        thisTopologySummary = topologySummary;
-                    }
-                }
-                if(thisTopologySummary == null){
-                    try {
-                        Thread.sleep(2000);
-                        log.info(jobPrefix + "Waiting until '" + topologyName + "' has been submitted to Storm cluster");
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        updateExecutionPlanStatusInStorm(topologyName, DistributedModeConstants.TopologyState.UNKNOWN);
-                        log.error("Could not verify whether " + topologyName + "' has been submitted to Storm cluster or not" +
-                                " as the verifier got interrupted. Setting distributed deployment status as UNKNOWN");
-                        return;
-                    }
-                }
-            }
-            while (true) {
-                if (thisTopologySummary.get_status().equals(TopologyInitialStatus.ACTIVE.toString())) {
+        private boolean isTopologyExist() throws ServerUnavailableException {
+            return getExistingTopology() != null;
+        }
+
+        /**
+         * Polls the status of the submitted topology, doubling the interval between polls up to MAX_POLL_INTERVAL,
+         * until it is active or the topology is killed.
+         */
+        private void waitForTopologyToBeActive(String jobPrefix) throws TException {
+            long pollInterval = INITIAL_POLL_INTERVAL;
+            while (!cancelled) {
+                TopologySummary topologySummary = getTopologySummary(topologyName);
+                if (topologySummary != null &&
+                        topologySummary.get_status().equals(TopologyInitialStatus.ACTIVE.toString())) {
                     updateExecutionPlanStatusInStorm(topologyName, DistributedModeConstants.TopologyState.ACTIVE);
                     log.info(jobPrefix + "Topology '" + topologyName + "' found to be active in Storm cluster");
                     return;
-                } else {
-                    try {
-                        log.info(jobPrefix + "Waiting until '" + topologyName + "' becomes active in Storm cluster");
-                        Thread.sleep(2000);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
                 }
+                if (log.isDebugEnabled()) {
+                    log.debug(jobPrefix + "Waiting until '" + topologyName + "' " + (topologySummary == null ?
+                            "has been submitted to" : "becomes active in") + " Storm cluster");
+                }
+                try {
+                    Thread.sleep(pollInterval);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    updateExecutionPlanStatusInStorm(topologyName, DistributedModeConstants.TopologyState.UNKNOWN);
+                    log.error("Could not verify whether " + topologyName + "' has become active in Storm cluster or " +
+                            "not as the verifier got interrupted. Setting distributed deployment status as UNKNOWN");
+                    return;
+                }
+                pollInterval = Math.min(pollInterval * 2, MAX_POLL_INTERVAL);
             }
         }
 
-        private void waitForTopologyToBeRemoved(String jobPrefix) throws TException, ServerUnavailableException {
+        private void waitForTopologyToBeRemoved(String jobPrefix) throws ServerUnavailableException {
             log.info(jobPrefix + "Waiting for topology '" + topologyName + "' to be removed from Storm cluster");
+            long pollInterval = INITIAL_POLL_INTERVAL;
             try {
-                while (true) {
-                    if (isTopologyExist()) {
-                        Thread.sleep(5000);
-                    } else {
-                        Thread.sleep(2000);
-                        log.info(jobPrefix + "Topology '" + topologyName + "' removed from Storm cluster");
-                        return;
-                    }
+                while (isTopologyExist()) {
+                    Thread.sleep(pollInterval);
+                    pollInterval = Math.min(pollInterval * 2, MAX_POLL_INTERVAL);
                 }
+                log.info(jobPrefix + "Topology '" + topologyName + "' removed from Storm cluster");
             } catch (InterruptedException e) {
             }
         }
 
         private void updateExecutionPlanStatusInStorm(String stormTopologyName,
                                                       DistributedModeConstants.TopologyState topologyState) {
-            String executionPlanStatusHolderKey = DistributedModeConstants.STORM_STATUS_MAP + "." + stormTopologyName;
             HazelcastInstance hazelcastInstance = EventProcessorValueHolder.getHazelcastInstance();
             if (hazelcastInstance != null && hazelcastInstance.getLifecycleService().isRunning()) {
                 IMap<String, ExecutionPlanStatusHolder> executionPlanStatusHolderIMap = hazelcastInstance.getMap(DistributedModeConstants.STORM_STATUS_MAP);
                 try {
-                    if (executionPlanStatusHolderIMap.tryLock(executionPlanStatusHolderKey, lockTimeout, TimeUnit.MILLISECONDS)) {
-                        try {
-                            ExecutionPlanStatusHolder executionPlanStatusHolder =
-                                    executionPlanStatusHolderIMap.get(stormTopologyName);
-                            if (executionPlanStatusHolder == null) {
-                                log.error("Couldn't update topology status for topology:" + topologyName + " as status object not initialized by manager.");
-                            } else {
-                                executionPlanStatusHolder.setStormTopologyStatus(topologyState);
-                                executionPlanStatusHolderIMap.replace(stormTopologyName, executionPlanStatusHolder);
-                            }
-                        } finally {
-                            executionPlanStatusHolderIMap.unlock(executionPlanStatusHolderKey);
-                        }
-                    } else {
-                        log.error("Couldn't update topology status for topology:" + topologyName
-                                  + " as the hazelcast lock acquisition failed.");
+                    Object initialized = executionPlanStatusHolderIMap.executeOnKey(stormTopologyName,
+                            new TopologyStateUpdateProcessor(topologyState));
+                    if (!Boolean.TRUE.equals(initialized)) {
+                        log.error("Couldn't update topology status for topology:" + topologyName + " as status object not initialized by manager.");
                     }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
                     log.error("Couldn't update topology status for topology:" + topologyName
-                              + " as the hazelcast lock acquisition was interrupted.", e);
+                              + " as the hazelcast update failed.", e);
                 }
             } else {
                 log.error("Couldn't update topology status for topology:" + topologyName
@@ -365,6 +797,119 @@ public class StormTopologyManager {
         }
     }
 
+    /**
+     * Kills a topology whose execution plan was removed, unless the execution plan was deployed again since. A
+     * failed kill is retried after the kill grace period.
+     */
+    class TopologyKiller implements Runnable {
+        private final String topologyName;
+        private final long deadline;
+        private final boolean persisted;
+
+        /**
+         * @param persisted whether the kill is held in the shared pending kill map
+         */
+        TopologyKiller(String topologyName, long deadline, boolean persisted) {
+            this.topologyName = topologyName;
+            this.deadline = deadline;
+            this.persisted = persisted;
+        }
+
+        @Override
+        public void run() {
+            synchronized (toDeployTopologies) {
+                if (!pendingKills.remove(topologyName, this)) {
+                    return;
+                }
+                killsInProgress.add(topologyName);
+            }
+            // Killing outside the lock, while submissions of the topology wait until the kill finished
+            try {
+                if (isDeployedAgain()) {
+                    log.info("Not killing storm topology '" + topologyName + "' as its execution plan was " +
+                            "deployed again");
+                    return;
+                }
+                log.info("Killing storm topology '" + topologyName + "'");
+                killTopologyNow(topologyName);
+                if (persisted) {
+                    removePersistedKill(topologyName, deadline);
+                }
+                scheduleSnapshotDeletion(topologyName);
+            } catch (StormDeploymentException e) {
+                log.error("Cannot kill storm topology '" + topologyName + "', retrying in " + killGracePeriod +
+                        " ms", e);
+                synchronized (toDeployTopologies) {
+                    if (!toDeployTopologies.containsKey(topologyName) && !pendingKills.containsKey(topologyName)) {
+                        pendingKills.put(topologyName, this);
+                        killExecutor.schedule(this, killGracePeriod, TimeUnit.MILLISECONDS);
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.error("Cannot kill storm topology '" + topologyName + "'", e);
+            } finally {
+                synchronized (toDeployTopologies) {
+                    killsInProgress.remove(topologyName);
+                    toDeployTopologies.notifyAll();
+                }
+            }
+        }
+
+        /**
+         * @return true if the shared pending kill map no longer holds this kill, as the execution plan was deployed
+         * again on another Storm coordinator. Kills when the map cannot be read.
+         */
+        private boolean isDeployedAgain() {
+            IMap<String, Long> pendingKillMap = persisted ? getPendingKillMap() : null;
+            if (pendingKillMap == null) {
+                return false;
+            }
+            try {
+                return !Long.valueOf(deadline).equals(pendingKillMap.get(topologyName));
+            } catch (RuntimeException e) {
+                log.error("Cannot read the pending kill of storm topology '" + topologyName + "' from hazelcast", e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Deletes the snapshots of a killed topology unless it is running or about to be deployed again, in which case
+     * they are deleted before the next submission of the topology instead.
+     */
+    class SnapshotDeleter implements Runnable {
+        private final String topologyName;
+
+        SnapshotDeleter(String topologyName) {
+            this.topologyName = topologyName;
+        }
+
+        @Override
+        public void run() {
+            synchronized (toDeployTopologies) {
+                if (toDeployTopologies.containsKey(topologyName) || pendingKills.containsKey(topologyName)) {
+                    return;
+                }
+            }
+            try {
+                if (getTopologySummary(topologyName) != null) {
+                    return;
+                }
+            } catch (TException e) {
+                log.error("Cannot check whether storm topology '" + topologyName + "' was removed, keeping its " +
+                        "snapshots until it is submitted again", e);
+                return;
+            } catch (RuntimeException e) {
+                log.error("Cannot check whether storm topology '" + topologyName + "' was removed, keeping its " +
+                        "snapshots until it is submitted again", e);
+                return;
+            }
+            if (deleteSnapshots(topologyName)) {
+                log.info("Deleted the snapshots of killed storm topology '" + topologyName + "'");
+            }
+        }
+    }
+
     class TopologyManagerThreadFactory implements ThreadFactory {
         final AtomicInteger poolNumber = new AtomicInteger(1);
         final ThreadGroup group;
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.core.internal.storm;
+
+import backtype.storm.generated.Bolt;
+import backtype.storm.generated.ComponentCommon;
+import backtype.storm.generated.SpoutSpec;
+import backtype.storm.generated.StateSpoutSpec;
+import backtype.storm.generated.StormTopology;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compares the topology deployed in Storm for an execution plan with the one built for its new version. Components
+ * are compared by their serialized objects, inputs and configuration, leaving out the parallelism hint, so that a new
+ * version which only changes parallelism can be applied by rebalancing the running topology.
+ */
+public class TopologyDiff {
+    private final Set<String> changedComponents = new TreeSet<String>();
+    private final Map<String, Integer> parallelism = new HashMap<String, Integer>();
+    private final Map<String, Integer> taskCounts = new HashMap<String, Integer>();
+
+    public TopologyDiff(StormTopology deployed, StormTopology updated) {
+        Map<String, Object> deployedComponents = getComponents(deployed.deepCopy());
+        Map<String, Object> updatedComponents = getComponents(updated.deepCopy());
+
+        Set<String> names = new HashSet<String>(deployedComponents.keySet());
+        names.addAll(updatedComponents.keySet());
+        for (String name : names) {
+            Object deployedComponent = deployedComponents.get(name);
+            Object updatedComponent = updatedComponents.get(name);
+            if (deployedComponent == null || updatedComponent == null) {
+                changedComponents.add(name);
+                continue;
+            }
+            // Storm creates as many tasks as the parallelism hint a component is submitted with
+            taskCounts.put(name, removeParallelismHint(deployedComponent));
+            parallelism.put(name, removeParallelismHint(updatedComponent));
+            if (!deployedComponent.equals(updatedComponent)) {
+                changedComponents.add(name);
+            }
+        }
+    }
+
+    /**
+     * @return names of the components added, removed or changed other than in their parallelism
+     */
+    public Set<String> getChangedComponents() {
+        return changedComponents;
+    }
+
+    /**
+     * @return parallelism hints of the new version, of the components present in both versions
+     */
+    public Map<String, Integer> getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return whether the running topology can take the new version by changing the number of executors of its
+     * components, which cannot exceed their number of tasks
+     */
+    public boolean isRebalanceable() {
+        if (!changedComponents.isEmpty()) {
+            return false;
+        }
+        for (Map.Entry<String, Integer> entry : parallelism.entrySet()) {
+            if (entry.getValue() > taskCounts.get(entry.getKey())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, Object> getComponents(StormTopology topology) {
+        Map<String, Object> components = new HashMap<String, Object>();
+        if (topology.get_spouts() != null) {
+            components.putAll(topology.get_spouts());
+        }
+        if (topology.get_bolts() != null) {
+            components.putAll(topology.get_bolts());
+        }
+        if (topology.get_state_spouts() != null) {
+            components.putAll(topology.get_state_spouts());
+        }
+        return components;
+    }
+
+    /**
+     * Clears the parallelism hint of the component, so that components are compared without it.
+     *
+     * @return the parallelism hint the component had
+     */
+    private static int removeParallelismHint(Object component) {
+        ComponentCommon common;
+        if (component instanceof SpoutSpec) {
+            common = ((SpoutSpec) component).get_common();
+        } else if (component instanceof Bolt) {
+            common = ((Bolt) component).get_common();
+        } else {
+            common = ((StateSpoutSpec) component).get_common();
+        }
+        int parallelismHint = common.is_set_parallelism_hint() ? common.get_parallelism_hint() : 1;
+        common.unset_parallelism_hint();
+        return parallelismHint;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.event.processor.core.internal.storm;
+
+import backtype.storm.Config;
+import backtype.storm.StormSubmitter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+/**
+ * Uploads the topology jar to Nimbus once and reuses the uploaded location for the topologies submitted afterwards,
+ * instead of uploading the same jar with every topology. Uploads are keyed by the SHA-256 hash of the jar content, so
+ * a replaced jar is uploaded again. Nimbus deletes uploaded jars from its inbox after nimbus.inbox.jar.expiration.secs,
+ * hence an upload is only reused for half of that period.
+ */
+public class TopologyJarCache {
+    private static final int DEFAULT_INBOX_JAR_EXPIRATION_SECS = 3600;
+
+    private final Map stormConfig;
+    private final String jarLocation;
+    private final long reuseMillis;
+    private long hashedLength = -1;
+    private long hashedLastModified = -1;
+    private String hash;
+    private String uploadedHash;
+    private String uploadedLocation;
+    private long uploadTime;
+
+    public TopologyJarCache(Map stormConfig, String jarLocation) {
+        this.stormConfig = stormConfig;
+        this.jarLocation = jarLocation;
+        Object expirationSecs = (stormConfig != null) ? stormConfig.get(Config.NIMBUS_INBOX_JAR_EXPIRATION_SECS) : null;
+        this.reuseMillis = ((expirationSecs instanceof Number) ? ((Number) expirationSecs).longValue() :
+                DEFAULT_INBOX_JAR_EXPIRATION_SECS) * 1000 / 2;
+    }
+
+    /**
+     * Returns the location of the jar on Nimbus, uploading it if it was not uploaded recently. Concurrent callers wait
+     * for a single upload.
+     *
+     * @return location of the uploaded jar, to be given when submitting a topology
+     * @throws IOException if the jar can not be read
+     */
+    public synchronized String getUploadedJarLocation() throws IOException {
+        String jarHash = getJarHash();
+        long now = System.currentTimeMillis();
+        if (uploadedLocation == null || !jarHash.equals(uploadedHash) || now - uploadTime > reuseMillis) {
+            uploadedLocation = StormSubmitter.submitJar(stormConfig, jarLocation);
+            uploadedHash = jarHash;
+            uploadTime = now;
+        }
+        return uploadedLocation;
+    }
+
+    /**
+     * Forgets an uploaded jar, after Nimbus failed to use it for a topology.
+     */
+    public synchronized void invalidate(String uploadedJarLocation) {
+        if (uploadedJarLocation.equals(uploadedLocation)) {
+            uploadedLocation = null;
+        }
+    }
+
+    /**
+     * Hashes the jar again only if its length or modification time changed.
+     */
+    private String getJarHash() throws IOException {
+        File jar = new File(jarLocation);
+        if (hash == null || jar.length() != hashedLength || jar.lastModified() != hashedLastModified) {
+            hashedLength = jar.length();
+            hashedLastModified = jar.lastModified();
+            hash = hash(jar);
+        }
+        return hash;
+    }
+
+    private static String hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Cannot hash topology jar " + file, e);
+        }
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            inputStream.close();
+        }
+        StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest()) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+}
@@ -36,6 +36,20 @@ public class SiddhiQLStormQuerySplitter extends SiddhiQLBaseVisitor {
 
 
     public static List<String> split(String source) {
+        return split(parse(source));
+    }
+
+    public static List<String> getEventTableList(String source) {
+        return getEventTableList(parse(source));
+    }
+
+    /**
+     * Parses the execution plan once, so that the tree can be visited by both the splitter and the Siddhi compiler.
+     *
+     * @param source execution plan
+     * @return parse tree of the execution plan
+     */
+    public static ParseTree parse(String source) {
         ANTLRInputStream input = new ANTLRInputStream(source);
         SiddhiQLLexer lexer = new SiddhiQLLexer(input);
         lexer.removeErrorListeners();
@@ -45,27 +59,16 @@ public class SiddhiQLStormQuerySplitter extends SiddhiQLBaseVisitor {
         SiddhiQLParser parser = new SiddhiQLParser(tokens);
         parser.removeErrorListeners();
         parser.addErrorListener(SiddhiErrorListener.INSTANCE);
-        ParseTree tree = parser.parse();
+        return parser.parse();
+    }
 
+    public static List<String> split(ParseTree tree) {
         SiddhiQLVisitor eval = new SiddhiQLStormQuerySplitter();
         List<String> queryList = (List<String>) eval.visit(tree);
         return queryList;
     }
 
-
-
-    public static List<String> getEventTableList(String source) {
-        ANTLRInputStream input = new ANTLRInputStream(source);
-        SiddhiQLLexer lexer = new SiddhiQLLexer(input);
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(SiddhiErrorListener.INSTANCE);
-
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        SiddhiQLParser parser = new SiddhiQLParser(tokens);
-        parser.removeErrorListeners();
-        parser.addErrorListener(SiddhiErrorListener.INSTANCE);
-        ParseTree tree = parser.parse();
-
+    public static List<String> getEventTableList(ParseTree tree) {
         SiddhiQLVisitor eval = new SiddhiQLStormQuerySplitter();
         List<String> eventTableList = new ArrayList<>();
         SiddhiQLParser.Execution_planContext ctx = (((SiddhiQLParser.ParseContext)tree).execution_plan());
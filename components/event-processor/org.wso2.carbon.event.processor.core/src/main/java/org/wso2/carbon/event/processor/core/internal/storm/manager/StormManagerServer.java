@@ -22,10 +22,14 @@ import com.hazelcast.core.IMap;
 import org.apache.log4j.Logger;
 import org.apache.thrift.server.TServer;
 import org.apache.thrift.server.TThreadPoolServer;
+import org.apache.thrift.server.TThreadedSelectorServer;
+import org.apache.thrift.transport.TNonblockingServerSocket;
 import org.apache.thrift.transport.TServerSocket;
 import org.apache.thrift.transport.TTransportException;
 import org.wso2.carbon.event.processor.common.storm.manager.service.StormManagerService;
+import org.wso2.carbon.event.processor.common.util.DistributedProperties;
 import org.wso2.carbon.event.processor.core.internal.ds.EventProcessorValueHolder;
+import org.wso2.carbon.event.processor.core.internal.storm.StormTopologyManager;
 
 import java.net.InetSocketAddress;
 import java.util.concurrent.Future;
@@ -39,7 +43,7 @@ public class StormManagerServer {
     private static final String STORM_ROLE_TO_MEMBERSHIP_HZ_MAP = "storm.role.membership.hazelcast.map";
 
     private static Logger log = Logger.getLogger(StormManagerServer.class);
-    private TThreadPoolServer stormManagerServer;
+    private TServer stormManagerServer;
     private StormManagerServiceImpl stormManagerService;
     private IMap<String, String> roleToMembershipMap;
     HazelcastInstance hazelcastInstance;
@@ -51,12 +55,26 @@ public class StormManagerServer {
 
         try {
             stormManagerService = new StormManagerServiceImpl(hostName + ":" + port);
-            TServerSocket serverTransport = new TServerSocket(
-                    new InetSocketAddress(hostName, port));
             StormManagerService.Processor<StormManagerServiceImpl> processor =
                     new StormManagerService.Processor<StormManagerServiceImpl>(stormManagerService);
-            stormManagerServer = new TThreadPoolServer(
-                    new TThreadPoolServer.Args(serverTransport).processor(processor));
+            if (DistributedProperties.getBoolean(DistributedProperties.MANAGER_FRAMED_TRANSPORT,
+                    DistributedProperties.DEFAULT_MANAGER_FRAMED_TRANSPORT)) {
+                // Connections are multiplexed over a few selector threads, so idle worker connections do not pin
+                // a thread each
+                TNonblockingServerSocket serverTransport = new TNonblockingServerSocket(
+                        new InetSocketAddress(hostName, port));
+                stormManagerServer = new TThreadedSelectorServer(new TThreadedSelectorServer.Args(serverTransport)
+                        .selectorThreads(DistributedProperties.getInt(DistributedProperties.MANAGER_SELECTOR_THREADS,
+                                DistributedProperties.DEFAULT_MANAGER_SELECTOR_THREADS))
+                        .workerThreads(DistributedProperties.getInt(DistributedProperties.MANAGER_WORKER_THREADS,
+                                DistributedProperties.DEFAULT_MANAGER_WORKER_THREADS))
+                        .processor(processor));
+            } else {
+                TServerSocket serverTransport = new TServerSocket(
+                        new InetSocketAddress(hostName, port));
+                stormManagerServer = new TThreadPoolServer(
+                        new TThreadPoolServer.Args(serverTransport).processor(processor));
+            }
             Thread thread = new Thread(new ServerThread(stormManagerServer));
             thread.start();
 
@@ -139,6 +157,10 @@ public class StormManagerServer {
                     if (roleToMembershipMap != null){
                         roleToMembershipMap.put(STORM_HZ_MAP_ACTIVE_MANAGER_KEY, myHazelcastId);
                     }
+                    StormTopologyManager stormTopologyManager = EventProcessorValueHolder.getStormTopologyManager();
+                    if (stormTopologyManager != null) {
+                        stormTopologyManager.recoverPendingKills();
+                    }
                 }
             }
         }
@@ -22,16 +22,35 @@ import org.wso2.carbon.event.processor.common.storm.manager.service.StormManager
 import org.wso2.carbon.event.processor.common.storm.manager.service.exception.EndpointNotFoundException;
 import org.wso2.carbon.event.processor.common.storm.manager.service.exception.NotStormCoordinatorException;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Keeps the Storm receivers and CEP publishers registered by the workers. Endpoints of an execution plan are kept as
+ * an immutable array which is replaced on registration of a new endpoint, so the frequent heartbeats and lookups do
+ * not take any lock. Endpoints are selected by the power of two choices over their load, which combines the
+ * recently assigned connections with the queue depth, throughput and CPU load reported with the heartbeats.
+ */
 public class StormManagerServiceImpl implements StormManagerService.Iface {
     private static  Logger log = Logger.getLogger(StormManagerServiceImpl.class);
     public static final long MILLISECONDS_PER_MINUTE = 60000;
-    private ConcurrentHashMap<String, Set<Endpoint>> stormReceivers = new ConcurrentHashMap<String, Set<Endpoint>>();
-    private ConcurrentHashMap<String, Set<Endpoint>> cepPublishers = new ConcurrentHashMap<String, Set<Endpoint>>();
-    private boolean isStormCoordinator;
+    private static final Endpoint[] NO_ENDPOINTS = new Endpoint[0];
+    /**
+     * Time in milliseconds for the weight of an assigned connection to halve
+     */
+    private static final long ASSIGNMENT_HALF_LIFE = 5 * MILLISECONDS_PER_MINUTE;
+    /**
+     * Reported load weighed as the equivalent of one assigned connection
+     */
+    private static final double QUEUE_DEPTH_PER_ASSIGNMENT = 1000;
+    private static final double EVENTS_PER_SECOND_PER_ASSIGNMENT = 10000;
+    private static final double CPU_LOAD_PER_ASSIGNMENT = 0.25;
+    private ConcurrentHashMap<String, Endpoint[]> stormReceivers = new ConcurrentHashMap<String, Endpoint[]>();
+    private ConcurrentHashMap<String, Endpoint[]> cepPublishers = new ConcurrentHashMap<String, Endpoint[]>();
+    private volatile boolean isStormCoordinator;
     private String hostPort;
 
     public StormManagerServiceImpl(String hostPort) {
@@ -39,28 +58,32 @@ public class StormManagerServiceImpl implements StormManagerService.Iface {
     }
 
     @Override
-    public void registerStormReceiver(int tenantId, String executionPlanName, String hostName, int port) throws NotStormCoordinatorException, TException {
+    public void registerStormReceiver(int tenantId, String executionPlanName, String hostName, int port, long queueDepth,
+                                   double eventsPerSecond, double cpuLoad) throws NotStormCoordinatorException, TException {
         if (!isStormCoordinator) {
             throw new NotStormCoordinatorException(hostPort + " not a storm coordinator");
         }
-        insertToCollection(stormReceivers, constructKey(tenantId, executionPlanName), new Endpoint(port, hostName));
+        insertToCollection(stormReceivers, constructKey(tenantId, executionPlanName), hostName, port, queueDepth,
+                eventsPerSecond, cpuLoad);
     }
 
     @Override
-    public void registerCEPPublisher(int tenantId, String executionPlanName, String hostName, int port) throws NotStormCoordinatorException, TException {
+    public void registerCEPPublisher(int tenantId, String executionPlanName, String hostName, int port, long queueDepth,
+                                     double eventsPerSecond, double cpuLoad) throws NotStormCoordinatorException, TException {
         if (!isStormCoordinator) {
             throw new NotStormCoordinatorException(hostPort + " not a storm coordinator");
         }
-        insertToCollection(cepPublishers, constructKey(tenantId, executionPlanName), new Endpoint(port, hostName));
+        insertToCollection(cepPublishers, constructKey(tenantId, executionPlanName), hostName, port, queueDepth,
+                eventsPerSecond, cpuLoad);
     }
 
     @Override
-    public synchronized String getStormReceiver(int tenantId, String executionPlanName, String cepReceiverHostName) throws NotStormCoordinatorException, EndpointNotFoundException, TException {
+    public String getStormReceiver(int tenantId, String executionPlanName, String cepReceiverHostName) throws NotStormCoordinatorException, EndpointNotFoundException, TException {
         if (!isStormCoordinator) {
             throw new NotStormCoordinatorException(hostPort + " not a storm coordinator");
         }
-        Set<Endpoint> endpointSet = stormReceivers.get(constructKey(tenantId, executionPlanName));
-        Endpoint selectedEndpoint = getEndpoint(endpointSet, cepReceiverHostName);
+        Endpoint[] endpoints = stormReceivers.get(constructKey(tenantId, executionPlanName));
+        Endpoint selectedEndpoint = getEndpoint(endpoints, cepReceiverHostName);
 
         if (null != selectedEndpoint) {
             return selectedEndpoint.getHostName() + ":" + selectedEndpoint.getPort();
@@ -71,12 +94,12 @@ public class StormManagerServiceImpl implements StormManagerService.Iface {
     }
 
     @Override
-    public synchronized String getCEPPublisher(int tenantId, String executionPlanName, String stormPublisherHostName) throws NotStormCoordinatorException, EndpointNotFoundException, TException {
+    public String getCEPPublisher(int tenantId, String executionPlanName, String stormPublisherHostName) throws NotStormCoordinatorException, EndpointNotFoundException, TException {
         if (!isStormCoordinator) {
             throw new NotStormCoordinatorException(hostPort + " not a storm coordinator");
         }
-        Set<Endpoint> endpointSet = cepPublishers.get(constructKey(tenantId, executionPlanName));
-        Endpoint selectedEndpoint = getEndpoint(endpointSet, stormPublisherHostName);
+        Endpoint[] endpoints = cepPublishers.get(constructKey(tenantId, executionPlanName));
+        Endpoint selectedEndpoint = getEndpoint(endpoints, stormPublisherHostName);
 
         if (null != selectedEndpoint) {
             return selectedEndpoint.getHostName() + ":" + selectedEndpoint.getPort();
@@ -85,85 +108,100 @@ public class StormManagerServiceImpl implements StormManagerService.Iface {
         }
     }
 
-    public synchronized void deleteExecPlanEndpoints(int tenantId, String executionPlanName){
-        Set<Endpoint> endpointSet = cepPublishers.get(constructKey(tenantId, executionPlanName));
-        if (endpointSet != null){
-            cepPublishers.remove(constructKey(tenantId, executionPlanName));
-        }
-
-        endpointSet = stormReceivers.get(constructKey(tenantId, executionPlanName));
-        if (endpointSet != null){
-            stormReceivers.remove(constructKey(tenantId, executionPlanName));
-        }
+    public void deleteExecPlanEndpoints(int tenantId, String executionPlanName){
+        cepPublishers.remove(constructKey(tenantId, executionPlanName));
+        stormReceivers.remove(constructKey(tenantId, executionPlanName));
 
         log.info("Removed all end point details related to '" + constructKey(tenantId, executionPlanName) + "' from Manager service.");
     }
 
-    private synchronized Endpoint getEndpoint(Set<Endpoint> endpointSet, String requesterIp) {
+    private Endpoint getEndpoint(Endpoint[] endpoints, String requesterIp) {
         Endpoint selectedEndpoint = null;
 
-        Set<Endpoint> sameHostEndpoints = new HashSet<Endpoint>();
-        if (endpointSet != null && !endpointSet.isEmpty()) {
-
+        if (endpoints != null && endpoints.length > 0) {
+            // If  there's a storm receivers/cep publishers in the same host as requester IP select among them
             if (!"".equals(requesterIp)) {
-                for (Endpoint endpoint : endpointSet) {
-                    if (endpoint.getHostName().equals(requesterIp)) {
-                        sameHostEndpoints.add(endpoint);
-                    }
-                }
+                selectedEndpoint = selectEndpoint(endpoints, requesterIp);
             }
-
-            // If  there's a storm receivers/cep publishers in the same host as requester IP select among them
-            if (!sameHostEndpoints.isEmpty()) {
-                selectedEndpoint = selectEndpoint(sameHostEndpoints);
-            }else{
-                selectedEndpoint = selectEndpoint(endpointSet);
+            if (selectedEndpoint == null) {
+                selectedEndpoint = selectEndpoint(endpoints, null);
             }
 
             if (selectedEndpoint != null) {
-                selectedEndpoint.setConnectionCount(selectedEndpoint.getConnectionCount() + 1);
+                selectedEndpoint.addAssignment();
             }
         }
         return selectedEndpoint;
     }
 
-    private synchronized Endpoint selectEndpoint(Set<Endpoint> endpointSet) {
-        Endpoint selectedEndpoint = null;
-        int minConnectionCount = Integer.MAX_VALUE;
-        for (Endpoint endpoint : endpointSet) {
-            if (endpoint.getConnectionCount() < minConnectionCount){
-                if (endpoint.getLastRegisterTimestamp() >= (System.currentTimeMillis() - MILLISECONDS_PER_MINUTE)){
-                    minConnectionCount = endpoint.getConnectionCount();
-                    selectedEndpoint = endpoint;
-                }else{
-
-                    log.warn("Ignoring endpoint " + endpoint.getHostName() + ":" + endpoint.getPort() + " because it has not sent a heart beat for "
-                            + (int) Math.floor((System.currentTimeMillis() - endpoint.getLastRegisterTimestamp()) / MILLISECONDS_PER_MINUTE) + " min(s)");
-                }
+    /**
+     * Selects the less loaded of two random endpoints among the ones which sent a heartbeat within the last minute.
+     * Comparing only two random candidates keeps concurrent lookups, which see the same loads, from all selecting
+     * the single least loaded endpoint.
+     *
+     * @param hostName if not null, only endpoints on this host are considered
+     */
+    private Endpoint selectEndpoint(Endpoint[] endpoints, String hostName) {
+        long now = System.currentTimeMillis();
+        List<Endpoint> candidates = new ArrayList<Endpoint>(endpoints.length);
+        for (Endpoint endpoint : endpoints) {
+            if (hostName != null && !endpoint.getHostName().equals(hostName)) {
+                continue;
+            }
+            if (endpoint.getLastRegisterTimestamp() >= (now - MILLISECONDS_PER_MINUTE)) {
+                candidates.add(endpoint);
+            } else if (hostName == null) {
+                log.warn("Ignoring endpoint " + endpoint.getHostName() + ":" + endpoint.getPort() + " because it has not sent a heart beat for "
+                        + (int) Math.floor((now - endpoint.getLastRegisterTimestamp()) / MILLISECONDS_PER_MINUTE) + " min(s)");
             }
         }
-        return selectedEndpoint;
+
+        switch (candidates.size()) {
+            case 0:
+                return null;
+            case 1:
+                return candidates.get(0);
+            default:
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int first = random.nextInt(candidates.size());
+                int second = random.nextInt(candidates.size() - 1);
+                if (second >= first) {
+                    second++;
+                }
+                Endpoint firstEndpoint = candidates.get(first);
+                Endpoint secondEndpoint = candidates.get(second);
+                return (firstEndpoint.getLoad(now) <= secondEndpoint.getLoad(now)) ? firstEndpoint : secondEndpoint;
+        }
     }
 
-    private static synchronized void insertToCollection(ConcurrentHashMap<String, Set<Endpoint>> collection, String key, Endpoint endpoint) {
-        Set<Endpoint> endpointSet = collection.get(key);
-        boolean isHeartbeat = false;
-
-        if (endpointSet == null) {
-            endpointSet = new HashSet<Endpoint>();
-            collection.put(key, endpointSet);
-        }else{
-            for (Endpoint currentEndpoint : endpointSet){
-                if (currentEndpoint.equals(endpoint)){
-                    isHeartbeat = true;
+    /**
+     * Registers the endpoint or, if already registered, updates its heartbeat timestamp. Only a new endpoint
+     * replaces the endpoint array of the key, which is retried if another registration replaced it concurrently.
+     */
+    private static void insertToCollection(ConcurrentHashMap<String, Endpoint[]> collection, String key,
+                                           String hostName, int port, long queueDepth, double eventsPerSecond,
+                                           double cpuLoad) {
+        while (true) {
+            Endpoint[] endpoints = collection.get(key);
+            Endpoint[] current = (endpoints == null) ? NO_ENDPOINTS : endpoints;
+            for (Endpoint currentEndpoint : current) {
+                if (currentEndpoint.getPort() == port && currentEndpoint.getHostName().equals(hostName)) {
                     currentEndpoint.updateLastRegisteredTimestamp();
-                    break;
+                    currentEndpoint.updateLoad(queueDepth, eventsPerSecond, cpuLoad);
+                    return;
                 }
             }
-        }
 
-        if (!isHeartbeat){
-            endpointSet.add(endpoint);
+            Endpoint[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = new Endpoint(port, hostName);
+            updated[current.length].updateLoad(queueDepth, eventsPerSecond, cpuLoad);
+            if (endpoints == null) {
+                if (collection.putIfAbsent(key, updated) == null) {
+                    return;
+                }
+            } else if (collection.replace(key, endpoints, updated)) {
+                return;
+            }
         }
     }
 
@@ -175,11 +213,15 @@ public class StormManagerServiceImpl implements StormManagerService.Iface {
         this.isStormCoordinator = isStormCoordinator;
     }
 
-    private class Endpoint {
-        private int port;
-        private String hostName;
-        private int connectionCount = 0;
-        private long lastRegisterTimestamp;
+    private static class Endpoint {
+        private final int port;
+        private final String hostName;
+        private volatile long lastRegisterTimestamp;
+        private volatile long queueDepth;
+        private volatile double eventsPerSecond;
+        private volatile double cpuLoad;
+        private double recentAssignments = 0;
+        private long lastAssignmentTimestamp = System.currentTimeMillis();
 
         Endpoint(int port, String hostName) {
             this.port = port;
@@ -201,22 +243,32 @@ public class StormManagerServiceImpl implements StormManagerService.Iface {
             return port;
         }
 
-        public void setConnectionCount(int connections) {
-            connectionCount = connections;
+        public void updateLoad(long queueDepth, double eventsPerSecond, double cpuLoad) {
+            this.queueDepth = queueDepth;
+            this.eventsPerSecond = eventsPerSecond;
+            this.cpuLoad = cpuLoad;
         }
 
-        public int getConnectionCount() {
-            return connectionCount;
+        public synchronized void addAssignment() {
+            long now = System.currentTimeMillis();
+            recentAssignments = getRecentAssignments(now) + 1;
+            lastAssignmentTimestamp = now;
         }
 
-        @Override
-        public boolean equals(Object object){
-            if (object == null || (this.getClass() != object.getClass())){
-                return false;
-            }
-            final Endpoint argument = (Endpoint)object;
+        /**
+         * @return connections assigned to this endpoint, each weighed down exponentially with its age
+         */
+        private synchronized double getRecentAssignments(long now) {
+            long age = Math.max(0, now - lastAssignmentTimestamp);
+            return recentAssignments * Math.pow(0.5, (double) age / ASSIGNMENT_HALF_LIFE);
+        }
 
-            return ((this.hostName.equals(argument.getHostName())) && (this.port == argument.getPort()));
+        /**
+         * @return load in the equivalent of recently assigned connections. Unknown (negative) CPU load is ignored.
+         */
+        public double getLoad(long now) {
+            return getRecentAssignments(now) + queueDepth / QUEUE_DEPTH_PER_ASSIGNMENT +
+                    eventsPerSecond / EVENTS_PER_SECOND_PER_ASSIGNMENT + Math.max(0, cpuLoad) / CPU_LOAD_PER_ASSIGNMENT;
         }
     }
 
@@ -26,6 +26,7 @@ import org.wso2.carbon.event.processor.core.internal.ds.EventProcessorValueHolde
 import org.wso2.carbon.event.processor.core.internal.storm.StormTopologyManager;
 import org.wso2.carbon.event.processor.core.internal.storm.status.monitor.exception.DeploymentStatusMonitorException;
 import org.wso2.carbon.event.processor.core.util.DistributedModeConstants;
+import org.wso2.carbon.event.processor.core.util.ExecutionPlanStatusHolder;
 
 public class StormStatusMapListener {
 
@@ -51,9 +52,9 @@ public class StormStatusMapListener {
         this.executionPlanName = executionPlanName;
         this.tenantId = tenantId;
         String stormTopologyName = StormTopologyManager.getTopologyName(executionPlanName, tenantId);
+        this.stormStatusMonitor = stormStatusMonitor;
         listenerId = hazelcastInstance.getMap(DistributedModeConstants.STORM_STATUS_MAP).
                 addEntryListener(new MapListenerImpl(), stormTopologyName, true);
-        this.stormStatusMonitor = stormStatusMonitor;
     }
 
     /**
@@ -64,7 +65,7 @@ public class StormStatusMapListener {
             log.error("Couldn't unregister entry listener for execution plan: " + executionPlanName +
                       ", for tenant-ID: " + tenantId
                       + " as the hazelcast instance is not available.");
-        } else if (hazelcastInstance.getLifecycleService().isRunning()) {
+        } else if (!hazelcastInstance.getLifecycleService().isRunning()) {
             log.error("Couldn't unregister entry listener for execution plan: " + executionPlanName +
                       ", for tenant-ID: " + tenantId
                       + " as the hazelcast instance is not active.");
@@ -73,19 +74,20 @@ public class StormStatusMapListener {
         }
     }
 
-    private class MapListenerImpl implements EntryAddedListener, EntryUpdatedListener {
+    /**
+     * Passes the new status holder to the monitor, including updates made by this member, since the monitor only
+     * reports its status again when the holder lacks it.
+     */
+    private class MapListenerImpl implements EntryAddedListener<String, ExecutionPlanStatusHolder>,
+            EntryUpdatedListener<String, ExecutionPlanStatusHolder> {
         @Override
-        public void entryAdded(EntryEvent entryEvent) {
-            if (!entryEvent.getMember().localMember()) {
-                stormStatusMonitor.hazelcastListenerCallback();
-            }
+        public void entryAdded(EntryEvent<String, ExecutionPlanStatusHolder> entryEvent) {
+            stormStatusMonitor.hazelcastListenerCallback(entryEvent.getValue());
         }
 
         @Override
-        public void entryUpdated(EntryEvent entryEvent) {
-            if (!entryEvent.getMember().localMember()) {
-                stormStatusMonitor.hazelcastListenerCallback();
-            }
+        public void entryUpdated(EntryEvent<String, ExecutionPlanStatusHolder> entryEvent) {
+            stormStatusMonitor.hazelcastListenerCallback(entryEvent.getValue());
         }
     }
 }
@@ -27,28 +27,49 @@ import org.wso2.carbon.event.processor.core.internal.storm.StormTopologyManager;
 import org.wso2.carbon.event.processor.core.internal.storm.status.monitor.exception.DeploymentStatusMonitorException;
 import org.wso2.carbon.event.processor.core.util.DistributedModeConstants;
 import org.wso2.carbon.event.processor.core.util.ExecutionPlanStatusHolder;
+import org.wso2.carbon.event.processor.core.util.NodeStatusUpdateProcessor;
 import org.wso2.carbon.event.processor.manager.commons.transport.server.ConnectionCallback;
 
 import java.net.SocketException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reports the connections of this node for an execution plan to the ExecutionPlanStatusHolder shared through
+ * hazelcast. Each report carries the full status of this node with an increasing version and is applied in place by
+ * a NodeStatusUpdateProcessor, which drops reports older than the one already applied, so no cluster lock is taken.
+ * The status is reported again when the holder is found without the latest status of this node, and periodically,
+ * from a single thread shared by all monitors.
+ */
 public class StormStatusMonitor implements ConnectionCallback {
 
     private static final Log log = LogFactory.getLog(StormStatusMonitor.class);
 
+    private static final ScheduledExecutorService statusUpdater =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "StormStatusMonitor-StatusUpdater");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
     private final String stormTopologyName;
     private final String executionPlanName;
-    private final String executionPlanStatusHolderKey;
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
-    private final int lockTimeout;
     private final String tenantDomain;
-    private String hostIp = null;
-    private AtomicInteger connectedCepReceiversCount;
+    private final ScheduledFuture<?> statusUpdateTask;
+    private volatile String hostIp = null;
+    private final AtomicInteger connectedCepReceiversCount;
     private int importedStreamsCount = 0;
-    private AtomicInteger connectedPublisherBoltsCount;
+    private final AtomicInteger connectedPublisherBoltsCount;
+    // Starts from the clock, so that the status reported by a restarted node supersedes its earlier status
+    private final AtomicLong statusVersion = new AtomicLong(System.currentTimeMillis() * 1000);
 
     public StormStatusMonitor(int tenantId, String executionPlanName, int importedStreamsCount)
             throws DeploymentStatusMonitorException {
@@ -67,216 +88,68 @@ public class StormStatusMonitor implements ConnectionCallback {
         this.importedStreamsCount = importedStreamsCount;
         this.executionPlanName = executionPlanName;
         this.stormTopologyName = StormTopologyManager.getTopologyName(executionPlanName, tenantId);
-        this.executionPlanStatusHolderKey = DistributedModeConstants.STORM_STATUS_MAP + "." + stormTopologyName;
-        lockTimeout = EventProcessorValueHolder.getStormDeploymentConfiguration().getStatusLockTimeout();
-        executorService.execute(new GlobalStatUpdater());
+        int updateRate = EventProcessorValueHolder.getStormDeploymentConfiguration().getStatusUpdateInterval();
+        statusUpdateTask = statusUpdater.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                updateStatus(statusVersion.get(), "update distributed deployment status");
+            }
+        }, 0, updateRate, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void onCepReceiverConnect() {
-        HazelcastInstance hazelcastInstance = EventProcessorValueHolder.getHazelcastInstance();
-        if (hazelcastInstance != null && hazelcastInstance.getLifecycleService().isRunning()) {
-            IMap<String, ExecutionPlanStatusHolder> executionPlanStatusHolderIMap = hazelcastInstance.getMap(DistributedModeConstants.STORM_STATUS_MAP);
-            try {
-                if (hostIp == null) {
-                    hostIp = HostAddressFinder.findAddress("localhost");
-                }
-                if (executionPlanStatusHolderIMap.tryLock(executionPlanStatusHolderKey, lockTimeout, TimeUnit.MILLISECONDS)) {
-                    try {
-                        ExecutionPlanStatusHolder executionPlanStatusHolder =
-                                executionPlanStatusHolderIMap.get(stormTopologyName);
-                        if (executionPlanStatusHolder == null) {
-                            log.error("Couldn't increment connected CEP receivers count for execution plan: " + executionPlanName +
-                                      ", for tenant-domain: " + tenantDomain
-                                      + " as status object not initialized by manager.");
-                        } else {
-                            executionPlanStatusHolder.setCEPReceiverStatus(hostIp, connectedCepReceiversCount.incrementAndGet(), importedStreamsCount);
-                            executionPlanStatusHolderIMap.replace(stormTopologyName, executionPlanStatusHolder);
-                            if (log.isDebugEnabled()) {
-                                log.debug("Incremented connected CEP receiver count as " + connectedCepReceiversCount.get() +
-                                          " for execution plan: " + executionPlanName + ", for tenant-domain: " + tenantDomain
-                                          + ", for IP address: " + hostIp);
-                            }
-                        }
-                    } finally {
-                        executionPlanStatusHolderIMap.unlock(executionPlanStatusHolderKey);
-                    }
-                } else {
-                    log.error("Couldn't increment connected CEP receivers count for execution plan: " + executionPlanName +
-                              ", for tenant-domain: " + tenantDomain
-                              + " as the hazelcast lock acquisition failed.");
-                }
-            } catch (InterruptedException e) {
-                log.error("Couldn't increment connected CEP receivers count for execution plan: " + executionPlanName +
-                          ", for tenant-domain: " + tenantDomain
-                          + " as the hazelcast lock acquisition was interrupted.", e);
-                Thread.currentThread().interrupt();
-            } catch (SocketException e) {
-                log.error("Couldn't increment connected CEP receivers count for execution plan: " + executionPlanName +
-                          ", for tenant-domain: " + tenantDomain
-                          + " as the host IP couldn't be found for this node.", e);
-            }
-        } else {
-            log.error("Couldn't increment connected CEP receivers count for execution plan: " + executionPlanName +
-                      ", for tenant-domain: " + tenantDomain
-                      + " as the hazelcast instance is not active or not available.");
-        }
+        connectedCepReceiversCount.incrementAndGet();
+        updateStatus(statusVersion.incrementAndGet(), "increment connected CEP receivers count");
     }
 
     @Override
     public void onCepReceiverDisconnect() {
-        HazelcastInstance hazelcastInstance = EventProcessorValueHolder.getHazelcastInstance();
-        if (hazelcastInstance != null && hazelcastInstance.getLifecycleService().isRunning()) {
-            IMap<String, ExecutionPlanStatusHolder> executionPlanStatusHolderIMap = hazelcastInstance.getMap(DistributedModeConstants.STORM_STATUS_MAP);
-            try {
-                if (hostIp == null) {
-                    hostIp = HostAddressFinder.findAddress("localhost");
-                }
-                if (executionPlanStatusHolderIMap.tryLock(executionPlanStatusHolderKey, lockTimeout, TimeUnit.MILLISECONDS)) {
-                    try {
-                        ExecutionPlanStatusHolder executionPlanStatusHolder =
-                                executionPlanStatusHolderIMap.get(stormTopologyName);
-                        if (executionPlanStatusHolder == null) {
-                            log.error("Couldn't decrement connected CEP receivers count for execution plan: " + executionPlanName +
-                                      ", for tenant-domain: " + tenantDomain
-                                      + " as status object not initialized by manager.");
-                        } else {
-                            executionPlanStatusHolder.setCEPReceiverStatus(hostIp, connectedCepReceiversCount.decrementAndGet(), importedStreamsCount);
-                            executionPlanStatusHolderIMap.replace(stormTopologyName, executionPlanStatusHolder);
-                            if (log.isDebugEnabled()) {
-                                log.debug("Decremented connected CEP receiver count as " + connectedCepReceiversCount.get() +
-                                          " for execution plan: " + executionPlanName + ", for tenant-domain: " + tenantDomain
-                                          + ", for IP address: " + hostIp);
-                            }
-                        }
-                    } finally {
-                        executionPlanStatusHolderIMap.unlock(executionPlanStatusHolderKey);
-                    }
-                } else {
-                    log.error("Couldn't decrement connected CEP receivers count for execution plan: " + executionPlanName +
-                              ", for tenant-domain: " + tenantDomain
-                              + " as the hazelcast lock acquisition failed.");
-                }
-            } catch (InterruptedException e) {
-                log.error("Couldn't decrement connected CEP receivers count for execution plan: " + executionPlanName +
-                          ", for tenant-domain: " + tenantDomain
-                          + " as the hazelcast lock acquisition was interrupted.", e);
-                Thread.currentThread().interrupt();
-            } catch (SocketException e) {
-                log.error("Couldn't decrement connected CEP receivers count for execution plan: " + executionPlanName +
-                          ", for tenant-domain: " + tenantDomain
-                          + " as the host IP couldn't be found for this node.", e);
-            }
-        } else {
-            log.error("Couldn't decrement connected CEP receivers count for execution plan: " + executionPlanName +
-                      ", for tenant-domain: " + tenantDomain
-                      + " as the hazelcast instance is not active or not available.");
-        }
+        connectedCepReceiversCount.decrementAndGet();
+        updateStatus(statusVersion.incrementAndGet(), "decrement connected CEP receivers count");
     }
 
     @Override
     public void onPublisherBoltConnect() {
-        HazelcastInstance hazelcastInstance = EventProcessorValueHolder.getHazelcastInstance();
-        if (hazelcastInstance != null && hazelcastInstance.getLifecycleService().isRunning()) {
-            IMap<String, ExecutionPlanStatusHolder> executionPlanStatusHolderIMap = hazelcastInstance.getMap(DistributedModeConstants.STORM_STATUS_MAP);
-            try {
-                if (hostIp == null) {
-                    hostIp = HostAddressFinder.findAddress("localhost");
-                }
-                if (executionPlanStatusHolderIMap.tryLock(executionPlanStatusHolderKey, lockTimeout, TimeUnit.MILLISECONDS)) {
-                    try {
-                        ExecutionPlanStatusHolder executionPlanStatusHolder =
-                                executionPlanStatusHolderIMap.get(stormTopologyName);
-                        if (executionPlanStatusHolder == null) {
-                            log.error("Couldn't increment connected publisher bolts count for execution plan: " + executionPlanName +
-                                      ", for tenant-domain: " + tenantDomain
-                                      + " as status object not initialized by manager.");
-                        } else {
-                            executionPlanStatusHolder.setConnectedPublisherBoltsCount(hostIp, connectedPublisherBoltsCount.incrementAndGet());
-                            executionPlanStatusHolderIMap.replace(stormTopologyName, executionPlanStatusHolder);
-                            if (log.isDebugEnabled()) {
-                                log.debug("Incremented connected publisher bolt count as " + connectedPublisherBoltsCount.get() +
-                                          " for execution plan: " + executionPlanName + ", for tenant-domain: " + tenantDomain
-                                          + ", for IP address: " + hostIp);
-                            }
-                        }
-                    } finally {
-                        executionPlanStatusHolderIMap.unlock(executionPlanStatusHolderKey);
-                    }
-                } else {
-                    log.error("Couldn't increment connected publisher bolts count for execution plan: " + executionPlanName +
-                              ", for tenant-domain: " + tenantDomain
-                              + " as the hazelcast lock acquisition failed.");
-                }
-            } catch (InterruptedException e) {
-                log.error("Couldn't increment connected publisher bolts count for execution plan: " + executionPlanName +
-                          ", for tenant-domain: " + tenantDomain
-                          + " as the hazelcast lock acquisition was interrupted.", e);
-                Thread.currentThread().interrupt();
-            } catch (SocketException e) {
-                log.error("Couldn't increment connected publisher bolts count for execution plan: " + executionPlanName +
-                          ", for tenant-domain: " + tenantDomain
-                          + " as the host IP couldn't be found for this node.", e);
-            }
-        } else {
-            log.error("Couldn't increment connected publisher bolts count for execution plan: " + executionPlanName +
-                      ", for tenant-domain: " + tenantDomain
-                      + " as the hazelcast instance is not active or not available.");
-        }
+        connectedPublisherBoltsCount.incrementAndGet();
+        updateStatus(statusVersion.incrementAndGet(), "increment connected publisher bolts count");
     }
 
     @Override
     public void onPublisherBoltDisconnect() {
-        HazelcastInstance hazelcastInstance = EventProcessorValueHolder.getHazelcastInstance();
-        if (hazelcastInstance != null && hazelcastInstance.getLifecycleService().isRunning()) {
-            IMap<String, ExecutionPlanStatusHolder> executionPlanStatusHolderIMap = hazelcastInstance.getMap(DistributedModeConstants.STORM_STATUS_MAP);
-            try {
-                if (hostIp == null) {
-                    hostIp = HostAddressFinder.findAddress("localhost");
-                }
-                if (executionPlanStatusHolderIMap.tryLock(executionPlanStatusHolderKey, lockTimeout, TimeUnit.MILLISECONDS)) {
-                    try {
-                        ExecutionPlanStatusHolder executionPlanStatusHolder =
-                                executionPlanStatusHolderIMap.get(stormTopologyName);
-                        if (executionPlanStatusHolder == null) {
-                            log.error("Couldn't decrement connected publisher bolts count for execution plan: " + executionPlanName +
-                                      ", for tenant-domain: " + tenantDomain
-                                      + " as status object not initialized by manager.");
-                        } else {
-                            executionPlanStatusHolder.setConnectedPublisherBoltsCount(hostIp, connectedPublisherBoltsCount.decrementAndGet());
-                            executionPlanStatusHolderIMap.replace(stormTopologyName, executionPlanStatusHolder);
-                            if (log.isDebugEnabled()) {
-                                log.debug("Decremented connected publisher bolt count as " + connectedPublisherBoltsCount.get() +
-                                          " for execution plan: " + executionPlanName + ", for tenant-domain: " + tenantDomain
-                                          + ", for IP address: " + hostIp);
-                            }
-                        }
-                    } finally {
-                        executionPlanStatusHolderIMap.unlock(executionPlanStatusHolderKey);
-                    }
-                } else {
-                    log.error("Couldn't decrement connected publisher bolts count for execution plan: " + executionPlanName +
-                              ", for tenant-domain: " + tenantDomain
-                              + " as the hazelcast lock acquisition failed.");
-                }
-            } catch (InterruptedException e) {
-                log.error("Couldn't decrement connected publisher bolts count for execution plan: " + executionPlanName +
-                          ", for tenant-domain: " + tenantDomain
-                          + " as the hazelcast lock acquisition was interrupted.", e);
-                Thread.currentThread().interrupt();
-            } catch (SocketException e) {
-                log.error("Couldn't decrement connected publisher bolts count for execution plan: " + executionPlanName +
-                          ", for tenant-domain: " + tenantDomain
-                          + " as the host IP couldn't be found for this node.", e);
-            }
-        } else {
-            log.error("Couldn't decrement connected publisher bolts count for execution plan: " + executionPlanName +
-                      ", for tenant-domain: " + tenantDomain
-                      + " as the hazelcast instance is not active or not available.");
+        connectedPublisherBoltsCount.decrementAndGet();
+        updateStatus(statusVersion.incrementAndGet(), "decrement connected publisher bolts count");
+    }
+
+    /**
+     * Called with the new value of the status holder when it is added or updated, reporting the status of this node
+     * again if the holder lacks it, e.g. when the manager initialized a new holder.
+     */
+    public void hazelcastListenerCallback(ExecutionPlanStatusHolder executionPlanStatusHolder) {
+        String hostIp = this.hostIp;
+        if (hostIp != null && executionPlanStatusHolder != null
+            && executionPlanStatusHolder.getNodeStatusVersion(hostIp) >= statusVersion.get()) {
+            return;
         }
+        // Not updating from the hazelcast event thread
+        statusUpdater.execute(new Runnable() {
+            @Override
+            public void run() {
+                updateStatus(statusVersion.get(), "update distributed deployment status");
+            }
+        });
+    }
+
+    public void shutdown() {
+        statusUpdateTask.cancel(false);
     }
 
-    public void hazelcastListenerCallback() {
+    /**
+     * Reports the current status of this node as of the given version.
+     *
+     * @param action what the update does, for the log messages
+     */
+    private void updateStatus(long version, String action) {
         HazelcastInstance hazelcastInstance = EventProcessorValueHolder.getHazelcastInstance();
         if (hazelcastInstance != null && hazelcastInstance.getLifecycleService().isRunning()) {
             IMap<String, ExecutionPlanStatusHolder> executionPlanStatusHolderIMap = hazelcastInstance.getMap(DistributedModeConstants.STORM_STATUS_MAP);
@@ -284,139 +157,35 @@ public class StormStatusMonitor implements ConnectionCallback {
                 if (hostIp == null) {
                     hostIp = HostAddressFinder.findAddress("localhost");
                 }
-                if (executionPlanStatusHolderIMap.tryLock(executionPlanStatusHolderKey, lockTimeout, TimeUnit.MILLISECONDS)) {
-                    try {
-                        ExecutionPlanStatusHolder executionPlanStatusHolder =
-                                executionPlanStatusHolderIMap.get(stormTopologyName);
-                        if (executionPlanStatusHolder == null) {
-                            log.error("Couldn't update distributed deployment status for execution plan: " + executionPlanName +
-                                      ", for tenant-domain: " + tenantDomain
-                                      + " as status object not initialized by manager.");
-                        } else {
-                            executionPlanStatusHolder.setCEPReceiverStatus(hostIp, connectedCepReceiversCount.get(), importedStreamsCount);
-                            executionPlanStatusHolder.setConnectedPublisherBoltsCount(hostIp, connectedPublisherBoltsCount.get());
-                            executionPlanStatusHolderIMap.replace(stormTopologyName, executionPlanStatusHolder);
-                            if (log.isDebugEnabled()) {
-                                log.debug("Updated distributed deployment status as follows. " +
-                                          "\nConnected CEP receivers count: " + connectedCepReceiversCount.get() +
-                                          "\nConnected publisher bolts count: " + connectedPublisherBoltsCount.get() +
-                                          "\nfor execution plan: " + executionPlanName + ", for tenant-domain: " + tenantDomain
-                                          + ", for IP address: " + hostIp);
-                            }
-                        }
-                    } finally {
-                        executionPlanStatusHolderIMap.unlock(executionPlanStatusHolderKey);
-                    }
-                } else {
-                    log.error("Couldn't update distributed deployment status for execution plan: " + executionPlanName +
+                int connectedCepReceivers = connectedCepReceiversCount.get();
+                int connectedPublisherBolts = connectedPublisherBoltsCount.get();
+                Object initialized = executionPlanStatusHolderIMap.executeOnKey(stormTopologyName,
+                        new NodeStatusUpdateProcessor(hostIp, version, connectedCepReceivers, importedStreamsCount,
+                                connectedPublisherBolts));
+                if (!Boolean.TRUE.equals(initialized)) {
+                    log.error("Couldn't " + action + " for execution plan: " + executionPlanName +
                               ", for tenant-domain: " + tenantDomain
-                              + " as the hazelcast lock acquisition failed.");
+                              + " as status object not initialized by manager.");
+                } else if (log.isDebugEnabled()) {
+                    log.debug("Updated distributed deployment status as follows. " +
+                              "\nConnected CEP receivers count: " + connectedCepReceivers +
+                              "\nConnected publisher bolts count: " + connectedPublisherBolts +
+                              "\nfor execution plan: " + executionPlanName + ", for tenant-domain: " + tenantDomain
+                              + ", for IP address: " + hostIp);
                 }
-            } catch (InterruptedException e) {
-                log.error("Couldn't update distributed deployment status for execution plan: " + executionPlanName +
-                          ", for tenant-domain: " + tenantDomain
-                          + " as the hazelcast lock acquisition was interrupted.", e);
-                Thread.currentThread().interrupt();
             } catch (SocketException e) {
-                log.error("Couldn't update distributed deployment status for execution plan: " + executionPlanName +
+                log.error("Couldn't " + action + " for execution plan: " + executionPlanName +
                           ", for tenant-domain: " + tenantDomain
                           + " as the host IP couldn't be found for this node.", e);
+            } catch (RuntimeException e) {
+                log.error("Couldn't " + action + " for execution plan: " + executionPlanName +
+                          ", for tenant-domain: " + tenantDomain
+                          + " as the hazelcast update failed.", e);
             }
         } else {
-            log.error("Couldn't update distributed deployment status for execution plan: " + executionPlanName +
+            log.error("Couldn't " + action + " for execution plan: " + executionPlanName +
                       ", for tenant-domain: " + tenantDomain
                       + " as the hazelcast instance is not active or not available.");
         }
     }
-
-    public void shutdown() {
-        executorService.shutdownNow();
-    }
-
-    /**
-     * Updates the ExecutionPlanStatusHolder periodically.
-     */
-    class GlobalStatUpdater implements Runnable {
-
-        private final int updateRate;
-
-        GlobalStatUpdater() {
-            updateRate = EventProcessorValueHolder.getStormDeploymentConfiguration().getStatusUpdateInterval();
-        }
-
-        @Override
-        public void run() {
-            while (true) {
-
-                /**
-                 * Update
-                 */
-                HazelcastInstance hazelcastInstance = EventProcessorValueHolder.getHazelcastInstance();
-                if (hazelcastInstance != null && hazelcastInstance.getLifecycleService().isRunning()) {
-                    IMap<String, ExecutionPlanStatusHolder> executionPlanStatusHolderIMap = hazelcastInstance.getMap(DistributedModeConstants.STORM_STATUS_MAP);
-                    try {
-                        if (hostIp == null) {
-                            hostIp = HostAddressFinder.findAddress("localhost");
-                        }
-                        if (executionPlanStatusHolderIMap.tryLock(executionPlanStatusHolderKey, lockTimeout, TimeUnit.MILLISECONDS)) {
-                            try {
-                                ExecutionPlanStatusHolder executionPlanStatusHolder =
-                                        executionPlanStatusHolderIMap.get(stormTopologyName);
-                                if (executionPlanStatusHolder == null) {
-                                    log.error("Couldn't update distributed deployment status for execution plan: " + executionPlanName +
-                                              ", for tenant-domain: " + tenantDomain
-                                              + " as status object not initialized by manager.");
-                                } else {
-                                    executionPlanStatusHolder.setCEPReceiverStatus(hostIp, connectedCepReceiversCount.get(), importedStreamsCount);
-                                    executionPlanStatusHolder.setConnectedPublisherBoltsCount(hostIp, connectedPublisherBoltsCount.get());
-                                    executionPlanStatusHolderIMap.replace(stormTopologyName, executionPlanStatusHolder);
-                                    if (log.isDebugEnabled()) {
-                                        log.debug("Updated distributed deployment status as follows. " +
-                                                  "\nConnected CEP receivers count: " + connectedCepReceiversCount.get() +
-                                                  "\nConnected publisher bolts count: " + connectedPublisherBoltsCount.get() +
-                                                  "\nfor execution plan: " + executionPlanName + ", for tenant-domain: " + tenantDomain
-                                                  + ", for IP address: " + hostIp);
-                                    }
-                                }
-                            } finally {
-                                executionPlanStatusHolderIMap.unlock(executionPlanStatusHolderKey);
-                            }
-                        } else {
-                            log.error("Couldn't update distributed deployment status for execution plan: " + executionPlanName +
-                                      ", for tenant-domain: " + tenantDomain
-                                      + " as the hazelcast lock acquisition failed.");
-                        }
-                    } catch (InterruptedException e) {
-                        log.error("Couldn't update distributed deployment status for execution plan: " + executionPlanName +
-                                  ", for tenant-domain: " + tenantDomain
-                                  + " as the hazelcast lock acquisition was interrupted.", e);
-                        Thread.currentThread().interrupt();
-                        return;
-                    } catch (SocketException e) {
-                        log.error("Couldn't update distributed deployment status for execution plan: " + executionPlanName +
-                                  ", for tenant-domain: " + tenantDomain
-                                  + " as the host IP couldn't be found for this node.", e);
-                    }
-                } else {
-                    log.error("Couldn't update distributed deployment status for execution plan: " + executionPlanName +
-                              ", for tenant-domain: " + tenantDomain
-                              + " as the hazelcast instance is not active or not available.");
-                }
-
-                /**
-                 * Sleep
-                 */
-                try {
-                    Thread.sleep(updateRate);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    if (log.isDebugEnabled()) {
-                        log.debug("GlobalStatUpdater was interrupted, hence returning. " +
-                                  "Details: execution plan name: " + executionPlanName + ", tenant domain: " + tenantDomain);
-                    }
-                    return;
-                }
-            }
-        }
-    }
 }
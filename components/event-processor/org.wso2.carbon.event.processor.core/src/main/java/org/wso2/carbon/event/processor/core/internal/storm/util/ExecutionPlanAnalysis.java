@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.event.processor.core.internal.storm.util;
+
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.apache.log4j.Logger;
+import org.wso2.carbon.event.processor.common.storm.component.TriggerSpout;
+import org.wso2.carbon.event.processor.core.internal.ds.EventProcessorValueHolder;
+import org.wso2.carbon.event.processor.core.internal.storm.compiler.SiddhiQLStormQuerySplitter;
+import org.wso2.siddhi.core.ExecutionPlanRuntime;
+import org.wso2.siddhi.query.api.ExecutionPlan;
+import org.wso2.siddhi.query.api.definition.AbstractDefinition;
+import org.wso2.siddhi.query.api.definition.Attribute;
+import org.wso2.siddhi.query.api.definition.StreamDefinition;
+import org.wso2.siddhi.query.api.execution.ExecutionElement;
+import org.wso2.siddhi.query.api.execution.partition.Partition;
+import org.wso2.siddhi.query.api.execution.query.Query;
+import org.wso2.siddhi.query.api.execution.query.input.handler.Filter;
+import org.wso2.siddhi.query.api.execution.query.input.handler.StreamHandler;
+import org.wso2.siddhi.query.api.execution.query.input.handler.Window;
+import org.wso2.siddhi.query.api.execution.query.input.stream.InputStream;
+import org.wso2.siddhi.query.api.execution.query.input.stream.JoinInputStream;
+import org.wso2.siddhi.query.api.execution.query.input.stream.SingleInputStream;
+import org.wso2.siddhi.query.api.execution.query.output.stream.InsertIntoStream;
+import org.wso2.siddhi.query.api.execution.query.selection.OutputAttribute;
+import org.wso2.siddhi.query.api.expression.AttributeFunction;
+import org.wso2.siddhi.query.api.expression.Expression;
+import org.wso2.siddhi.query.api.expression.Variable;
+import org.wso2.siddhi.query.api.expression.condition.And;
+import org.wso2.siddhi.query.api.expression.condition.Compare;
+import org.wso2.siddhi.query.api.expression.condition.In;
+import org.wso2.siddhi.query.api.expression.condition.IsNull;
+import org.wso2.siddhi.query.api.expression.condition.Not;
+import org.wso2.siddhi.query.api.expression.condition.Or;
+import org.wso2.siddhi.query.api.expression.constant.BoolConstant;
+import org.wso2.siddhi.query.api.expression.constant.DoubleConstant;
+import org.wso2.siddhi.query.api.expression.constant.FloatConstant;
+import org.wso2.siddhi.query.api.expression.constant.IntConstant;
+import org.wso2.siddhi.query.api.expression.constant.LongConstant;
+import org.wso2.siddhi.query.api.expression.constant.StringConstant;
+import org.wso2.siddhi.query.api.expression.math.Add;
+import org.wso2.siddhi.query.api.expression.math.Divide;
+import org.wso2.siddhi.query.api.expression.math.Mod;
+import org.wso2.siddhi.query.api.expression.math.Multiply;
+import org.wso2.siddhi.query.api.expression.math.Subtract;
+import org.wso2.siddhi.query.compiler.internal.SiddhiQLBaseVisitorImpl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of analysing an execution plan for building its storm query plan. The plan is lexed and parsed once, and
+ * the parse tree is used both to compile the plan and to split it into the strings of its execution elements and
+ * event table definitions. Definitions of streams which are only inferred from the queries inserting into them are
+ * resolved from the query selectors, without creating an execution plan runtime. Only when an output attribute type
+ * can not be inferred, such as for extension functions or pattern queries, a runtime is created once to read them.
+ * Analyses are cached by plan, as the same plan is validated on each edit and analysed again when it is deployed.
+ */
+public class ExecutionPlanAnalysis {
+    private static final Logger log = Logger.getLogger(ExecutionPlanAnalysis.class);
+    private static final int CACHE_SIZE = 16;
+    private static final Map<String, ExecutionPlanAnalysis> cache =
+            Collections.synchronizedMap(new LinkedHashMap<String, ExecutionPlanAnalysis>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ExecutionPlanAnalysis> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    private final String source;
+    private final ExecutionPlan executionPlan;
+    private final List<String> executionElementStrings;
+    private final List<String> eventTableDefinitions;
+    private Map<String, AbstractDefinition> streamDefinitionMap;
+
+    private ExecutionPlanAnalysis(String source) {
+        this.source = source;
+        ParseTree tree = SiddhiQLStormQuerySplitter.parse(source);
+        executionPlan = (ExecutionPlan) new SiddhiQLBaseVisitorImpl().visit(tree);
+        executionElementStrings = Collections.unmodifiableList(SiddhiQLStormQuerySplitter.split(tree));
+        eventTableDefinitions = Collections.unmodifiableList(SiddhiQLStormQuerySplitter.getEventTableList(tree));
+    }
+
+    /**
+     * Returns the analysis of the execution plan, analysing it if it was not analysed recently.
+     *
+     * @param source execution plan
+     * @return analysis of the execution plan
+     */
+    public static ExecutionPlanAnalysis analyze(String source) {
+        ExecutionPlanAnalysis analysis = cache.get(source);
+        if (analysis == null) {
+            analysis = new ExecutionPlanAnalysis(source);
+            cache.put(source, analysis);
+        }
+        return analysis;
+    }
+
+    public ExecutionPlan getExecutionPlan() {
+        return executionPlan;
+    }
+
+    /**
+     * @return strings of the queries and partitions, in the order of the execution elements of the plan
+     */
+    public List<String> getExecutionElementStrings() {
+        return executionElementStrings;
+    }
+
+    public List<String> getEventTableDefinitions() {
+        return eventTableDefinitions;
+    }
+
+    /**
+     * Resolves the stream definitions on first use, as validating a plan only needs it to be compiled.
+     *
+     * @return definitions of the defined, trigger and inferred streams of the plan, by stream id
+     */
+    public synchronized Map<String, AbstractDefinition> getStreamDefinitionMap() {
+        if (streamDefinitionMap == null) {
+            Map<String, AbstractDefinition> definitions = resolveStreamDefinitions(executionPlan);
+            if (definitions == null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Creating runtime to resolve inferred stream definitions of execution plan: " + source);
+                }
+                ExecutionPlanRuntime executionPlanRuntime = EventProcessorValueHolder.getSiddhiManager()
+                        .createExecutionPlanRuntime(source);
+                definitions = new HashMap<String, AbstractDefinition>(executionPlanRuntime.getStreamDefinitionMap());
+                executionPlanRuntime.shutdown();
+            }
+            streamDefinitionMap = Collections.unmodifiableMap(definitions);
+        }
+        return streamDefinitionMap;
+    }
+
+    /**
+     * @return stream definitions by id, or null if an inferred stream could not be resolved
+     */
+    private static Map<String, AbstractDefinition> resolveStreamDefinitions(ExecutionPlan executionPlan) {
+        Map<String, AbstractDefinition> definitions = new HashMap<String, AbstractDefinition>();
+        definitions.putAll(executionPlan.getStreamDefinitionMap());
+        for (String triggerId : executionPlan.getTriggerDefinitionMap().keySet()) {
+            definitions.put(triggerId, StreamDefinition.id(triggerId).attribute(TriggerSpout.TRIGGER_TIME_FIELD_NAME,
+                    Attribute.Type.LONG));
+        }
+        Map<String, AbstractDefinition> tables = new HashMap<String, AbstractDefinition>(
+                executionPlan.getTableDefinitionMap());
+
+        for (ExecutionElement executionElement : executionPlan.getExecutionElementList()) {
+            if (executionElement instanceof Query) {
+                if (!resolveOutputStream((Query) executionElement, definitions, tables, null)) {
+                    return null;
+                }
+            } else {
+                // Inner streams are only visible within their partition
+                Map<String, AbstractDefinition> innerStreams = new HashMap<String, AbstractDefinition>();
+                for (Query query : ((Partition) executionElement).getQueryList()) {
+                    if (!resolveOutputStream(query, definitions, tables, innerStreams)) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return definitions;
+    }
+
+    /**
+     * Adds the definition of the stream the query inserts into, unless it is defined already.
+     *
+     * @return false if the definition could not be resolved
+     */
+    private static boolean resolveOutputStream(Query query, Map<String, AbstractDefinition> definitions,
+                                               Map<String, AbstractDefinition> tables,
+                                               Map<String, AbstractDefinition> innerStreams) {
+        if (!(query.getOutputStream() instanceof InsertIntoStream)) {
+            return true;
+        }
+        String streamId = query.getOutputStream().getId();
+        if (definitions.containsKey(streamId) || tables.containsKey(streamId) ||
+                (innerStreams != null && innerStreams.containsKey(streamId))) {
+            return true;
+        }
+
+        InputStream inputStream = query.getInputStream();
+        List<SingleInputStream> sources = new ArrayList<SingleInputStream>(2);
+        if (inputStream instanceof SingleInputStream) {
+            sources.add((SingleInputStream) inputStream);
+        } else if (inputStream instanceof JoinInputStream) {
+            sources.add(((JoinInputStream) inputStream).getLeftInputStream());
+            sources.add(((JoinInputStream) inputStream).getRightInputStream());
+        } else {
+            return false;
+        }
+        List<AbstractDefinition> sourceDefinitions = new ArrayList<AbstractDefinition>(sources.size());
+        for (SingleInputStream source : sources) {
+            for (StreamHandler streamHandler : source.getStreamHandlers()) {
+                // Stream functions may add attributes
+                if (!(streamHandler instanceof Filter) && !(streamHandler instanceof Window)) {
+                    return false;
+                }
+            }
+            AbstractDefinition definition = definitions.get(source.getStreamId());
+            if (definition == null) {
+                definition = tables.get(source.getStreamId());
+            }
+            if (definition == null && innerStreams != null) {
+                definition = innerStreams.get(source.getStreamId());
+            }
+            if (definition == null) {
+                return false;
+            }
+            sourceDefinitions.add(definition);
+        }
+
+        StreamDefinition streamDefinition = StreamDefinition.id(streamId);
+        List<OutputAttribute> selectionList = query.getSelector().getSelectionList();
+        if (selectionList.isEmpty()) {
+            if (sourceDefinitions.size() > 1) {
+                return false;
+            }
+            for (Attribute attribute : sourceDefinitions.get(0).getAttributeList()) {
+                streamDefinition.attribute(attribute.getName(), attribute.getType());
+            }
+        } else {
+            for (OutputAttribute outputAttribute : selectionList) {
+                Attribute.Type type = getType(outputAttribute.getExpression(), sources, sourceDefinitions);
+                if (type == null || outputAttribute.getRename() == null) {
+                    return false;
+                }
+                streamDefinition.attribute(outputAttribute.getRename(), type);
+            }
+        }
+
+        if (innerStreams != null && streamId.startsWith("#")) {
+            innerStreams.put(streamId, streamDefinition);
+        } else {
+            definitions.put(streamId, streamDefinition);
+        }
+        return true;
+    }
+
+    /**
+     * @return type the expression evaluates to, or null if it can not be inferred
+     */
+    private static Attribute.Type getType(Expression expression, List<SingleInputStream> sources,
+                                          List<AbstractDefinition> sourceDefinitions) {
+        if (expression instanceof Variable) {
+            Variable variable = (Variable) expression;
+            for (int i = 0; i < sources.size(); i++) {
+                String streamId = variable.getStreamId();
+                if (streamId == null || streamId.equals(sources.get(i).getStreamId()) ||
+                        streamId.equals(sources.get(i).getStreamReferenceId())) {
+                    for (Attribute attribute : sourceDefinitions.get(i).getAttributeList()) {
+                        if (attribute.getName().equals(variable.getAttributeName())) {
+                            return attribute.getType();
+                        }
+                    }
+                }
+            }
+            return null;
+        } else if (expression instanceof StringConstant) {
+            return Attribute.Type.STRING;
+        } else if (expression instanceof IntConstant) {
+            return Attribute.Type.INT;
+        } else if (expression instanceof LongConstant) {
+            return Attribute.Type.LONG;
+        } else if (expression instanceof FloatConstant) {
+            return Attribute.Type.FLOAT;
+        } else if (expression instanceof DoubleConstant) {
+            return Attribute.Type.DOUBLE;
+        } else if (expression instanceof BoolConstant || expression instanceof Compare ||
+                expression instanceof And || expression instanceof Or || expression instanceof Not ||
+                expression instanceof IsNull || expression instanceof In) {
+            return Attribute.Type.BOOL;
+        } else if (expression instanceof Add) {
+            return getNumericType(getType(((Add) expression).getLeftValue(), sources, sourceDefinitions),
+                    getType(((Add) expression).getRightValue(), sources, sourceDefinitions));
+        } else if (expression instanceof Subtract) {
+            return getNumericType(getType(((Subtract) expression).getLeftValue(), sources, sourceDefinitions),
+                    getType(((Subtract) expression).getRightValue(), sources, sourceDefinitions));
+        } else if (expression instanceof Multiply) {
+            return getNumericType(getType(((Multiply) expression).getLeftValue(), sources, sourceDefinitions),
+                    getType(((Multiply) expression).getRightValue(), sources, sourceDefinitions));
+        } else if (expression instanceof Divide) {
+            return getNumericType(getType(((Divide) expression).getLeftValue(), sources, sourceDefinitions),
+                    getType(((Divide) expression).getRightValue(), sources, sourceDefinitions));
+        } else if (expression instanceof Mod) {
+            return getNumericType(getType(((Mod) expression).getLeftValue(), sources, sourceDefinitions),
+                    getType(((Mod) expression).getRightValue(), sources, sourceDefinitions));
+        } else if (expression instanceof AttributeFunction) {
+            return getFunctionType((AttributeFunction) expression, sources, sourceDefinitions);
+        }
+        return null;
+    }
+
+    /**
+     * Types of the built-in functions. Extension functions are left to the runtime.
+     */
+    private static Attribute.Type getFunctionType(AttributeFunction function, List<SingleInputStream> sources,
+                                                  List<AbstractDefinition> sourceDefinitions) {
+        if (function.getNamespace() != null && !function.getNamespace().isEmpty()) {
+            return null;
+        }
+        Expression[] parameters = function.getParameters();
+        String name = function.getFunction();
+        if ("count".equals(name) || "distinctCount".equals(name) || "currentTimeMillis".equals(name) ||
+                "eventTimestamp".equals(name)) {
+            return Attribute.Type.LONG;
+        } else if ("avg".equals(name) || "stdDev".equals(name)) {
+            return Attribute.Type.DOUBLE;
+        } else if ("UUID".equals(name)) {
+            return Attribute.Type.STRING;
+        } else if (name.startsWith("instanceOf")) {
+            return Attribute.Type.BOOL;
+        } else if (parameters == null || parameters.length == 0) {
+            return null;
+        } else if ("sum".equals(name)) {
+            Attribute.Type type = getType(parameters[0], sources, sourceDefinitions);
+            if (type == Attribute.Type.INT || type == Attribute.Type.LONG) {
+                return Attribute.Type.LONG;
+            } else if (type == Attribute.Type.FLOAT || type == Attribute.Type.DOUBLE) {
+                return Attribute.Type.DOUBLE;
+            }
+            return null;
+        } else if ("max".equals(name) || "min".equals(name) || "maxForever".equals(name) ||
+                "minForever".equals(name) || "coalesce".equals(name)) {
+            return getType(parameters[0], sources, sourceDefinitions);
+        } else if ("ifThenElse".equals(name) && parameters.length == 3) {
+            return getType(parameters[1], sources, sourceDefinitions);
+        } else if (("convert".equals(name) || "cast".equals(name)) && parameters.length == 2 &&
+                parameters[1] instanceof StringConstant) {
+            try {
+                return Attribute.Type.valueOf(((StringConstant) parameters[1]).getValue().trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return type of an arithmetic expression on the given types, the wider of both
+     */
+    private static Attribute.Type getNumericType(Attribute.Type left, Attribute.Type right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        Attribute.Type[] widening = {Attribute.Type.INT, Attribute.Type.LONG, Attribute.Type.FLOAT,
+                Attribute.Type.DOUBLE};
+        int leftIndex = -1;
+        int rightIndex = -1;
+        for (int i = 0; i < widening.length; i++) {
+            if (widening[i] == left) {
+                leftIndex = i;
+            }
+            if (widening[i] == right) {
+                rightIndex = i;
+            }
+        }
+        if (leftIndex < 0 || rightIndex < 0) {
+            return null;
+        }
+        return widening[Math.max(leftIndex, rightIndex)];
+    }
+}
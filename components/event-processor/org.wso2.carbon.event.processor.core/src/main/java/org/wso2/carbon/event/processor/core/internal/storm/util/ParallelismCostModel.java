@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.event.processor.core.internal.storm.util;
+
+import org.wso2.siddhi.query.api.execution.partition.Partition;
+import org.wso2.siddhi.query.api.execution.query.Query;
+import org.wso2.siddhi.query.api.execution.query.input.handler.Filter;
+import org.wso2.siddhi.query.api.execution.query.input.handler.StreamHandler;
+import org.wso2.siddhi.query.api.execution.query.input.handler.Window;
+import org.wso2.siddhi.query.api.execution.query.input.stream.InputStream;
+import org.wso2.siddhi.query.api.execution.query.input.stream.JoinInputStream;
+import org.wso2.siddhi.query.api.execution.query.input.stream.SingleInputStream;
+import org.wso2.siddhi.query.api.execution.query.input.stream.StateInputStream;
+import org.wso2.siddhi.query.api.execution.query.selection.OutputAttribute;
+import org.wso2.siddhi.query.api.expression.AttributeFunction;
+import org.wso2.siddhi.query.api.expression.Expression;
+import org.wso2.siddhi.query.api.expression.constant.IntConstant;
+import org.wso2.siddhi.query.api.expression.constant.LongConstant;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimates the work of each component of a storm query plan from the structure of its queries and an expected rate
+ * of events on each imported stream, and recommends the parallelism needed to keep each task within a capacity.
+ * The work of a query is estimated in cost units per event: passing an event costs one unit, filters, projections and
+ * aggregations a fraction of a unit, windows grow with the logarithm of the events they hold, joins with the events of
+ * the window they probe and patterns with the number of their states. Each filter is assumed to pass half of the events,
+ * which sets the rates of the streams consumed by later components.
+ */
+public class ParallelismCostModel {
+    private static final double EVENT_COST = 1;
+    private static final double FILTER_COST = 0.5;
+    private static final double FILTER_SELECTIVITY = 0.5;
+    private static final double SELECTOR_COST = 0.5;
+    private static final double AGGREGATION_COST = 0.5;
+    private static final double GROUP_BY_COST = 1;
+    private static final double STREAM_FUNCTION_COST = 1;
+    private static final double STATE_COST = 2;
+    private static final double PATTERN_SELECTIVITY = 0.1;
+    private static final double UNKNOWN_WINDOW_EVENTS = 1000;
+    private static final double MAX_JOIN_PROBE_COST = 10000;
+    /**
+     * Receiving an event involves decoding it from the connection and emitting it, publishing encoding and sending
+     */
+    private static final double TRANSPORT_COST = 2;
+    /**
+     * Rate of streams which are neither imported nor produced by a query, such as trigger streams
+     */
+    private static final double DEFAULT_STREAM_RATE = 1;
+
+    private final double inputRate;
+    private final double taskCapacity;
+    private final int maxParallelism;
+    private final Map<String, Double> streamRates = new HashMap<String, Double>();
+    private final Map<String, Estimate> estimates = new LinkedHashMap<String, Estimate>();
+    private Estimate receiverEstimate;
+    private Estimate publisherEstimate;
+
+    /**
+     * @param inputRate      expected events per second on each imported stream
+     * @param taskCapacity   cost units a single task processes per second
+     * @param maxParallelism upper bound of recommended parallelism
+     */
+    public ParallelismCostModel(double inputRate, double taskCapacity, int maxParallelism) {
+        this.inputRate = inputRate;
+        this.taskCapacity = taskCapacity;
+        this.maxParallelism = Math.max(1, maxParallelism);
+    }
+
+    /**
+     * Estimates the query groups in the order in which events flow through them, starting from the imported streams.
+     *
+     * @return estimates by group id
+     */
+    public Map<String, Estimate> estimate(Map<String, QueryGroupInfoHolder> groupIdToQueryMap,
+                                          Set<String> importedStreamIds, Set<String> exportedStreamIds) {
+        double importedRate = 0;
+        for (String streamId : importedStreamIds) {
+            streamRates.put(streamId, inputRate);
+            importedRate += inputRate;
+        }
+        receiverEstimate = createEstimate(importedRate, TRANSPORT_COST, false);
+
+        List<QueryGroupInfoHolder> remaining = new ArrayList<QueryGroupInfoHolder>(groupIdToQueryMap.values());
+        while (!remaining.isEmpty()) {
+            QueryGroupInfoHolder next = null;
+            for (QueryGroupInfoHolder group : remaining) {
+                if (streamRates.keySet().containsAll(group.getInputDefinitionIds())) {
+                    next = group;
+                    break;
+                }
+            }
+            // Groups fed by trigger streams or cycles are estimated with the rates known so far
+            if (next == null) {
+                next = remaining.get(0);
+            }
+            remaining.remove(next);
+            estimates.put(next.getGroupId(), estimateGroup(next));
+        }
+
+        double exportedRate = 0;
+        for (String streamId : exportedStreamIds) {
+            exportedRate += getRate(streamId);
+        }
+        publisherEstimate = createEstimate(exportedRate, TRANSPORT_COST, false);
+        return estimates;
+    }
+
+    public Estimate getReceiverEstimate() {
+        return receiverEstimate;
+    }
+
+    public Estimate getPublisherEstimate() {
+        return publisherEstimate;
+    }
+
+    /**
+     * @return a table of the estimated rate, cost and recommended parallelism of each component
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("Parallelism estimate for ").append(inputRate).append(" events/sec per imported stream and ")
+                .append(taskCapacity).append(" cost units/sec per task:");
+        appendReportLine(report, "receiver", receiverEstimate);
+        for (Map.Entry<String, Estimate> entry : estimates.entrySet()) {
+            appendReportLine(report, entry.getKey(), entry.getValue());
+        }
+        appendReportLine(report, "publisher", publisherEstimate);
+        return report.toString();
+    }
+
+    private void appendReportLine(StringBuilder report, String name, Estimate estimate) {
+        if (estimate == null) {
+            return;
+        }
+        report.append("\n  ").append(name).append(": ").append(Math.round(estimate.getInputRate()))
+                .append(" events/sec, ").append(String.format("%.1f", estimate.getCostPerEvent()))
+                .append(" units/event, parallelism ").append(estimate.getParallelism());
+        if (estimate.isOverloaded()) {
+            report.append(" (exceeds the capacity of a single task, consider partitioning)");
+        }
+    }
+
+    private Estimate estimateGroup(QueryGroupInfoHolder group) {
+        double groupInputRate = 0;
+        for (String streamId : group.getInputDefinitionIds()) {
+            groupInputRate += getRate(streamId);
+        }
+        double work = 0;
+        boolean singleTask = false;
+        for (ExecutionElementInfoHolder element : group.getExecutionElements()) {
+            if (element.getExecutionElement() instanceof Query) {
+                work += estimateQuery((Query) element.getExecutionElement());
+                singleTask |= element.getParallelismInfoHolder().getIsEnforced();
+            } else {
+                for (Query query : ((Partition) element.getExecutionElement()).getQueryList()) {
+                    work += estimateQuery(query);
+                }
+            }
+        }
+        double costPerEvent = (groupInputRate > 0) ? work / groupInputRate : EVENT_COST;
+        return createEstimate(groupInputRate, costPerEvent, singleTask);
+    }
+
+    /**
+     * Adds the rate of the output stream of the query and returns its work in cost units per second
+     */
+    private double estimateQuery(Query query) {
+        InputStream inputStream = query.getInputStream();
+        double rate = 0;
+        for (String streamId : inputStream.getUniqueStreamIds()) {
+            rate += getRate(streamId);
+        }
+
+        double cost = EVENT_COST + SELECTOR_COST;
+        double selectivity = 1;
+        if (inputStream instanceof SingleInputStream) {
+            double[] handlerCost = estimateHandlers((SingleInputStream) inputStream, rate);
+            cost += handlerCost[0];
+            selectivity = handlerCost[1];
+        } else if (inputStream instanceof JoinInputStream) {
+            JoinInputStream joinInputStream = (JoinInputStream) inputStream;
+            double leftRate = getRate(joinInputStream.getLeftInputStream().getStreamId());
+            double rightRate = getRate(joinInputStream.getRightInputStream().getStreamId());
+            double[] leftCost = estimateHandlers(joinInputStream.getLeftInputStream(), leftRate);
+            double[] rightCost = estimateHandlers(joinInputStream.getRightInputStream(), rightRate);
+            // Each event probes the window of the other side
+            double leftProbe = Math.min(MAX_JOIN_PROBE_COST, getWindowEvents(joinInputStream.getRightInputStream(),
+                    rightRate));
+            double rightProbe = Math.min(MAX_JOIN_PROBE_COST, getWindowEvents(joinInputStream.getLeftInputStream(),
+                    leftRate));
+            double totalRate = Math.max(leftRate + rightRate, 1);
+            cost += (leftRate * (leftCost[0] + leftProbe) + rightRate * (rightCost[0] + rightProbe)) / totalRate;
+            selectivity = (leftRate * leftCost[1] + rightRate * rightCost[1]) / totalRate;
+        } else if (inputStream instanceof StateInputStream) {
+            cost += STATE_COST * inputStream.getAllStreamIds().size();
+            selectivity = PATTERN_SELECTIVITY;
+        }
+
+        for (OutputAttribute outputAttribute : query.getSelector().getSelectionList()) {
+            if (outputAttribute.getExpression() instanceof AttributeFunction) {
+                cost += AGGREGATION_COST;
+            }
+        }
+        if (!query.getSelector().getGroupByList().isEmpty()) {
+            cost += GROUP_BY_COST;
+        }
+
+        String outputStreamId = query.getOutputStream().getId();
+        Double outputRate = streamRates.get(outputStreamId);
+        streamRates.put(outputStreamId, (outputRate != null ? outputRate : 0) + rate * selectivity);
+        return rate * cost;
+    }
+
+    /**
+     * @return cost per event and selectivity of the filters, windows and functions of the stream
+     */
+    private double[] estimateHandlers(SingleInputStream inputStream, double rate) {
+        double cost = 0;
+        double selectivity = 1;
+        for (StreamHandler streamHandler : inputStream.getStreamHandlers()) {
+            if (streamHandler instanceof Filter) {
+                cost += FILTER_COST;
+                selectivity *= FILTER_SELECTIVITY;
+            } else if (streamHandler instanceof Window) {
+                cost += EVENT_COST + log2(1 + getWindowEvents((Window) streamHandler, rate));
+            } else {
+                cost += STREAM_FUNCTION_COST;
+            }
+        }
+        return new double[]{cost, selectivity};
+    }
+
+    private double getWindowEvents(SingleInputStream inputStream, double rate) {
+        double events = 0;
+        for (StreamHandler streamHandler : inputStream.getStreamHandlers()) {
+            if (streamHandler instanceof Window) {
+                events += getWindowEvents((Window) streamHandler, rate);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Length windows hold the given number of events, windows given a time span hold the events of that span.
+     */
+    private static double getWindowEvents(Window window, double rate) {
+        Expression[] parameters = window.getParameters();
+        if (parameters != null && parameters.length > 0) {
+            if (parameters[0] instanceof IntConstant) {
+                return ((IntConstant) parameters[0]).getValue();
+            } else if (parameters[0] instanceof LongConstant) {
+                // Time constants are longs in milliseconds
+                return rate * ((LongConstant) parameters[0]).getValue() / 1000;
+            }
+        }
+        return UNKNOWN_WINDOW_EVENTS;
+    }
+
+    private double getRate(String streamId) {
+        Double rate = streamRates.get(streamId);
+        return (rate != null) ? rate : DEFAULT_STREAM_RATE;
+    }
+
+    private Estimate createEstimate(double rate, double costPerEvent, boolean singleTask) {
+        double tasks = rate * costPerEvent / taskCapacity;
+        int parallelism = (int) Math.min(maxParallelism, Math.max(1, Math.ceil(tasks)));
+        return new Estimate(rate, costPerEvent, singleTask ? 1 : parallelism, tasks > 1 && singleTask);
+    }
+
+    private static double log2(double value) {
+        return Math.log(value) / Math.log(2);
+    }
+
+    /**
+     * Estimated load of a component of the query plan
+     */
+    public static class Estimate {
+        private final double inputRate;
+        private final double costPerEvent;
+        private final int parallelism;
+        private final boolean overloaded;
+
+        private Estimate(double inputRate, double costPerEvent, int parallelism, boolean overloaded) {
+            this.inputRate = inputRate;
+            this.costPerEvent = costPerEvent;
+            this.parallelism = parallelism;
+            this.overloaded = overloaded;
+        }
+
+        public double getInputRate() {
+            return inputRate;
+        }
+
+        public double getCostPerEvent() {
+            return costPerEvent;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        /**
+         * @return true if the component must run in a single task, which can not keep up with the estimated load
+         */
+        public boolean isOverloaded() {
+            return overloaded;
+        }
+    }
+}
@@ -92,6 +92,26 @@ public class QueryGroupInfoHolder {
         executionElements.add(infoHolder);
     }
 
+    /**
+     * Appends the query group which consumes outputs of this group, so that both run in the same bolt. Streams of
+     * this group consumed by the appended group become inner streams.
+     */
+    public void fuse(QueryGroupInfoHolder consumerGroup) {
+        stringQueries.addAll(consumerGroup.stringQueries);
+        executionElements.addAll(consumerGroup.executionElements);
+        for (String inputDefinitionId : consumerGroup.inputDefinitionIds) {
+            if (!outputDefinitionIds.contains(inputDefinitionId)) {
+                inputDefinitionIds.add(inputDefinitionId);
+            }
+        }
+        outputDefinitionIds.addAll(consumerGroup.outputDefinitionIds);
+        groupId = groupId + "_" + consumerGroup.groupId;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
     public List<String> getStringQueries() {
         return stringQueries;
     }
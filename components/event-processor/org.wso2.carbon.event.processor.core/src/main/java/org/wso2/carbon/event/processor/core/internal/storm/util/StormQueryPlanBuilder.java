@@ -15,25 +15,41 @@
  */
 package org.wso2.carbon.event.processor.core.internal.storm.util;
 
+import org.apache.log4j.Logger;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.wso2.carbon.event.processor.common.util.DistributedProperties;
 import org.wso2.carbon.event.processor.core.ExecutionPlanConfiguration;
 import org.wso2.carbon.event.processor.core.exception.StormQueryConstructionException;
-import org.wso2.carbon.event.processor.core.internal.ds.EventProcessorValueHolder;
-import org.wso2.carbon.event.processor.core.internal.storm.compiler.SiddhiQLStormQuerySplitter;
 import org.wso2.carbon.event.processor.core.internal.util.EventProcessorConstants;
 import org.wso2.carbon.event.processor.core.internal.util.EventProcessorUtil;
 import org.wso2.carbon.event.stream.core.exception.EventStreamConfigurationException;
-import org.wso2.siddhi.core.ExecutionPlanRuntime;
 import org.wso2.siddhi.query.api.ExecutionPlan;
 import org.wso2.siddhi.query.api.annotation.Annotation;
 import org.wso2.siddhi.query.api.definition.AbstractDefinition;
-import org.wso2.siddhi.query.api.definition.StreamDefinition;
 import org.wso2.siddhi.query.api.definition.TriggerDefinition;
 import org.wso2.siddhi.query.api.execution.ExecutionElement;
 import org.wso2.siddhi.query.api.execution.partition.Partition;
 import org.wso2.siddhi.query.api.execution.query.Query;
+import org.wso2.siddhi.query.api.execution.query.input.handler.Filter;
+import org.wso2.siddhi.query.api.execution.query.input.handler.StreamHandler;
 import org.wso2.siddhi.query.api.execution.query.input.stream.BasicSingleInputStream;
+import org.wso2.siddhi.query.api.execution.query.selection.OutputAttribute;
+import org.wso2.siddhi.query.api.execution.query.selection.Selector;
+import org.wso2.siddhi.query.api.expression.AttributeFunction;
+import org.wso2.siddhi.query.api.expression.Expression;
+import org.wso2.siddhi.query.api.expression.Variable;
+import org.wso2.siddhi.query.api.expression.condition.And;
+import org.wso2.siddhi.query.api.expression.condition.Compare;
+import org.wso2.siddhi.query.api.expression.condition.IsNull;
+import org.wso2.siddhi.query.api.expression.condition.Not;
+import org.wso2.siddhi.query.api.expression.condition.Or;
+import org.wso2.siddhi.query.api.expression.constant.Constant;
+import org.wso2.siddhi.query.api.expression.math.Add;
+import org.wso2.siddhi.query.api.expression.math.Divide;
+import org.wso2.siddhi.query.api.expression.math.Mod;
+import org.wso2.siddhi.query.api.expression.math.Multiply;
+import org.wso2.siddhi.query.api.expression.math.Subtract;
 import org.wso2.siddhi.query.compiler.SiddhiCompiler;
 import org.wso2.siddhi.query.compiler.exception.SiddhiParserException;
 
@@ -43,6 +59,12 @@ import javax.xml.parsers.ParserConfigurationException;
 import java.util.*;
 
 public class StormQueryPlanBuilder {
+    private static final Logger log = Logger.getLogger(StormQueryPlanBuilder.class);
+    /**
+     * Built-in functions whose result only depends on the current event
+     */
+    private static final Set<String> SCALAR_FUNCTIONS = new HashSet<String>(Arrays.asList("coalesce", "ifThenElse",
+            "convert", "cast", "UUID", "currentTimeMillis", "eventTimestamp"));
 
     /**
      * Gets Siddhi queries and construct storm query plan which can be used to build a storm topology.
@@ -69,11 +91,30 @@ public class StormQueryPlanBuilder {
             List<Element> triggerProcessorElements;
             Element publisherElement;
 
-            receiverElement = constructReceiverElement(document, configuration.getExecutionPlan(), importStreams);
-            publisherElement = constructPublisherElement(document, configuration.getExecutionPlan(), exportStreams);
-            triggerProcessorElements = constructTriggerElement(document, configuration.getExecutionPlan());
-            processorElements = constructProcessorElement(document, configuration.getExecutionPlan(), importStreams,
-                    exportStreams);
+            ExecutionPlanAnalysis analysis = ExecutionPlanAnalysis.analyze(configuration.getExecutionPlan());
+            List<Annotation> planAnnotations = analysis.getExecutionPlan().getAnnotations();
+            ParallelismCostModel costModel = createCostModel(planAnnotations);
+
+            receiverElement = constructReceiverElement(document, analysis, importStreams);
+            publisherElement = constructPublisherElement(document, analysis, exportStreams);
+            triggerProcessorElements = constructTriggerElement(document, analysis);
+            processorElements = constructProcessorElement(document, analysis, importStreams, exportStreams,
+                    costModel);
+
+            if (costModel != null) {
+                // Lets the receivers size their replay buffers for the expected input rate
+                receiverElement.setAttribute(EventProcessorConstants.INPUT_RATE,
+                        String.valueOf(costModel.getReceiverEstimate().getInputRate()));
+                if (!hasElement(planAnnotations, EventProcessorConstants.RECEIVER_PARALLELISM)) {
+                    receiverElement.setAttribute(EventProcessorConstants.PARALLEL,
+                            String.valueOf(costModel.getReceiverEstimate().getParallelism()));
+                }
+                if (!hasElement(planAnnotations, EventProcessorConstants.PUBLISHER_PARALLELISM)) {
+                    publisherElement.setAttribute(EventProcessorConstants.PARALLEL,
+                            String.valueOf(costModel.getPublisherEstimate().getParallelism()));
+                }
+                log.info("Execution plan '" + configuration.getName() + "': " + costModel.getReport());
+            }
 
 
             rootElement.appendChild(receiverElement);
@@ -97,19 +138,52 @@ public class StormQueryPlanBuilder {
         return document;
     }
 
+    /**
+     * Creates the cost model recommending parallelism when the execution plan declares its expected input rate with
+     * the inputRate element of the plan level @dist annotation.
+     *
+     * @param annotations execution plan annotations
+     * @return the cost model, or null when no input rate is declared
+     * @throws StormQueryConstructionException
+     */
+    private static ParallelismCostModel createCostModel(List<Annotation> annotations)
+            throws StormQueryConstructionException {
+        if (annotations != null) {
+            for (Annotation annotation : annotations) {
+                if (annotation.getName().equals(EventProcessorConstants.DIST)) {
+                    String inputRate = annotation.getElement(EventProcessorConstants.INPUT_RATE);
+                    if (inputRate != null) {
+                        try {
+                            return new ParallelismCostModel(Double.parseDouble(inputRate),
+                                    DistributedProperties.getLong(DistributedProperties.COST_TASK_CAPACITY,
+                                            DistributedProperties.DEFAULT_COST_TASK_CAPACITY),
+                                    DistributedProperties.getInt(DistributedProperties.COST_MAX_PARALLELISM,
+                                            DistributedProperties.DEFAULT_COST_MAX_PARALLELISM));
+                        } catch (NumberFormatException e) {
+                            throw new StormQueryConstructionException("Invalid input rate '" + inputRate + "'. " +
+                                    "Expected number of events per second.", e);
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Create receiver element. Assume that imported streams contains all the receiver elements.
      *
      * @param document
-     * @param queryExpressions
+     * @param analysis
      * @param importedStreams  @return
      * @throws EventStreamConfigurationException
      */
-    private static Element constructReceiverElement(Document document, String queryExpressions, List<String> importedStreams)
+    private static Element constructReceiverElement(Document document, ExecutionPlanAnalysis analysis,
+                                                    List<String> importedStreams)
             throws EventStreamConfigurationException {
         Element receiverElement = document.createElement(EventProcessorConstants.EVENT_RECEIVER);
         receiverElement.setAttribute(EventProcessorConstants.NAME, EventProcessorConstants.EVENT_RECEIVER_SPOUT);
-        ExecutionPlan executionPlan = SiddhiCompiler.parse(queryExpressions);
+        ExecutionPlan executionPlan = analysis.getExecutionPlan();
         receiverElement.setAttribute(EventProcessorConstants.PARALLEL, String.valueOf(getParallelism(executionPlan.getAnnotations(),
                 EventProcessorConstants.RECEIVER_PARALLELISM)));
         Element streams = document.createElement(EventProcessorConstants.STREAMS);
@@ -128,15 +202,22 @@ public class StormQueryPlanBuilder {
      * @return
      * @throws EventStreamConfigurationException
      */
-    private static Element constructPublisherElement(Document document, String queryExpressions, List<String> exportedStreams)
+    private static Element constructPublisherElement(Document document, ExecutionPlanAnalysis analysis,
+                                                     List<String> exportedStreams)
             throws EventStreamConfigurationException {
         Element publisherElement = document.createElement(EventProcessorConstants.EVENT_PUBLISHER);
         Element publisherInputStream = document.createElement(EventProcessorConstants.INPUT_STREAMS);
         Element publisherOutputStream = document.createElement(EventProcessorConstants.OUTPUT_STREAMS);
         publisherElement.setAttribute(EventProcessorConstants.NAME, EventProcessorConstants.EVENT_PUBLISHER_BOLT);
-        ExecutionPlan executionPlan = SiddhiCompiler.parse(queryExpressions);
+        ExecutionPlan executionPlan = analysis.getExecutionPlan();
         publisherElement.setAttribute(EventProcessorConstants.PARALLEL, String.valueOf(getParallelism(executionPlan.getAnnotations(),
                 EventProcessorConstants.PUBLISHER_PARALLELISM)));
+        if (isEnabled(executionPlan.getAnnotations(), EventProcessorConstants.PUBLISHER_COLOCATE)) {
+            publisherElement.setAttribute(EventProcessorConstants.COLOCATE, "true");
+        }
+        if (isSharedPublisherServer(executionPlan.getAnnotations())) {
+            publisherElement.setAttribute(EventProcessorConstants.SHARED_PUBLISHER_SERVER, "true");
+        }
         for (String definition : exportedStreams) {
             Element stream = getStreamElement(document, definition);
             publisherOutputStream.appendChild(stream);
@@ -148,12 +229,10 @@ public class StormQueryPlanBuilder {
         return publisherElement;
     }
 
-    private static List<Element> constructTriggerElement(Document document, String queryExpression) throws StormQueryConstructionException {
-        ExecutionPlanRuntime executionPlanRuntime = EventProcessorValueHolder.getSiddhiManager().createExecutionPlanRuntime(queryExpression);
-        Map<String, AbstractDefinition> streamDefinitionMap = executionPlanRuntime.getStreamDefinitionMap();
-        executionPlanRuntime.shutdown();
-
-        ExecutionPlan executionPlan = SiddhiCompiler.parse(queryExpression);
+    private static List<Element> constructTriggerElement(Document document, ExecutionPlanAnalysis analysis)
+            throws StormQueryConstructionException {
+        Map<String, AbstractDefinition> streamDefinitionMap = analysis.getStreamDefinitionMap();
+        ExecutionPlan executionPlan = analysis.getExecutionPlan();
         List<Element> triggerElementList = new ArrayList<Element>();
 
         for (Map.Entry entry :  executionPlan.getTriggerDefinitionMap().entrySet()){
@@ -182,33 +261,44 @@ public class StormQueryPlanBuilder {
      * in the query string. queryList is used to get the map between query object and query string.
      *
      * @param document
-     * @param queryExpressions user provided query string
+     * @param analysis         analysis of the user provided query string
+     * @param costModel        model recommending the parallelism of groups without a parallelism hint, may be null
      * @return
      */
-    private static List<Element> constructProcessorElement(Document document, String queryExpressions,
-                                                           List<String> importedStreams, List<String> exportedStreams)
+    private static List<Element> constructProcessorElement(Document document, ExecutionPlanAnalysis analysis,
+                                                           List<String> importedStreams, List<String> exportedStreams,
+                                                           ParallelismCostModel costModel)
             throws SiddhiParserException, StormQueryConstructionException {
 
-        ExecutionPlanRuntime executionPlanRuntime = EventProcessorValueHolder.getSiddhiManager().createExecutionPlanRuntime(queryExpressions);
-        Map<String, AbstractDefinition> streamDefinitionMap = executionPlanRuntime.getStreamDefinitionMap();
-        executionPlanRuntime.shutdown();
+        Map<String, AbstractDefinition> streamDefinitionMap = analysis.getStreamDefinitionMap();
 
         List<Element> processorElementList = new ArrayList<Element>();
-        List<String> stringQueryList = SiddhiQLStormQuerySplitter.split(queryExpressions);
-        List<String> eventTableDefinitionList = SiddhiQLStormQuerySplitter.getEventTableList(queryExpressions);
-        ExecutionPlan executionPlan = SiddhiCompiler.parse(queryExpressions);
+        List<String> stringQueryList = analysis.getExecutionElementStrings();
+        List<String> eventTableDefinitionList = analysis.getEventTableDefinitions();
+        ExecutionPlan executionPlan = analysis.getExecutionPlan();
         List<ExecutionElement> executionElements = executionPlan.getExecutionElementList();
         Set<String> eventTableIdSet = executionPlan.getTableDefinitionMap().keySet();
         Map<String, QueryGroupInfoHolder> groupIdToQueryMap = getGroupIdToQueryMap(eventTableIdSet, executionElements,
-                stringQueryList, exportedStreams);
+                stringQueryList, importedStreams, exportedStreams);
+        Map<String, ParallelismCostModel.Estimate> estimates = null;
+        if (costModel != null) {
+            estimates = costModel.estimate(groupIdToQueryMap, getStreamIds(importedStreams),
+                    getStreamIds(exportedStreams));
+        }
 
         for (Map.Entry entry : groupIdToQueryMap.entrySet()) {
             String name = (String) entry.getKey();
             QueryGroupInfoHolder infoHolder = (QueryGroupInfoHolder) entry.getValue();
             ParallelismInfoHolder holder = getParallelismForGroup((String) entry.getKey(),
                     infoHolder.getExecutionElements());
+            if (estimates != null && !holder.getIsEnforced() && !hasParallelism(infoHolder.getExecutionElements())) {
+                holder = new ParallelismInfoHolder(estimates.get(name).getParallelism(), false);
+            }
             Element processor = document.createElement(EventProcessorConstants.EVENT_PROCESSOR_TAG);
             setAttributes(processor, name, holder);
+            if (isColocated(name, infoHolder.getExecutionElements(), holder)) {
+                processor.setAttribute(EventProcessorConstants.COLOCATE, "true");
+            }
 
             //tables
             Element tableDefinitions = document.createElement(EventProcessorConstants.TABLE_DEFINITIONS);
@@ -277,11 +367,13 @@ public class StormQueryPlanBuilder {
      *
      * @param executionElements
      * @param stringQueryList
+     * @param importedStreams
      * @param exportedStreams
      * @return
      */
     private static Map<String, QueryGroupInfoHolder> getGroupIdToQueryMap(Set<String> eventTableIdSet, List<ExecutionElement> executionElements,
                                                                           List<String> stringQueryList,
+                                                                          List<String> importedStreams,
                                                                           List<String> exportedStreams) throws
             StormQueryConstructionException {
         Map<String, QueryGroupInfoHolder> groupIdToQueryMap = new HashMap<String, QueryGroupInfoHolder>();
@@ -327,18 +419,195 @@ public class StormQueryPlanBuilder {
         }
 
         exportedStreams.removeAll(eventTableIdSet);
-        List<String> exportedStreamIds = new ArrayList<String>(exportedStreams.size());
-        for (String definitionString : exportedStreams) {
-            StreamDefinition definition = SiddhiCompiler.parseStreamDefinition(definitionString);
-            exportedStreamIds.add(definition.getId());
+        if (DistributedProperties.getBoolean(DistributedProperties.OPERATOR_FUSION,
+                DistributedProperties.DEFAULT_OPERATOR_FUSION)) {
+            fuseStatelessGroups(groupIdToQueryMap, eventTableIdSet, getStreamIds(importedStreams));
         }
-        removeUnusedStreams(groupIdToQueryMap, exportedStreamIds);
+        removeUnusedStreams(groupIdToQueryMap, new ArrayList<String>(getStreamIds(exportedStreams)));
         return groupIdToQueryMap;
     }
 
+    /**
+     * Fuses linear chains of stateless query groups into single groups, removing the hop between their bolts. A group
+     * is appended to the group producing all its input streams when both only contain filter and projection queries
+     * of the same parallelism and no other group or receiver produces those streams. Events of a stateless group can
+     * be processed by any of its tasks, so the consumer queries can run in the task of the producer queries.
+     *
+     * @param groupIdToQueryMap
+     * @param eventTableIdSet
+     * @param importedStreamIds
+     * @throws StormQueryConstructionException
+     */
+    private static void fuseStatelessGroups(Map<String, QueryGroupInfoHolder> groupIdToQueryMap,
+                                            Set<String> eventTableIdSet, Set<String> importedStreamIds)
+            throws StormQueryConstructionException {
+        boolean fused = true;
+        while (fused) {
+            fused = false;
+            search:
+            for (QueryGroupInfoHolder producer : groupIdToQueryMap.values()) {
+                if (!isStateless(producer, eventTableIdSet)) {
+                    continue;
+                }
+                int parallelism = getParallelismForGroup(producer.getGroupId(), producer.getExecutionElements())
+                        .getParallelism();
+                for (QueryGroupInfoHolder consumer : groupIdToQueryMap.values()) {
+                    if (consumer == producer || consumer.getInputDefinitionIds().isEmpty()
+                            || !isStateless(consumer, eventTableIdSet)
+                            || !producer.getOutputDefinitionIds().containsAll(consumer.getInputDefinitionIds())
+                            || !Collections.disjoint(producer.getInputDefinitionIds(),
+                            consumer.getOutputDefinitionIds())
+                            || getParallelismForGroup(consumer.getGroupId(), consumer.getExecutionElements())
+                            .getParallelism() != parallelism
+                            || hasOtherProducer(consumer, producer, groupIdToQueryMap, importedStreamIds)) {
+                        continue;
+                    }
+                    groupIdToQueryMap.remove(producer.getGroupId());
+                    groupIdToQueryMap.remove(consumer.getGroupId());
+                    producer.fuse(consumer);
+                    groupIdToQueryMap.put(producer.getGroupId(), producer);
+                    fused = true;
+                    break search;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the group only contains filter and projection queries, which do not use event tables
+     */
+    private static boolean isStateless(QueryGroupInfoHolder group, Set<String> eventTableIdSet) {
+        for (ExecutionElementInfoHolder element : group.getExecutionElements()) {
+            if (!(element.getExecutionElement() instanceof Query) ||
+                    element.getParallelismInfoHolder().getIsEnforced() ||
+                    !isStateless((Query) element.getExecutionElement(), eventTableIdSet)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the query only filters and projects events of a stream into a stream, so that each output event
+     * only depends on the current input event
+     */
+    private static boolean isStateless(Query query, Set<String> eventTableIdSet) {
+        if (!(query.getInputStream() instanceof BasicSingleInputStream) || isAggregating(query) ||
+                eventTableIdSet.contains(query.getOutputStream().getId())) {
+            return false;
+        }
+        BasicSingleInputStream inputStream = (BasicSingleInputStream) query.getInputStream();
+        if (eventTableIdSet.contains(inputStream.getStreamId())) {
+            return false;
+        }
+        for (StreamHandler streamHandler : inputStream.getStreamHandlers()) {
+            // Stream functions may keep state
+            if (!(streamHandler instanceof Filter) || !isScalar(((Filter) streamHandler).getFilterExpression())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the query groups events or its selector uses functions other than the scalar built-in ones,
+     * such as aggregations. Extension functions are taken to be aggregations, as they might be.
+     */
+    private static boolean isAggregating(Query query) {
+        Selector selector = query.getSelector();
+        if (selector == null) {
+            return false;
+        }
+        if (selector.getGroupByList() != null && !selector.getGroupByList().isEmpty()) {
+            return true;
+        }
+        if (selector.getHavingExpression() != null && !isScalar(selector.getHavingExpression())) {
+            return true;
+        }
+        for (OutputAttribute outputAttribute : selector.getSelectionList()) {
+            if (!isScalar(outputAttribute.getExpression())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the expression only depends on the current event, which is not the case for aggregations,
+     * extension functions and 'in' conditions looking up event tables
+     */
+    private static boolean isScalar(Expression expression) {
+        if (expression == null || expression instanceof Variable || expression instanceof Constant) {
+            return true;
+        } else if (expression instanceof Compare) {
+            return isScalar(((Compare) expression).getLeftExpression()) &&
+                    isScalar(((Compare) expression).getRightExpression());
+        } else if (expression instanceof And) {
+            return isScalar(((And) expression).getLeftExpression()) &&
+                    isScalar(((And) expression).getRightExpression());
+        } else if (expression instanceof Or) {
+            return isScalar(((Or) expression).getLeftExpression()) &&
+                    isScalar(((Or) expression).getRightExpression());
+        } else if (expression instanceof Not) {
+            return isScalar(((Not) expression).getExpression());
+        } else if (expression instanceof IsNull) {
+            return isScalar(((IsNull) expression).getExpression());
+        } else if (expression instanceof Add) {
+            return isScalar(((Add) expression).getLeftValue()) && isScalar(((Add) expression).getRightValue());
+        } else if (expression instanceof Subtract) {
+            return isScalar(((Subtract) expression).getLeftValue()) &&
+                    isScalar(((Subtract) expression).getRightValue());
+        } else if (expression instanceof Multiply) {
+            return isScalar(((Multiply) expression).getLeftValue()) &&
+                    isScalar(((Multiply) expression).getRightValue());
+        } else if (expression instanceof Divide) {
+            return isScalar(((Divide) expression).getLeftValue()) && isScalar(((Divide) expression).getRightValue());
+        } else if (expression instanceof Mod) {
+            return isScalar(((Mod) expression).getLeftValue()) && isScalar(((Mod) expression).getRightValue());
+        } else if (expression instanceof AttributeFunction) {
+            AttributeFunction function = (AttributeFunction) expression;
+            if ((function.getNamespace() != null && !function.getNamespace().isEmpty()) ||
+                    !(SCALAR_FUNCTIONS.contains(function.getFunction()) ||
+                            function.getFunction().startsWith("instanceOf"))) {
+                return false;
+            }
+            if (function.getParameters() != null) {
+                for (Expression parameter : function.getParameters()) {
+                    if (!isScalar(parameter)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if an input stream of the consumer is imported or produced by a group other than the producer
+     */
+    private static boolean hasOtherProducer(QueryGroupInfoHolder consumer, QueryGroupInfoHolder producer,
+                                            Map<String, QueryGroupInfoHolder> groupIdToQueryMap,
+                                            Set<String> importedStreamIds) {
+        for (String inputDefinitionId : consumer.getInputDefinitionIds()) {
+            if (importedStreamIds.contains(inputDefinitionId)) {
+                return true;
+            }
+            for (QueryGroupInfoHolder group : groupIdToQueryMap.values()) {
+                if (group != producer && group != consumer &&
+                        group.getOutputDefinitionIds().contains(inputDefinitionId)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Queries like window and joins can not operate in parallel since they are stateful queries. So we are
-     * validating parallelism of those stateful queries.
+     * validating parallelism of those stateful queries. Aggregations and group by without a window keep state as
+     * well, hence they are enforced to run in a single task unless given a parallelism hint, so that the estimated
+     * parallelism does not split their state.
      *
      * @param query       query to be validated
      * @param parallel    user defined parallelism hint
@@ -355,6 +624,13 @@ public class StormQueryPlanBuilder {
                 } else {
                     return true;
                 }
+            } else if (isAggregating(query)) {      //if windowless aggregation
+                if (parallel > 1) {
+                    log.warn("Query " + queryString + " aggregates events in " + parallel + " parallel tasks, each " +
+                            "aggregating only the events it receives. Partitioning can be used to aggregate by key.");
+                    return false;
+                }
+                return true;
             } else {      //if simple filter query
                 return false;
             }
@@ -456,6 +732,91 @@ public class StormQueryPlanBuilder {
         return parallelism;
     }
 
+    /**
+     * Traverse the annotations and returns whether a @dist annotation contains the given element
+     *
+     * @param annotations
+     * @param elementKey
+     * @return
+     */
+    private static boolean hasElement(List<Annotation> annotations, String elementKey) {
+        if (annotations != null) {
+            for (Annotation annotation : annotations) {
+                if (annotation.getName().equals(EventProcessorConstants.DIST) &&
+                        annotation.getElement(elementKey) != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if any element of the group is given a parallelism hint
+     */
+    private static boolean hasParallelism(List<ExecutionElementInfoHolder> executionElementHolders) {
+        for (ExecutionElementInfoHolder element : executionElementHolders) {
+            if (hasElement(element.getExecutionElement().getAnnotations(), EventProcessorConstants.PARALLEL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the event publisher bolts of the execution plan send events to the shared server of each CEP
+     * node, as asked by @Plan:dist(sharedPublisherServer='true'). The CEP nodes read the same annotation.
+     */
+    public static boolean isSharedPublisherServer(List<Annotation> executionPlanAnnotations) {
+        return isEnabled(executionPlanAnnotations, EventProcessorConstants.SHARED_PUBLISHER_SERVER);
+    }
+
+    /**
+     * Traverse the annotations and returns whether a @dist annotation sets the given element to true
+     *
+     * @param annotations
+     * @param elementKey
+     * @return
+     */
+    private static boolean isEnabled(List<Annotation> annotations, String elementKey) {
+        if (annotations != null) {
+            for (Annotation annotation : annotations) {
+                if (annotation.getName().equals(EventProcessorConstants.DIST)) {
+                    if (annotation.getElement(elementKey) != null) {
+                        return Boolean.parseBoolean(annotation.getElement(elementKey));
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A query group is co-located when any of its elements asks for it. Co-location spreads the tasks of the group
+     * over all workers, which is not possible for groups which must run in a single task.
+     *
+     * @param groupId
+     * @param executionElementHolders
+     * @param parallelismInfoHolder
+     * @return
+     * @throws StormQueryConstructionException
+     */
+    private static boolean isColocated(String groupId, List<ExecutionElementInfoHolder> executionElementHolders,
+                                       ParallelismInfoHolder parallelismInfoHolder)
+            throws StormQueryConstructionException {
+        for (ExecutionElementInfoHolder element : executionElementHolders) {
+            if (isEnabled(element.getExecutionElement().getAnnotations(), EventProcessorConstants.COLOCATE)) {
+                if (parallelismInfoHolder.getIsEnforced()) {
+                    throw new StormQueryConstructionException("Error in deploying query group " + groupId + ". " +
+                            "Co-location can not be used with window, join and pattern queries as their parallelism " +
+                            "has to be 1. Partitioning can be used to facilitate such scenarios");
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Traverse the annotation and returns the execute group id
      *
@@ -476,6 +837,14 @@ public class StormQueryPlanBuilder {
         return id;
     }
 
+    private static Set<String> getStreamIds(List<String> streamDefinitions) {
+        Set<String> streamIds = new LinkedHashSet<String>(streamDefinitions.size());
+        for (String definitionString : streamDefinitions) {
+            streamIds.add(SiddhiCompiler.parseStreamDefinition(definitionString).getId());
+        }
+        return streamIds;
+    }
+
     private static String getQueryString(List<String> stringQueries) {
         StringBuilder builder = new StringBuilder();
         for (String query : stringQueries) {
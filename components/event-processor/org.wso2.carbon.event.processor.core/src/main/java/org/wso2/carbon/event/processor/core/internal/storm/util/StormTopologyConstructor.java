@@ -26,7 +26,10 @@ import org.wso2.carbon.event.processor.common.storm.component.EventPublisherBolt
 import org.wso2.carbon.event.processor.common.storm.component.EventReceiverSpout;
 import org.wso2.carbon.event.processor.common.storm.component.SiddhiBolt;
 import org.wso2.carbon.event.processor.common.storm.component.TriggerSpout;
+import org.wso2.carbon.event.processor.common.storm.grouping.ConsistentHashGrouping;
+import org.wso2.carbon.event.processor.common.util.DistributedProperties;
 import org.wso2.carbon.event.processor.core.exception.StormQueryConstructionException;
+import org.wso2.carbon.event.processor.core.internal.storm.StormTopologyManager;
 import org.wso2.carbon.event.processor.core.internal.storm.status.monitor.StormStatusHolderInitializer;
 import org.wso2.carbon.event.processor.core.internal.util.EventProcessorConstants;
 import org.wso2.carbon.event.processor.manager.core.config.DistributedConfiguration;
@@ -47,8 +50,12 @@ public class StormTopologyConstructor {
 
     private static Logger log = Logger.getLogger(StormTopologyConstructor.class);
 
+    /**
+     * @param workerCount number of Storm workers of the topology, across which co-located components are spread
+     */
     public static TopologyBuilder constructTopologyBuilder(String queryPlanString, String executionPlanName, int tenantId,
-                                                           DistributedConfiguration stormDeploymentConfig)
+                                                           DistributedConfiguration stormDeploymentConfig,
+                                                           int workerCount)
             throws XMLStreamException, StormQueryConstructionException {
 
         OMElement queryPlanElement = AXIOMUtil.stringToOM(queryPlanString);
@@ -63,6 +70,9 @@ public class StormTopologyConstructor {
             OMElement eventReceiverElement = iterator.next();
             String name = eventReceiverElement.getAttributeValue(new QName("name"));
             String parallel = eventReceiverElement.getAttributeValue(new QName("parallel"));
+            String inputRate = eventReceiverElement.getAttributeValue(new QName(EventProcessorConstants.INPUT_RATE));
+            // Expected events per second of each receiver task, 0 if the execution plan does not declare it
+            double taskInputRate = (inputRate != null) ? Double.parseDouble(inputRate) / Integer.parseInt(parallel) : 0;
             ComponentInfoHolder componentInfoHolder = new ComponentInfoHolder(name, ComponentInfoHolder.ComponentType.EVENT_RECEIVER_SPOUT);
 
             List<String> streamDefinitions = getStreamDefinitions(eventReceiverElement.getFirstChildWithName(new QName
@@ -74,7 +84,8 @@ public class StormTopologyConstructor {
             }
 
             componentInfoHolder.setDeclarer(builder.setSpout(name, new EventReceiverSpout(stormDeploymentConfig,
-                    streamDefinitions, executionPlanName, tenantId, stormDeploymentConfig.getManagementHeartbeatInterval()),
+                    streamDefinitions, executionPlanName, tenantId, stormDeploymentConfig.getManagementHeartbeatInterval(),
+                    taskInputRate),
                     Integer.parseInt(parallel)));
             topologyInfoHolder.addComponent(componentInfoHolder);
         }
@@ -89,6 +100,9 @@ public class StormTopologyConstructor {
             String parallel = eventProcessorElement.getAttributeValue(new QName(EventProcessorConstants.PARALLEL));
             String isEnforced = eventProcessorElement.getAttributeValue(new QName(EventProcessorConstants
                     .ENFORCE_PARALLELISM));
+            if (isColocated(eventProcessorElement)) {
+                parallel = String.valueOf(getColocatedParallelism(Integer.parseInt(parallel), workerCount));
+            }
             ComponentInfoHolder componentInfoHolder = new ComponentInfoHolder(name, ComponentInfoHolder.ComponentType.SIDDHI_BOLT);
 
             OMElement inputStreamsElement = eventProcessorElement.getFirstChildWithName(new QName("input-streams"));
@@ -113,7 +127,8 @@ public class StormTopologyConstructor {
                 componentInfoHolder.addOutputStream(streamDefinition);
             }
             BoltDeclarer declarer = builder.setBolt(name, new SiddhiBolt(name, inputStreamDefinitions,
-                    queryWithEventTable, outputStreamDefinitions, executionPlanName, tenantId),
+                    queryWithEventTable, outputStreamDefinitions, executionPlanName, tenantId,
+                    StormTopologyManager.getTopologyName(executionPlanName, tenantId)),
                     Integer.parseInt(parallel));
             //enforcing parallelism
             if (isEnforced.equals("true")) {
@@ -132,6 +147,9 @@ public class StormTopologyConstructor {
             OMElement eventProcessorElement = iterator.next();
             String name = eventProcessorElement.getAttributeValue(new QName("name"));
             int parallel = Integer.parseInt(eventProcessorElement.getAttributeValue(new QName("parallel")));
+            if (isColocated(eventProcessorElement)) {
+                parallel = getColocatedParallelism(parallel, workerCount);
+            }
             ComponentInfoHolder componentInfoHolder = new ComponentInfoHolder(name, ComponentInfoHolder.ComponentType.EVENT_PUBLISHER_BOLT);
 
             OMElement inputStreamsElement = eventProcessorElement.getFirstChildWithName(new QName("input-streams"));
@@ -158,9 +176,11 @@ public class StormTopologyConstructor {
             for (String streamDefinition : outputStreamDefinitions) {
                 componentInfoHolder.addOutputStream(streamDefinition);
             }
+            boolean sharedPublisherServer = "true".equals(eventProcessorElement.getAttributeValue(new QName(
+                    EventProcessorConstants.SHARED_PUBLISHER_SERVER)));
             componentInfoHolder.setDeclarer(builder.setBolt(name, new EventPublisherBolt(stormDeploymentConfig,
-                    inputStreamDefinitions, outputStreamDefinitions, query, executionPlanName, tenantId),
-                    parallel));
+                    inputStreamDefinitions, outputStreamDefinitions, query, executionPlanName, tenantId,
+                    sharedPublisherServer), parallel));
             topologyInfoHolder.addComponent(componentInfoHolder);
             StormStatusHolderInitializer.initializeStatusHolder(executionPlanName, tenantId, parallel);
         }
@@ -190,6 +210,10 @@ public class StormTopologyConstructor {
         }
 
         topologyInfoHolder.indexComponents();
+        boolean consistentHashGrouping = "consistent_hash".equalsIgnoreCase(DistributedProperties.getString(
+                DistributedProperties.PARTITION_GROUPING, DistributedProperties.DEFAULT_PARTITION_GROUPING));
+        boolean localOrShuffleGrouping = DistributedProperties.getBoolean(DistributedProperties.LOCAL_OR_SHUFFLE_GROUPING,
+                DistributedProperties.DEFAULT_LOCAL_OR_SHUFFLE_GROUPING);
 
         /**
          * Connecting components together.
@@ -212,11 +236,21 @@ public class StormTopologyConstructor {
                                     !pubComponent.getComponentName().equals(componentInfoHolder.getComponentName())) {
                                 String partitionedField = componentInfoHolder.getPartionenedField(inputStreamId);
                                 String groupingType = "ShuffleGrouping";
-                                if (partitionedField == null) {
+                                if (partitionedField == null && localOrShuffleGrouping) {
+                                    // Any task can consume events of a stream which is not partitioned, so prefer
+                                    // tasks in the same worker to avoid serializing events between workers
+                                    groupingType = "LocalOrShuffleGrouping";
+                                    boltDeclarer.localOrShuffleGrouping(pubComponent.getComponentName(), inputStreamId);
+                                } else if (partitionedField == null) {
                                     boltDeclarer.shuffleGrouping(pubComponent.getComponentName(), inputStreamId);
+                                } else if (consistentHashGrouping) {
+                                    groupingType = "ConsistentHashGrouping";
+                                    boltDeclarer.customGrouping(pubComponent.getComponentName(), inputStreamId,
+                                            new ConsistentHashGrouping(getPartitionFields(partitionedField)));
                                 } else {
                                     groupingType = "FieldGrouping";
-                                    boltDeclarer.fieldsGrouping(pubComponent.getComponentName(), inputStreamId, new Fields(partitionedField));
+                                    boltDeclarer.fieldsGrouping(pubComponent.getComponentName(), inputStreamId,
+                                            new Fields(getPartitionFields(partitionedField)));
                                 }
 
                                 if (log.isDebugEnabled()) {
@@ -249,6 +283,33 @@ public class StormTopologyConstructor {
         return streamDefinitions;
     }
 
+    private static boolean isColocated(OMElement componentElement) {
+        return "true".equals(componentElement.getAttributeValue(new QName(EventProcessorConstants.COLOCATE)));
+    }
+
+    /**
+     * Storm's even scheduler assigns the executors of a component to the workers in turn, so a parallelism which is a
+     * multiple of the worker count places the same number of tasks of the component in every worker. Events of
+     * streams which are not partitioned then stay within the worker through local or shuffle grouping.
+     */
+    private static int getColocatedParallelism(int parallel, int workerCount) {
+        if (workerCount <= 1) {
+            return parallel;
+        }
+        return ((parallel + workerCount - 1) / workerCount) * workerCount;
+    }
+
+    /**
+     * A partition key can consist of several attributes, given as a comma separated list
+     */
+    private static String[] getPartitionFields(String partitionAttributeValue) {
+        String[] partitionFields = partitionAttributeValue.split(",");
+        for (int i = 0; i < partitionFields.length; i++) {
+            partitionFields[i] = partitionFields[i].trim();
+        }
+        return partitionFields;
+    }
+
     /**
      * Adding stream partitioned fields
      */
@@ -260,10 +321,12 @@ public class StormTopologyConstructor {
             OMAttribute partitionAttribute = streamElement.getAttribute(new QName("partition"));
             if (partitionAttribute != null) {
                 StreamDefinition streamDefinition = SiddhiCompiler.parseStreamDefinition(streamElement.getText());
-                if (!Arrays.asList(streamDefinition.getAttributeNameArray()).contains(partitionAttribute
-                        .getAttributeValue())) {
-                    throw new StormQueryConstructionException("All input streams of the partition should have the " +
-                            "partitioning attribute.");
+                List<String> attributeNames = Arrays.asList(streamDefinition.getAttributeNameArray());
+                for (String partitionField : getPartitionFields(partitionAttribute.getAttributeValue())) {
+                    if (!attributeNames.contains(partitionField)) {
+                        throw new StormQueryConstructionException("All input streams of the partition should have " +
+                                "the partitioning attribute.");
+                    }
                 }
                 componentInfoHolder.addStreamPartitioningField(streamDefinition.getId(), partitionAttribute.getAttributeValue());
             }
@@ -18,7 +18,6 @@ package org.wso2.carbon.event.processor.core.internal.util;
 import org.apache.axiom.om.OMElement;
 import org.apache.axis2.deployment.Deployer;
 import org.apache.axis2.deployment.DeploymentEngine;
-import org.apache.axis2.deployment.repository.util.DeploymentFileData;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.event.processor.core.EventProcessorDeployer;
@@ -128,8 +127,7 @@ public class EventProcessorConfigurationFilesystemInvoker {
     public static void reload(String filePath) throws ExecutionPlanConfigurationException {
         EventProcessorDeployer eventProcessorDeployer = (EventProcessorDeployer) getDeployer(EventProcessorConstants.EP_ELE_DIRECTORY);
         try {
-            eventProcessorDeployer.processUndeploy(filePath);
-            eventProcessorDeployer.processDeploy(new DeploymentFileData(new File(filePath)));
+            eventProcessorDeployer.processRedeploy(filePath);
         } catch (ExecutionPlanConfigurationException e) {
             throw new ExecutionPlanConfigurationException(e);
         }
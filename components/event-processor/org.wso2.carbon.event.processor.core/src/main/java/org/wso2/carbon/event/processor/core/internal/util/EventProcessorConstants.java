@@ -101,6 +101,10 @@ public class EventProcessorConstants {
     public static final String DIST = "dist";
     public static final String EXEC_GROUP = "execGroup";
     public static final String ENFORCE_PARALLELISM = "enforceParallel";
+    public static final String COLOCATE = "colocate";
+    public static final String PUBLISHER_COLOCATE = "publisherColocate";
+    public static final String SHARED_PUBLISHER_SERVER = "sharedPublisherServer";
+    public static final String INPUT_RATE = "inputRate";
     public static final String TRIGGER_AT_EVERY = " at every ";
     public static final String TRIGGER_AT= " at ";
     public static final String SECOND = " sec";
@@ -144,4 +148,5 @@ public class EventProcessorConstants {
     public static final String METRIC_AGGREGATE_ANNOTATION = "[+]";
     public static final String METRIC_DELIMITER = ".";
     public static final String TEMP_CARBON_APPS_DIRECTORY = "carbonapps";
+    public static final int EXECUTION_PLAN_LOCK_STRIPES = 64;
 }
\ No newline at end of file
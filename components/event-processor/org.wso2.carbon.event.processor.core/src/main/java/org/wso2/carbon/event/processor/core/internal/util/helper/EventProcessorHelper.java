@@ -24,6 +24,7 @@ import org.wso2.carbon.databridge.commons.StreamDefinition;
 import org.wso2.carbon.event.processor.core.exception.ExecutionPlanConfigurationException;
 import org.wso2.carbon.event.processor.core.exception.ExecutionPlanDependencyValidationException;
 import org.wso2.carbon.event.processor.core.internal.ds.EventProcessorValueHolder;
+import org.wso2.carbon.event.processor.core.internal.storm.util.ExecutionPlanAnalysis;
 import org.wso2.carbon.event.processor.core.internal.util.EventProcessorConstants;
 import org.wso2.carbon.event.stream.core.EventStreamService;
 import org.wso2.carbon.event.stream.core.exception.EventStreamConfigurationException;
@@ -73,7 +74,7 @@ public class EventProcessorHelper {
         Pattern databridgeStreamNamePattern = Pattern.compile(EventProcessorConstants.DATABRIDGE_STREAM_REGEX);
         Pattern streamVersionPattern = Pattern.compile(EventProcessorConstants.STREAM_VER_REGEX);
 
-        ExecutionPlan parsedExecPlan = SiddhiCompiler.parse(executionPlan);
+        ExecutionPlan parsedExecPlan = ExecutionPlanAnalysis.analyze(executionPlan).getExecutionPlan();
         Element element = AnnotationHelper.getAnnotationElement(EventProcessorConstants.ANNOTATION_NAME_NAME, null,
                 parsedExecPlan.getAnnotations());
         if (element == null) {      // check if plan name is given
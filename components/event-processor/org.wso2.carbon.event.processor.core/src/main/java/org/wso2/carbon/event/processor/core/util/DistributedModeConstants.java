@@ -19,6 +19,11 @@ package org.wso2.carbon.event.processor.core.util;
 public final class DistributedModeConstants {
 
     public static final String STORM_STATUS_MAP = "org.wso2.cep.org.wso2.carbon.event.processor.core.storm.status.execution.plan.ui";
+    /**
+     * Deadlines of the topology kills waiting for the kill grace period by topology name, so that a new Storm
+     * coordinator carries out the kills of the previous one.
+     */
+    public static final String STORM_PENDING_KILL_MAP = "org.wso2.cep.org.wso2.carbon.event.processor.core.storm.pending.kill";
 
     /**
      * These states are different to the states in Storm terminology, except for ACTIVE
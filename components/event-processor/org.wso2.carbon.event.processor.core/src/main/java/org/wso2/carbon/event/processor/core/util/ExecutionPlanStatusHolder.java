@@ -29,6 +29,7 @@ public class ExecutionPlanStatusHolder implements Serializable {
 
     private final Map<String,Integer> publisherBoltsMap = new HashMap<>();         // < IP , #publisherBolts >
     private final Map<String,Integer[]> cepReceiversMap = new HashMap<>();            // < IP, #pendingReceiverConnections >
+    private final Map<String,Long> nodeStatusVersions = new HashMap<>();              // < IP, version of the node status >
 
     private int requiredPublisherBoltsCount = 0;
 
@@ -56,6 +57,33 @@ public class ExecutionPlanStatusHolder implements Serializable {
         publisherBoltsMap.put(hostIp,connectedCount);
     }
 
+    /**
+     * Sets the status reported by a node, unless a status of a later version was already set for it. Each node
+     * only ever overwrites its own entries, so updates of different nodes never conflict and the status of each
+     * node converges to the latest one it reported, whatever order the updates are applied in.
+     *
+     * @return false if the status was older than the current status of the node
+     */
+    public boolean setNodeStatus(String hostIp, long version, int connectedReceivers, int requiredReceivers,
+                                 int connectedPublisherBolts) {
+        Long currentVersion = nodeStatusVersions.get(hostIp);
+        if (currentVersion != null && currentVersion >= version) {
+            return false;
+        }
+        nodeStatusVersions.put(hostIp, version);
+        setCEPReceiverStatus(hostIp, connectedReceivers, requiredReceivers);
+        setConnectedPublisherBoltsCount(hostIp, connectedPublisherBolts);
+        return true;
+    }
+
+    /**
+     * @return version of the latest status set for the node, or -1 if none was set since the holder was created
+     */
+    public long getNodeStatusVersion(String hostIp) {
+        Long version = nodeStatusVersions.get(hostIp);
+        return version == null ? -1 : version;
+    }
+
     public String getExecutionPlanStatus(){
         String topologyStatus = "Storm topology : " + this.getTopologyState().toString() + "\n";
 
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.wso2.carbon.event.processor.core.util;
+
+import com.hazelcast.map.AbstractEntryProcessor;
+
+import java.util.Map;
+
+/**
+ * Sets the Storm topology state on the ExecutionPlanStatusHolder of an execution plan, in place on the partition
+ * owning it.
+ */
+public class TopologyStateUpdateProcessor extends AbstractEntryProcessor<String, ExecutionPlanStatusHolder> {
+
+    private final DistributedModeConstants.TopologyState topologyState;
+
+    public TopologyStateUpdateProcessor(DistributedModeConstants.TopologyState topologyState) {
+        this.topologyState = topologyState;
+    }
+
+    /**
+     * @return false if the status holder is not initialized by the manager
+     */
+    @Override
+    public Object process(Map.Entry<String, ExecutionPlanStatusHolder> entry) {
+        ExecutionPlanStatusHolder executionPlanStatusHolder = entry.getValue();
+        if (executionPlanStatusHolder == null) {
+            return false;
+        }
+        if (executionPlanStatusHolder.getTopologyState() != topologyState) {
+            executionPlanStatusHolder.setStormTopologyStatus(topologyState);
+            entry.setValue(executionPlanStatusHolder);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.event.processor.core.test;
+
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.carbon.event.processor.core.internal.ds.EventProcessorValueHolder;
+import org.wso2.carbon.event.processor.core.internal.storm.util.ExecutionPlanAnalysis;
+import org.wso2.carbon.event.processor.core.internal.util.EventProcessorUtil;
+import org.wso2.siddhi.core.ExecutionPlanRuntime;
+import org.wso2.siddhi.core.SiddhiManager;
+import org.wso2.siddhi.query.api.definition.AbstractDefinition;
+
+import java.util.Map;
+
+public class ExecutionPlanAnalysisTestCase {
+
+    @Before
+    public void init() {
+        EventProcessorValueHolder.registerSiddhiManager(new SiddhiManager());
+    }
+
+    @Test
+    public void testInferredStreamDefinitions() throws Exception {
+        String executionPlan = "define stream stockQuote ( price int, volume long, symbol string );\n" +
+                "define stream news ( symbol string, rating double );\n" +
+                "define trigger fiveSecTrigger at every 5 sec;\n" +
+                "@name('query1') from stockQuote[price > 100]\n" +
+                "select symbol, price * volume as value, price > 1000 as high\n" +
+                "insert into valueStream;\n" +
+                "@name('query2') from valueStream#window.length(10)\n" +
+                "select symbol, sum(value) as total, avg(value) as average, count() as events, max(value) as " +
+                "maxValue\n" +
+                "group by symbol\n" +
+                "insert into statStream;\n" +
+                "@name('query3') from statStream#window.length(1) as s join news#window.length(5) as n\n" +
+                "on s.symbol == n.symbol\n" +
+                "select s.symbol, n.rating, s.average * n.rating as score\n" +
+                "insert into scoreStream;\n" +
+                "@name('query4') from fiveSecTrigger\n" +
+                "select triggered_time\n" +
+                "insert into tickStream;\n";
+
+        Map<String, AbstractDefinition> definitions = ExecutionPlanAnalysis.analyze(executionPlan)
+                .getStreamDefinitionMap();
+        ExecutionPlanRuntime executionPlanRuntime = EventProcessorValueHolder.getSiddhiManager()
+                .createExecutionPlanRuntime(executionPlan);
+        Map<String, AbstractDefinition> runtimeDefinitions = executionPlanRuntime.getStreamDefinitionMap();
+        executionPlanRuntime.shutdown();
+
+        Assert.assertEquals(runtimeDefinitions.keySet(), definitions.keySet());
+        for (Map.Entry<String, AbstractDefinition> entry : runtimeDefinitions.entrySet()) {
+            Assert.assertEquals(EventProcessorUtil.getDefinitionString(entry.getValue()),
+                    EventProcessorUtil.getDefinitionString(definitions.get(entry.getKey())));
+        }
+    }
+
+    @Test
+    public void testCachedAnalysis() throws Exception {
+        String executionPlan = "define stream stockQuote ( price int, symbol string );\n" +
+                "@name('query1') from stockQuote[price > 100]\n" +
+                "select *\n" +
+                "insert into highStockQuote;\n";
+        ExecutionPlanAnalysis analysis = ExecutionPlanAnalysis.analyze(executionPlan);
+        Assert.assertSame(analysis, ExecutionPlanAnalysis.analyze(executionPlan));
+        Assert.assertEquals(1, analysis.getExecutionElementStrings().size());
+        Assert.assertEquals("define stream highStockQuote ( price int, symbol string );",
+                EventProcessorUtil.getDefinitionString(analysis.getStreamDefinitionMap().get("highStockQuote")));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.event.processor.core.test;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.wso2.carbon.event.processor.core.ExecutionPlanConfiguration;
+import org.wso2.carbon.event.processor.core.ExecutionPlanConfigurationFile;
+import org.wso2.carbon.event.processor.core.StreamConfiguration;
+import org.wso2.carbon.event.processor.core.internal.ExecutionPlanRegistry;
+
+public class ExecutionPlanRegistryTestCase {
+
+    @Test
+    public void testConfigurationFileLookup() {
+        ExecutionPlanRegistry executionPlanRegistry = new ExecutionPlanRegistry();
+        executionPlanRegistry.addConfigurationFile(createConfigurationFile("PlanA", ExecutionPlanConfigurationFile.Status.DEPLOYED, null));
+        executionPlanRegistry.addConfigurationFile(createConfigurationFile("PlanB",
+                ExecutionPlanConfigurationFile.Status.WAITING_FOR_DEPENDENCY, "StockStream:1.0.0"));
+
+        Assert.assertNotNull(executionPlanRegistry.getConfigurationFile("PlanA.siddhiql"));
+        Assert.assertEquals("PlanA.siddhiql", executionPlanRegistry.getDeployedConfigurationFile("PlanA").getFileName());
+        Assert.assertNull(executionPlanRegistry.getDeployedConfigurationFile("PlanB"));
+        Assert.assertEquals(1, executionPlanRegistry.getWaitingConfigurationFiles(
+                ExecutionPlanConfigurationFile.Status.WAITING_FOR_DEPENDENCY, "stockstream:1.0.0").size());
+        Assert.assertTrue(executionPlanRegistry.getWaitingConfigurationFiles(
+                ExecutionPlanConfigurationFile.Status.WAITING_FOR_OSGI_SERVICE, "StockStream:1.0.0").isEmpty());
+
+        Assert.assertEquals("PlanB", executionPlanRegistry.removeConfigurationFile("PlanB.siddhiql").getExecutionPlanName());
+        Assert.assertNull(executionPlanRegistry.getConfigurationFile("PlanB.siddhiql"));
+        Assert.assertTrue(executionPlanRegistry.getWaitingConfigurationFiles(
+                ExecutionPlanConfigurationFile.Status.WAITING_FOR_DEPENDENCY, "StockStream:1.0.0").isEmpty());
+        Assert.assertEquals(1, executionPlanRegistry.getConfigurationFiles().size());
+    }
+
+    @Test
+    public void testStreamLookup() {
+        ExecutionPlanRegistry executionPlanRegistry = new ExecutionPlanRegistry();
+        ExecutionPlanConfiguration planA = createExecutionPlanConfiguration("PlanA", "StockStream", "FilteredStockStream");
+        ExecutionPlanConfiguration planB = createExecutionPlanConfiguration("PlanB", "FilteredStockStream", "AlertStream");
+        executionPlanRegistry.addActiveExecutionPlan(planA);
+        executionPlanRegistry.addActiveExecutionPlan(planB);
+
+        Assert.assertTrue(executionPlanRegistry.isActiveExecutionPlan("plana"));
+        Assert.assertEquals(1, executionPlanRegistry.getImportingExecutionPlans("FilteredStockStream:1.0.0").size());
+        Assert.assertTrue(executionPlanRegistry.getImportingExecutionPlans("FilteredStockStream:1.0.0").contains("PlanB"));
+        Assert.assertTrue(executionPlanRegistry.getExportingExecutionPlans("FilteredStockStream:1.0.0").contains("PlanA"));
+
+        executionPlanRegistry.removeActiveExecutionPlan(planA);
+        Assert.assertFalse(executionPlanRegistry.isActiveExecutionPlan("PlanA"));
+        Assert.assertTrue(executionPlanRegistry.getExportingExecutionPlans("FilteredStockStream:1.0.0").isEmpty());
+        Assert.assertTrue(executionPlanRegistry.getImportingExecutionPlans("StockStream:1.0.0").isEmpty());
+    }
+
+    private static ExecutionPlanConfigurationFile createConfigurationFile(String executionPlanName,
+                                                                          ExecutionPlanConfigurationFile.Status status,
+                                                                          String dependency) {
+        ExecutionPlanConfigurationFile configurationFile = new ExecutionPlanConfigurationFile();
+        configurationFile.setExecutionPlanName(executionPlanName);
+        configurationFile.setFileName(executionPlanName + ".siddhiql");
+        configurationFile.setStatus(status);
+        configurationFile.setDependency(dependency);
+        return configurationFile;
+    }
+
+    private static ExecutionPlanConfiguration createExecutionPlanConfiguration(String name, String importedStream,
+                                                                               String exportedStream) {
+        ExecutionPlanConfiguration executionPlanConfiguration = new ExecutionPlanConfiguration();
+        executionPlanConfiguration.setName(name);
+        executionPlanConfiguration.addImportedStream(new StreamConfiguration(importedStream, "1.0.0", importedStream));
+        executionPlanConfiguration.addExportedStream(new StreamConfiguration(exportedStream, "1.0.0", exportedStream));
+        return executionPlanConfiguration;
+    }
+}
@@ -28,6 +28,7 @@ import org.wso2.carbon.event.processor.core.internal.ds.EventProcessorValueHolde
 import org.wso2.carbon.event.processor.core.internal.storm.util.StormQueryPlanBuilder;
 import org.wso2.carbon.event.processor.core.internal.util.EventProcessorConstants;
 import org.wso2.siddhi.core.SiddhiManager;
+import org.wso2.siddhi.query.compiler.SiddhiCompiler;
 
 import javax.xml.namespace.QName;
 import java.util.ArrayList;
@@ -532,6 +533,306 @@ public class StormQueryPlanBuilderTestCase {
 
     }
 
+    @Test
+    public void testColocatedQuery() throws Exception {
+        List<String> importedDefinition = new ArrayList<String>(1);
+        List<String> exportedDefinition = new ArrayList<String>(1);
+
+        String stockQuotes = "define stream stockQuote ( price int, symbol string );";
+        String highStockQuotes = "define stream highStockQuote ( price int, symbol string );";
+
+        ExecutionPlanConfiguration configuration = new ExecutionPlanConfiguration();
+        configuration.addImportedStream(new StreamConfiguration("test1", "1.0.0", "stockQuote"));
+        configuration.addExportedStream(new StreamConfiguration("test2", "1.0.0", "highStockQuote"));
+        String queryExpression = "@name('query1') @dist(parallel='2') from stockQuote[price>100]\n" +
+                "select price, symbol\n" +
+                "insert into positiveStockQuote;\n" +
+                "\n" +
+                "@name('query2') @dist(parallel='4', colocate='true') from positiveStockQuote[price>1000]\n" +
+                "select price, symbol\n" +
+                "insert into highStockQuote;\n";
+        configuration.setExecutionPlan(stockQuotes + highStockQuotes + queryExpression);
+
+        importedDefinition.add(stockQuotes);
+        exportedDefinition.add(highStockQuotes);
+        Document document = StormQueryPlanBuilder.constructStormQueryPlanXML(configuration, importedDefinition,
+                exportedDefinition);
+        OMElement queryElement = XMLUtils.toOM(document.getDocumentElement());
+
+        Iterator<OMElement> iterator = queryElement.getChildrenWithName(new QName("event-processor"));
+        while (iterator.hasNext()) {
+            OMElement eventProcessorElement = iterator.next();
+            String name = eventProcessorElement.getAttributeValue(new QName("name"));
+            String colocate = eventProcessorElement.getAttributeValue(new QName(EventProcessorConstants.COLOCATE));
+            if (name.equals("query2")) {
+                Assert.assertEquals("true", colocate);
+            } else {
+                Assert.assertNull(colocate);
+            }
+        }
+    }
+
+    @Test(expected = StormQueryConstructionException.class)
+    public void testColocatedWindowQuery() throws Exception {
+        List<String> importedDefinition = new ArrayList<String>(1);
+        List<String> exportedDefinition = new ArrayList<String>(1);
+
+        String stockQuotes = "define stream stockQuote ( price int, symbol string );";
+        String countedStockQuotes = "define stream countedStockQuote ( symbol string, count long );";
+
+        ExecutionPlanConfiguration configuration = new ExecutionPlanConfiguration();
+        configuration.addImportedStream(new StreamConfiguration("test1", "1.0.0", "stockQuote"));
+        configuration.addExportedStream(new StreamConfiguration("test2", "1.0.0", "countedStockQuote"));
+        String queryExpression = "@name('query1') @dist(parallel='1', colocate='true') " +
+                "from stockQuote#window.time(5 min)\n" +
+                "select symbol, count(price) as count\n" +
+                "insert into countedStockQuote;\n";
+        configuration.setExecutionPlan(stockQuotes + countedStockQuotes + queryExpression);
+
+        importedDefinition.add(stockQuotes);
+        exportedDefinition.add(countedStockQuotes);
+        StormQueryPlanBuilder.constructStormQueryPlanXML(configuration, importedDefinition, exportedDefinition);
+    }
+
+    @Test
+    public void testFusionOfStatelessQueries() throws Exception {
+        List<String> importedDefinition = new ArrayList<String>(1);
+        List<String> exportedDefinition = new ArrayList<String>(1);
+
+        String stockQuotes = "define stream stockQuote ( price int, symbol string );";
+        String countedStockQuotes = "define stream countedStockQuote ( symbol string, count long );";
+
+        ExecutionPlanConfiguration configuration = new ExecutionPlanConfiguration();
+        configuration.addImportedStream(new StreamConfiguration("test1", "1.0.0", "stockQuote"));
+        configuration.addExportedStream(new StreamConfiguration("test2", "1.0.0", "countedStockQuote"));
+        String queryExpression = "@name('query1') @dist(parallel='2') from stockQuote[price>100]\n" +
+                "select price, symbol\n" +
+                "insert into positiveStockQuote;\n" +
+                "\n" +
+                "@name('query2') @dist(parallel='2') from positiveStockQuote[price>1000]\n" +
+                "select price, symbol\n" +
+                "insert into highStockQuote;\n" +
+                "\n" +
+                "@name('query3') @dist(parallel='1') from highStockQuote#window.time(5 min)\n" +
+                "select symbol, count(price) as count\n" +
+                "insert into countedStockQuote;\n";
+        configuration.setExecutionPlan(stockQuotes + countedStockQuotes + queryExpression);
+
+        importedDefinition.add(stockQuotes);
+        exportedDefinition.add(countedStockQuotes);
+        Document document = StormQueryPlanBuilder.constructStormQueryPlanXML(configuration, importedDefinition,
+                exportedDefinition);
+        OMElement queryElement = XMLUtils.toOM(document.getDocumentElement());
+
+        List<String> queryList = Arrays.asList(queryExpression.split(";"));
+        List<String> processorNames = new ArrayList<String>();
+        Iterator<OMElement> iterator = queryElement.getChildrenWithName(new QName("event-processor"));
+        while (iterator.hasNext()) {
+            OMElement eventProcessorElement = iterator.next();
+            String name = eventProcessorElement.getAttributeValue(new QName("name"));
+            processorNames.add(name);
+            String query = eventProcessorElement.getFirstChildWithName(new QName("queries")).getText();
+            if (name.equals("query1_query2")) {
+                Assert.assertEquals(queryList.get(0).trim() + ";" + queryList.get(1).trim() + ";", query);
+                List<String> inputStreams = getStreamDefinitions(eventProcessorElement.getFirstChildWithName(new QName
+                        ("input-streams")));
+                Assert.assertEquals(1, inputStreams.size());
+                Assert.assertTrue(inputStreams.get(0).startsWith("define stream stockQuote "));
+                List<String> outputStreams = getStreamDefinitions(eventProcessorElement.getFirstChildWithName(new
+                        QName("output-streams")));
+                Assert.assertEquals(1, outputStreams.size());
+                Assert.assertTrue(outputStreams.get(0).startsWith("define stream highStockQuote "));
+            }
+        }
+        // The window query is stateful, so it is not fused
+        Assert.assertEquals(2, processorNames.size());
+        Assert.assertTrue(processorNames.contains("query1_query2"));
+        Assert.assertTrue(processorNames.contains("query3"));
+    }
+
+    @Test
+    public void testNoFusionOfDifferentParallelism() throws Exception {
+        List<String> importedDefinition = new ArrayList<String>(1);
+        List<String> exportedDefinition = new ArrayList<String>(1);
+
+        String stockQuotes = "define stream stockQuote ( price int, symbol string );";
+        String highStockQuotes = "define stream highStockQuote ( price int, symbol string );";
+
+        ExecutionPlanConfiguration configuration = new ExecutionPlanConfiguration();
+        configuration.addImportedStream(new StreamConfiguration("test1", "1.0.0", "stockQuote"));
+        configuration.addExportedStream(new StreamConfiguration("test2", "1.0.0", "highStockQuote"));
+        String queryExpression = "@name('query1') @dist(parallel='2') from stockQuote[price>100]\n" +
+                "select price, symbol\n" +
+                "insert into positiveStockQuote;\n" +
+                "\n" +
+                "@name('query2') @dist(parallel='4') from positiveStockQuote[price>1000]\n" +
+                "select price, symbol\n" +
+                "insert into highStockQuote;\n";
+        configuration.setExecutionPlan(stockQuotes + highStockQuotes + queryExpression);
+
+        importedDefinition.add(stockQuotes);
+        exportedDefinition.add(highStockQuotes);
+        Document document = StormQueryPlanBuilder.constructStormQueryPlanXML(configuration, importedDefinition,
+                exportedDefinition);
+        OMElement queryElement = XMLUtils.toOM(document.getDocumentElement());
+
+        int processorCount = 0;
+        Iterator<OMElement> iterator = queryElement.getChildrenWithName(new QName("event-processor"));
+        while (iterator.hasNext()) {
+            iterator.next();
+            processorCount++;
+        }
+        Assert.assertEquals(2, processorCount);
+    }
+
+    @Test
+    public void testNoFusionOfAggregateQueries() throws Exception {
+        List<String> importedDefinition = new ArrayList<String>(1);
+        List<String> exportedDefinition = new ArrayList<String>(1);
+
+        String stockQuotes = "define stream stockQuote ( price int, symbol string );";
+        String totalStockQuotes = "define stream totalStockQuote ( symbol string, total long );";
+
+        ExecutionPlanConfiguration configuration = new ExecutionPlanConfiguration();
+        configuration.addImportedStream(new StreamConfiguration("test1", "1.0.0", "stockQuote"));
+        configuration.addExportedStream(new StreamConfiguration("test2", "1.0.0", "totalStockQuote"));
+        String queryExpression = "@name('query1') @dist(parallel='2') from stockQuote[price>100]\n" +
+                "select price, symbol\n" +
+                "insert into positiveStockQuote;\n" +
+                "\n" +
+                "@name('query2') @dist(parallel='2') from positiveStockQuote\n" +
+                "select symbol, sum(price) as total\n" +
+                "group by symbol\n" +
+                "insert into totalStockQuote;\n";
+        configuration.setExecutionPlan(stockQuotes + totalStockQuotes + queryExpression);
+
+        importedDefinition.add(stockQuotes);
+        exportedDefinition.add(totalStockQuotes);
+        Document document = StormQueryPlanBuilder.constructStormQueryPlanXML(configuration, importedDefinition,
+                exportedDefinition);
+        OMElement queryElement = XMLUtils.toOM(document.getDocumentElement());
+
+        List<String> processorNames = new ArrayList<String>();
+        Iterator<OMElement> iterator = queryElement.getChildrenWithName(new QName("event-processor"));
+        while (iterator.hasNext()) {
+            processorNames.add(iterator.next().getAttributeValue(new QName("name")));
+        }
+        // The aggregation keeps state across events, so it is not fused although it has no window
+        Assert.assertEquals(2, processorNames.size());
+        Assert.assertTrue(processorNames.contains("query1"));
+        Assert.assertTrue(processorNames.contains("query2"));
+    }
+
+    @Test
+    public void testParallelismFromInputRate() throws Exception {
+        List<String> importedDefinition = new ArrayList<String>(1);
+        List<String> exportedDefinition = new ArrayList<String>(1);
+
+        String stockQuotes = "define stream stockQuote ( price int, symbol string );";
+        String highStockQuotes = "define stream highStockQuote ( price int, symbol string );";
+
+        ExecutionPlanConfiguration configuration = new ExecutionPlanConfiguration();
+        configuration.addImportedStream(new StreamConfiguration("test1", "1.0.0", "stockQuote"));
+        configuration.addExportedStream(new StreamConfiguration("test2", "1.0.0", "highStockQuote"));
+        String queryExpression = "@name('query1') from stockQuote[price>100]\n" +
+                "select price, symbol\n" +
+                "insert into positiveStockQuote;\n" +
+                "\n" +
+                "@name('query2') from positiveStockQuote#window.length(100)\n" +
+                "select max(price) as price, symbol\n" +
+                "insert into highStockQuote;\n";
+        configuration.setExecutionPlan("@Plan:dist(inputRate='1000000', publisherParallelism='2') " + stockQuotes +
+                highStockQuotes + queryExpression);
+
+        importedDefinition.add(stockQuotes);
+        exportedDefinition.add(highStockQuotes);
+        Document document = StormQueryPlanBuilder.constructStormQueryPlanXML(configuration, importedDefinition,
+                exportedDefinition);
+        OMElement queryElement = XMLUtils.toOM(document.getDocumentElement());
+
+        Iterator<OMElement> iterator = queryElement.getChildrenWithName(new QName("event-processor"));
+        while (iterator.hasNext()) {
+            OMElement eventProcessorElement = iterator.next();
+            String name = eventProcessorElement.getAttributeValue(new QName(EventProcessorConstants.NAME));
+            int parallelism = Integer.parseInt(eventProcessorElement.getAttributeValue(new QName(
+                    EventProcessorConstants.PARALLEL)));
+            if (name.equals("query1")) {
+                Assert.assertTrue("Filter query should be scaled out", parallelism > 1);
+            } else {
+                Assert.assertEquals("query2", name);
+                Assert.assertEquals(1, parallelism);
+            }
+        }
+        OMElement receiverElement = queryElement.getFirstChildWithName(new QName("event-receiver"));
+        Assert.assertTrue(Integer.parseInt(receiverElement.getAttributeValue(new QName(
+                EventProcessorConstants.PARALLEL))) > 1);
+        Assert.assertEquals(1000000.0, Double.parseDouble(receiverElement.getAttributeValue(new QName(
+                EventProcessorConstants.INPUT_RATE))), 0);
+        OMElement publisherElement = queryElement.getFirstChildWithName(new QName("event-publisher"));
+        Assert.assertEquals("2", publisherElement.getAttributeValue(new QName(EventProcessorConstants.PARALLEL)));
+    }
+
+    @Test
+    public void testSharedPublisherServer() throws Exception {
+        String stockQuotes = "define stream stockQuote ( price int, symbol string );";
+        String highStockQuotes = "define stream highStockQuote ( price int, symbol string );";
+
+        ExecutionPlanConfiguration configuration = new ExecutionPlanConfiguration();
+        configuration.addImportedStream(new StreamConfiguration("test1", "1.0.0", "stockQuote"));
+        configuration.addExportedStream(new StreamConfiguration("test2", "1.0.0", "highStockQuote"));
+        String queryExpression = "@name('query1') from stockQuote[price>100]\n" +
+                "select price, symbol\n" +
+                "insert into highStockQuote;\n";
+        String executionPlan = "@Plan:dist(sharedPublisherServer='true') " + stockQuotes + highStockQuotes +
+                queryExpression;
+        configuration.setExecutionPlan(executionPlan);
+
+        Document document = StormQueryPlanBuilder.constructStormQueryPlanXML(configuration,
+                Arrays.asList(stockQuotes), Arrays.asList(highStockQuotes));
+        OMElement queryElement = XMLUtils.toOM(document.getDocumentElement());
+
+        // The CEP publishers read the same annotation of the execution plan
+        OMElement publisherElement = queryElement.getFirstChildWithName(new QName("event-publisher"));
+        Assert.assertEquals("true", publisherElement.getAttributeValue(new QName(
+                EventProcessorConstants.SHARED_PUBLISHER_SERVER)));
+        Assert.assertTrue(StormQueryPlanBuilder.isSharedPublisherServer(SiddhiCompiler.parse(executionPlan)
+                .getAnnotations()));
+        Assert.assertFalse(StormQueryPlanBuilder.isSharedPublisherServer(SiddhiCompiler.parse(stockQuotes +
+                highStockQuotes + queryExpression).getAnnotations()));
+    }
+
+    @Test
+    public void testAggregateParallelismFromInputRate() throws Exception {
+        List<String> importedDefinition = new ArrayList<String>(1);
+        List<String> exportedDefinition = new ArrayList<String>(1);
+
+        String stockQuotes = "define stream stockQuote ( price int, symbol string );";
+        String totalStockQuotes = "define stream totalStockQuote ( symbol string, total long );";
+
+        ExecutionPlanConfiguration configuration = new ExecutionPlanConfiguration();
+        configuration.addImportedStream(new StreamConfiguration("test1", "1.0.0", "stockQuote"));
+        configuration.addExportedStream(new StreamConfiguration("test2", "1.0.0", "totalStockQuote"));
+        String queryExpression = "@name('query1') from stockQuote\n" +
+                "select symbol, sum(price) as total\n" +
+                "group by symbol\n" +
+                "insert into totalStockQuote;\n";
+        configuration.setExecutionPlan("@Plan:dist(inputRate='1000000') " + stockQuotes + totalStockQuotes +
+                queryExpression);
+
+        importedDefinition.add(stockQuotes);
+        exportedDefinition.add(totalStockQuotes);
+        Document document = StormQueryPlanBuilder.constructStormQueryPlanXML(configuration, importedDefinition,
+                exportedDefinition);
+        OMElement queryElement = XMLUtils.toOM(document.getDocumentElement());
+
+        OMElement eventProcessorElement = queryElement.getFirstChildWithName(new QName("event-processor"));
+        Assert.assertEquals("query1", eventProcessorElement.getAttributeValue(new QName(EventProcessorConstants.NAME)));
+        // Splitting the aggregation over tasks would split its state, hence it is not scaled out
+        Assert.assertEquals("1", eventProcessorElement.getAttributeValue(new QName(EventProcessorConstants.PARALLEL)));
+        Assert.assertEquals("true", eventProcessorElement.getAttributeValue(new QName(
+                EventProcessorConstants.ENFORCE_PARALLELISM)));
+    }
+
     private static List<String> getStreamDefinitions(OMElement streamsElement) {
         List<String> inputStreamDefinitions = new ArrayList<String>();
         Iterator<OMElement> inputStreamIterator = streamsElement.getChildrenWithName(new QName("stream"));
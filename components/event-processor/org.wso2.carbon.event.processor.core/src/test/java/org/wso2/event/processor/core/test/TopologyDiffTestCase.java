@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.event.processor.core.test;
+
+import backtype.storm.generated.StormTopology;
+import backtype.storm.topology.BasicOutputCollector;
+import backtype.storm.topology.OutputFieldsDeclarer;
+import backtype.storm.topology.TopologyBuilder;
+import backtype.storm.topology.base.BaseBasicBolt;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Tuple;
+import junit.framework.Assert;
+import org.junit.Test;
+import org.wso2.carbon.event.processor.core.internal.storm.TopologyDiff;
+
+public class TopologyDiffTestCase {
+
+    @Test
+    public void testParallelismChange() {
+        TopologyDiff topologyDiff = new TopologyDiff(createTopology("filter", 4), createTopology("filter", 2));
+        Assert.assertTrue(topologyDiff.getChangedComponents().isEmpty());
+        Assert.assertEquals(2, (int) topologyDiff.getParallelism().get("processor"));
+        Assert.assertTrue(topologyDiff.isRebalanceable());
+
+        // Storm cannot run more executors than the tasks created on submission
+        topologyDiff = new TopologyDiff(createTopology("filter", 2), createTopology("filter", 4));
+        Assert.assertTrue(topologyDiff.getChangedComponents().isEmpty());
+        Assert.assertFalse(topologyDiff.isRebalanceable());
+    }
+
+    @Test
+    public void testComponentChange() {
+        TopologyDiff topologyDiff = new TopologyDiff(createTopology("filter", 2), createTopology("join", 2));
+        Assert.assertEquals(1, topologyDiff.getChangedComponents().size());
+        Assert.assertTrue(topologyDiff.getChangedComponents().contains("processor"));
+        Assert.assertFalse(topologyDiff.isRebalanceable());
+    }
+
+    private static StormTopology createTopology(String query, int parallelism) {
+        TopologyBuilder builder = new TopologyBuilder();
+        builder.setBolt("receiver", new QueryBolt("receiver"), 1);
+        builder.setBolt("processor", new QueryBolt(query), parallelism).shuffleGrouping("receiver");
+        builder.setBolt("publisher", new QueryBolt("publisher"), 1).shuffleGrouping("processor");
+        return builder.createTopology();
+    }
+
+    private static class QueryBolt extends BaseBasicBolt {
+        private final String query;
+
+        private QueryBolt(String query) {
+            this.query = query;
+        }
+
+        @Override
+        public void execute(Tuple tuple, BasicOutputCollector collector) {
+        }
+
+        @Override
+        public void declareOutputFields(OutputFieldsDeclarer declarer) {
+            declarer.declare(new Fields("event"));
+        }
+    }
+}